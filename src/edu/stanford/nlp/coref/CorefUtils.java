@@ -12,8 +12,8 @@ import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Mention;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Pair;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 /**
  * Useful utilities for coreference resolution.
@@ -83,9 +83,7 @@ public class CorefUtils {
   }
 
   public static void checkForInterrupt() {
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
   }
 
   public static Map<Integer, List<Integer>> heuristicFilter(List<Mention> sortedMentions,
@@ -11,6 +11,7 @@ import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
 
+import edu.stanford.nlp.coref.CorefUtils;
 import edu.stanford.nlp.coref.data.CorefCluster;
 import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
@@ -93,6 +94,7 @@ public abstract class Sieve implements Serializable  {
 
     for(List<Mention> mentionsInSent : document.predictedMentions) {
       for(int mIdx = 0 ; mIdx < mentionsInSent.size() ; mIdx++) {
+        CorefUtils.checkForInterrupt();
         Mention m = mentionsInSent.get(mIdx);
         if(skipMentionType(m, props)) continue;
         findCoreferentAntecedent(m, mIdx, document, dict, props, sbLog);
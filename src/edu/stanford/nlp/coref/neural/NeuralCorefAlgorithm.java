@@ -13,6 +13,8 @@ import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Mention;
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.neural.CompactMatrix;
+import edu.stanford.nlp.neural.Embedding;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.util.Pair;
@@ -47,12 +49,14 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
     maxMentionDistance = CorefProperties.maxMentionDistance(props);
     maxMentionDistanceWithStringMatch = CorefProperties.maxMentionDistanceWithStringMatch(props);
 
-    model = IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
+    CompactMatrix.Precision precision = NeuralCorefProperties.precision(props);
+    NeuralCorefModel loadedModel = IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
         log, "Loading coref model", NeuralCorefProperties.modelPath(props));
+    model = loadedModel.compact(precision);
+    Embedding staticWordEmbeddings = Embedding.load(NeuralCorefProperties.pretrainedEmbeddingsPath(props));
+    staticWordEmbeddings.compact(precision);
     embeddingExtractor = new EmbeddingExtractor(CorefProperties.conll(props),
-        IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
-            log, "Loading coref embeddings", NeuralCorefProperties.pretrainedEmbeddingsPath(props)),
-        model.getWordEmbeddings());
+        staticWordEmbeddings, model.getWordEmbeddings());
     featureExtractor = new CategoricalFeatureExtractor(props, dictionaries);
   }
 
@@ -1,8 +1,10 @@
 package edu.stanford.nlp.coref.neural;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
+import edu.stanford.nlp.neural.CompactMatrix;
 import edu.stanford.nlp.neural.Embedding;
 import edu.stanford.nlp.neural.NeuralUtils;
 import org.ejml.simple.SimpleMatrix;
@@ -21,6 +23,18 @@ public class NeuralCorefModel implements Serializable {
   private final List<SimpleMatrix> pairwiseModel;
   private final Embedding wordEmbeddings;
 
+  /**
+   * If the model has been compacted (see {@link #compact(CompactMatrix.Precision)}),
+   * the weight matrices at reduced precision.  The corresponding
+   * SimpleMatrix fields, and the weight entries of the layer lists, are
+   * then null; the biases are left at full precision.
+   */
+  private final CompactMatrix compactAntecedentMatrix;
+  private final CompactMatrix compactAnaphorMatrix;
+  private final CompactMatrix compactPairFeaturesMatrix;
+  private final List<CompactMatrix> compactAnaphoricityModel;
+  private final List<CompactMatrix> compactPairwiseModel;
+
   public NeuralCorefModel(SimpleMatrix antecedentMatrix, SimpleMatrix anaphorMatrix,
       SimpleMatrix pairFeaturesMatrix, SimpleMatrix pairwiseFirstLayerBias,
       List<SimpleMatrix> anaphoricityModel, List<SimpleMatrix> pairwiseModel,
@@ -32,12 +46,70 @@ public class NeuralCorefModel implements Serializable {
     this.anaphoricityModel = anaphoricityModel;
     this.pairwiseModel = pairwiseModel;
     this.wordEmbeddings = wordEmbeddings;
+    this.compactAntecedentMatrix = null;
+    this.compactAnaphorMatrix = null;
+    this.compactPairFeaturesMatrix = null;
+    this.compactAnaphoricityModel = null;
+    this.compactPairwiseModel = null;
+  }
+
+  /** Makes a compact copy of the given model. */
+  private NeuralCorefModel(NeuralCorefModel model, CompactMatrix.Precision precision) {
+    this.antecedentMatrix = null;
+    this.anaphorMatrix = null;
+    this.pairFeaturesMatrix = null;
+    this.pairwiseFirstLayerBias = model.pairwiseFirstLayerBias;
+    this.compactAntecedentMatrix = CompactMatrix.of(model.antecedentMatrix, precision);
+    this.compactAnaphorMatrix = CompactMatrix.of(model.anaphorMatrix, precision);
+    this.compactPairFeaturesMatrix = CompactMatrix.of(model.pairFeaturesMatrix, precision);
+    this.anaphoricityModel = new ArrayList<>();
+    this.compactAnaphoricityModel = new ArrayList<>();
+    compactLayers(model.anaphoricityModel, precision, anaphoricityModel, compactAnaphoricityModel);
+    this.pairwiseModel = new ArrayList<>();
+    this.compactPairwiseModel = new ArrayList<>();
+    compactLayers(model.pairwiseModel, precision, pairwiseModel, compactPairwiseModel);
+    this.wordEmbeddings = model.wordEmbeddings;
+    if (wordEmbeddings != null) {
+      wordEmbeddings.compact(precision);
+    }
+  }
+
+  /** Splits alternating weights and biases into compact weights and full-precision biases. */
+  private static void compactLayers(List<SimpleMatrix> layers, CompactMatrix.Precision precision,
+      List<SimpleMatrix> biases, List<CompactMatrix> weights) {
+    for (int i = 0; i < layers.size(); i++) {
+      if (i % 2 == 0) {
+        weights.add(CompactMatrix.of(layers.get(i), precision));
+        biases.add(null);
+      } else {
+        weights.add(null);
+        biases.add(layers.get(i));
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of this model with its weights stored at the given
+   * precision, which uses less memory and scores faster, possibly at
+   * some cost in accuracy.  The word embeddings of this model are
+   * compacted in place.
+   */
+  public NeuralCorefModel compact(CompactMatrix.Precision precision) {
+    if (precision == CompactMatrix.Precision.DOUBLE || isCompact()) {
+      return this;
+    }
+    return new NeuralCorefModel(this, precision);
+  }
+
+  /** Whether the weights of this model are stored at reduced precision. */
+  public boolean isCompact() {
+    return compactAntecedentMatrix != null;
   }
 
   public double getAnaphoricityScore(SimpleMatrix mentionEmbedding,
       SimpleMatrix anaphoricityFeatures) {
     return score(NeuralUtils.concatenate(mentionEmbedding, anaphoricityFeatures),
-        anaphoricityModel);
+        anaphoricityModel, compactAnaphoricityModel);
   }
 
   public double getPairwiseScore(SimpleMatrix antecedentEmbedding, SimpleMatrix anaphorEmbedding,
@@ -45,30 +117,74 @@ public class NeuralCorefModel implements Serializable {
     SimpleMatrix firstLayerOutput = NeuralUtils.elementwiseApplyReLU(
         antecedentEmbedding
           .plus(anaphorEmbedding)
-          .plus(pairFeaturesMatrix.mult(pairFeatures))
+          .plus(mult(pairFeaturesMatrix, compactPairFeaturesMatrix, pairFeatures))
           .plus(pairwiseFirstLayerBias));
-    return score(firstLayerOutput, pairwiseModel);
+    return score(firstLayerOutput, pairwiseModel, compactPairwiseModel);
   }
 
-  private static double score(SimpleMatrix features, List<SimpleMatrix> weights) {
+  private static double score(SimpleMatrix features, List<SimpleMatrix> weights,
+      List<CompactMatrix> compactWeights) {
     for (int i = 0; i < weights.size(); i += 2) {
-      features = weights.get(i).mult(features).plus(weights.get(i + 1));
-      if (weights.get(i).numRows() > 1) {
+      SimpleMatrix weight = weights.get(i);
+      features = mult(weight, compactWeights == null ? null : compactWeights.get(i), features)
+          .plus(weights.get(i + 1));
+      int numRows = weight != null ? weight.numRows() : compactWeights.get(i).numRows();
+      if (numRows > 1) {
         features = NeuralUtils.elementwiseApplyReLU(features);
       }
     }
     return features.elementSum();
   }
 
+  /** Multiplies by whichever of the two forms of a weight matrix is present. */
+  private static SimpleMatrix mult(SimpleMatrix weights, CompactMatrix compactWeights, SimpleMatrix x) {
+    return weights != null ? weights.mult(x) : compactWeights.mult(x);
+  }
+
   public SimpleMatrix getAnaphorEmbedding(SimpleMatrix mentionEmbedding) {
-    return anaphorMatrix.mult(mentionEmbedding);
+    return mult(anaphorMatrix, compactAnaphorMatrix, mentionEmbedding);
   }
 
   public SimpleMatrix getAntecedentEmbedding(SimpleMatrix mentionEmbedding) {
-    return antecedentMatrix.mult(mentionEmbedding);
+    return mult(antecedentMatrix, compactAntecedentMatrix, mentionEmbedding);
+  }
+
+  /** The size of the mention embeddings this model takes as input. */
+  public int getMentionEmbeddingSize() {
+    return anaphorMatrix != null ? anaphorMatrix.numCols() : compactAnaphorMatrix.numCols();
   }
 
   public Embedding getWordEmbeddings() {
     return wordEmbeddings;
   }
+
+  /** The number of bytes used by the weights, not counting the word embeddings. */
+  public long sizeInBytes() {
+    long bytes = size(antecedentMatrix, compactAntecedentMatrix) +
+        size(anaphorMatrix, compactAnaphorMatrix) +
+        size(pairFeaturesMatrix, compactPairFeaturesMatrix) +
+        size(pairwiseFirstLayerBias, null);
+    for (SimpleMatrix layer : anaphoricityModel) {
+      bytes += size(layer, null);
+    }
+    for (SimpleMatrix layer : pairwiseModel) {
+      bytes += size(layer, null);
+    }
+    if (isCompact()) {
+      for (CompactMatrix layer : compactAnaphoricityModel) {
+        bytes += size(null, layer);
+      }
+      for (CompactMatrix layer : compactPairwiseModel) {
+        bytes += size(null, layer);
+      }
+    }
+    return bytes;
+  }
+
+  private static long size(SimpleMatrix matrix, CompactMatrix compactMatrix) {
+    if (matrix != null) {
+      return 8L * matrix.getNumElements();
+    }
+    return compactMatrix == null ? 0 : compactMatrix.sizeInBytes();
+  }
 }
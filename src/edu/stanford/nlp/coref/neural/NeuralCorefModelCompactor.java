@@ -0,0 +1,94 @@
+package edu.stanford.nlp.coref.neural;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.neural.CompactMatrix;
+import edu.stanford.nlp.neural.Embedding;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Converts a neural coreference model and its embeddings to reduced
+ * precision, and reports how much the mention representations change.
+ * <p>
+ * The converted files can be used directly with
+ * {@code coref.neural.modelPath} and {@code coref.neural.embeddingsPath};
+ * alternatively, setting {@code coref.neural.precision} converts the
+ * usual models as they are loaded.
+ * <p>
+ * Usage: {@code java edu.stanford.nlp.coref.neural.NeuralCorefModelCompactor
+ * -coref.neural.modelPath model.ser.gz -coref.neural.embeddingsPath embeddings.ser.gz
+ * -coref.neural.precision float -outputModelPath out-model.ser.gz -outputEmbeddingsPath out-embeddings.ser.gz}
+ */
+public class NeuralCorefModelCompactor {
+
+  private static final Redwood.RedwoodChannels log = Redwood.channels(NeuralCorefModelCompactor.class);
+
+  /** Number of random mention embeddings on which to compare the models */
+  private static final int NUM_PROBES = 1000;
+
+  private NeuralCorefModelCompactor() { } // static main only
+
+  /**
+   * Returns the largest relative difference between the mention
+   * representations computed by the two models, over random mention
+   * embeddings.
+   */
+  static double maxRelativeError(NeuralCorefModel model, NeuralCorefModel compactModel, Random random) {
+    int size = model.getMentionEmbeddingSize();
+    double maxError = 0.0;
+    for (int probe = 0; probe < NUM_PROBES; probe++) {
+      SimpleMatrix mention = SimpleMatrix.random(size, 1, -1.0, 1.0, random);
+      SimpleMatrix expected = model.getAnaphorEmbedding(mention);
+      SimpleMatrix actual = compactModel.getAnaphorEmbedding(mention);
+      maxError = Math.max(maxError, expected.minus(actual).normF() / Math.max(expected.normF(), 1e-12));
+      expected = model.getAntecedentEmbedding(mention);
+      actual = compactModel.getAntecedentEmbedding(mention);
+      maxError = Math.max(maxError, expected.minus(actual).normF() / Math.max(expected.normF(), 1e-12));
+    }
+    return maxError;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Properties props = StringUtils.argsToProperties(args);
+    CompactMatrix.Precision precision = NeuralCorefProperties.precision(props);
+
+    NeuralCorefModel model = IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
+        log, "Loading coref model", NeuralCorefProperties.modelPath(props));
+    Embedding embeddings = Embedding.load(NeuralCorefProperties.pretrainedEmbeddingsPath(props));
+    long modelBytes = model.sizeInBytes();
+    long tunedBytes = model.getWordEmbeddings() == null ? 0 : model.getWordEmbeddings().sizeInBytes();
+    long embeddingBytes = embeddings.sizeInBytes();
+
+    // The original model keeps its full-precision weights for comparison, though its tuned embeddings are compacted
+    NeuralCorefModel compactModel = model.compact(precision);
+    embeddings.compact(precision);
+
+    log.info(String.format("Precision: %s", precision));
+    log.info(String.format("Model weights: %d MB -> %d MB", modelBytes >> 20, compactModel.sizeInBytes() >> 20));
+    if (compactModel.getWordEmbeddings() != null) {
+      log.info(String.format("Tuned embeddings: %d MB -> %d MB", tunedBytes >> 20,
+          compactModel.getWordEmbeddings().sizeInBytes() >> 20));
+    }
+    log.info(String.format("Static embeddings: %d MB -> %d MB", embeddingBytes >> 20, embeddings.sizeInBytes() >> 20));
+    log.info(String.format("Largest relative change in mention representations: %.3g",
+        maxRelativeError(model, compactModel, new Random(1234))));
+
+    String outputModelPath = props.getProperty("outputModelPath");
+    if (outputModelPath != null) {
+      IOUtils.writeObjectToFile(compactModel, outputModelPath);
+      log.info("Wrote " + outputModelPath);
+    }
+    String outputEmbeddingsPath = props.getProperty("outputEmbeddingsPath");
+    if (outputEmbeddingsPath != null) {
+      IOUtils.writeObjectToFile(embeddings, outputEmbeddingsPath);
+      log.info("Wrote " + outputEmbeddingsPath);
+    }
+  }
+
+}
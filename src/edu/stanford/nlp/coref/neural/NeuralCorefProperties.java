@@ -4,6 +4,7 @@ import java.util.Locale;
 import java.util.Properties;
 
 import edu.stanford.nlp.coref.CorefProperties;
+import edu.stanford.nlp.neural.CompactMatrix;
 import edu.stanford.nlp.util.PropertiesUtils;
 
 /**
@@ -28,4 +29,8 @@ public class NeuralCorefProperties {
         "-embeddings.ser.gz";
     return PropertiesUtils.getString(props, "coref.neural.embeddingsPath", defaultPath);
   }
+
+  public static CompactMatrix.Precision precision(Properties props) {
+    return CompactMatrix.Precision.fromString(PropertiesUtils.getString(props, "coref.neural.precision", "double"));
+  }
 }
@@ -17,8 +17,8 @@ import edu.stanford.nlp.coref.data.Dictionaries.MentionType;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Pair;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 /**
  * Does best-first coreference resolution by linking each mention to its highest scoring candidate
@@ -80,9 +80,7 @@ public class StatisticalCorefAlgorithm implements CorefAlgorithm {
   @Override
   public void runCoref(Document document) {
     Compressor<String> compressor = new Compressor<>();
-    if (Thread.interrupted()) {  // Allow interrupting
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();  // Allow interrupting
 
     Map<Pair<Integer, Integer>, Boolean> pairs = new HashMap<>();
     for (Map.Entry<Integer, List<Integer>> e: CorefUtils.heuristicFilter(
@@ -96,9 +94,7 @@ public class StatisticalCorefAlgorithm implements CorefAlgorithm {
     DocumentExamples examples = extractor.extract(0, document, pairs, compressor);
     Counter<Pair<Integer, Integer>> pairwiseScores = new ClassicCounter<>();
     for (Example mentionPair : examples.examples) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       pairwiseScores.incrementCount(new Pair<>(mentionPair.mentionId1, mentionPair.mentionId2),
           classifier.predict(mentionPair, examples.mentionFeatures, compressor));
     }
@@ -114,9 +110,7 @@ public class StatisticalCorefAlgorithm implements CorefAlgorithm {
       if (seenAnaphors.contains(pair.second)) {
         continue;
       }
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       seenAnaphors.add(pair.second);
       MentionType mt1 = document.predictedMentionsByID.get(pair.first).mentionType;
       MentionType mt2 = document.predictedMentionsByID.get(pair.second).mentionType;
@@ -911,6 +911,7 @@ public class SieveCoreferenceSystem  {
       List<Mention> orderedMentions = orderedMentionsBySentence.get(sentI);
 
       for (int mentionI = 0; mentionI < orderedMentions.size(); mentionI++) {
+        Deadline.checkForInterrupt();
 
         Mention m1 = orderedMentions.get(mentionI);
 
@@ -29,6 +29,7 @@ package edu.stanford.nlp.ie;
 
 import edu.stanford.nlp.fsm.DFSA;
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedModelFile;
 import edu.stanford.nlp.io.RegExFileFilter;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreAnnotation;
@@ -53,6 +54,9 @@ import java.io.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -736,6 +740,86 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
    */
   public abstract List<IN> classifyWithGlobalInformation(List<IN> tokenSequence, final CoreMap document, final CoreMap sentence);
 
+  /**
+   * Classifies each of a batch of documents (typically sentences) in place,
+   * as {@link #classify(List)} does, on the calling thread.
+   *
+   * @param documents The documents to classify
+   * @return The output of {@link #classify(List)} for each document, in order
+   */
+  public List<List<IN>> classifyBatch(List<List<IN>> documents) {
+    return classifyBatch(documents, null);
+  }
+
+  /**
+   * Classifies each of a batch of documents (typically sentences) in place,
+   * as {@link #classify(List)} does.  The same warning about preprocessing
+   * applies.  The documents are split into a few chunks per processor, and
+   * each chunk is classified as one task on the given executor, so that the
+   * per-task overhead is paid per chunk rather than per sentence and each
+   * thread's scratch buffers are reused across its chunk.  The chunks run
+   * under the calling thread's {@link Deadline}, if it has one.
+   *
+   * @param documents The documents to classify
+   * @param executor The executor to classify the chunks on, or null to
+   *                 classify them all on the calling thread
+   * @return The output of {@link #classify(List)} for each document, in order
+   */
+  @SuppressWarnings("try")
+  public List<List<IN>> classifyBatch(List<List<IN>> documents, Executor executor) {
+    int size = documents.size();
+    List<List<IN>> results = new ArrayList<>(Collections.nCopies(size, null));
+    int numChunks = executor == null ? 1 : Math.min(size, 4 * Runtime.getRuntime().availableProcessors());
+    if (numChunks <= 1) {
+      classifyChunk(documents, results, 0, size);
+      return results;
+    }
+
+    Deadline deadline = Deadline.current();
+    List<CompletableFuture<Void>> chunks = new ArrayList<>(numChunks);
+    for (int chunk = 0; chunk < numChunks; chunk++) {
+      int start = (int) ((long) size * chunk / numChunks);
+      int end = (int) ((long) size * (chunk + 1) / numChunks);
+      chunks.add(CompletableFuture.runAsync(() -> {
+        try (Deadline.Scope ignored = Deadline.enter(deadline)) {
+          classifyChunk(documents, results, start, end);
+        }
+      }, executor));
+    }
+    try {
+      for (CompletableFuture<Void> chunk : chunks) {
+        chunk.get();
+      }
+    } catch (InterruptedException e) {
+      for (CompletableFuture<Void> chunk : chunks) {
+        chunk.cancel(true);
+      }
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    return results;
+  }
+
+  /**
+   * Classifies the documents from {@code start} to {@code end} of a batch,
+   * storing the outputs in the same positions of {@code results}.  This is
+   * the unit of work of {@link #classifyBatch(List, Executor)},
+   * run on a single thread.
+   */
+  protected void classifyChunk(List<List<IN>> documents, List<List<IN>> results, int start, int end) {
+    for (int i = start; i < end; i++) {
+      Deadline.checkForInterrupt();  // Allow interrupting
+      results.set(i, classify(documents.get(i)));
+    }
+  }
+
   /**
    * Classification is finished for the document.
    * Do any cleanup (if information was stored as part of the document for global classification)
@@ -1426,6 +1510,55 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
   /** Serialize a sequence classifier to an object output stream **/
   public abstract void serializeClassifier(ObjectOutputStream oos);
 
+  /** Name of the section of a mapped classifier which holds the output of {@link #serializeClassifier(ObjectOutputStream)}. */
+  protected static final String MAPPED_CLASSIFIER_SECTION = "classifier";
+
+  /**
+   * Serialize a sequence classifier to a {@link MappedModelFile} on the
+   * given path, which {@link #loadClassifier(String, Properties)} can
+   * load.  Classifiers which override
+   * {@link #addMappedSections(MappedModelFile.Writer)} keep their weights
+   * in flat sections which are mapped rather than read into the heap;
+   * otherwise the file just wraps the usual serialized classifier.
+   *
+   * @param serializePath The path/filename to write the classifier to.
+   */
+  public void serializeMappedClassifier(String serializePath) {
+    try {
+      MappedModelFile.Writer writer = new MappedModelFile.Writer();
+      addMappedSections(writer);
+      writer.write(serializePath);
+      log.info("Serializing mapped classifier to " + serializePath + "... done.");
+    } catch (IOException e) {
+      throw new RuntimeIOException("Serializing mapped classifier to " + serializePath + "... FAILED", e);
+    }
+  }
+
+  /** Adds the sections of a mapped classifier to the writer. */
+  protected void addMappedSections(MappedModelFile.Writer writer) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      serializeClassifier(oos);
+    }
+    writer.putBytes(MAPPED_CLASSIFIER_SECTION, bytes.toByteArray());
+  }
+
+  /**
+   * Loads a classifier written by {@link #serializeMappedClassifier(String)}.
+   * Classifiers which override {@link #addMappedSections(MappedModelFile.Writer)}
+   * should override this to use their mapped weights.
+   *
+   * @param file The mapped classifier
+   * @param props This Properties object will be used to update the
+   *          SeqClassifierFlags which are read from the serialized classifier
+   */
+  protected void loadMappedClassifier(MappedModelFile file, Properties props) throws IOException, ClassCastException,
+      ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(file.stream(MAPPED_CLASSIFIER_SECTION)))) {
+      loadClassifier(ois, props);
+    }
+  }
+
   /**
    * Loads a classifier from the given input stream.
    * Any exceptions are rethrown as unchecked exceptions.
@@ -1498,9 +1631,16 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
 
   /**
    * Loads a classifier from the file, classpath resource, or URL specified by loadPath. If loadPath ends in
-   * .gz, uses a GZIPInputStream.
+   * .gz, uses a GZIPInputStream.  If loadPath is a file written by
+   * {@link #serializeMappedClassifier(String)}, it is mapped instead.
    */
   public void loadClassifier(String loadPath, Properties props) throws ClassCastException, IOException, ClassNotFoundException {
+    if (MappedModelFile.isMappedModelFile(loadPath)) {
+      Timing t = new Timing();
+      loadMappedClassifier(MappedModelFile.open(loadPath), props);
+      t.done(log, "Loading mapped classifier from " + loadPath);
+      return;
+    }
     InputStream is = IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(loadPath);
     Timing t = new Timing();
     loadClassifier(is, props);
@@ -25,6 +25,7 @@ import edu.stanford.nlp.pipeline.DefaultPaths;
 import edu.stanford.nlp.sequences.DocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.ErasureUtils;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.StringUtils;
@@ -445,21 +446,8 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
       return tokens;
     }
     List<List<IN>> baseOutputs = new ArrayList<>();
-
-    // the first base model works in place, modifying the original tokens
-    List<IN> output = baseClassifiers.get(0).classifySentence(tokens);
-    // classify(List<IN>) is supposed to work in place, so add AnswerAnnotation to tokens!
-    for (int i = 0, sz = output.size(); i < sz; i++) {
-      tokens.get(i).set(CoreAnnotations.AnswerAnnotation.class, output.get(i).get(CoreAnnotations.AnswerAnnotation.class));
-    }
-    baseOutputs.add(tokens);
-
-    for (int i = 1, sz = baseClassifiers.size(); i < sz; i ++) {
-      //List<CoreLabel> copy = deepCopy(tokens);
-      // no need for deep copy: classifySentence creates a copy of the input anyway
-      // List<CoreLabel> copy = tokens;
-      output = baseClassifiers.get(i).classifySentence(tokens);
-      baseOutputs.add(output);
+    for (int i = 0, sz = baseClassifiers.size(); i < sz; i ++) {
+      baseOutputs.add(classifyWithBaseClassifier(i, tokens));
     }
     assert(baseOutputs.size() == baseClassifiers.size());
     List<IN> finalAnswer = mergeDocuments(baseOutputs);
@@ -467,6 +455,50 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
     return finalAnswer;
   }
 
+  /** The output of the given base classifier on the tokens, for {@link #mergeDocuments}. */
+  private List<IN> classifyWithBaseClassifier(int classifier, List<IN> tokens) {
+    List<IN> output = baseClassifiers.get(classifier).classifySentence(tokens);
+    if (classifier == 0) {
+      // the first base model works in place, modifying the original tokens
+      // classify(List<IN>) is supposed to work in place, so add AnswerAnnotation to tokens!
+      for (int i = 0, sz = output.size(); i < sz; i++) {
+        tokens.get(i).set(CoreAnnotations.AnswerAnnotation.class, output.get(i).get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      return tokens;
+    }
+    // no need for deep copy: classifySentence creates a copy of the input anyway
+    return output;
+  }
+
+  /**
+   * Classifies the chunk with one base classifier at a time, rather than
+   * one document at a time, so that each model stays in cache while it
+   * works through the chunk.  The answers are the same as from
+   * {@link #classify(List)}.
+   */
+  @Override
+  protected void classifyChunk(List<List<IN>> documents, List<List<IN>> results, int start, int end) {
+    if (baseClassifiers.isEmpty()) {
+      for (int i = start; i < end; i++) {
+        results.set(i, documents.get(i));
+      }
+      return;
+    }
+    List<List<List<IN>>> baseOutputs = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      baseOutputs.add(new ArrayList<>(baseClassifiers.size()));
+    }
+    for (int classifier = 0, sz = baseClassifiers.size(); classifier < sz; classifier++) {
+      for (int i = start; i < end; i++) {
+        Deadline.checkForInterrupt();  // Allow interrupting
+        baseOutputs.get(i - start).add(classifyWithBaseClassifier(classifier, documents.get(i)));
+      }
+    }
+    for (int i = start; i < end; i++) {
+      results.set(i, mergeDocuments(baseOutputs.get(i - start)));
+    }
+  }
+
 
   @SuppressWarnings("unchecked")
   @Override
@@ -302,6 +302,25 @@ public class NERClassifierCombiner extends ClassifierCombiner<CoreLabel>  {
   @Override
   public List<CoreLabel> classifyWithGlobalInformation(List<CoreLabel> tokens, final CoreMap document, final CoreMap sentence) {
     List<CoreLabel> output = super.classify(tokens);
+    return finishClassification(tokens, output, document, sentence);
+  }
+
+  /**
+   * Runs the base classifiers over the chunk one model at a time, as
+   * {@link ClassifierCombiner} does, and then applies the numeric
+   * classifiers and gazette mapping to each document as
+   * {@link #classify(List)} does.
+   */
+  @Override
+  protected void classifyChunk(List<List<CoreLabel>> documents, List<List<CoreLabel>> results, int start, int end) {
+    super.classifyChunk(documents, results, start, end);
+    for (int i = start; i < end; i++) {
+      results.set(i, finishClassification(documents.get(i), results.get(i), null, null));
+    }
+  }
+
+  /** Adds numeric entities and gazette matches to the output of the base classifiers. */
+  private List<CoreLabel> finishClassification(List<CoreLabel> tokens, List<CoreLabel> output, final CoreMap document, final CoreMap sentence) {
     if (applyNumericClassifiers) {
       try {
         // recognizes additional MONEY, TIME, DATE, and NUMBER using a set of deterministic rules
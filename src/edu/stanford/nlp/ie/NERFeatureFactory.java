@@ -51,6 +51,7 @@ import edu.stanford.nlp.process.WordShapeClassifier;
 import edu.stanford.nlp.sequences.Clique;
 import edu.stanford.nlp.sequences.CoNLLDocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.FeatureFactory;
+import edu.stanford.nlp.sequences.FeatureHasher;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.trees.international.pennchinese.RadicalMap;
 import edu.stanford.nlp.util.Generics;
@@ -404,61 +405,271 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 //    log.info(doFE+"\t"+domain);
 
     // there are two special cases below, because 2 cliques have 2 names
-    Collection<String> c;
+    StringFeatures c = new StringFeatures();
     String suffix;
     if (clique == cliqueC) {
       //200710: tried making this clique null; didn't improve performance (rafferty)
-      c = featuresC(cInfo, loc);
+      featuresC(cInfo, loc, c);
       suffix = "C";
     } else if (clique == cliqueCpC) {
-      c = featuresCpC(cInfo, loc);
+      featuresCpC(cInfo, loc, c);
       suffix = "CpC";
-      addAllInterningAndSuffixing(features, c, suffix);
+      addAllInterningAndSuffixing(features, c.features, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+        addAllInterningAndSuffixing(features, c.features, domain + '-' + suffix);
       }
-      c = featuresCnC(cInfo, loc-1);
+      c = new StringFeatures();
+      featuresCnC(cInfo, loc-1, c);
       suffix = "CnC";
     } else if (clique == cliqueCp2C) {
-      c = featuresCp2C(cInfo, loc);
+      featuresCp2C(cInfo, loc, c);
       suffix = "Cp2C";
     } else if (clique == cliqueCp3C) {
-      c = featuresCp3C(cInfo, loc);
+      featuresCp3C(cInfo, loc, c);
       suffix = "Cp3C";
     } else if (clique == cliqueCp4C) {
-      c = featuresCp4C(cInfo, loc);
+      featuresCp4C(cInfo, loc, c);
       suffix = "Cp4C";
     } else if (clique == cliqueCp5C) {
-      c = featuresCp5C(cInfo, loc);
+      featuresCp5C(cInfo, loc, c);
       suffix = "Cp5C";
     } else if (clique == cliqueCpCp2C) {
-      c = featuresCpCp2C(cInfo, loc);
+      featuresCpCp2C(cInfo, loc, c);
       suffix = "CpCp2C";
-      addAllInterningAndSuffixing(features, c, suffix);
+      addAllInterningAndSuffixing(features, c.features, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain+ '-' + suffix);
+        addAllInterningAndSuffixing(features, c.features, domain+ '-' + suffix);
       }
-      c = featuresCpCnC(cInfo, loc-1);
+      c = new StringFeatures();
+      featuresCpCnC(cInfo, loc-1, c);
       suffix = "CpCnC";
     } else if (clique == cliqueCpCp2Cp3C) {
-      c = featuresCpCp2Cp3C(cInfo, loc);
+      featuresCpCp2Cp3C(cInfo, loc, c);
       suffix = "CpCp2Cp3C";
     } else if (clique == cliqueCpCp2Cp3Cp4C) {
-      c = featuresCpCp2Cp3Cp4C(cInfo, loc);
+      featuresCpCp2Cp3Cp4C(cInfo, loc, c);
       suffix = "CpCp2Cp3Cp4C";
     } else {
       throw new IllegalArgumentException("Unknown clique: " + clique);
     }
 
-    addAllInterningAndSuffixing(features, c, suffix);
+    addAllInterningAndSuffixing(features, c.features, suffix);
     if (doFE) {
-      addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+      addAllInterningAndSuffixing(features, c.features, domain + '-' + suffix);
     }
 
     // log.info(StringUtils.join(features,"\n")+"\n");
     return features;
   }
 
+  /**
+   * All the features are hashed: the templates which the usual models use
+   * add theirs piece by piece, without building the Strings, and the rest
+   * are hashed from their Strings.
+   */
+  @Override
+  public boolean supportsHashedFeatures() {
+    return true;
+  }
+
+  /**
+   * Adds the ids of the same features as {@link #getCliqueFeatures(PaddedList, int, Clique)},
+   * from the same templates.
+   */
+  @Override
+  public void getCliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique, FeatureHasher features) {
+    String domain = cInfo.get(0).get(CoreAnnotations.DomainAnnotation.class);
+    HashedFeatures c = new HashedFeatures(features);
+    int start = features.size();
+
+    if (clique == cliqueC) {
+      featuresC(cInfo, loc, c);
+      addAllSuffixing(features, start, "C", domain);
+    } else if (clique == cliqueCpC) {
+      featuresCpC(cInfo, loc, c);
+      addAllSuffixing(features, start, "CpC", domain);
+      int cnc = features.size();
+      featuresCnC(cInfo, loc - 1, c);
+      addAllSuffixing(features, cnc, "CnC", domain);
+    } else if (clique == cliqueCp2C) {
+      featuresCp2C(cInfo, loc, c);
+      addAllSuffixing(features, start, "Cp2C", domain);
+    } else if (clique == cliqueCp3C) {
+      featuresCp3C(cInfo, loc, c);
+      addAllSuffixing(features, start, "Cp3C", domain);
+    } else if (clique == cliqueCp4C) {
+      featuresCp4C(cInfo, loc, c);
+      addAllSuffixing(features, start, "Cp4C", domain);
+    } else if (clique == cliqueCp5C) {
+      featuresCp5C(cInfo, loc, c);
+      addAllSuffixing(features, start, "Cp5C", domain);
+    } else if (clique == cliqueCpCp2C) {
+      featuresCpCp2C(cInfo, loc, c);
+      addAllSuffixing(features, start, "CpCp2C", domain);
+      int cpcnc = features.size();
+      featuresCpCnC(cInfo, loc - 1, c);
+      addAllSuffixing(features, cpcnc, "CpCnC", domain);
+    } else if (clique == cliqueCpCp2Cp3C) {
+      featuresCpCp2Cp3C(cInfo, loc, c);
+      addAllSuffixing(features, start, "CpCp2Cp3C", domain);
+    } else if (clique == cliqueCpCp2Cp3Cp4C) {
+      featuresCpCp2Cp3Cp4C(cInfo, loc, c);
+      addAllSuffixing(features, start, "CpCp2Cp3Cp4C", domain);
+    } else {
+      throw new IllegalArgumentException("Unknown clique: " + clique);
+    }
+
+    features.removeDuplicates(start);
+  }
+
+  /** Adds the suffix, and if there is a domain, a second copy with the domain and the suffix. */
+  private void addAllSuffixing(FeatureHasher features, int start, String suffix, String domain) {
+    int end = features.size();
+    if (domain != null) {
+      features.copy(start, end);
+      addAllSuffixing(features, end, features.size(), domain + '-' + suffix);
+    }
+    addAllSuffixing(features, start, end, suffix);
+  }
+
+  /**
+   * Where the feature templates, {@link #featuresC} and so on, put their
+   * features.  The same templates give both the String features and their
+   * hashes, depending on the sink they are given.  A feature can be added
+   * as a String, or built piece by piece, which saves building the String
+   * when it is only hashed; the templates for the flags of the usual models
+   * do the latter.
+   */
+  private interface FeatureSink {
+
+    /** Adds the feature with the given name. */
+    void add(String feature);
+
+    /** Adds the feature {@code a + b}. */
+    void add(String a, String b);
+
+    /** Starts a new feature. */
+    FeatureSink begin();
+
+    FeatureSink append(String str);
+
+    FeatureSink append(char ch);
+
+    /** Appends {@code str.substring(start, end)}. */
+    FeatureSink append(String str, int start, int end);
+
+    /** Adds the feature built since {@link #begin()}. */
+    void end();
+
+    default void addAll(Collection<String> features) {
+      for (String feature : features) {
+        add(feature);
+      }
+    }
+
+  }
+
+  /** Collects the feature Strings. */
+  private static class StringFeatures implements FeatureSink {
+
+    final List<String> features = new ArrayList<>();
+    private final StringBuilder sb = new StringBuilder();
+
+    @Override
+    public void add(String feature) {
+      features.add(feature);
+    }
+
+    @Override
+    public void add(String a, String b) {
+      features.add(a + b);
+    }
+
+    @Override
+    public FeatureSink begin() {
+      sb.setLength(0);
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(String str) {
+      sb.append(str);
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(char ch) {
+      sb.append(ch);
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(String str, int start, int end) {
+      sb.append(str, start, end);
+      return this;
+    }
+
+    @Override
+    public void end() {
+      features.add(sb.toString());
+    }
+
+    @Override
+    public void addAll(Collection<String> features) {
+      this.features.addAll(features);
+    }
+
+  }
+
+  /** Adds the hashes of the features to a {@link FeatureHasher}. */
+  private static class HashedFeatures implements FeatureSink {
+
+    private final FeatureHasher hasher;
+
+    HashedFeatures(FeatureHasher hasher) {
+      this.hasher = hasher;
+    }
+
+    @Override
+    public void add(String feature) {
+      hasher.add(feature);
+    }
+
+    @Override
+    public void add(String a, String b) {
+      hasher.add(a, b);
+    }
+
+    @Override
+    public FeatureSink begin() {
+      hasher.begin();
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(String str) {
+      hasher.append(str);
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(char ch) {
+      hasher.append(ch);
+      return this;
+    }
+
+    @Override
+    public FeatureSink append(String str, int start, int end) {
+      hasher.append(str, start, end);
+      return this;
+    }
+
+    @Override
+    public void end() {
+      hasher.end();
+    }
+
+  }
 
   // TODO: when breaking serialization, it seems like it would be better to
   // move the lexicon into (Abstract)SequenceClassifier and to do this
@@ -756,7 +967,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
   private static final Pattern splitSlashHyphenWordsPattern = Pattern.compile("[-/]");
 
-  private void generateSlashHyphenFeatures(String word, Collection<String> featuresC, String fragSuffix, String wordSuffix) {
+  private void generateSlashHyphenFeatures(String word, FeatureSink featuresC, String fragSuffix, String wordSuffix) {
     String[] bits = splitSlashHyphenWordsPattern.split(word);
     for (String bit : bits) {
       if (flags.slashHyphenTreatment == SeqClassifierFlags.SlashHyphenEnum.WFRAG) {
@@ -772,7 +983,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   }
 
 
-  protected Collection<String> featuresC(PaddedList<IN> cInfo, int loc) {
+  private void featuresC(PaddedList<IN> cInfo, int loc, FeatureSink featuresC) {
     CoreLabel p3 = cInfo.get(loc - 3);
     CoreLabel p2 = cInfo.get(loc - 2);
     CoreLabel p = cInfo.get(loc - 1);
@@ -787,7 +998,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String pShape = p.getString(CoreAnnotations.ShapeAnnotation.class);
     String nShape = n.getString(CoreAnnotations.ShapeAnnotation.class);
 
-    Collection<String> featuresC = new ArrayList<>();
 
     if (flags.useDistSim) {
       distSimAnnotate(cInfo);
@@ -805,7 +1015,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
 
     if (flags.useDistSim) {
-      featuresC.add(c.get(CoreAnnotations.DistSimAnnotation.class) + "-DISTSIM");
+      featuresC.add(c.get(CoreAnnotations.DistSimAnnotation.class), "-DISTSIM");
     }
 
 
@@ -831,18 +1041,18 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     if (flags.useInternal && flags.useExternal ) {
 
       if (flags.useWord) {
-        featuresC.add(cWord + "-WORD");
+        featuresC.add(cWord, "-WORD");
       }
 
       if (flags.use2W) {
-        featuresC.add(getWord(p2) + "-P2W");
-        featuresC.add(getWord(n2) + "-N2W");
+        featuresC.add(getWord(p2), "-P2W");
+        featuresC.add(getWord(n2), "-N2W");
       }
 
       if (flags.useLC) {
-        featuresC.add(cWord.toLowerCase() + "-CL");
-        featuresC.add(pWord.toLowerCase() + "-PL");
-        featuresC.add(nWord.toLowerCase() + "-NL");
+        featuresC.add(cWord.toLowerCase(), "-CL");
+        featuresC.add(pWord.toLowerCase(), "-PL");
+        featuresC.add(nWord.toLowerCase(), "-NL");
       }
 
       if (flags.useUnknown) { // for true casing
@@ -854,17 +1064,17 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       if (flags.useLemmas) {
         String lem = c.getString(CoreAnnotations.LemmaAnnotation.class);
         if (! "".equals(lem)) {
-          featuresC.add(lem + "-LEM");
+          featuresC.add(lem, "-LEM");
         }
       }
       if (flags.usePrevNextLemmas) {
         String plem = p.getString(CoreAnnotations.LemmaAnnotation.class);
         String nlem = n.getString(CoreAnnotations.LemmaAnnotation.class);
         if (! "".equals(plem)) {
-          featuresC.add(plem + "-PLEM");
+          featuresC.add(plem, "-PLEM");
         }
         if (! "".equals(nlem)) {
-          featuresC.add(nlem + "-NLEM");
+          featuresC.add(nlem, "-NLEM");
         }
       }
 
@@ -1002,7 +1212,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         }
       }
       if (flags.useTags) {
-        featuresC.add(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-TAG");
+        featuresC.add(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class), "-TAG");
       }
 
       if (flags.useOrdinal) {
@@ -1020,12 +1230,12 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       }
 
       if (flags.usePrev) {
-        featuresC.add(pWord + "-PW");
+        featuresC.add(pWord, "-PW");
         if (flags.useTags) {
-          featuresC.add(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-PTAG");
+          featuresC.add(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class), "-PTAG");
         }
         if (flags.useDistSim) {
-          featuresC.add(p.get(CoreAnnotations.DistSimAnnotation.class) + "-PDISTSIM");
+          featuresC.add(p.get(CoreAnnotations.DistSimAnnotation.class), "-PDISTSIM");
         }
         if (flags.useIsURL) {
           featuresC.add(p.get(CoreAnnotations.IsURLAnnotation.class) + "-PISURL");
@@ -1036,12 +1246,12 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       }
 
       if (flags.useNext) {
-        featuresC.add(nWord + "-NW");
+        featuresC.add(nWord, "-NW");
         if (flags.useTags) {
-          featuresC.add(n.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-NTAG");
+          featuresC.add(n.getString(CoreAnnotations.PartOfSpeechAnnotation.class), "-NTAG");
         }
         if (flags.useDistSim) {
-          featuresC.add(n.get(CoreAnnotations.DistSimAnnotation.class) + "-NDISTSIM");
+          featuresC.add(n.get(CoreAnnotations.DistSimAnnotation.class), "-NDISTSIM");
         }
         if (flags.useIsURL) {
           featuresC.add(n.get(CoreAnnotations.IsURLAnnotation.class) + "-NISURL");
@@ -1055,13 +1265,13 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
 
       if (flags.useEitherSideWord) {
-        featuresC.add(pWord + "-EW");
-        featuresC.add(nWord + "-EW");
+        featuresC.add(pWord, "-EW");
+        featuresC.add(nWord, "-EW");
       }
 
       if (flags.useWordPairs) {
-        featuresC.add(cWord + '-' + pWord + "-W-PW");
-        featuresC.add(cWord + '-' + nWord + "-W-NW");
+        featuresC.begin().append(cWord).append('-').append(pWord).append("-W-PW").end();
+        featuresC.begin().append(cWord).append('-').append(nWord).append("-W-NW").end();
       }
 
       if (flags.useSymTags) {
@@ -1079,7 +1289,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       }
 
       if (flags.useSymWordPairs) {
-        featuresC.add(pWord + '-' + nWord + "-SWORDS");
+        featuresC.begin().append(pWord).append('-').append(nWord).append("-SWORDS").end();
       }
 
       String pGazAnnotation = (flags.useGazFeatures || flags.useMoreGazFeatures) ? p.get(CoreAnnotations.GazAnnotation.class) : null;
@@ -1251,52 +1461,24 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         Collection<String> subs = null;
         if (flags.cacheNGrams) {
           subs = wordToSubstrings.get(cWord);
-        }
-        if (subs == null) {
-          subs = new ArrayList<>();
-          String word = '<' + cWord + '>';
-          if (flags.lowercaseNGrams) {
-            word = word.toLowerCase();
-          }
-          if (flags.dehyphenateNGrams) {
-            word = dehyphenate(word);
-          }
-          if (flags.greekifyNGrams) {
-            word = greekify(word);
-          }
-          // minimum length substring is 2 letters (hardwired)
-          // hoist flags.noMidNGrams so only linear in word length for that case
-          if (flags.noMidNGrams) {
-            int max = flags.maxNGramLeng >= 0 ? Math.min(flags.maxNGramLeng, word.length()) :
-                                                word.length();
-            for (int j = 2; j <= max; j++) {
-              subs.add(intern('#' + word.substring(0, j) + '#'));
+          if (subs == null) {
+            StringFeatures ngrams = new StringFeatures();
+            addNGrams(cWord, null, ngrams);
+            subs = new ArrayList<>(ngrams.features.size());
+            for (String sub : ngrams.features) {
+              subs.add(intern(sub));
             }
-            int start = flags.maxNGramLeng >= 0 ? Math.max(0, word.length() - flags.maxNGramLeng) :
-                                                0;
-            int lenM1 = word.length() - 1;
-            for (int i = start; i < lenM1; i++) {
-              subs.add(intern('#' + word.substring(i) + '#'));
-            }
-          } else {
-            for (int i = 0; i < word.length(); i++) {
-              for (int j = i + 2, max = Math.min(word.length(), i + flags.maxNGramLeng); j <= max; j++) {
-                if (flags.maxNGramLeng >= 0 && j - i > flags.maxNGramLeng) {
-                  continue;
-                }
-                subs.add(intern('#' + word.substring(i, j) + '#'));
-              }
-            }
-          }
-          if (flags.cacheNGrams) {
             wordToSubstrings.put(cWord, subs);
           }
         }
-        featuresC.addAll(subs);
-        if (flags.conjoinShapeNGrams) {
-          for (String str : subs) {
-            String feat = str + '-' + cShape + "-CNGram-CS";
-            featuresC.add(feat);
+        if (subs == null) {
+          addNGrams(cWord, flags.conjoinShapeNGrams ? cShape : null, featuresC);
+        } else {
+          featuresC.addAll(subs);
+          if (flags.conjoinShapeNGrams) {
+            for (String str : subs) {
+              featuresC.begin().append(str).append('-').append(cShape).append("-CNGram-CS").end();
+            }
           }
         }
       }
@@ -1325,29 +1507,29 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       }
 
       if ((flags.wordShape > WordShapeClassifier.NOWORDSHAPE) || (flags.useShapeStrings)) {
-        featuresC.add(cShape + "-TYPE");
+        featuresC.add(cShape, "-TYPE");
         if (flags.useTypeSeqs) {
-          featuresC.add(pShape + "-PTYPE");
-          featuresC.add(nShape + "-NTYPE");
-          featuresC.add(pWord + "..." + cShape + "-PW_CTYPE");
-          featuresC.add(cShape + "..." + nWord + "-NW_CTYPE");
-          featuresC.add(pShape + "..." + cShape + "-PCTYPE");
-          featuresC.add(cShape + "..." + nShape + "-CNTYPE");
-          featuresC.add(pShape + "..." + cShape + "..." + nShape + "-PCNTYPE");
+          featuresC.add(pShape, "-PTYPE");
+          featuresC.add(nShape, "-NTYPE");
+          featuresC.begin().append(pWord).append("...").append(cShape).append("-PW_CTYPE").end();
+          featuresC.begin().append(cShape).append("...").append(nWord).append("-NW_CTYPE").end();
+          featuresC.begin().append(pShape).append("...").append(cShape).append("-PCTYPE").end();
+          featuresC.begin().append(cShape).append("...").append(nShape).append("-CNTYPE").end();
+          featuresC.begin().append(pShape).append("...").append(cShape).append("...").append(nShape).append("-PCNTYPE").end();
         }
       }
 
       if (flags.useLastRealWord) {
         if (pWord.length() <= 3) {
           // extending this to check for 2 short words doesn't seem to help....
-          featuresC.add(getWord(p2) + "..." + cShape + "-PPW_CTYPE");
+          featuresC.begin().append(getWord(p2)).append("...").append(cShape).append("-PPW_CTYPE").end();
         }
       }
 
       if (flags.useNextRealWord) {
         if (nWord.length() <= 3) {
           // extending this to check for 2 short words doesn't seem to help....
-          featuresC.add(getWord(n2) + "..." + cShape + "-NNW_CTYPE");
+          featuresC.begin().append(getWord(n2)).append("...").append(cShape).append("-NNW_CTYPE").end();
         }
       }
 
@@ -1359,13 +1541,13 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         for (int i = 1; i <= flags.disjunctionWidth; i++) {
           CoreLabel dn = cInfo.get(loc + i);
           CoreLabel dp = cInfo.get(loc - i);
-          featuresC.add(getWord(dn) + "-DISJN");
+          featuresC.add(getWord(dn), "-DISJN");
           if (flags.useDisjunctiveShapeInteraction) {
-            featuresC.add(getWord(dn) + '-' + cShape + "-DISJN-CS");
+            featuresC.begin().append(getWord(dn)).append('-').append(cShape).append("-DISJN-CS").end();
           }
-          featuresC.add(getWord(dp) + "-DISJP");
+          featuresC.add(getWord(dp), "-DISJP");
           if (flags.useDisjunctiveShapeInteraction) {
-            featuresC.add(getWord(dp) + '-' + cShape + "-DISJP-CS");
+            featuresC.begin().append(getWord(dp)).append('-').append(cShape).append("-DISJP-CS").end();
           }
         }
       }
@@ -1381,8 +1563,8 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
       if (flags.useWideDisjunctive) {
         for (int i = 1; i <= flags.wideDisjunctionWidth; i++) {
-          featuresC.add(getWord(cInfo.get(loc + i)) + "-DISJWN");
-          featuresC.add(getWord(cInfo.get(loc - i)) + "-DISJWP");
+          featuresC.add(getWord(cInfo.get(loc + i)), "-DISJWN");
+          featuresC.add(getWord(cInfo.get(loc - i)), "-DISJWP");
         }
       }
 
@@ -1423,7 +1605,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (flags.useInternal) {
 
       if (flags.useWord) {
-        featuresC.add(cWord + "-WORD");
+        featuresC.add(cWord, "-WORD");
       }
 
       if (flags.useNGrams) {
@@ -1467,7 +1649,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       }
 
       if ((flags.wordShape > WordShapeClassifier.NOWORDSHAPE) || (flags.useShapeStrings)) {
-        featuresC.add(cShape + "-TYPE");
+        featuresC.add(cShape, "-TYPE");
       }
 
       if (flags.useOccurrencePatterns) {
@@ -1477,43 +1659,43 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (flags.useExternal) {
 
       if (flags.usePrev) {
-        featuresC.add(pWord + "-PW");
+        featuresC.add(pWord, "-PW");
       }
 
       if (flags.useNext) {
-        featuresC.add(nWord + "-NW");
+        featuresC.add(nWord, "-NW");
       }
 
       if (flags.useWordPairs) {
-        featuresC.add(cWord + '-' + pWord + "-W-PW");
-        featuresC.add(cWord + '-' + nWord + "-W-NW");
+        featuresC.begin().append(cWord).append('-').append(pWord).append("-W-PW").end();
+        featuresC.begin().append(cWord).append('-').append(nWord).append("-W-NW").end();
       }
 
       if (flags.useSymWordPairs) {
-        featuresC.add(pWord + '-' + nWord + "-SWORDS");
+        featuresC.begin().append(pWord).append('-').append(nWord).append("-SWORDS").end();
       }
 
       if ((flags.wordShape > WordShapeClassifier.NOWORDSHAPE) || (flags.useShapeStrings)) {
         if (flags.useTypeSeqs) {
-          featuresC.add(pShape + "-PTYPE");
-          featuresC.add(nShape + "-NTYPE");
-          featuresC.add(pWord + "..." + cShape + "-PW_CTYPE");
-          featuresC.add(cShape + "..." + nWord + "-NW_CTYPE");
+          featuresC.add(pShape, "-PTYPE");
+          featuresC.add(nShape, "-NTYPE");
+          featuresC.begin().append(pWord).append("...").append(cShape).append("-PW_CTYPE").end();
+          featuresC.begin().append(cShape).append("...").append(nWord).append("-NW_CTYPE").end();
           if (flags.maxLeft > 0) featuresC.add(pShape + "..." + cShape + "-PCTYPE"); // this one just isn't useful, at least given c,pc,s,ps.  Might be useful 0th-order
-          featuresC.add(cShape + "..." + nShape + "-CNTYPE");
-          featuresC.add(pShape + "..." + cShape + "..." + nShape + "-PCNTYPE");
+          featuresC.begin().append(cShape).append("...").append(nShape).append("-CNTYPE").end();
+          featuresC.begin().append(pShape).append("...").append(cShape).append("...").append(nShape).append("-PCNTYPE").end();
         }
       }
 
       if (flags.useLastRealWord) {
         if (pWord.length() <= 3) {
-          featuresC.add(getWord(p2) + "..." + cShape + "-PPW_CTYPE");
+          featuresC.begin().append(getWord(p2)).append("...").append(cShape).append("-PPW_CTYPE").end();
         }
       }
 
       if (flags.useNextRealWord) {
         if (nWord.length() <= 3) {
-          featuresC.add(getWord(n2) + "..." + cShape + "-NNW_CTYPE");
+          featuresC.begin().append(getWord(n2)).append("...").append(cShape).append("-NNW_CTYPE").end();
         }
       }
 
@@ -1521,21 +1703,21 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         for (int i = 1; i <= flags.disjunctionWidth; i++) {
           CoreLabel dn = cInfo.get(loc + i);
           CoreLabel dp = cInfo.get(loc - i);
-          featuresC.add(getWord(dn) + "-DISJN");
+          featuresC.add(getWord(dn), "-DISJN");
           if (flags.useDisjunctiveShapeInteraction) {
-            featuresC.add(getWord(dn) + '-' + cShape + "-DISJN-CS");
+            featuresC.begin().append(getWord(dn)).append('-').append(cShape).append("-DISJN-CS").end();
           }
-          featuresC.add(getWord(dp) + "-DISJP");
+          featuresC.add(getWord(dp), "-DISJP");
           if (flags.useDisjunctiveShapeInteraction) {
-            featuresC.add(getWord(dp) + '-' + cShape + "-DISJP-CS");
+            featuresC.begin().append(getWord(dp)).append('-').append(cShape).append("-DISJP-CS").end();
           }
         }
       }
 
       if (flags.useWideDisjunctive) {
         for (int i = 1; i <= flags.wideDisjunctionWidth; i++) {
-          featuresC.add(getWord(cInfo.get(loc + i)) + "-DISJWN");
-          featuresC.add(getWord(cInfo.get(loc - i)) + "-DISJWP");
+          featuresC.add(getWord(cInfo.get(loc + i)), "-DISJWN");
+          featuresC.add(getWord(cInfo.get(loc - i)), "-DISJWP");
         }
       }
 
@@ -1605,21 +1787,29 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     // todo [cdm 2014]: Have this guarded by a flag and things would be a little faster. Set flag in current uses of this annotation.
     // NER tag annotations from a previous NER system
     if (c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) != null) {
-      featuresC.add(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)+ "-CStackedNERTag");
-      featuresC.add(cWord + "-" + c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)+ "-WCStackedNERTag");
+      featuresC.add(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class), "-CStackedNERTag");
+      featuresC.begin().append(cWord).append("-")
+          .append(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append("-WCStackedNERTag").end();
 
       if (flags.useNext) {
-        featuresC.add(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + "-CNStackedNERTag");
-        featuresC.add(cWord + "-" + c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + "-WCNStackedNERTag");
+        featuresC.begin().append(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append('-')
+            .append(n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append("-CNStackedNERTag").end();
+        featuresC.begin().append(cWord).append("-")
+            .append(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append('-')
+            .append(n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append("-WCNStackedNERTag").end();
 
         if (flags.usePrev) {
-          featuresC.add(p.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + "-PCNStackedNERTag");
+          featuresC.begin().append(p.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append('-')
+              .append(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append('-')
+              .append(n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class))
+              .append("-PCNStackedNERTag").end();
           featuresC.add(p.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + cWord + " -" + c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)
               + '-' + n.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + "-PWCNStackedNERTag");
         }
       }
       if (flags.usePrev) {
-        featuresC.add(p.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + '-' + c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class) + "-PCStackedNERTag");
+        featuresC.begin().append(p.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append('-')
+            .append(c.get(CoreAnnotations.StackedNamedEntityTagAnnotation.class)).append("-PCStackedNERTag").end();
       }
     }
     if(flags.useWordnetFeatures)
@@ -1685,11 +1875,59 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
                         "-NEXT-SUFFIX");
       }
     }
-
-    return featuresC;
   } // end featuresC()
 
 
+  /**
+   * Adds the character n-grams of the word, each between #s, and if the
+   * shape isn't null, each of them conjoined with the shape as well.
+   * The n-grams are added piece by piece, so none are built when hashing.
+   */
+  private void addNGrams(String cWord, String shape, FeatureSink features) {
+    String word = '<' + cWord + '>';
+    if (flags.lowercaseNGrams) {
+      word = word.toLowerCase();
+    }
+    if (flags.dehyphenateNGrams) {
+      word = dehyphenate(word);
+    }
+    if (flags.greekifyNGrams) {
+      word = greekify(word);
+    }
+    // minimum length substring is 2 letters (hardwired)
+    // hoist flags.noMidNGrams so only linear in word length for that case
+    if (flags.noMidNGrams) {
+      int max = flags.maxNGramLeng >= 0 ? Math.min(flags.maxNGramLeng, word.length()) :
+                                          word.length();
+      for (int j = 2; j <= max; j++) {
+        addNGram(word, 0, j, shape, features);
+      }
+      int start = flags.maxNGramLeng >= 0 ? Math.max(0, word.length() - flags.maxNGramLeng) :
+                                          0;
+      int lenM1 = word.length() - 1;
+      for (int i = start; i < lenM1; i++) {
+        addNGram(word, i, word.length(), shape, features);
+      }
+    } else {
+      for (int i = 0; i < word.length(); i++) {
+        for (int j = i + 2, max = Math.min(word.length(), i + flags.maxNGramLeng); j <= max; j++) {
+          if (flags.maxNGramLeng >= 0 && j - i > flags.maxNGramLeng) {
+            continue;
+          }
+          addNGram(word, i, j, shape, features);
+        }
+      }
+    }
+  }
+
+  private static void addNGram(String word, int start, int end, String shape, FeatureSink features) {
+    features.begin().append('#').append(word, start, end).append('#').end();
+    if (shape != null) {
+      features.begin().append('#').append(word, start, end).append('#').append('-').append(shape).append("-CNGram-CS").end();
+    }
+  }
+
+
   /**
    * Binary feature annotations
    */
@@ -1713,7 +1951,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
 
 
-  protected Collection<String> featuresCpC(PaddedList<IN> cInfo, int loc) {
+  private void featuresCpC(PaddedList<IN> cInfo, int loc, FeatureSink featuresCpC) {
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel c = cInfo.get(loc);
     CoreLabel n = cInfo.get(loc + 1);
@@ -1724,14 +1962,13 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String pDS = p.getString(CoreAnnotations.DistSimAnnotation.class);
     String cShape = c.getString(CoreAnnotations.ShapeAnnotation.class);
     String pShape = p.getString(CoreAnnotations.ShapeAnnotation.class);
-    Collection<String> featuresCpC = new ArrayList<>();
 
     if (flags.noEdgeFeature)
-      return featuresCpC;
+      return;
 
     if (flags.transitionEdgeOnly) {
       featuresCpC.add("PSEQ");
-      return featuresCpC;
+      return;
     }
 
     if (flags.useNeighborNGrams) {
@@ -1791,26 +2028,26 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       if (flags.usePrev) {
         if (flags.useSequences && flags.usePrevSequences) {
           featuresCpC.add("PSEQ");
-          featuresCpC.add(cWord + "-PSEQW");
+          featuresCpC.add(cWord, "-PSEQW");
 
           if ( ! flags.strictGoodCoNLL) {
-            featuresCpC.add(pWord+ '-' +cWord + "-PSEQW2");  // added later after goodCoNLL
-            featuresCpC.add(pWord + "-PSEQpW"); // added later after goodCoNLL
+            featuresCpC.begin().append(pWord).append('-').append(cWord).append("-PSEQW2").end();  // added later after goodCoNLL
+            featuresCpC.add(pWord, "-PSEQpW"); // added later after goodCoNLL
           }
 
           if (flags.useDistSim) {
-            featuresCpC.add(pDS + "-PSEQpDS");
-            featuresCpC.add(cDS + "-PSEQcDS");
-            featuresCpC.add(pDS+ '-' +cDS + "-PSEQpcDS");
+            featuresCpC.add(pDS, "-PSEQpDS");
+            featuresCpC.add(cDS, "-PSEQcDS");
+            featuresCpC.begin().append(pDS).append('-').append(cDS).append("-PSEQpcDS").end();
           }
 
           if (((flags.wordShape > WordShapeClassifier.NOWORDSHAPE) || flags.useShapeStrings)) {
             if ( ! flags.strictGoodCoNLL) {     // These ones were added later after goodCoNLL
-              featuresCpC.add(pShape + "-PSEQpS");
-              featuresCpC.add(cShape + "-PSEQcS");
+              featuresCpC.add(pShape, "-PSEQpS");
+              featuresCpC.add(cShape, "-PSEQcS");
             }
             if (flags.strictGoodCoNLL && ! flags.removeStrictGoodCoNLLDuplicates) {
-              featuresCpC.add(pShape + '-' + cShape + "-PSEQpcS"); // Duplicate (in goodCoNLL orig, see -TYPES below)
+              featuresCpC.begin().append(pShape).append('-').append(cShape).append("-PSEQpcS").end(); // Duplicate (in goodCoNLL orig, see -TYPES below)
             }
           }
         }
@@ -1820,31 +2057,35 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
            flags.useShapeStrings)
           && flags.useTypeSeqs && (flags.useTypeSeqs2 || flags.useTypeSeqs3)) {
         if (flags.useTypeSeqs3) {
-          featuresCpC.add(pShape + '-' + cShape + '-' + n.get(CoreAnnotations.ShapeAnnotation.class) + "-PCNSHAPES");
+          featuresCpC.begin().append(pShape).append('-').append(cShape).append('-')
+              .append(n.get(CoreAnnotations.ShapeAnnotation.class)).append("-PCNSHAPES").end();
         }
         if (flags.useTypeSeqs2) {
-          featuresCpC.add(pShape + '-' + cShape + "-TYPES");  // this duplicates PSEQpcS above
+          featuresCpC.begin().append(pShape).append('-').append(cShape).append("-TYPES").end();  // this duplicates PSEQpcS above
         }
 
         if (flags.useYetMoreCpCShapes) {
           String p2Shape = cInfo.get(loc - 2).getString(CoreAnnotations.ShapeAnnotation.class);
-          featuresCpC.add(p2Shape + '-' + pShape + '-' + cShape + "-YMS");
-          featuresCpC.add(pShape + '-' + cShape + "-" + n.getString(CoreAnnotations.ShapeAnnotation.class) + "-YMSPCN");
+          featuresCpC.begin().append(p2Shape).append('-').append(pShape).append('-').append(cShape).append("-YMS").end();
+          featuresCpC.begin().append(pShape).append('-').append(cShape).append("-")
+              .append(n.getString(CoreAnnotations.ShapeAnnotation.class)).append("-YMSPCN").end();
         }
       }
 
       if (flags.useTypeySequences) {
-        featuresCpC.add(cShape + "-TPS2");
-        featuresCpC.add(n.get(CoreAnnotations.ShapeAnnotation.class) + "-TNS1");
+        featuresCpC.add(cShape, "-TPS2");
+        featuresCpC.add(n.get(CoreAnnotations.ShapeAnnotation.class), "-TNS1");
         // featuresCpC.add(pShape) + "-" + cShape) + "-TPS"); // duplicates -TYPES, so now omitted; you may need to slightly increase sigma to duplicate previous results, however.
       }
 
       if (flags.useTaggySequences) {
         if (flags.useTags) {
-          featuresCpC.add(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-TS");
+          featuresCpC.begin().append(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+              .append(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append("-TS").end();
         }
         if (flags.useDistSim) {
-          featuresCpC.add(p.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.DistSimAnnotation.class) + "-DISTSIM_TS1");
+          featuresCpC.begin().append(p.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(c.get(CoreAnnotations.DistSimAnnotation.class)).append("-DISTSIM_TS1").end();
         }
       }
 
@@ -1873,11 +2114,11 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
       if (flags.useSequences && flags.usePrevSequences) {
         featuresCpC.add("PSEQ");
-        featuresCpC.add(cWord + "-PSEQW");
+        featuresCpC.add(cWord, "-PSEQW");
       }
 
       if (flags.useTypeySequences) {
-        featuresCpC.add(cShape + "-TPS2");
+        featuresCpC.add(cShape, "-TPS2");
       }
 
     } else if (flags.useExternal) {
@@ -1886,23 +2127,22 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
            flags.useShapeStrings)
           && flags.useTypeSeqs && (flags.useTypeSeqs2 || flags.useTypeSeqs3)) {
         if (flags.useTypeSeqs3) {
-          featuresCpC.add(pShape + '-' + cShape + '-' + n.get(CoreAnnotations.ShapeAnnotation.class) + "-PCNSHAPES");
+          featuresCpC.begin().append(pShape).append('-').append(cShape).append('-')
+              .append(n.get(CoreAnnotations.ShapeAnnotation.class)).append("-PCNSHAPES").end();
         }
         if (flags.useTypeSeqs2) {
-          featuresCpC.add(pShape + '-' + cShape + "-TYPES");
+          featuresCpC.begin().append(pShape).append('-').append(cShape).append("-TYPES").end();
         }
       }
 
       if (flags.useTypeySequences) {
-        featuresCpC.add(n.get(CoreAnnotations.ShapeAnnotation.class) + "-TNS1");
+        featuresCpC.add(n.get(CoreAnnotations.ShapeAnnotation.class), "-TNS1");
         featuresCpC.add(pShape + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-TPS");
       }
     }
-
-    return featuresCpC;
   }
 
-  protected Collection<String> featuresCp2C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCp2C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCp2C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
@@ -1910,7 +2150,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String cWord = getWord(c);
     String pWord = getWord(p);
     String p2Word = getWord(p2);
-    Collection<String> featuresCp2C = new ArrayList<>();
 
     if (flags.useMoreAbbr) {
       featuresCp2C.add(p2.get(CoreAnnotations.AbbrAnnotation.class) + '-' + c.get(CoreAnnotations.AbbrAnnotation.class) + "-P2ABBRANS");
@@ -1941,11 +2180,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         }
       }
     }
-
-    return featuresCp2C;
   }
 
-  protected Collection<String> featuresCp3C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCp3C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCp3C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
@@ -1955,7 +2192,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String pWord = getWord(p);
     String p2Word = getWord(p2);
     String p3Word = getWord(p3);
-    Collection<String> featuresCp3C = new ArrayList<>();
 
     if (flags.useParenMatching) {
       if (flags.useReverse) {
@@ -1972,11 +2208,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         }
       }
     }
-
-    return featuresCp3C;
   }
 
-  protected Collection<String> featuresCp4C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCp4C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCp4C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
@@ -1989,7 +2223,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String p3Word = getWord(p3);
     String p4Word = getWord(p4);
 
-    Collection<String> featuresCp4C = new ArrayList<>();
 
     if (flags.useParenMatching) {
       if (flags.useReverse) {
@@ -2006,11 +2239,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         }
       }
     }
-
-    return featuresCp4C;
   }
 
-  protected Collection<String> featuresCp5C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCp5C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCp5C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
@@ -2024,7 +2255,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String p3Word = getWord(p3);
     String p4Word = getWord(p4);
     String p5Word = getWord(p5);
-    Collection<String> featuresCp5C = new ArrayList<>();
 
     if (flags.useParenMatching) {
       if (flags.useReverse) {
@@ -2041,11 +2271,10 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         }
       }
     }
-    return featuresCp5C;
   }
 
 
-  protected Collection<String> featuresCpCp2C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCpCp2C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCpCp2C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
@@ -2053,13 +2282,14 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     String pWord = getWord(p);
     // String p2Word = getWord(p2);
 
-    Collection<String> featuresCpCp2C = new ArrayList<>();
 
     if (flags.useInternal && flags.useExternal) {
 
       if (flags.strictGoodCoNLL && ! flags.removeStrictGoodCoNLLDuplicates && flags.useTypeySequences && flags.maxLeft >= 2) {
         // this feature duplicates -TYPETYPES below, so probably don't include it, but it was in original tests of CMM goodCoNLL
-        featuresCpCp2C.add(p2.get(CoreAnnotations.ShapeAnnotation.class) + '-' + p.get(CoreAnnotations.ShapeAnnotation.class) + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-TTPS");
+        featuresCpCp2C.begin().append(p2.get(CoreAnnotations.ShapeAnnotation.class)).append('-')
+            .append(p.get(CoreAnnotations.ShapeAnnotation.class)).append('-')
+            .append(c.get(CoreAnnotations.ShapeAnnotation.class)).append("-TTPS").end();
       }
 
       if (flags.useAbbr) {
@@ -2087,15 +2317,25 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
 
       if (flags.useTaggySequences) {
         if (flags.useTags) {
-          featuresCpCp2C.add(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-TTS");
+          featuresCpCp2C.begin().append(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class))
+              .append('-').append(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+              .append(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append("-TTS").end();
           if (flags.useTaggySequencesShapeInteraction) {
-            featuresCpCp2C.add(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-TTS-CS");
+            featuresCpCp2C.begin().append(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class))
+                .append('-').append(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+                .append(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.ShapeAnnotation.class)).append("-TTS-CS").end();
           }
         }
         if (flags.useDistSim) {
-          featuresCpCp2C.add(p2.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.DistSimAnnotation.class) + "-DISTSIM_TTS1");
+          featuresCpCp2C.begin().append(p2.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(p.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(c.get(CoreAnnotations.DistSimAnnotation.class)).append("-DISTSIM_TTS1").end();
           if (flags.useTaggySequencesShapeInteraction) {
-            featuresCpCp2C.add(p2.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-DISTSIM_TTS1-CS");
+            featuresCpCp2C.begin().append(p2.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(p.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.ShapeAnnotation.class)).append("-DISTSIM_TTS1-CS").end();
           }
         }
       }
@@ -2106,7 +2346,7 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         String cShape = c.get(CoreAnnotations.ShapeAnnotation.class);
         String pShape = p.get(CoreAnnotations.ShapeAnnotation.class);
         String p2Shape = p2.get(CoreAnnotations.ShapeAnnotation.class);
-        featuresCpCp2C.add(p2Shape + '-' + pShape + '-' + cShape + "-TYPETYPES");
+        featuresCpCp2C.begin().append(p2Shape).append('-').append(pShape).append('-').append(cShape).append("-TYPETYPES").end();
       }
     } else if (flags.useInternal) {
 
@@ -2125,36 +2365,47 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         String cShape = c.get(CoreAnnotations.ShapeAnnotation.class);
         String pShape = p.get(CoreAnnotations.ShapeAnnotation.class);
         String p2Shape = p2.get(CoreAnnotations.ShapeAnnotation.class);
-        featuresCpCp2C.add(p2Shape + '-' + pShape + '-' + cShape + "-TYPETYPES");
+        featuresCpCp2C.begin().append(p2Shape).append('-').append(pShape).append('-').append(cShape).append("-TYPETYPES").end();
       }
     }
-
-    return featuresCpCp2C;
   }
 
 
-  protected Collection<String> featuresCpCp2Cp3C(PaddedList<IN> cInfo, int loc) {
+  private void featuresCpCp2Cp3C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCpCp2Cp3C) {
     CoreLabel c = cInfo.get(loc);
     CoreLabel p = cInfo.get(loc - 1);
     CoreLabel p2 = cInfo.get(loc - 2);
     CoreLabel p3 = cInfo.get(loc - 3);
 
-    Collection<String> featuresCpCp2Cp3C = new ArrayList<>();
 
     if (flags.useTaggySequences) {
       if (flags.useTags) {
         if (flags.maxLeft >= 3 && !flags.dontExtendTaggy) {
-          featuresCpCp2Cp3C.add(p3.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + "-TTTS");
+          featuresCpCp2Cp3C.begin().append(p3.getString(CoreAnnotations.PartOfSpeechAnnotation.class))
+              .append('-').append(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+              .append(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+              .append(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append("-TTTS").end();
           if (flags.useTaggySequencesShapeInteraction) {
-            featuresCpCp2Cp3C.add(p3.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + p.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.getString(CoreAnnotations.PartOfSpeechAnnotation.class) + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-TTTS-CS");
+            featuresCpCp2Cp3C.begin().append(p3.getString(CoreAnnotations.PartOfSpeechAnnotation.class))
+                .append('-').append(p2.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+                .append(p.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+                .append(c.getString(CoreAnnotations.PartOfSpeechAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.ShapeAnnotation.class)).append("-TTTS-CS").end();
           }
         }
       }
       if (flags.useDistSim) {
         if (flags.maxLeft >= 3 && !flags.dontExtendTaggy) {
-          featuresCpCp2Cp3C.add(p3.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p2.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.DistSimAnnotation.class) + "-DISTSIM_TTTS1");
+          featuresCpCp2Cp3C.begin().append(p3.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(p2.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(p.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+              .append(c.get(CoreAnnotations.DistSimAnnotation.class)).append("-DISTSIM_TTTS1").end();
           if (flags.useTaggySequencesShapeInteraction) {
-            featuresCpCp2Cp3C.add(p3.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p2.get(CoreAnnotations.DistSimAnnotation.class) + '-' + p.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.DistSimAnnotation.class) + '-' + c.get(CoreAnnotations.ShapeAnnotation.class) + "-DISTSIM_TTTS1-CS");
+            featuresCpCp2Cp3C.begin().append(p3.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(p2.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(p.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.DistSimAnnotation.class)).append('-')
+                .append(c.get(CoreAnnotations.ShapeAnnotation.class)).append("-DISTSIM_TTTS1-CS").end();
           }
         }
       }
@@ -2168,12 +2419,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         featuresCpCp2Cp3C.add("BNDRY-SPAN-PPPSEQ");
       }
     }
-
-    return featuresCpCp2Cp3C;
   }
 
-  protected Collection<String> featuresCpCp2Cp3Cp4C(PaddedList<IN> cInfo, int loc) {
-    Collection<String> featuresCpCp2Cp3Cp4C = new ArrayList<>();
+  private void featuresCpCp2Cp3Cp4C(PaddedList<IN> cInfo, int loc, FeatureSink featuresCpCp2Cp3Cp4C) {
 
     CoreLabel p = cInfo.get(loc - 1);
 
@@ -2185,40 +2433,32 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
         featuresCpCp2Cp3Cp4C.add("BNDRY-SPAN-PPPPSEQ");
       }
     }
-
-    return featuresCpCp2Cp3Cp4C;
   }
 
 
-  protected Collection<String> featuresCnC(PaddedList<IN> cInfo, int loc) {
+  private void featuresCnC(PaddedList<IN> cInfo, int loc, FeatureSink featuresCnC) {
     CoreLabel c = cInfo.get(loc);
 
-    Collection<String> featuresCnC = new ArrayList<>();
 
     if (flags.useNext) {
       if (flags.useSequences && flags.useNextSequences) {
         featuresCnC.add("NSEQ");
-        featuresCnC.add(getWord(c) + "-NSEQW");
+        featuresCnC.add(getWord(c), "-NSEQW");
       }
     }
-
-    return featuresCnC;
   }
 
 
-  protected Collection<String> featuresCpCnC(PaddedList<IN> cInfo, int loc) {
+  private void featuresCpCnC(PaddedList<IN> cInfo, int loc, FeatureSink featuresCpCnC) {
     CoreLabel c = cInfo.get(loc);
 
-    Collection<String> featuresCpCnC = new ArrayList<>();
 
     if (flags.useNext && flags.usePrev) {
       if (flags.useSequences && flags.usePrevSequences && flags.useNextSequences) {
         featuresCpCnC.add("PNSEQ");
-        featuresCpCnC.add(getWord(c) + "-PNSEQW");
+        featuresCpCnC.add(getWord(c), "-PNSEQW");
       }
     }
-
-    return featuresCpCnC;
   }
 
 
@@ -28,6 +28,7 @@ package edu.stanford.nlp.ie.crf;
 
 import edu.stanford.nlp.ie.*;
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedModelFile;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -146,8 +147,20 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   /** Parameter weights of the classifier.  weights[featureIndex][labelIndex] */
   double[][] weights;
 
+  /**
+   * If the classifier was loaded from a mapped file, the weights, which
+   * are then used in place and {@link #weights} is null.
+   */
+  private MappedModelFile.DoubleRows mappedWeights;
+
+  /** Name of the section of a mapped classifier which holds the weights */
+  private static final String MAPPED_WEIGHTS_SECTION = "weights";
+
   /** index the features of CRF */
   Index<String> featureIndex;
+
+  /** The hash of each feature in {@link #featureIndex}, built when first needed */
+  private transient volatile FeatureHashes featureHashes;
   /** caches the featureIndex */
   int[] map;
   Random random = new Random(2147483647L);
@@ -219,6 +232,13 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @return number of weights
    */
   public int getNumWeights() {
+    if (weights == null && mappedWeights != null) {
+      int numWeights = 0;
+      for (int i = 0; i < mappedWeights.numRows(); i++) {
+        numWeights += mappedWeights.rowLength(i);
+      }
+      return numWeights;
+    }
     if (weights == null) return 0;
     int numWeights = 0;
     for (double[] wts : weights) {
@@ -269,6 +289,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @param scale The scale to multiply by
    */
   public void scaleWeights(double scale) {
+    unmapWeights();
     for (int i = 0; i < weights.length; i++) {
       for (int j = 0; j < weights[i].length; j++) {
         weights[i][j] *= scale;
@@ -375,6 +396,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     int oldNumFeatures2 = crf.featureIndex.size();
     int oldNumWeights1 = this.getNumWeights();
     int oldNumWeights2 = crf.getNumWeights();
+    unmapWeights();
+    crf.unmapWeights();
     this.featureIndex.addAll(crf.featureIndex.objectsList());
     this.knownLCWords.addAll(crf.knownLCWords);
     assert (weights.length == oldNumFeatures1);
@@ -396,6 +419,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void dropFeaturesBelowThreshold(double threshold) {
+    unmapWeights();
     Index<String> newFeatureIndex = new HashIndex<>();
     for (int i = 0; i < weights.length; i++) {
       double smallest = weights[i][0];
@@ -433,6 +457,11 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    *         the third element is a double[][][] representing the feature values (optionally null)
    */
   public Triple<int[][][], int[], double[][][]> documentToDataAndLabels(List<IN> document) {
+    LongIntHashMap featureIds = featureHashes();
+    if (featureIds != null) {
+      return documentToDataAndLabels(document, featureIds);
+    }
+
     int docSize = document.size();
     // first index is position in the document also the index of the
     // clique/factor table
@@ -498,6 +527,155 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     return new Triple<>(data, labels, featureVals);
   }
 
+  /** The map from feature hashes to feature indices, and the index and size it was built from. */
+  private static class FeatureHashes {
+    final Index<String> index;
+    final int size;
+    /** Null if two features have the same hash */
+    final LongIntHashMap ids;
+
+    FeatureHashes(Index<String> index, int size, LongIntHashMap ids) {
+      this.index = index;
+      this.size = size;
+      this.ids = ids;
+    }
+  }
+
+  /** The buffers for extracting hashed features, reused by each thread from one document to the next. */
+  private static class HashingScratch {
+    final FeatureHasher features = new FeatureHasher();
+    int[] indices = new int[64];
+  }
+
+  private static final ThreadLocal<HashingScratch> hashingScratch = ThreadLocal.withInitial(HashingScratch::new);
+
+  /** The cliques whose features go in each position of the window, as in makeDatum; built when first needed. */
+  private transient volatile List<List<Clique>> windowCliques;
+
+  private List<List<Clique>> windowCliques() {
+    List<List<Clique>> cliques = windowCliques;
+    if (cliques == null || cliques.size() != windowSize) {
+      cliques = new ArrayList<>(windowSize);
+      Collection<Clique> done = Generics.newHashSet();
+      for (int i = 0; i < windowSize; i++) {
+        List<Clique> windowCliques = FeatureFactory.getCliques(i, 0);
+        windowCliques.removeAll(done);
+        done.addAll(windowCliques);
+        cliques.add(Collections.unmodifiableList(windowCliques));
+      }
+      cliques = Collections.unmodifiableList(cliques);
+      windowCliques = cliques;
+    }
+    return cliques;
+  }
+
+  /**
+   * Whether features may be extracted as hashes rather than as Strings.
+   * This is so when classifying with a trained model one of whose feature
+   * factories can hash its features, unless {@code dontHashFeatures} is set.
+   * The other factories hash the String features they build.
+   * Subclasses whose {@link #makeDatum} adds features of its own should return false.
+   */
+  protected boolean canHashFeatures() {
+    if (flags.dontHashFeatures || flags.useEmbedding || flags.printFeatures != null ||
+        featureIndex == null || (weights == null && mappedWeights == null)) {
+      return false;
+    }
+    for (FeatureFactory<IN> featureFactory : featureFactories) {
+      if (featureFactory.supportsHashedFeatures()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the map from the {@link FeatureHasher#hash(String) hash} of each
+   * feature to its index, building it if the feature index has changed, or
+   * null if features can't be hashed.
+   */
+  private LongIntHashMap featureHashes() {
+    if ( ! canHashFeatures()) {
+      return null;
+    }
+    FeatureHashes hashes = featureHashes;
+    if (hashes == null || hashes.index != featureIndex || hashes.size != featureIndex.size()) {
+      synchronized (this) {
+        hashes = featureHashes;
+        Index<String> index = featureIndex;
+        int size = index.size();
+        if (hashes == null || hashes.index != index || hashes.size != size) {
+          LongIntHashMap ids = new LongIntHashMap(size);
+          for (int i = 0; i < size; i++) {
+            if (ids.put(FeatureHasher.hash(index.get(i)), i, -1) != -1) {
+              log.info("Features " + index.get(i) + " and " + index.get(ids.get(FeatureHasher.hash(index.get(i)), -1)) +
+                  " have the same hash; features will be extracted as Strings");
+              ids = null;
+              break;
+            }
+          }
+          hashes = new FeatureHashes(index, size, ids);
+          featureHashes = hashes;
+        }
+      }
+    }
+    return hashes.ids;
+  }
+
+  /**
+   * The same as {@link #documentToDataAndLabels(List)}, but extracts the
+   * features as hashes and looks them up in the given map rather than
+   * making them as Strings and looking them up in the feature index.
+   */
+  private Triple<int[][][], int[], double[][][]> documentToDataAndLabels(List<IN> document, LongIntHashMap featureIds) {
+    int docSize = document.size();
+    int[][][] data = new int[docSize][windowSize][];
+    // feature values are only used with embeddings, which are never hashed
+    double[][][] featureVals = new double[docSize][windowSize][];
+    int[] labels = new int[docSize];
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+
+    List<List<Clique>> cliques = windowCliques();
+    PaddedList<IN> pInfo = new PaddedList<>(document, pad);
+    HashingScratch scratch = hashingScratch.get();
+    FeatureHasher features = scratch.features;
+    int[] indices = scratch.indices;
+    for (int j = 0; j < docSize; j++) {
+      for (int k = 0; k < windowSize; k++) {
+        features.clear();
+        for (Clique c : cliques.get(k)) {
+          for (FeatureFactory<IN> featureFactory : featureFactories) {
+            featureFactory.getCliqueFeatures(pInfo, j, c, features);
+          }
+        }
+        if (indices.length < features.size()) {
+          indices = new int[features.size()];
+          scratch.indices = indices;
+        }
+        int m = 0;
+        for (int f = 0, numFeatures = features.size(); f < numFeatures; f++) {
+          int index = featureIds.get(features.get(f), -1);
+          if (index >= 0) {
+            indices[m++] = index;
+          }
+        }
+        data[j][k] = Arrays.copyOf(indices, m);
+      }
+
+      IN wi = document.get(j);
+      labels[j] = classIndex.indexOf(wi.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+
+    return new Triple<>(data, labels, featureVals);
+  }
+
   private int[][][] transformDocData(int[][][] docData) {
     int[][][] transData = new int[docData.length][][];
     for (int i = 0; i < docData.length; i++) {
@@ -569,7 +747,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
               double[] values = new double[labelIndices.get(0).size()];
               for (CRFLabel label : labelIndices.get(k)) {
                 int[] l = label.getLabel();
-                double v = weights[index][labelIndices.get(k).indexOf(label)];
+                double v = weight(index, labelIndices.get(k).indexOf(label));
                 values[l[l.length - 1 - p]] += v;
               }
               for (double value : values) {
@@ -1198,7 +1376,11 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   protected CliquePotentialFunction getCliquePotentialFunctionForTest() {
     if (cliquePotentialFunction == null) {
-      cliquePotentialFunction = new LinearCliquePotentialFunction(weights);
+      if (weights == null && mappedWeights != null) {
+        cliquePotentialFunction = new MappedLinearCliquePotentialFunction(mappedWeights);
+      } else {
+        cliquePotentialFunction = new LinearCliquePotentialFunction(weights);
+      }
     }
     return cliquePotentialFunction;
   }
@@ -1243,7 +1425,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     BestSequenceFinder tagInference;
     if (flags.inferenceType.equalsIgnoreCase("Viterbi")) {
-      tagInference = new ExactBestSequenceFinder();
+      tagInference = new ViterbiBestSequenceFinder();
     } else if (flags.inferenceType.equalsIgnoreCase("Beam")) {
       tagInference = new BeamBestSequenceFinder(flags.beamSize);
     } else {
@@ -2389,6 +2571,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     pw.printf("<windowSize> %d </windowSize>%n", windowSize);
 
+    double[][] weights = heapWeights();
     pw.printf("weights.length=\t%d%n", weights.length);
     for (double[] ws : weights) {
       ArrayList<Double> list = new ArrayList<>();
@@ -2452,7 +2635,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     ObjectOutputStream oos = null;
     try {
       oos = IOUtils.writeStreamFromString(serializePath);
-      oos.writeObject(weights);
+      oos.writeObject(heapWeights());
       log.info("Serializing weights to " + serializePath + "... done.");
     } catch (Exception e) {
       log.info("Serializing weights to " + serializePath + "... FAILED.", e);
@@ -2535,6 +2718,49 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    */
   @Override
   public void serializeClassifier(ObjectOutputStream oos) {
+    serializeClassifier(oos, heapWeights());
+  }
+
+  private double[][] mappedWeightsToArray() {
+    double[][] copy = new double[mappedWeights.numRows()][];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = mappedWeights.row(i);
+    }
+    return copy;
+  }
+
+  /** The weights as an array: {@link #weights} itself, or a copy of the mapped weights. */
+  private double[][] heapWeights() {
+    return weights != null || mappedWeights == null ? weights : mappedWeightsToArray();
+  }
+
+  /** The weight of the given feature for the given label index, whether the weights are mapped or not. */
+  private double weight(int feature, int labelIndex) {
+    return weights != null || mappedWeights == null ? weights[feature][labelIndex] : mappedWeights.get(feature, labelIndex);
+  }
+
+  /**
+   * The weights of the given feature, whether the weights are mapped or not.
+   * For a mapped classifier this is a copy, so it must not be modified.
+   */
+  private double[] featureWeights(int feature) {
+    return weights != null || mappedWeights == null ? weights[feature] : mappedWeights.row(feature);
+  }
+
+  /**
+   * If the classifier was loaded from a mapped file, copies the weights
+   * into the heap, so that they can be changed.  The classifier then
+   * no longer uses the mapping.
+   */
+  protected void unmapWeights() {
+    if (weights == null && mappedWeights != null) {
+      weights = mappedWeightsToArray();
+      mappedWeights = null;
+      cliquePotentialFunction = null;
+    }
+  }
+
+  private void serializeClassifier(ObjectOutputStream oos, double[][] weights) {
     try {
       oos.writeObject(labelIndices);
       oos.writeObject(classIndex);
@@ -2563,6 +2789,40 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <br>
+   * The weights are written as a flat section, and the rest of the
+   * classifier as usual.
+   */
+  @Override
+  protected void addMappedSections(MappedModelFile.Writer writer) throws IOException {
+    double[][] weights = heapWeights();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      serializeClassifier(oos, null);
+    }
+    writer.putBytes(MAPPED_CLASSIFIER_SECTION, bytes.toByteArray());
+    writer.putRows(MAPPED_WEIGHTS_SECTION, weights);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <br>
+   * The weights are not read into the heap: {@link #weights} stays null,
+   * and the classifier scores with the mapped weights.  Such a classifier
+   * can be used to classify and can be serialized again, but not
+   * trained further.  Methods which change the weights, such as
+   * {@link #scaleWeights} or {@link #combine}, first copy them into the heap.
+   */
+  @Override
+  protected void loadMappedClassifier(MappedModelFile file, Properties props) throws IOException, ClassCastException,
+      ClassNotFoundException {
+    super.loadMappedClassifier(file, props);
+    mappedWeights = file.rows(MAPPED_WEIGHTS_SECTION);
+    cliquePotentialFunction = new MappedLinearCliquePotentialFunction(mappedWeights);
+  }
+
   /**
    * Loads a classifier from the specified InputStream. This version works
    * quietly (unless VERBOSE is true). If props is non-null then any properties
@@ -2753,7 +3013,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       int index = featureIndex.indexOf(feature);
       // line.add(feature+"["+(-p)+"]");
       // rowHeaders.add(feature + '[' + (-p) + ']');
-      double[] v = weights[index];
+      double[] v = featureWeights(index);
       Index<CRFLabel> l = this.labelIndices.get(0);
       p.println(feature + "\t\t");
       for (CRFLabel label : l) {
@@ -2770,7 +3030,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       int index = featureIndex.indexOf(feature);
       // line.add(feature+"["+(-p)+"]");
       // rowHeaders.add(feature + '[' + (-p) + ']');
-      double[] v = weights[index];
+      double[] v = featureWeights(index);
       Index<CRFLabel> l = this.labelIndices.get(0);
       for (CRFLabel label : l) {
         if(!w.containsKey(label.toString(classIndex)))
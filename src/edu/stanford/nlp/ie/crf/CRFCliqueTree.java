@@ -452,6 +452,15 @@ public class CRFCliqueTree<E> implements ListeningSequenceModel  {
     }
   }
 
+  /**
+   * Computes {@link #condLogProbGivenPrevious(int, int, int[])} for each of
+   * the given labels, where the previous labels are the {@code window() - 1}
+   * elements of {@code sequence} from {@code start}, storing them in scores.
+   */
+  public void condLogProbsGivenPrevious(int position, int[] sequence, int start, int[] labels, double[] scores) {
+    factorTables[position].conditionalLogProbsGivenPrevious(sequence, start, labels, scores);
+  }
+
   public double condLogProbGivenPrevious(int position, E label, E[] prevLabels) {
     return condLogProbGivenPrevious(position, classIndex.indexOf(label), objectArrayToIntArray(prevLabels));
   }
@@ -267,6 +267,26 @@ public class FactorTable  {
 //    return table[i];
 //  }
 
+  /**
+   * The same as calling {@link #conditionalLogProbGivenPrevious(int[], int)}
+   * for each tag in {@code of}, where the previous tags are the
+   * {@code windowSize - 1} elements of {@code sequence} from {@code start},
+   * but without allocating and normalizing only once.
+   *
+   * @param scores Where to store the log probability of each tag in {@code of}
+   */
+  public void conditionalLogProbsGivenPrevious(int[] sequence, int start, int[] of, double[] scores) {
+    int startIndex = 0;
+    for (int i = start, end = start + windowSize - 1; i < end; i++) {
+      startIndex = startIndex * numClasses + sequence[i];
+    }
+    startIndex *= numClasses;
+    double z = ArrayMath.logSum(table, startIndex, startIndex + numClasses);
+    for (int i = 0; i < of.length; i++) {
+      scores[i] = table[startIndex + of[i]] - z;
+    }
+  }
+
   /**
    * Computes the probabilities of the tag at the end of the table given that
    * the previous tag sequence in table is GIVEN. given is at the beginning,
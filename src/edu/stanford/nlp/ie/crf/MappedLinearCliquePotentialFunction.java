@@ -0,0 +1,33 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.io.MappedModelFile;
+
+/**
+ * The same as {@link LinearCliquePotentialFunction}, but with the
+ * weights of a classifier loaded from a
+ * {@link edu.stanford.nlp.io.MappedModelFile}, which are used in place.
+ */
+public class MappedLinearCliquePotentialFunction implements CliquePotentialFunction {
+
+  /** weights.get(featureIndex, labelIndex) */
+  private final MappedModelFile.DoubleRows weights;
+
+  MappedLinearCliquePotentialFunction(MappedModelFile.DoubleRows weights) {
+    this.weights = weights;
+  }
+
+  @Override
+  public double computeCliquePotential(int cliqueSize, int labelIndex,
+      int[] cliqueFeatures, double[] featureVal, int posInSent) {
+    double output = 0.0;
+    for (int m = 0; m < cliqueFeatures.length; m++) {
+      double dotProd = weights.get(cliqueFeatures[m], labelIndex);
+      if (featureVal != null) {
+        dotProd *= featureVal[m];
+      }
+      output += dotProd;
+    }
+    return output;
+  }
+
+}
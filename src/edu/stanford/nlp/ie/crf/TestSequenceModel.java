@@ -108,6 +108,11 @@ public class TestSequenceModel implements SequenceModel {
     return scores;
   }
 
+  @Override
+  public void scoresOf(int[] tags, int pos, double[] scores) {
+    cliqueTree.condLogProbsGivenPrevious(pos - window + 1, tags, pos - window + 1, getPossibleValues(pos), scores);
+  }
+
   @Override
   public double scoreOf(int[] sequence) {
     throw new UnsupportedOperationException();
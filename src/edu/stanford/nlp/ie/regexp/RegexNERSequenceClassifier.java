@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Properties;
 
@@ -23,6 +25,7 @@ import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.tokensregex.matcher.TrieMap;
 import edu.stanford.nlp.sequences.DocumentReaderAndWriter;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
@@ -55,8 +58,10 @@ import edu.stanford.nlp.util.Generics;
  * already been tokenized.  So, for example, with our usual English tokenization, things like genitives
  * and commas at the end of words will be separated in the input and matched as a separate token.
  *
- * This class isn't implemented very efficiently, since every regex is evaluated at every token position.
- * So it can and does get quite slow if you have a lot of patterns in your NER rules.
+ * Entries which are just a sequence of words are looked up in a trie of their words, so
+ * a gazetteer of many such entries is matched in time linear in the length of the input.
+ * But every other regex is evaluated at every token position, so this
+ * can and does get quite slow if you have a lot of real regular expressions in your NER rules.
  * {@code TokensRegex} is a more general framework to provide the functionality of this class.
  * But at present we still use this class.
  *
@@ -70,6 +75,9 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
 
   private final List<Entry> entries;
 
+  /** The literal entries, by their words (lowercased if ignoring case). */
+  private final TrieMap<String,List<Entry>> literalEntries;
+
   private final Set<String> myLabels;
 
   private final boolean ignoreCase;
@@ -120,6 +128,7 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     }
 
     this.ignoreCase = ignoreCase;
+    literalEntries = literalEntries(entries, ignoreCase);
     myLabels = Generics.newHashSet();
     // Can always override background or none.
     myLabels.add(flags.backgroundSymbol);
@@ -162,6 +171,7 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     }
 
     this.ignoreCase = ignoreCase;
+    literalEntries = literalEntries(entries, ignoreCase);
     myLabels = Generics.newHashSet();
     // Can always override background or none.
     myLabels.add(flags.backgroundSymbol);
@@ -172,9 +182,13 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     // log.info("RegexNER using labels: " + myLabels);
   }
 
+  /** Token regexes with no special characters, which match just the string itself. */
+  private static final Pattern LITERAL_PATTERN = Pattern.compile("[^\\[\\]?.\\\\^$()*+{}|]*");
+
   private static class Entry implements Comparable<Entry> {
     public List<Pattern> regex; // the regex, tokenized by splitting on white space
     public List<String> exact = new ArrayList<>();
+    public boolean literal = true; // whether every regex is a literal string
     public String type; // the associated type
     public Set<String> overwritableTypes;
     public double priority;
@@ -191,6 +205,9 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
         } else {
           exact.add(null);
         }
+        if ( ! LITERAL_PATTERN.matcher(p.toString()).matches()) {
+          literal = false;
+        }
       }
     }
 
@@ -227,11 +244,97 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     return false;
   }
 
+  private static TrieMap<String,List<Entry>> literalEntries(List<Entry> entries, boolean ignoreCase) {
+    TrieMap<String,List<Entry>> trie = new TrieMap<>();
+    for (Entry entry : entries) {
+      if (entry.literal) {
+        List<String> key = new ArrayList<>(entry.regex.size());
+        for (Pattern p : entry.regex) {
+          key.add(ignoreCase ? asciiLowerCase(p.toString()) : p.toString());
+        }
+        List<Entry> keyEntries = trie.get(key);
+        if (keyEntries == null) {
+          keyEntries = new ArrayList<>(1);
+          trie.put(key, keyEntries);
+        }
+        keyEntries.add(entry);
+      }
+    }
+    return trie;
+  }
+
+  /** Lowercases the ASCII letters of the string, as a Pattern compiled with CASE_INSENSITIVE ignores their case. */
+  private static String asciiLowerCase(String str) {
+    char[] chars = null;
+    for (int i = 0; i < str.length(); i++) {
+      char ch = str.charAt(i);
+      if (ch >= 'A' && ch <= 'Z') {
+        if (chars == null) {
+          chars = str.toCharArray();
+        }
+        chars[i] = (char) (ch + ('a' - 'A'));
+      }
+    }
+    return (chars == null) ? str : new String(chars);
+  }
+
+  /**
+   * Finds where the words of each literal entry occur in the document, in order, by looking up the words
+   * from each position in the trie.  Whether the entry matches there also depends on the labels of the words,
+   * which change as entries are matched, and so is checked later.
+   */
+  private Map<Entry,List<Integer>> findLiteralStarts(List<CoreLabel> document) {
+    Map<Entry,List<Integer>> literalStarts = new IdentityHashMap<>();
+    if (literalEntries.isEmpty()) {
+      return literalStarts;
+    }
+    for (int start = 0; start < document.size(); start++) {
+      TrieMap<String,List<Entry>> node = literalEntries;
+      for (int i = start; i < document.size() && node != null; i++) {
+        String word = document.get(i).word();
+        if (word == null) {
+          break;
+        }
+        node = node.getChildTrie(ignoreCase ? asciiLowerCase(word) : word);
+        if (node != null && node.getValue() != null) {
+          for (Entry entry : node.getValue()) {
+            literalStarts.computeIfAbsent(entry, e -> new ArrayList<>()).add(start);
+          }
+        }
+      }
+    }
+    return literalStarts;
+  }
+
+  private void annotate(Entry entry, List<CoreLabel> document, int start) {
+    // make sure we annotate only valid POS tags
+    if (containsValidPos(document, start, start + entry.regex.size())) {
+      // annotate each matching token
+      for (int i = start; i < start + entry.regex.size(); i++) {
+        CoreLabel token = document.get(i);
+        token.set(CoreAnnotations.AnswerAnnotation.class, entry.type);
+      }
+    }
+  }
+
   @Override
   public List<CoreLabel> classify(List<CoreLabel> document) {
-    // This is pretty deathly slow. It loops over each entry, and then loops over each document token for it.
-    // We could gain by compiling into disjunctions patterns for the same class with the same priorities and restrictions?
+    // Entries are applied one at a time, in order, as each can only label words that earlier ones haven't.
+    // Literal entries are only checked where the trie found their words; each of the others
+    // loops over each document token for it, which is pretty deathly slow.
+    Map<Entry,List<Integer>> literalStarts = findLiteralStarts(document);
     for (Entry entry : entries) {
+      if (entry.literal) {
+        List<Integer> starts = literalStarts.get(entry);
+        if (starts != null) {
+          for (int start : starts) {
+            if (matchesAt(entry, document, start, myLabels, this.ignoreCase)) {
+              annotate(entry, document, start);
+            }
+          }
+        }
+        continue;
+      }
       int start = 0; // the index of the token from which we begin our search each iteration
       while (true) {
         // only search the part of the document that we haven't yet considered
@@ -239,14 +342,7 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
         start = findStartIndex(entry, document, start, myLabels, this.ignoreCase);
         if (start < 0) break; // no match found
 
-        // make sure we annotate only valid POS tags
-        if (containsValidPos(document, start, start + entry.regex.size())) {
-          // annotate each matching token
-          for (int i = start; i < start + entry.regex.size(); i++) {
-            CoreLabel token = document.get(i);
-            token.set(CoreAnnotations.AnswerAnnotation.class, entry.type);
-          }
-        }
+        annotate(entry, document, start);
         start++;
       }
     }
@@ -321,25 +417,7 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     // log.info("REGEX FIND MATCH FOR " + regex.toString() + " length: " + rSize);
 
     for (int start = searchStart, end = document.size() - regex.size(); start <= end; start++) {
-      boolean failed = false;
-      for (int i = 0; i < rSize; i++) {
-        Pattern pattern = regex.get(i);
-        String exact = entry.exact.get(i);
-        CoreLabel token = document.get(start + i);
-        String NERType = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
-        String currentType = token.get(CoreAnnotations.AnswerAnnotation.class);
-
-        if (
-            currentType != null ||
-            (exact != null && ! (ignoreCase ? exact.equalsIgnoreCase(token.word()) : exact.equals(token.word()))) ||
-            ! (entry.overwritableTypes.contains(NERType) || myLabels.contains(NERType))  ||
-            ! pattern.matcher(token.word()).matches()  // last, as this is likely the expensive operation
-            ) {
-          failed = true;
-          break;
-        }
-      }
-      if (! failed) {
+      if (matchesAt(entry, document, start, myLabels, ignoreCase)) {
         // log.info("MATCHED REGEX:");
         // for(int i = start; i < start + regex.size(); i ++) log.info(" " + document.get(i).word());
         // log.info();
@@ -349,6 +427,28 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     return -1;
   }
 
+  /** Checks if the entry's regex sequence matches the tokens of the document from index start, as for findStartIndex. */
+  private static boolean matchesAt(Entry entry, List<CoreLabel> document, int start, Set<String> myLabels, boolean ignoreCase) {
+    List<Pattern> regex = entry.regex;
+    for (int i = 0, rSize = regex.size(); i < rSize; i++) {
+      Pattern pattern = regex.get(i);
+      String exact = entry.exact.get(i);
+      CoreLabel token = document.get(start + i);
+      String NERType = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
+      String currentType = token.get(CoreAnnotations.AnswerAnnotation.class);
+
+      if (
+          currentType != null ||
+          (exact != null && ! (ignoreCase ? exact.equalsIgnoreCase(token.word()) : exact.equals(token.word()))) ||
+          ! (entry.overwritableTypes.contains(NERType) || myLabels.contains(NERType))  ||
+          ! pattern.matcher(token.word()).matches()  // last, as this is likely the expensive operation
+          ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 
   @Override
   public List<CoreLabel> classifyWithGlobalInformation(List<CoreLabel> tokenSeq, final CoreMap doc, final CoreMap sent) {
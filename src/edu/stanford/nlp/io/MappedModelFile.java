@@ -0,0 +1,397 @@
+package edu.stanford.nlp.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A model file made of named sections which is memory-mapped rather than
+ * read into the heap.
+ * <p>
+ * Each section holds either a flat array of primitives (the weights of a
+ * model) or arbitrary bytes, usually a serialized object with the rest
+ * of the model.  Weight sections are used in place through
+ * {@link DoubleBuffer} and {@link IntBuffer} views, so opening a file is
+ * nearly instant, only the pages which are used are ever read, and all
+ * the JVMs on a machine which open the same file share one copy of the
+ * weights in the page cache.  Within one JVM, {@link #open(String)}
+ * returns the same mapping to every caller, as long as the file is not
+ * changed on disk; {@link #release(String)} drops a shared mapping.
+ * <p>
+ * The file starts with a header: the magic number, a version, and a
+ * directory giving the name, type, offset and length of each section.
+ * Sections start on 8 byte boundaries and are stored big-endian.
+ * Files are written with a {@link Writer}.
+ */
+public class MappedModelFile {
+
+  /** "CNLPMOD1" */
+  private static final long MAGIC = 0x434E4C504D4F4431L;
+
+  private static final int VERSION = 1;
+
+  private static final byte BYTES = 0;
+  private static final byte DOUBLES = 1;
+  private static final byte INTS = 2;
+
+  /** Suffix of the section which holds the row offsets of a {@link DoubleRows} section */
+  private static final String OFFSETS_SUFFIX = ".offsets";
+
+  private static final Map<String, MappedModelFile> openFiles = new ConcurrentHashMap<>();
+
+  private final String path;
+
+  /** The length and modification time of the file when it was mapped */
+  private final long length;
+  private final long lastModified;
+
+  private final Map<String, Byte> types = new LinkedHashMap<>();
+  private final Map<String, ByteBuffer> sections = new HashMap<>();
+
+  /**
+   * Maps the given file.  Each call maps the file again; use
+   * {@link #open(String)} to share a mapping.
+   *
+   * @throws RuntimeIOException If the file can't be read or is not a mapped model file
+   */
+  public MappedModelFile(String path) {
+    this.path = path;
+    File f = new File(path);
+    this.length = f.length();
+    this.lastModified = f.lastModified();
+    try (RandomAccessFile file = new RandomAccessFile(path, "r");
+         FileChannel channel = file.getChannel();
+         DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+      if (header.readLong() != MAGIC) {
+        throw new RuntimeIOException(path + " is not a mapped model file");
+      }
+      int version = header.readInt();
+      if (version != VERSION) {
+        throw new RuntimeIOException("Unsupported mapped model file version " + version + " in " + path);
+      }
+      int numSections = header.readInt();
+      for (int i = 0; i < numSections; i++) {
+        String name = header.readUTF();
+        byte type = header.readByte();
+        long offset = header.readLong();
+        long length = header.readLong();
+        types.put(name, type);
+        sections.put(name, channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException("Could not map model file " + path, e);
+    }
+  }
+
+  /**
+   * Returns a mapping of the given file, shared with every other caller
+   * in this JVM which opens the same file.  If the file has been replaced
+   * or changed since it was mapped, it is mapped again, and callers which
+   * already have the old mapping keep using it.
+   */
+  public static MappedModelFile open(String path) {
+    return openFiles.compute(cacheKey(path),
+        (key, file) -> file != null && file.isCurrent() ? file : new MappedModelFile(key));
+  }
+
+  /**
+   * Drops the shared mapping of the given file, if there is one, so that
+   * the next {@link #open(String)} maps the file again.  The memory of the
+   * old mapping is released once no model uses it any more.
+   *
+   * @return Whether there was a shared mapping of the file
+   */
+  public static boolean release(String path) {
+    return openFiles.remove(cacheKey(path)) != null;
+  }
+
+  /** Drops every shared mapping.  See {@link #release(String)}. */
+  public static void releaseAll() {
+    openFiles.clear();
+  }
+
+  private static String cacheKey(String path) {
+    try {
+      return new File(path).getCanonicalPath();
+    } catch (IOException e) {
+      return new File(path).getAbsolutePath();
+    }
+  }
+
+  /** Whether the file on disk has the same length and modification time as when it was mapped. */
+  private boolean isCurrent() {
+    File f = new File(path);
+    return f.length() == length && f.lastModified() == lastModified;
+  }
+
+  /** Returns whether the given path is a file (not a URL or resource) in this format. */
+  public static boolean isMappedModelFile(String path) {
+    File file = new File(path);
+    if ( ! file.isFile() || file.length() < 16) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readLong() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public String path() {
+    return path;
+  }
+
+  /** The names of the sections, in the order they were written. */
+  public Set<String> sectionNames() {
+    return Collections.unmodifiableSet(types.keySet());
+  }
+
+  public boolean contains(String name) {
+    return types.containsKey(name);
+  }
+
+  private ByteBuffer section(String name, byte type) {
+    Byte actual = types.get(name);
+    if (actual == null) {
+      throw new IllegalArgumentException("No section " + name + " in " + path);
+    }
+    if (actual != type) {
+      throw new IllegalArgumentException("Section " + name + " in " + path + " has the wrong type");
+    }
+    // each caller gets its own position and limit
+    return sections.get(name).duplicate();
+  }
+
+  /** A read-only view of a section of bytes. */
+  public ByteBuffer bytes(String name) {
+    return section(name, BYTES);
+  }
+
+  /** A read-only view of a section of doubles. */
+  public DoubleBuffer doubles(String name) {
+    return section(name, DOUBLES).asDoubleBuffer();
+  }
+
+  /** A read-only view of a section of ints. */
+  public IntBuffer ints(String name) {
+    return section(name, INTS).asIntBuffer();
+  }
+
+  /** A read-only view of a section written by {@link Writer#putRows(String, double[][])}. */
+  public DoubleRows rows(String name) {
+    return new DoubleRows(ints(name + OFFSETS_SUFFIX), doubles(name));
+  }
+
+  /** Returns a stream over a section of bytes.  The stream does not need to be closed. */
+  public InputStream stream(String name) {
+    final ByteBuffer buffer = bytes(name);
+    return new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if ( ! buffer.hasRemaining()) {
+          return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(b, off, len);
+        return len;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    };
+  }
+
+  /** Deserializes the object in a section written by {@link Writer#putObject(String, Object)}. */
+  public Object readObject(String name) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(stream(name)))) {
+      return in.readObject();
+    }
+  }
+
+
+  /**
+   * A jagged two dimensional array of doubles, such as
+   * {@code weights[feature][label]}, stored as one flat array plus the
+   * offset of each row.
+   */
+  public static class DoubleRows {
+
+    private final IntBuffer offsets;
+    private final DoubleBuffer values;
+
+    DoubleRows(IntBuffer offsets, DoubleBuffer values) {
+      this.offsets = offsets;
+      this.values = values;
+    }
+
+    public int numRows() {
+      return offsets.limit() - 1;
+    }
+
+    public int rowLength(int row) {
+      return offsets.get(row + 1) - offsets.get(row);
+    }
+
+    public double get(int row, int col) {
+      return values.get(offsets.get(row) + col);
+    }
+
+    /** Copies a row into a new array. */
+    public double[] row(int row) {
+      double[] result = new double[rowLength(row)];
+      DoubleBuffer view = values.duplicate();
+      view.position(offsets.get(row));
+      view.get(result);
+      return result;
+    }
+
+  }
+
+
+  /**
+   * Collects sections in memory and writes them out as a mapped model
+   * file.
+   */
+  public static class Writer {
+
+    private final Map<String, Object> contents = new LinkedHashMap<>();
+
+    private void put(String name, Object value) {
+      if (contents.containsKey(name)) {
+        throw new IllegalArgumentException("Duplicate section " + name);
+      }
+      contents.put(name, value);
+    }
+
+    public Writer putBytes(String name, byte[] bytes) {
+      put(name, bytes);
+      return this;
+    }
+
+    public Writer putDoubles(String name, double[] values) {
+      put(name, values);
+      return this;
+    }
+
+    public Writer putInts(String name, int[] values) {
+      put(name, values);
+      return this;
+    }
+
+    /** Adds a section holding the Java serialization of the given object. */
+    public Writer putObject(String name, Object object) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(object);
+      }
+      return putBytes(name, bytes.toByteArray());
+    }
+
+    /** Adds the rows of the given array, which may differ in length, as a flat section. */
+    public Writer putRows(String name, double[][] rows) {
+      int[] offsets = new int[rows.length + 1];
+      long total = 0;
+      for (int i = 0; i < rows.length; i++) {
+        total += rows[i].length;
+        if (total > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Too many values in " + name);
+        }
+        offsets[i + 1] = (int) total;
+      }
+      double[] values = new double[(int) total];
+      for (int i = 0; i < rows.length; i++) {
+        System.arraycopy(rows[i], 0, values, offsets[i], rows[i].length);
+      }
+      putInts(name + OFFSETS_SUFFIX, offsets);
+      return putDoubles(name, values);
+    }
+
+    private static byte typeOf(Object value) {
+      if (value instanceof double[]) {
+        return DOUBLES;
+      } else if (value instanceof int[]) {
+        return INTS;
+      }
+      return BYTES;
+    }
+
+    private static long lengthOf(Object value) {
+      if (value instanceof double[]) {
+        return 8L * ((double[]) value).length;
+      } else if (value instanceof int[]) {
+        return 4L * ((int[]) value).length;
+      }
+      return ((byte[]) value).length;
+    }
+
+    private static long align(long offset) {
+      return (offset + 7) & ~7L;
+    }
+
+    public void write(String path) throws IOException {
+      // the directory has a fixed size once the names are known, so it can be written first
+      ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+      DataOutputStream directory = new DataOutputStream(directoryBytes);
+      for (String name : contents.keySet()) {
+        directory.writeUTF(name);
+        directory.writeByte(0);
+        directory.writeLong(0);
+        directory.writeLong(0);
+      }
+      long offset = align(8 + 4 + 4 + directory.size());
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(contents.size());
+        long[] offsets = new long[contents.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : contents.entrySet()) {
+          offsets[i++] = offset;
+          out.writeUTF(entry.getKey());
+          out.writeByte(typeOf(entry.getValue()));
+          out.writeLong(offset);
+          out.writeLong(lengthOf(entry.getValue()));
+          offset = align(offset + lengthOf(entry.getValue()));
+        }
+
+        long position = out.size();
+        i = 0;
+        for (Object value : contents.values()) {
+          for (; position < offsets[i]; position++) {
+            out.writeByte(0);
+          }
+          if (value instanceof double[]) {
+            for (double v : (double[]) value) {
+              out.writeDouble(v);
+            }
+          } else if (value instanceof int[]) {
+            for (int v : (int[]) value) {
+              out.writeInt(v);
+            }
+          } else {
+            out.write((byte[]) value);
+          }
+          position += lengthOf(value);
+          i++;
+        }
+      }
+    }
+
+  }
+
+}
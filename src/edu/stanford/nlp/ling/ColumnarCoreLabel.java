@@ -0,0 +1,350 @@
+package edu.stanford.nlp.ling;
+
+import java.util.*;
+
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.ErasureUtils;
+
+/**
+ * A {@link CoreLabel} whose offsets, indices and tags live in a shared
+ * {@link CoreLabelColumns} store rather than in the label itself.  All other
+ * keys are stored in this label as in any other CoreLabel.
+ * <p>
+ * Apart from being lighter, this behaves like an ordinary CoreLabel:
+ * {@link #get}, {@link #set}, {@link #keySet} and so on see the columnar keys,
+ * and equality, hashing and printing are defined over the full set of keys.
+ * When serialized, a ColumnarCoreLabel is written as a plain CoreLabel.
+ *
+ * @see CoreLabelColumns#compact(List)
+ */
+public class ColumnarCoreLabel extends CoreLabel {
+
+  private static final long serialVersionUID = 1L;
+
+  private final CoreLabelColumns columns;
+  private final int row;
+
+  /**
+   * Create a view of the given row of the columns.
+   *
+   * @param columns The shared column store
+   * @param row Which token in the store this label is
+   * @param capacity The initial capacity for keys not stored in columns
+   */
+  ColumnarCoreLabel(CoreLabelColumns columns, int row, int capacity) {
+    super(capacity);
+    this.columns = columns;
+    this.row = row;
+  }
+
+  /** The column store backing this label. */
+  public CoreLabelColumns columns() {
+    return columns;
+  }
+
+  /** The index of this label in its column store. */
+  public int row() {
+    return row;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+    int column = CoreLabelColumns.columnOf(key);
+    if (column < 0) {
+      return super.get(key);
+    }
+    if (columns.contains(column, row) && ArrayCoreMap.listener != null) {
+      ArrayCoreMap.listener.accept(key);
+    }
+    return (VALUE) columns.get(column, row);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+    int column = CoreLabelColumns.columnOf(key);
+    if (column < 0) {
+      return super.set(key, value);
+    }
+    return (VALUE) columns.set(column, row, value);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+    int column = CoreLabelColumns.columnOf(key);
+    if (column < 0) {
+      return super.remove(key);
+    }
+    return (VALUE) columns.remove(column, row);
+  }
+
+  @Override
+  public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+    int column = CoreLabelColumns.columnOf(key);
+    if (column < 0) {
+      return super.containsKey(key);
+    }
+    return columns.contains(column, row);
+  }
+
+  @Override
+  public int size() {
+    return super.size() + columns.count(row);
+  }
+
+  @Override
+  public Set<Class<?>> keySet() {
+    Set<Class<?>> keys = new LinkedHashSet<>(super.keySet());
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      if (columns.contains(c, row)) {
+        keys.add(CoreLabelColumns.keyOf(c));
+      }
+    }
+    return keys;
+  }
+
+  @Override
+  public Set<Class<?>> keySetNotNull() {
+    Set<Class<?>> keys = super.keySetNotNull();
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      if (columns.containsNotNull(c, row)) {
+        keys.add(CoreLabelColumns.keyOf(c));
+      }
+    }
+    return keys;
+  }
+
+  // The typed accessors read the columns directly to avoid boxing
+
+  @Override
+  public String tag() {
+    return columns.getString(CoreLabelColumns.TAG, row);
+  }
+
+  @Override
+  public void setTag(String tag) {
+    columns.setString(CoreLabelColumns.TAG, row, tag);
+  }
+
+  @Override
+  public String ner() {
+    return columns.getString(CoreLabelColumns.NER, row);
+  }
+
+  @Override
+  public void setNER(String ner) {
+    columns.setString(CoreLabelColumns.NER, row, ner);
+  }
+
+  @Override
+  public int index() {
+    return columns.getInt(CoreLabelColumns.INDEX, row, -1);
+  }
+
+  @Override
+  public void setIndex(int index) {
+    columns.setInt(CoreLabelColumns.INDEX, row, index);
+  }
+
+  @Override
+  public int sentIndex() {
+    return columns.getInt(CoreLabelColumns.SENT_INDEX, row, -1);
+  }
+
+  @Override
+  public void setSentIndex(int sentIndex) {
+    columns.setInt(CoreLabelColumns.SENT_INDEX, row, sentIndex);
+  }
+
+  @Override
+  public int beginPosition() {
+    return columns.getInt(CoreLabelColumns.BEGIN, row, -1);
+  }
+
+  @Override
+  public void setBeginPosition(int beginPos) {
+    columns.setInt(CoreLabelColumns.BEGIN, row, beginPos);
+  }
+
+  @Override
+  public int endPosition() {
+    return columns.getInt(CoreLabelColumns.END, row, -1);
+  }
+
+  @Override
+  public void setEndPosition(int endPos) {
+    columns.setInt(CoreLabelColumns.END, row, endPos);
+  }
+
+  // Equality, hashing and printing go over the keys in the superclass's
+  // arrays and then the columns, in the same order as keySet()
+
+  /** Returns a plain CoreLabel with the same keys and values as this one. */
+  public CoreLabel materialize() {
+    return new CoreLabel((CoreMap) this);
+  }
+
+  /** The value of a key stored in the superclass's arrays rather than in the columns. */
+  private Object arrayValue(Class<?> key) {
+    Class<? extends Key<Object>> k = ErasureUtils.uncheckedCast(key);
+    return super.get(k);
+  }
+
+  private void appendColumnValue(StringBuilder s, int column) {
+    if ( ! columns.containsNotNull(column, row)) {
+      s.append((Object) null);
+    } else if (CoreLabelColumns.isStringColumn(column)) {
+      s.append(columns.getString(column, row));
+    } else {
+      s.append(columns.getInt(column, row));
+    }
+  }
+
+  private static boolean selected(Class<?> key, String... what) {
+    if (what.length == 0) {
+      return true;
+    }
+    String name = shortName(key);
+    for (String item : what) {
+      if (item.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toShorterString(String... what) {
+    StringBuilder s = new StringBuilder("[");
+    for (Class<?> key : super.keySet()) {
+      if (selected(key, what)) {
+        if (s.length() > 1) {
+          s.append(' ');
+        }
+        s.append(shortName(key)).append('=').append(arrayValue(key));
+      }
+    }
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      Class<?> key = CoreLabelColumns.keyOf(c);
+      if (columns.contains(c, row) && selected(key, what)) {
+        if (s.length() > 1) {
+          s.append(' ');
+        }
+        s.append(shortName(key)).append('=');
+        appendColumnValue(s, c);
+      }
+    }
+    return s.append(']').toString();
+  }
+
+  @Override
+  public String toShortString(char separator, String... what) {
+    StringBuilder s = new StringBuilder();
+    for (Class<?> key : super.keySet()) {
+      if (selected(key, what)) {
+        if (s.length() > 0) {
+          s.append(separator);
+        }
+        s.append(arrayValue(key));
+      }
+    }
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      if (columns.contains(c, row) && selected(CoreLabelColumns.keyOf(c), what)) {
+        if (s.length() > 0) {
+          s.append(separator);
+        }
+        appendColumnValue(s, c);
+      }
+    }
+    String answer = s.toString();
+    if (answer.indexOf(' ') < 0) {
+      return answer;
+    } else {
+      return '{' + answer + '}';
+    }
+  }
+
+  @Override
+  protected boolean keepsKeysOutsideArrays() {
+    return true;
+  }
+
+  /** Whether the other map has the same value as this label for the key in the given column. */
+  private boolean sameColumnValue(int column, CoreMap other) {
+    boolean notNull = columns.containsNotNull(column, row);
+    if (other instanceof ColumnarCoreLabel) {
+      // compare the columns without boxing
+      CoreLabelColumns otherColumns = ((ColumnarCoreLabel) other).columns;
+      int otherRow = ((ColumnarCoreLabel) other).row;
+      if ( ! otherColumns.contains(column, otherRow) || notNull != otherColumns.containsNotNull(column, otherRow)) {
+        return false;
+      } else if ( ! notNull) {
+        return true;
+      } else if (CoreLabelColumns.isStringColumn(column)) {
+        return columns.getString(column, row).equals(otherColumns.getString(column, otherRow));
+      } else {
+        return columns.getInt(column, row) == otherColumns.getInt(column, otherRow);
+      }
+    }
+    Class<? extends Key<Object>> key = ErasureUtils.uncheckedCast(CoreLabelColumns.keyOf(column));
+    if ( ! other.containsKey(key)) {
+      return false;
+    }
+    Object value = other.get(key);
+    if ( ! notNull) {
+      return value == null;
+    } else if (CoreLabelColumns.isStringColumn(column)) {
+      return columns.getString(column, row).equals(value);
+    } else {
+      return value instanceof Integer && (Integer) value == columns.getInt(column, row);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if ( ! (obj instanceof CoreMap)) {
+      return false;
+    }
+    CoreMap other = (CoreMap) obj;
+    if (size() != other.size()) {
+      return false;
+    }
+    // with the same number of keys, each of ours being in the other map means the same keys
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      if (columns.contains(c, row) && ! sameColumnValue(c, other)) {
+        return false;
+      }
+    }
+    for (Class<?> key : super.keySet()) {
+      Class<? extends Key<Object>> k = ErasureUtils.uncheckedCast(key);
+      if ( ! other.containsKey(k) || ! Objects.equals(super.get(k), other.get(k))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    // ArrayCoreMap sums the hash codes of keys and of values, so those of the columns can be added on
+    int code = super.hashCode();
+    for (int c = 0; c < CoreLabelColumns.numColumns(); c++) {
+      if (columns.containsNotNull(c, row)) {
+        int valueCode = CoreLabelColumns.isStringColumn(c) ? columns.getString(c, row).hashCode() : columns.getInt(c, row);
+        code += CoreLabelColumns.keyOf(c).hashCode() * 37 + valueCode;
+      }
+    }
+    return code;
+  }
+
+  private Object writeReplace() {
+    return materialize();
+  }
+
+}
@@ -1943,6 +1943,18 @@ public class CoreAnnotations {
     }
   }
 
+  /**
+   * The time by which this document has to be annotated.
+   * While it is being annotated, this is also the current {@link Deadline}
+   * of the threads working on it.
+   */
+  public static class DeadlineAnnotation implements CoreAnnotation<Deadline> {
+    @Override
+    public Class<Deadline> getType() {
+      return Deadline.class;
+    }
+  }
+
   /**
    * Stores an exception associated with processing this document
    */
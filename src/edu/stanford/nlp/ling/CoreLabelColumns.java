@@ -0,0 +1,290 @@
+package edu.stanford.nlp.ling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.stanford.nlp.util.ErasureUtils;
+
+/**
+ * Column-oriented storage for the most common per-token annotations of a
+ * whole document: character offsets, token and sentence indices, and the
+ * part of speech and named entity tags.
+ * <p>
+ * Offsets and indices are kept in {@code int} arrays rather than as boxed
+ * {@link Integer}s inside each token's map, and tags are interned to small
+ * integer ids, so that a document of n tokens costs a handful of arrays of
+ * length n rather than several objects per token.  Tokens are exposed as
+ * {@link ColumnarCoreLabel} views which behave like ordinary
+ * {@link CoreLabel}s; all other annotations are stored in the view itself,
+ * as usual.
+ * <p>
+ * Code that wants to avoid going through the {@link CoreLabel} API can read
+ * the columns directly with {@link #getInt(int, int)} and {@link #tagId(int)}.
+ * <p>
+ * Different tokens (rows) may be written by different threads at the same time,
+ * as when sentences are annotated in parallel; the same token should not be.
+ *
+ * @see #compact(List)
+ */
+public class CoreLabelColumns {
+
+  /** The annotation keys which are stored in columns, in column order. */
+  private static final Class<?>[] COLUMN_KEYS = {
+      CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+      CoreAnnotations.CharacterOffsetEndAnnotation.class,
+      CoreAnnotations.IndexAnnotation.class,
+      CoreAnnotations.SentenceIndexAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+  };
+
+  public static final int BEGIN = 0;
+  public static final int END = 1;
+  public static final int INDEX = 2;
+  public static final int SENT_INDEX = 3;
+  public static final int TAG = 4;
+  public static final int NER = 5;
+
+  /** Columns at or above this one hold interned String ids rather than ints. */
+  private static final int FIRST_STRING_COLUMN = TAG;
+
+  private static final int NUM_COLUMNS = COLUMN_KEYS.length;
+
+  private final int[][] columns;
+  /** One bit per column: the key has been set for this row */
+  private final byte[] present;
+  /** One bit per column: the key has been set to null for this row */
+  private final byte[] nulls;
+
+  /** Interned Strings for the tag columns, shared by all rows */
+  private final Map<String, Integer> stringIds = new ConcurrentHashMap<>();
+  private volatile String[] strings = new String[16];
+  private int numStrings; // = 0; guarded by this
+
+  /**
+   * Create empty columns for the given number of tokens.
+   *
+   * @param size The number of tokens
+   */
+  public CoreLabelColumns(int size) {
+    columns = new int[NUM_COLUMNS][size];
+    present = new byte[size];
+    nulls = new byte[size];
+  }
+
+  /**
+   * Returns the column which stores the given key, or -1 if the key is not stored in columns.
+   */
+  public static int columnOf(Class<?> key) {
+    for (int c = 0; c < NUM_COLUMNS; c++) {
+      if (COLUMN_KEYS[c] == key) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /** The annotation key stored in the given column. */
+  public static Class<? extends CoreAnnotation<?>> keyOf(int column) {
+    return ErasureUtils.uncheckedCast(COLUMN_KEYS[column]);
+  }
+
+  /** Whether the given column holds interned String ids rather than ints. */
+  static boolean isStringColumn(int column) {
+    return column >= FIRST_STRING_COLUMN;
+  }
+
+  /** The number of columns. */
+  public static int numColumns() {
+    return NUM_COLUMNS;
+  }
+
+  /** The number of tokens (rows). */
+  public int size() {
+    return present.length;
+  }
+
+  /** Whether the key for the given column has been set for the given token (possibly to null). */
+  public boolean contains(int column, int row) {
+    return (present[row] & (1 << column)) != 0;
+  }
+
+  /** Whether the key for the given column is set to a non-null value for the given token. */
+  public boolean containsNotNull(int column, int row) {
+    return ((present[row] & ~nulls[row]) & (1 << column)) != 0;
+  }
+
+  /** Returns the number of columns set for the given token. */
+  public int count(int row) {
+    return Integer.bitCount(present[row] & 0xff);
+  }
+
+  /**
+   * Returns the value of an int column, or the given default if it is not set or null.
+   * This does not box the value.
+   */
+  public int getInt(int column, int row, int defaultValue) {
+    return containsNotNull(column, row) ? columns[column][row] : defaultValue;
+  }
+
+  /**
+   * Returns the value of an int column.  Only meaningful if
+   * {@link #containsNotNull(int, int)} is true.
+   */
+  public int getInt(int column, int row) {
+    return columns[column][row];
+  }
+
+  /** Sets the value of an int column. */
+  public void setInt(int column, int row, int value) {
+    columns[column][row] = value;
+    mark(column, row, false);
+  }
+
+  /** Returns the interned id of the part of speech tag of the given token, or -1 if none is set. */
+  public int tagId(int row) {
+    return containsNotNull(TAG, row) ? columns[TAG][row] : -1;
+  }
+
+  /** Returns the interned id of the named entity tag of the given token, or -1 if none is set. */
+  public int nerId(int row) {
+    return containsNotNull(NER, row) ? columns[NER][row] : -1;
+  }
+
+  /** Returns the String with the given interned id. */
+  public String string(int id) {
+    return strings[id];
+  }
+
+  /** Returns the value of a String column, or null. */
+  public String getString(int column, int row) {
+    return containsNotNull(column, row) ? strings[columns[column][row]] : null;
+  }
+
+  /** Sets the value of a String column. */
+  public void setString(int column, int row, String value) {
+    if (value == null) {
+      mark(column, row, true);
+    } else {
+      columns[column][row] = intern(value);
+      mark(column, row, false);
+    }
+  }
+
+  /**
+   * Returns the value for the given column as it would be stored in a CoreMap,
+   * that is, as an Integer or a String.
+   */
+  public Object get(int column, int row) {
+    if ( ! containsNotNull(column, row)) {
+      return null;
+    }
+    if (isStringColumn(column)) {
+      return strings[columns[column][row]];
+    } else {
+      return columns[column][row];
+    }
+  }
+
+  /**
+   * Sets the value for the given column from a CoreMap value, that is,
+   * an Integer, a String, or null.
+   *
+   * @return The previous value
+   */
+  public Object set(int column, int row, Object value) {
+    Object old = get(column, row);
+    if (value == null) {
+      mark(column, row, true);
+    } else if (isStringColumn(column)) {
+      setString(column, row, (String) value);
+    } else {
+      setInt(column, row, (Integer) value);
+    }
+    return old;
+  }
+
+  /**
+   * Unsets the value for the given column.
+   *
+   * @return The previous value
+   */
+  public Object remove(int column, int row) {
+    Object old = get(column, row);
+    present[row] &= ~(1 << column);
+    nulls[row] &= ~(1 << column);
+    return old;
+  }
+
+  private void mark(int column, int row, boolean isNull) {
+    present[row] |= (1 << column);
+    if (isNull) {
+      nulls[row] |= (1 << column);
+    } else {
+      nulls[row] &= ~(1 << column);
+    }
+  }
+
+  private int intern(String value) {
+    Integer id = stringIds.get(value);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = stringIds.get(value);
+      if (id == null) {
+        id = numStrings;
+        String[] newStrings = strings;
+        if (numStrings == newStrings.length) {
+          newStrings = Arrays.copyOf(newStrings, newStrings.length * 2);
+        }
+        newStrings[numStrings] = value;
+        numStrings++;
+        strings = newStrings; // the volatile write publishes the new entry
+        stringIds.put(value, id);
+      }
+      return id;
+    }
+  }
+
+  /** Returns a view of the given token. */
+  public ColumnarCoreLabel token(int row) {
+    if (row < 0 || row >= size()) {
+      throw new IndexOutOfBoundsException("No token " + row + " in columns of size " + size());
+    }
+    return new ColumnarCoreLabel(this, row, 0);
+  }
+
+  /**
+   * Copies a list of tokens into columnar storage.  The keys stored in
+   * columns are moved out of the tokens; all other keys are copied into
+   * the returned views.  The original tokens are not modified.
+   *
+   * @param tokens The tokens to copy, typically the tokens of a whole document
+   * @return A list of views over the new columns, one per input token
+   */
+  public static List<CoreLabel> compact(List<? extends CoreLabel> tokens) {
+    CoreLabelColumns columns = new CoreLabelColumns(tokens.size());
+    List<CoreLabel> views = new ArrayList<>(tokens.size());
+    for (int row = 0; row < tokens.size(); row++) {
+      CoreLabel token = tokens.get(row);
+      int others = 0;
+      for (Class<?> key : token.keySet()) {
+        if (columnOf(key) < 0) {
+          others++;
+        }
+      }
+      ColumnarCoreLabel view = new ColumnarCoreLabel(columns, row, others);
+      for (Class<?> key : token.keySet()) {
+        Class<? extends CoreAnnotation<Object>> k = ErasureUtils.uncheckedCast(key);
+        view.set(k, token.get(k));
+      }
+      views.add(view);
+    }
+    return views;
+  }
+
+}
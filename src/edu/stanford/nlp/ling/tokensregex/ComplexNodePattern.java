@@ -43,9 +43,13 @@ public class ComplexNodePattern<M,K> extends NodePattern<M> {
   // TODO: make this a pattern of non special characters: [,],?,.,\,^,$,(,),*,+,{,},| ... what else?
   private static final Pattern LITERAL_PATTERN = Pattern.compile("[^\\[\\]?.\\\\^$()*+{}|]*");
   //private static final Pattern LITERAL_PATTERN = Pattern.compile("[A-Za-z0-9_\\-']*");
+  /** Returns whether the given regex, with the given flags, is matched as a literal string. */
+  public static boolean isLiteral(String regex, int flags) {
+    return ((flags & Pattern.LITERAL) != 0) || LITERAL_PATTERN.matcher(regex).matches();
+  }
+
   public static NodePattern<String> newStringRegexPattern(String regex, int flags) {
-    boolean isLiteral = ((flags & Pattern.LITERAL) != 0) || LITERAL_PATTERN.matcher(regex).matches();
-    if (isLiteral) {
+    if (isLiteral(regex, flags)) {
       boolean caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
       int stringMatchFlags = (caseInsensitive)? CASE_INSENSITIVE:0;
       return new StringAnnotationPattern(regex, stringMatchFlags);
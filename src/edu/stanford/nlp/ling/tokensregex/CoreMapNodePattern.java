@@ -3,6 +3,7 @@ package edu.stanford.nlp.ling.tokensregex;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.util.*;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.regex.Pattern;
@@ -14,13 +15,18 @@ import java.util.regex.Pattern;
  */
 public class CoreMapNodePattern extends ComplexNodePattern<CoreMap, Class> {
 
+  /** Reads an annotation.  A named class, rather than a lambda, so that patterns can be serialized. */
+  private static class Getter implements BiFunction<CoreMap, Class, Object>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Object apply(CoreMap m, Class k) {
+      return m.get(k);
+    }
+  }
+
   private static BiFunction<CoreMap, Class, Object> createGetter() {
-    return new BiFunction<CoreMap, Class, Object>() {
-      @Override
-      public Object apply(CoreMap m, Class k) {
-        return m.get(k);
-      }
-    };
+    return new Getter();
   }
 
   public CoreMapNodePattern(List<Pair<Class, NodePattern>> annotationPatterns) {
@@ -3,6 +3,7 @@ package edu.stanford.nlp.ling.tokensregex;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.util.*;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.function.Function;
 
@@ -12,7 +13,10 @@ import java.util.function.Function;
 *
 * @author Angel Chang
 */
-public class CoreMapNodePatternTrigger implements MultiPatternMatcher.NodePatternTrigger<CoreMap> {
+public class CoreMapNodePatternTrigger implements MultiPatternMatcher.NodePatternTrigger<CoreMap>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   Collection<? extends SequencePattern<CoreMap>> patterns;
   Collection<SequencePattern<CoreMap>> alwaysTriggered = new LinkedHashSet<>();
   TwoDimensionalCollectionValuedMap<Class, Object, SequencePattern<CoreMap>> annotationTriggers =
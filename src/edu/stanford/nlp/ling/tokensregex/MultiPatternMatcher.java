@@ -2,6 +2,7 @@ package edu.stanford.nlp.ling.tokensregex;
 
 import edu.stanford.nlp.util.*;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.function.Function;
 
@@ -10,7 +11,10 @@ import java.util.function.Function;
  *
  * @author Angel Chang
  */
-public class MultiPatternMatcher<T> {
+public class MultiPatternMatcher<T> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   Collection<SequencePattern<T>> patterns;
   SequencePatternTrigger<T> patternTrigger;
   boolean matchWithResult = false;
@@ -74,9 +78,7 @@ public class MultiPatternMatcher<T> {
     List<SequenceMatchResult<T>> all = new ArrayList<>();
     int i = 0;
     for (SequencePattern<T> p:triggered) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       SequenceMatcher<T> m = p.getMatcher(elements);
       m.setMatchWithResult(matchWithResult);
       m.setOrder(i);
@@ -105,9 +107,7 @@ public class MultiPatternMatcher<T> {
     List<SequenceMatchResult<T>> all = new ArrayList<>();
     int i = 0;
     for (SequencePattern<T> p:triggered) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       SequenceMatcher<T> m = p.getMatcher(elements);
       m.setMatchWithResult(matchWithResult);
       m.setFindType(findType);
@@ -232,7 +232,10 @@ public class MultiPatternMatcher<T> {
    *   all these patterns together.  Original ordering of patterns is preserved.
    * @param <T>
    */
-  public static class BasicSequencePatternTrigger<T> implements SequencePatternTrigger<T> {
+  public static class BasicSequencePatternTrigger<T> implements SequencePatternTrigger<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     NodePatternTrigger<T> trigger;
 
     public BasicSequencePatternTrigger(NodePatternTrigger<T> trigger) {
@@ -244,9 +247,7 @@ public class MultiPatternMatcher<T> {
       // Use LinkedHashSet to preserve original ordering of patterns.
       Set<SequencePattern<T>> triggeredPatterns = new LinkedHashSet<>();
       for (T node:elements) {
-        if (Thread.interrupted()) {  // Allow interrupting
-          throw new RuntimeInterruptedException();
-        }
+        Deadline.checkForInterrupt();  // Allow interrupting
         Collection<SequencePattern<T>> triggered = trigger.apply(node);
         triggeredPatterns.addAll(triggered);
       }
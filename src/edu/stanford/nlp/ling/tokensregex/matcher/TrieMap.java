@@ -3,6 +3,7 @@ package edu.stanford.nlp.ling.tokensregex.matcher;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.StringUtils;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -19,7 +20,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * @param <V> The value
  *
  */
-public class TrieMap<K, V> extends AbstractMap<Iterable<K>, V> {
+public class TrieMap<K, V> extends AbstractMap<Iterable<K>, V> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /**
    * Child tries
@@ -0,0 +1,380 @@
+package edu.stanford.nlp.neural;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * A read-only matrix of weights stored at reduced precision, for
+ * running a trained network with less memory than {@code double[][]} or
+ * {@link SimpleMatrix} need.
+ * <p>
+ * Inference with these models is mostly matrix-vector products, which
+ * are limited by how fast the weights can be read from memory rather
+ * than by arithmetic.  Storing the weights as {@code float}s halves the
+ * memory and bandwidth needed, at a precision which is more than enough
+ * for inference.  Storing them as {@code byte}s with one scale factor per
+ * row ({@link Precision#INT8}) cuts it to an eighth, at some cost in
+ * accuracy which should be measured for each model.
+ * <p>
+ * The methods which take {@code double} vectors do their arithmetic in
+ * {@code double}, so only the storage is compact.  Those which take
+ * {@code float} vectors also compute in {@code float}, which loses
+ * nothing that storing the weights at reduced precision hasn't already
+ * lost, and lets the JIT compiler work on twice as many values per
+ * vector instruction.
+ */
+public abstract class CompactMatrix implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The ways the weights of a model may be stored. */
+  public enum Precision {
+    /** Full precision; models keep their usual representation */
+    DOUBLE,
+    /** 32 bit floating point */
+    FLOAT,
+    /** 8 bit integers, scaled by the largest absolute value in each row */
+    INT8;
+
+    /** Parses a precision name such as "float", ignoring case. */
+    public static Precision fromString(String name) {
+      try {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown precision " + name + "; expected double, float or int8");
+      }
+    }
+  }
+
+  protected final int numRows;
+  protected final int numCols;
+
+  protected CompactMatrix(int numRows, int numCols) {
+    this.numRows = numRows;
+    this.numCols = numCols;
+  }
+
+  /**
+   * Makes a compact copy of the given matrix.
+   *
+   * @param matrix The weights, by row.  All rows must be the same length.
+   * @param precision Either {@link Precision#FLOAT} or {@link Precision#INT8}
+   */
+  public static CompactMatrix of(double[][] matrix, Precision precision) {
+    switch (precision) {
+      case FLOAT:
+        return new FloatMatrix(matrix);
+      case INT8:
+        return new Int8Matrix(matrix);
+      default:
+        throw new IllegalArgumentException("Cannot make a compact matrix with precision " + precision);
+    }
+  }
+
+  /** Makes a compact copy of the given matrix. */
+  public static CompactMatrix of(SimpleMatrix matrix, Precision precision) {
+    int rows = matrix.numRows();
+    int cols = matrix.numCols();
+    double[][] values = new double[rows][cols];
+    for (int i = 0; i < rows; ++i) {
+      for (int j = 0; j < cols; ++j) {
+        values[i][j] = matrix.get(i, j);
+      }
+    }
+    return of(values, precision);
+  }
+
+  public int numRows() {
+    return numRows;
+  }
+
+  public int numCols() {
+    return numCols;
+  }
+
+  /** The precision at which the values are stored. */
+  public abstract Precision precision();
+
+  /** Returns the (approximate) value at the given position. */
+  public abstract double get(int row, int col);
+
+  /** Adds the given row to {@code out}, which must have at least {@link #numCols()} elements. */
+  public abstract void addRowTo(int row, double[] out);
+
+  /** Copies the given row into {@code out}, which must have at least {@link #numCols()} elements. */
+  public abstract void copyRow(int row, double[] out);
+
+  /**
+   * Returns the dot product of part of a row with a vector:
+   * the sum over {@code k < length} of {@code get(row, offset + k) * x[k]}.
+   */
+  public abstract double dotRow(int row, int offset, double[] x, int length);
+
+  /** As {@link #addRowTo(int, double[])}, in {@code float} arithmetic. */
+  public abstract void addRowTo(int row, float[] out);
+
+  /** As {@link #copyRow(int, double[])}, in {@code float} arithmetic. */
+  public abstract void copyRow(int row, float[] out);
+
+  /** As {@link #dotRow(int, int, double[], int)}, in {@code float} arithmetic. */
+  public abstract float dotRow(int row, int offset, float[] x, int length);
+
+  /** The number of bytes used by the values, for reporting memory use. */
+  public abstract long sizeInBytes();
+
+  /** Multiplies this matrix by a column vector. */
+  public SimpleMatrix mult(SimpleMatrix vector) {
+    if (vector.getNumElements() != numCols) {
+      throw new IllegalArgumentException("Cannot multiply a " + numRows + "x" + numCols +
+          " matrix by a vector of length " + vector.getNumElements());
+    }
+    double[] x = new double[numCols];
+    for (int j = 0; j < numCols; ++j) {
+      x[j] = vector.get(j);
+    }
+    SimpleMatrix result = new SimpleMatrix(numRows, 1);
+    for (int i = 0; i < numRows; ++i) {
+      result.set(i, 0, dotRow(i, 0, x, numCols));
+    }
+    return result;
+  }
+
+  /** Returns the given row as a column vector. */
+  public SimpleMatrix getRowAsColumn(int row) {
+    double[] values = new double[numCols];
+    copyRow(row, values);
+    SimpleMatrix result = new SimpleMatrix(numCols, 1);
+    for (int j = 0; j < numCols; ++j) {
+      result.set(j, 0, values[j]);
+    }
+    return result;
+  }
+
+  /** Returns the values at full precision. */
+  public double[][] toArray() {
+    double[][] values = new double[numRows][numCols];
+    for (int i = 0; i < numRows; ++i) {
+      copyRow(i, values[i]);
+    }
+    return values;
+  }
+
+  /** Returns the values at full precision as a SimpleMatrix. */
+  public SimpleMatrix toSimpleMatrix() {
+    return new SimpleMatrix(toArray());
+  }
+
+  /**
+   * The largest absolute difference between these values and the given
+   * full-precision ones, as a measure of how much precision was lost.
+   */
+  public double maxAbsError(double[][] original) {
+    double[] row = new double[numCols];
+    double max = 0.0;
+    for (int i = 0; i < numRows; ++i) {
+      copyRow(i, row);
+      for (int j = 0; j < numCols; ++j) {
+        max = Math.max(max, Math.abs(row[j] - original[i][j]));
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '[' + numRows + 'x' + numCols + ']';
+  }
+
+
+  /** Stores each value as a float. */
+  private static class FloatMatrix extends CompactMatrix {
+
+    private static final long serialVersionUID = 1L;
+
+    private final float[][] values;
+
+    FloatMatrix(double[][] matrix) {
+      super(matrix.length, matrix.length == 0 ? 0 : matrix[0].length);
+      values = new float[numRows][];
+      for (int i = 0; i < numRows; ++i) {
+        float[] row = new float[numCols];
+        for (int j = 0; j < numCols; ++j) {
+          row[j] = (float) matrix[i][j];
+        }
+        values[i] = row;
+      }
+    }
+
+    @Override
+    public Precision precision() {
+      return Precision.FLOAT;
+    }
+
+    @Override
+    public double get(int row, int col) {
+      return values[row][col];
+    }
+
+    @Override
+    public void addRowTo(int row, double[] out) {
+      float[] r = values[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] += r[j];
+      }
+    }
+
+    @Override
+    public void copyRow(int row, double[] out) {
+      float[] r = values[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] = r[j];
+      }
+    }
+
+    @Override
+    public double dotRow(int row, int offset, double[] x, int length) {
+      float[] r = values[row];
+      double sum = 0.0;
+      for (int k = 0; k < length; ++k) {
+        sum += r[offset + k] * x[k];
+      }
+      return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, float[] out) {
+      float[] r = values[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] += r[j];
+      }
+    }
+
+    @Override
+    public void copyRow(int row, float[] out) {
+      System.arraycopy(values[row], 0, out, 0, numCols);
+    }
+
+    @Override
+    public float dotRow(int row, int offset, float[] x, int length) {
+      float[] r = values[row];
+      float sum = 0.0f;
+      for (int k = 0; k < length; ++k) {
+        sum += r[offset + k] * x[k];
+      }
+      return sum;
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return 4L * numRows * numCols;
+    }
+  }
+
+
+  /**
+   * Stores each value as a byte, scaled so that the largest absolute
+   * value in its row maps to 127.
+   */
+  private static class Int8Matrix extends CompactMatrix {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[][] values;
+    private final float[] scales;
+
+    Int8Matrix(double[][] matrix) {
+      super(matrix.length, matrix.length == 0 ? 0 : matrix[0].length);
+      values = new byte[numRows][];
+      scales = new float[numRows];
+      for (int i = 0; i < numRows; ++i) {
+        double max = 0.0;
+        for (int j = 0; j < numCols; ++j) {
+          max = Math.max(max, Math.abs(matrix[i][j]));
+        }
+        float scale = (float) (max / 127.0);
+        byte[] row = new byte[numCols];
+        if (scale > 0.0f) {
+          for (int j = 0; j < numCols; ++j) {
+            row[j] = (byte) Math.round(matrix[i][j] / scale);
+          }
+        }
+        values[i] = row;
+        scales[i] = scale;
+      }
+    }
+
+    @Override
+    public Precision precision() {
+      return Precision.INT8;
+    }
+
+    @Override
+    public double get(int row, int col) {
+      return values[row][col] * (double) scales[row];
+    }
+
+    @Override
+    public void addRowTo(int row, double[] out) {
+      byte[] r = values[row];
+      double scale = scales[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] += r[j] * scale;
+      }
+    }
+
+    @Override
+    public void copyRow(int row, double[] out) {
+      byte[] r = values[row];
+      double scale = scales[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] = r[j] * scale;
+      }
+    }
+
+    @Override
+    public double dotRow(int row, int offset, double[] x, int length) {
+      byte[] r = values[row];
+      double sum = 0.0;
+      for (int k = 0; k < length; ++k) {
+        sum += r[offset + k] * x[k];
+      }
+      return sum * scales[row];
+    }
+
+    @Override
+    public void addRowTo(int row, float[] out) {
+      byte[] r = values[row];
+      float scale = scales[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] += r[j] * scale;
+      }
+    }
+
+    @Override
+    public void copyRow(int row, float[] out) {
+      byte[] r = values[row];
+      float scale = scales[row];
+      for (int j = 0; j < numCols; ++j) {
+        out[j] = r[j] * scale;
+      }
+    }
+
+    @Override
+    public float dotRow(int row, int offset, float[] x, int length) {
+      byte[] r = values[row];
+      float sum = 0.0f;
+      for (int k = 0; k < length; ++k) {
+        sum += r[offset + k] * x[k];
+      }
+      return sum * scales[row];
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return (long) numRows * numCols + 4L * numRows;
+    }
+  }
+
+}
@@ -30,6 +30,16 @@ public class Embedding implements Serializable  {
   private Map<String, SimpleMatrix> wordVectors;
   private int embeddingSize;
 
+  /**
+   * Once {@link #compact(CompactMatrix.Precision)} has been called, or
+   * if the embedding is backed by a {@link MappedEmbeddingStore}, the
+   * vectors are kept as the rows of {@code compactVectors} rather than
+   * in {@code wordVectors}, and {@code compactIndex} gives the row of
+   * each word.
+   */
+  private Map<String, Integer> compactIndex;
+  private CompactMatrix compactVectors;
+
   static final String START_WORD = "*START*";
   static final String END_WORD = "*END*";
 
@@ -62,10 +72,50 @@ public class Embedding implements Serializable  {
     this(wordVectorFile, 0);
   }
 
+  /**
+   * Reads word vectors from a file, which is either text (see
+   * {@link #loadWordVectors(String)}) or a {@link MappedEmbeddingStore}.
+   */
   public Embedding(String wordVectorFile, int embeddingSize) {
-    this.wordVectors = Generics.newHashMap();
-    this.embeddingSize = embeddingSize;
-    loadWordVectors(wordVectorFile);
+    if (MappedEmbeddingStore.isMappedEmbeddingFile(wordVectorFile)) {
+      MappedEmbeddingStore store = new MappedEmbeddingStore(wordVectorFile);
+      if (embeddingSize > 0 && embeddingSize != store.dimension()) {
+        throw new IllegalArgumentException("Mapped embedding " + wordVectorFile + " has dimension " +
+            store.dimension() + ", not the requested " + embeddingSize);
+      }
+      useStore(store);
+    } else {
+      this.wordVectors = Generics.newHashMap();
+      this.embeddingSize = embeddingSize;
+      loadWordVectors(wordVectorFile);
+    }
+  }
+
+  /**
+   * An embedding backed by the given store.  The vectors stay in the
+   * mapped file; each lookup copies one vector out of it.
+   */
+  public Embedding(MappedEmbeddingStore store) {
+    useStore(store);
+  }
+
+  private void useStore(MappedEmbeddingStore store) {
+    log.info("Mapped embedding " + store.path() + ": " + store.size() + " words of size " + store.dimension());
+    this.wordVectors = null;
+    this.embeddingSize = store.dimension();
+    this.compactIndex = store.wordIndex();
+    this.compactVectors = store.vectors();
+  }
+
+  /**
+   * Loads an embedding which is either a {@link MappedEmbeddingStore}
+   * file or a serialized Embedding, which may be on the classpath.
+   */
+  public static Embedding load(String path) {
+    if (MappedEmbeddingStore.isMappedEmbeddingFile(path)) {
+      return new Embedding(new MappedEmbeddingStore(path));
+    }
+    return IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(log, "Loading embedding", path);
   }
 
   public Embedding(String wordFile, String vectorFile) {
@@ -202,27 +252,68 @@ public class Embedding implements Serializable  {
   }
 
   public void writeToFile(String filename) throws IOException {
-    IOUtils.writeObjectToFile(wordVectors, filename);
+    IOUtils.writeObjectToFile(getWordVectors(), filename);
+  }
+
+  /**
+   * Store the vectors at the given precision from now on, to save
+   * memory.  Vectors returned after this are fresh copies made from the
+   * compact storage, so changing them no longer changes the embedding.
+   */
+  public void compact(CompactMatrix.Precision precision) {
+    if (precision == CompactMatrix.Precision.DOUBLE || compactVectors != null) {
+      return;
+    }
+    Map<String, Integer> index = Generics.newHashMap(wordVectors.size());
+    double[][] vectors = new double[wordVectors.size()][];
+    for (Entry<String, SimpleMatrix> entry : wordVectors.entrySet()) {
+      int row = index.size();
+      index.put(entry.getKey(), row);
+      SimpleMatrix vector = entry.getValue();
+      vectors[row] = new double[vector.getNumElements()];
+      for (int i = 0; i < vectors[row].length; i++) {
+        vectors[row][i] = vector.get(i);
+      }
+    }
+    compactVectors = CompactMatrix.of(vectors, precision);
+    compactIndex = index;
+    wordVectors = null;
+  }
+
+  /** The number of bytes used by the vectors themselves, for reporting memory use. */
+  public long sizeInBytes() {
+    if (compactVectors != null) {
+      return compactVectors.sizeInBytes();
+    }
+    return 8L * wordVectors.size() * embeddingSize;
+  }
+
+  private SimpleMatrix compactVector(String word) {
+    Integer row = compactIndex.get(word);
+    return row == null ? null : compactVectors.getRowAsColumn(row);
   }
 
   /*** Getters & Setters ***/
   public int size(){
-    return wordVectors.size();
+    return compactIndex != null ? compactIndex.size() : wordVectors.size();
   }
 
   public Collection<SimpleMatrix> values(){
-    return wordVectors.values();
+    return getWordVectors().values();
   }
 
   public Set<String> keySet(){
-    return wordVectors.keySet();
+    return compactIndex != null ? compactIndex.keySet() : wordVectors.keySet();
   }
 
   public Set<Entry<String, SimpleMatrix>> entrySet(){
-    return wordVectors.entrySet();
+    return getWordVectors().entrySet();
   }
 
   public SimpleMatrix get(String word) {
+    if (compactIndex != null) {
+      return compactVector(compactIndex.containsKey(word) ? word : UNKNOWN_WORD);
+    }
     if(wordVectors.containsKey(word)){
       return wordVectors.get(word);
     } else {
@@ -231,22 +322,33 @@ public class Embedding implements Serializable  {
   }
 
   public boolean containsWord(String word) {
-    return wordVectors.containsKey(word);
+    return compactIndex != null ? compactIndex.containsKey(word) : wordVectors.containsKey(word);
   }
 
   public SimpleMatrix getStartWordVector() {
-    return wordVectors.get(START_WORD);
+    return compactIndex != null ? compactVector(START_WORD) : wordVectors.get(START_WORD);
   }
 
   public SimpleMatrix getEndWordVector() {
-    return wordVectors.get(END_WORD);
+    return compactIndex != null ? compactVector(END_WORD) : wordVectors.get(END_WORD);
   }
 
   public SimpleMatrix getUnknownWordVector() {
-    return wordVectors.get(UNKNOWN_WORD);
+    return compactIndex != null ? compactVector(UNKNOWN_WORD) : wordVectors.get(UNKNOWN_WORD);
   }
 
+  /**
+   * Returns the map from words to vectors.  If the embedding has been
+   * compacted, this is a full-precision copy, which is expensive to build.
+   */
   public Map<String, SimpleMatrix> getWordVectors() {
+    if (compactIndex != null) {
+      Map<String, SimpleMatrix> vectors = Generics.newHashMap(compactIndex.size());
+      for (Entry<String, Integer> entry : compactIndex.entrySet()) {
+        vectors.put(entry.getKey(), compactVectors.getRowAsColumn(entry.getValue()));
+      }
+      return vectors;
+    }
     return wordVectors;
   }
 
@@ -257,6 +359,8 @@ public class Embedding implements Serializable  {
   public void setWordVectors(Map<String, SimpleMatrix> wordVectors) {
     this.wordVectors = wordVectors;
     this.embeddingSize = getEmbeddingSize(wordVectors);
+    this.compactIndex = null;
+    this.compactVectors = null;
   }
 
   private static int getEmbeddingSize(Map<String, SimpleMatrix> wordVectors){
@@ -0,0 +1,454 @@
+package edu.stanford.nlp.neural;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Word vectors in a binary file which is memory-mapped rather than read
+ * into the heap.
+ * <p>
+ * Loading a large embedding into a {@code Map<String, SimpleMatrix>}
+ * takes a long time and a lot of heap.  A mapped store instead opens
+ * instantly, keeps its index and vectors outside the heap, and only
+ * reads the pages which are used; several JVMs on one machine which map
+ * the same file share a single copy in the page cache.  Rows can be
+ * read without copying through {@link #row(int)}.
+ * <p>
+ * The file consists of a header, an open-addressing hash table from
+ * words to rows, the words themselves, and the vectors as 32 bit floats,
+ * one row per word.  Words are hashed with {@link String#hashCode()},
+ * which is the same in every JVM.  Files are written with
+ * {@link #write(Embedding, String)}, or from the command line with
+ * {@link #main(String[])}.
+ * <p>
+ * An {@link Embedding} can be backed by a store: the
+ * {@link Embedding#Embedding(String, int)} constructor recognizes these
+ * files, as does {@link Embedding#load(String)}.
+ */
+public class MappedEmbeddingStore implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Redwood.RedwoodChannels log = Redwood.channels(MappedEmbeddingStore.class);
+
+  /** "CNLPEMB1" */
+  private static final long MAGIC = 0x434E4C50454D4231L;
+
+  /** Bytes before the hash table: magic, numWords, dimension, tableSize, wordsOffset, vectorsOffset */
+  private static final int HEADER_SIZE = 8 + 4 + 4 + 4 + 8 + 8;
+
+  /** Upper bound on the size of each mapped piece of the vectors */
+  private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+  private final String path;
+
+  private transient int numWords;
+  private transient int dimension;
+  private transient int tableMask;
+
+  /** The header, hash table, word offsets and words */
+  private transient ByteBuffer index;
+  private transient long wordsOffset;
+
+  /** The vectors, in pieces of {@code rowsPerChunk} rows */
+  private transient FloatBuffer[] chunks;
+  private transient int rowsPerChunk;
+
+  /**
+   * Maps the given file.
+   *
+   * @throws RuntimeIOException If the file can't be read or is not an embedding store
+   */
+  public MappedEmbeddingStore(String path) {
+    this.path = path;
+    map();
+  }
+
+  private void map() {
+    try (RandomAccessFile file = new RandomAccessFile(path, "r");
+         FileChannel channel = file.getChannel()) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getLong() != MAGIC) {
+        throw new RuntimeIOException(path + " is not a mapped embedding file");
+      }
+      numWords = header.getInt();
+      dimension = header.getInt();
+      int tableSize = header.getInt();
+      wordsOffset = header.getLong();
+      long vectorsOffset = header.getLong();
+      tableMask = tableSize - 1;
+
+      index = channel.map(FileChannel.MapMode.READ_ONLY, 0, vectorsOffset);
+
+      long rowBytes = 4L * Math.max(dimension, 1);
+      rowsPerChunk = (int) Math.max(1, Math.min(numWords, MAX_CHUNK_BYTES / rowBytes));
+      int numChunks = numWords == 0 ? 0 : (numWords + rowsPerChunk - 1) / rowsPerChunk;
+      chunks = new FloatBuffer[numChunks];
+      for (int c = 0; c < numChunks; c++) {
+        int rows = Math.min(rowsPerChunk, numWords - c * rowsPerChunk);
+        long start = vectorsOffset + c * (long) rowsPerChunk * rowBytes;
+        chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, rows * rowBytes).asFloatBuffer();
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException("Could not map embedding file " + path, e);
+    }
+  }
+
+  /** Returns whether the given path is a file in this format. */
+  public static boolean isMappedEmbeddingFile(String path) {
+    File file = new File(path);
+    if ( ! file.isFile() || file.length() < HEADER_SIZE) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readLong() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** The number of words in the store. */
+  public int size() {
+    return numWords;
+  }
+
+  /** The length of each vector. */
+  public int dimension() {
+    return dimension;
+  }
+
+  public String path() {
+    return path;
+  }
+
+  private static int slot(int hash, int mask) {
+    int h = hash * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /** Returns the row of the given word, or -1 if it is not in the store. */
+  public int rowOf(String word) {
+    if (numWords == 0) {
+      return -1;
+    }
+    for (int i = slot(word.hashCode(), tableMask); ; i = (i + 1) & tableMask) {
+      int row = index.getInt(HEADER_SIZE + 4 * i) - 1;
+      if (row < 0) {
+        return -1;
+      }
+      if (wordEquals(row, word)) {
+        return row;
+      }
+    }
+  }
+
+  private int wordStart(int row) {
+    return (int) (wordsOffset + index.getInt(HEADER_SIZE + 4 * (tableMask + 1) + 4 * row));
+  }
+
+  private boolean wordEquals(int row, String word) {
+    int start = wordStart(row);
+    int length = index.getInt(start);
+    if (length != word.length()) {
+      return false;
+    }
+    for (int k = 0; k < length; k++) {
+      if (index.getChar(start + 4 + 2 * k) != word.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the word in the given row. */
+  public String word(int row) {
+    int start = wordStart(row);
+    int length = index.getInt(start);
+    char[] chars = new char[length];
+    for (int k = 0; k < length; k++) {
+      chars[k] = index.getChar(start + 4 + 2 * k);
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns a read-only view of the given row, without copying it.
+   * The view's position is the first element of the row and its limit
+   * is just past the last.
+   */
+  public FloatBuffer row(int row) {
+    FloatBuffer chunk = chunks[row / rowsPerChunk].duplicate();
+    int start = (row % rowsPerChunk) * dimension;
+    chunk.limit(start + dimension);
+    chunk.position(start);
+    return chunk;
+  }
+
+  /** Copies the given row into {@code out}. */
+  public void copyRow(int row, double[] out) {
+    FloatBuffer chunk = chunks[row / rowsPerChunk];
+    int start = (row % rowsPerChunk) * dimension;
+    for (int k = 0; k < dimension; k++) {
+      out[k] = chunk.get(start + k);
+    }
+  }
+
+  /** A view of the words of the store as a map from word to row. */
+  Map<String, Integer> wordIndex() {
+    return new WordIndex();
+  }
+
+  /** A view of the vectors of the store as a matrix with one row per word. */
+  CompactMatrix vectors() {
+    return new MappedMatrix();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    map();
+  }
+
+
+  private class WordIndex extends AbstractMap<String, Integer> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Integer get(Object key) {
+      if ( ! (key instanceof String)) {
+        return null;
+      }
+      int row = rowOf((String) key);
+      return row < 0 ? null : row;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && rowOf((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+      return numWords;
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+      return new AbstractSet<Entry<String, Integer>>() {
+        @Override
+        public Iterator<Entry<String, Integer>> iterator() {
+          return new Iterator<Entry<String, Integer>>() {
+            private int row; // = 0
+
+            @Override
+            public boolean hasNext() {
+              return row < numWords;
+            }
+
+            @Override
+            public Entry<String, Integer> next() {
+              if ( ! hasNext()) {
+                throw new NoSuchElementException();
+              }
+              Entry<String, Integer> entry = new SimpleImmutableEntry<>(word(row), row);
+              row++;
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return numWords;
+        }
+      };
+    }
+  }
+
+
+  private class MappedMatrix extends CompactMatrix {
+
+    private static final long serialVersionUID = 1L;
+
+    MappedMatrix() {
+      super(numWords, dimension);
+    }
+
+    @Override
+    public Precision precision() {
+      return Precision.FLOAT;
+    }
+
+    @Override
+    public double get(int row, int col) {
+      return chunks[row / rowsPerChunk].get((row % rowsPerChunk) * dimension + col);
+    }
+
+    @Override
+    public void addRowTo(int row, double[] out) {
+      FloatBuffer chunk = chunks[row / rowsPerChunk];
+      int start = (row % rowsPerChunk) * dimension;
+      for (int k = 0; k < dimension; k++) {
+        out[k] += chunk.get(start + k);
+      }
+    }
+
+    @Override
+    public void copyRow(int row, double[] out) {
+      MappedEmbeddingStore.this.copyRow(row, out);
+    }
+
+    @Override
+    public double dotRow(int row, int offset, double[] x, int length) {
+      FloatBuffer chunk = chunks[row / rowsPerChunk];
+      int start = (row % rowsPerChunk) * dimension + offset;
+      double sum = 0.0;
+      for (int k = 0; k < length; k++) {
+        sum += chunk.get(start + k) * x[k];
+      }
+      return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, float[] out) {
+      FloatBuffer chunk = chunks[row / rowsPerChunk];
+      int start = (row % rowsPerChunk) * dimension;
+      for (int k = 0; k < dimension; k++) {
+        out[k] += chunk.get(start + k);
+      }
+    }
+
+    @Override
+    public void copyRow(int row, float[] out) {
+      FloatBuffer chunk = chunks[row / rowsPerChunk].duplicate();
+      chunk.position((row % rowsPerChunk) * dimension);
+      chunk.get(out, 0, dimension);
+    }
+
+    @Override
+    public float dotRow(int row, int offset, float[] x, int length) {
+      FloatBuffer chunk = chunks[row / rowsPerChunk];
+      int start = (row % rowsPerChunk) * dimension + offset;
+      float sum = 0.0f;
+      for (int k = 0; k < length; k++) {
+        sum += chunk.get(start + k) * x[k];
+      }
+      return sum;
+    }
+
+    /** The vectors are outside the heap, so they take no heap space. */
+    @Override
+    public long sizeInBytes() {
+      return 0;
+    }
+  }
+
+
+  /**
+   * Writes the vectors of the given embedding to a file in this format.
+   */
+  public static void write(Embedding embedding, String path) throws IOException {
+    List<String> words = new ArrayList<>(embedding.keySet());
+    int numWords = words.size();
+    int dimension = embedding.getEmbeddingSize();
+    int tableSize = 4;
+    while (tableSize < numWords * 2) {  // at most half full
+      tableSize <<= 1;
+    }
+    int mask = tableSize - 1;
+
+    int[] table = new int[tableSize];
+    for (int row = 0; row < numWords; row++) {
+      int i = slot(words.get(row).hashCode(), mask);
+      while (table[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      table[i] = row + 1;
+    }
+
+    long wordsOffset = HEADER_SIZE + 4L * tableSize + 4L * numWords;
+    int[] wordOffsets = new int[numWords];
+    long wordBytes = 0;
+    for (int row = 0; row < numWords; row++) {
+      wordOffsets[row] = (int) wordBytes;
+      wordBytes += 4 + 2L * words.get(row).length();
+    }
+    long vectorsOffset = wordsOffset + wordBytes;
+    int padding = (int) ((4 - vectorsOffset % 4) % 4);
+    vectorsOffset += padding;
+    if (vectorsOffset > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many words to index in one file: " + numWords);
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+      out.writeLong(MAGIC);
+      out.writeInt(numWords);
+      out.writeInt(dimension);
+      out.writeInt(tableSize);
+      out.writeLong(wordsOffset);
+      out.writeLong(vectorsOffset);
+      for (int slot : table) {
+        out.writeInt(slot);
+      }
+      for (int offset : wordOffsets) {
+        out.writeInt(offset);
+      }
+      for (String word : words) {
+        out.writeInt(word.length());
+        out.writeChars(word);
+      }
+      for (int i = 0; i < padding; i++) {
+        out.writeByte(0);
+      }
+      for (String word : words) {
+        SimpleMatrix vector = embedding.get(word);
+        if (vector.getNumElements() < dimension) {
+          throw new IllegalArgumentException("Vector for " + word + " has only " + vector.getNumElements() + " elements");
+        }
+        for (int k = 0; k < dimension; k++) {
+          out.writeFloat((float) vector.get(k));
+        }
+      }
+    }
+  }
+
+  /**
+   * Converts word vectors to a mapped embedding file.
+   * <p>
+   * Usage: {@code java edu.stanford.nlp.neural.MappedEmbeddingStore -input vectors.txt -output vectors.emb}
+   * <br>
+   * The input may be a text file with one word and its vector per line,
+   * a pair of files given as {@code -words words.txt -input vectors.txt},
+   * or a serialized {@link Embedding} (if it ends in {@code .ser.gz} or {@code .ser}).
+   */
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    Properties props = StringUtils.argsToProperties(args);
+    String input = props.getProperty("input");
+    String output = props.getProperty("output");
+    if (input == null || output == null) {
+      log.info("Usage: java " + MappedEmbeddingStore.class.getName() + " -input vectors [-words words] -output file");
+      return;
+    }
+    Embedding embedding;
+    if (input.endsWith(".ser.gz") || input.endsWith(".ser")) {
+      embedding = IOUtils.readObjectFromURLOrClasspathOrFileSystem(input);
+    } else if (props.containsKey("words")) {
+      embedding = new Embedding(props.getProperty("words"), input);
+    } else {
+      embedding = new Embedding(input);
+    }
+    write(embedding, output);
+    log.info("Wrote " + embedding.size() + " vectors of size " + embedding.getEmbeddingSize() + " to " + output);
+  }
+
+}
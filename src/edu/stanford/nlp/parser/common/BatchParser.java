@@ -0,0 +1,178 @@
+package edu.stanford.nlp.parser.common;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.Deadline;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+/**
+ * The iterator behind {@link ParserGrammar#parseAll}.  Sentences are read
+ * from the input a window at a time.  The sentences of a window are sorted
+ * by length, longest first, and cut into buckets of sentences of about the
+ * same length, and each bucket is parsed as one task on the executor.
+ * Starting with the longest sentences keeps one long sentence from being
+ * left to run alone at the end of a window, and similar lengths in a
+ * bucket let a parser reuse its charts without growing them.
+ * <br>
+ * The tasks share a pool of {@link ParserQuery} objects: a task takes one,
+ * parses its whole bucket with it and puts it back, so there are only as
+ * many queries as tasks running at once.  When the input is used up the
+ * queries are dropped, or {@link ParserQuery#release released} if they
+ * were used on the caller's thread.
+ * <br>
+ * The next window is read and started while the caller is still taking
+ * the trees of the current one, so the threads are not left idle at the
+ * end of each window.
+ */
+class BatchParser implements Iterator<Tree> {
+
+  /** How many sentences are read, sorted and bucketed together */
+  static final int WINDOW_SIZE = 1024;
+  /** The most sentences parsed as one task */
+  static final int MAX_BUCKET_SIZE = 16;
+
+  private final ParserGrammar parser;
+  private final Iterator<? extends List<? extends HasWord>> input;
+  private final Executor executor;
+  private final Queue<ParserQuery> queries = new ConcurrentLinkedQueue<>();
+  private final Deque<Window> windows = new ArrayDeque<>();
+  /** The position of the next tree to return in the first window */
+  private int position = 0;
+
+  private class Window {
+    final List<List<? extends HasWord>> sentences;
+    final Tree[] trees;
+    /** The bucket each sentence was parsed in */
+    final int[] bucketOf;
+    final List<CompletableFuture<Void>> buckets = new ArrayList<>();
+
+    Window(List<List<? extends HasWord>> sentences) {
+      this.sentences = sentences;
+      int size = sentences.size();
+      trees = new Tree[size];
+      bucketOf = new int[size];
+
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; ++i) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (x, y) -> Integer.compare(sentences.get(y).size(), sentences.get(x).size()));
+      // small windows get smaller buckets, so every thread still has some
+      int bucketSize = Math.max(1, Math.min(MAX_BUCKET_SIZE, size / (4 * Runtime.getRuntime().availableProcessors())));
+      for (int start = 0; start < size; start += bucketSize) {
+        int[] bucket = new int[Math.min(bucketSize, size - start)];
+        for (int i = 0; i < bucket.length; ++i) {
+          bucket[i] = order[start + i];
+          bucketOf[bucket[i]] = buckets.size();
+        }
+        Runnable task = () -> parseBucket(this, bucket);
+        buckets.add(executor == null ? CompletableFuture.runAsync(task, Runnable::run) : CompletableFuture.runAsync(task, executor));
+      }
+    }
+  }
+
+  BatchParser(ParserGrammar parser, Iterator<? extends List<? extends HasWord>> input, Executor executor) {
+    this.parser = parser;
+    this.input = input;
+    this.executor = executor;
+  }
+
+  private void parseBucket(Window window, int[] bucket) {
+    ParserQuery pq = queries.poll();
+    if (pq == null) {
+      pq = parser.parserQuery();
+    }
+    boolean finished = false;
+    try {
+      for (int i : bucket) {
+        Deadline.checkForInterrupt();
+        window.trees[i] = parser.parse(pq, window.sentences.get(i));
+      }
+      finished = true;
+    } finally {
+      // a query which failed part way through might not be fit to use again
+      if (finished) {
+        queries.add(pq);
+      } else {
+        pq.release();
+      }
+    }
+  }
+
+  /** Read and start windows until there is one being parsed ahead of the current one, or the input runs out. */
+  private void fill() {
+    // without an executor the windows are parsed as they are read, so don't read ahead
+    int inFlight = executor == null ? 1 : 2;
+    while (windows.size() < inFlight && input.hasNext()) {
+      List<List<? extends HasWord>> sentences = new ArrayList<>(WINDOW_SIZE);
+      while (sentences.size() < WINDOW_SIZE && input.hasNext()) {
+        sentences.add(input.next());
+      }
+      windows.add(new Window(sentences));
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while ( ! windows.isEmpty() && position == windows.peekFirst().trees.length) {
+      windows.removeFirst();
+      position = 0;
+    }
+    fill();
+    if (windows.isEmpty()) {
+      if (executor == null) {
+        // the queries were used on this thread, so their charts can go back to it
+        ParserQuery pq;
+        while ((pq = queries.poll()) != null) {
+          pq.release();
+        }
+      } else {
+        // releasing them here would put the charts of the executor's threads in this thread's arena
+        queries.clear();
+      }
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public Tree next() {
+    if ( ! hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Window window = windows.peekFirst();
+    int i = position++;
+    await(window.buckets.get(window.bucketOf[i]));
+    Tree tree = window.trees[i];
+    window.trees[i] = null;
+    return tree;
+  }
+
+  private void await(CompletableFuture<Void> bucket) {
+    try {
+      bucket.get();
+    } catch (InterruptedException e) {
+      for (Window window : windows) {
+        for (CompletableFuture<Void> other : window.buckets) {
+          other.cancel(true);
+        }
+      }
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+}
@@ -3,6 +3,7 @@ package edu.stanford.nlp.parser.common;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 
 import edu.stanford.nlp.util.logging.Redwood;
@@ -143,6 +144,43 @@ public abstract class ParserGrammar implements Function<List<? extends HasWord>,
    */
   public abstract Tree parse(List<? extends HasWord> words);
 
+  /**
+   * Parses the list of HasWord with the given query, which can then be
+   * used for the next sentence.  If the parse fails, an X tree is
+   * returned instead.  This is what {@link #parse(List)} does with a new
+   * query, and what {@link #parseAll} does with the queries it reuses.
+   */
+  protected Tree parse(ParserQuery pq, List<? extends HasWord> words) {
+    if (pq.parse(words)) {
+      return pq.getBestParse();
+    }
+    return ParserUtils.xTree(words);
+  }
+
+  /**
+   * Parses many sentences on the threads of an executor, giving back the
+   * same trees as {@link #parse(List)} would, in the order of the input.
+   * <br>
+   * The sentences are read and parsed a window of about a thousand at a
+   * time, so the input can be a stream too long to keep in memory, and
+   * the trees of a window can be taken while the next one is parsed.
+   * Within a window the longest sentences are parsed first, in buckets of
+   * similar length, which keeps the threads evenly loaded, and each
+   * running task reuses one {@link ParserQuery} rather than making one per
+   * sentence.
+   * <br>
+   * Each call to {@code iterator()} on the result parses the input again.
+   * An exception from parsing a sentence is thrown from {@code next()}.
+   *
+   * @param sentences The sentences to parse
+   * @param executor The executor to parse on, or null to parse on the
+   *                 calling thread as the trees are asked for
+   * @return The parse of each sentence, in order
+   */
+  public Iterable<Tree> parseAll(Iterable<? extends List<? extends HasWord>> sentences, Executor executor) {
+    return () -> new BatchParser(this, sentences.iterator(), executor);
+  }
+
   /**
    * Returns a list of extra Eval objects to use when scoring the parser.
    */
@@ -73,4 +73,11 @@ public interface ParserQuery {
   boolean parseUnparsable();
 
   List<? extends HasWord> originalSentence();
+
+  /**
+   * Done with this query for now: let other queries on this thread reuse
+   * whatever working memory it sized for the last sentence.  The results of
+   * the last parse may be lost, but the query can still parse more sentences.
+   */
+  default void release() { }
 }
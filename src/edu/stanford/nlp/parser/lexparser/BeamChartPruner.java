@@ -0,0 +1,49 @@
+package edu.stanford.nlp.parser.lexparser;
+
+/**
+ * Removes the states of a span whose inside score is more than a fixed
+ * log probability below the best state of the span.  The inside score of a
+ * state doesn't include how likely its context is, so this can prune states
+ * which the best parse needs, but with a wide enough beam it rarely does,
+ * and it makes the larger spans much cheaper to fill in.
+ * Set with the {@code -cellBeam} option.
+ */
+public class BeamChartPruner implements ChartPruner {
+
+  private final float beam;
+
+  public BeamChartPruner(float beam) {
+    if ( ! (beam > 0.0f)) {
+      throw new IllegalArgumentException("The beam has to be positive, but got " + beam);
+    }
+    this.beam = beam;
+  }
+
+  /** Use the beam given with {@code -cellBeam}. */
+  public BeamChartPruner(Options op) {
+    this(op.testOptions.cellBeam);
+  }
+
+  @Override
+  public void pruneCell(int start, int end, float[] scores, int offset, int numStates) {
+    int stop = offset + numStates;
+    float best = Float.NEGATIVE_INFINITY;
+    for (int i = offset; i < stop; i++) {
+      if (scores[i] > best) {
+        best = scores[i];
+      }
+    }
+    float threshold = best - beam;
+    for (int i = offset; i < stop; i++) {
+      if (scores[i] < threshold) {
+        scores[i] = Float.NEGATIVE_INFINITY;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BeamChartPruner[beam=" + beam + ']';
+  }
+
+}
@@ -0,0 +1,172 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.*;
+
+import edu.stanford.nlp.util.MemoryMonitor;
+
+/**
+ * A per-thread pool of parser charts.  The exhaustive parsers size their
+ * arrays for the longest sentence they have seen, and a parser is made for
+ * each {@link LexicalizedParserQuery}, so code which makes a query per
+ * sentence would otherwise allocate and throw away the charts for every
+ * sentence.  Instead, a parser which is done with its arrays
+ * {@link #give gives} them to the arena of its thread, and the next parser
+ * on that thread with the same shape of chart {@link #take takes} them
+ * rather than allocating its own.
+ * <p>
+ * For each kind of chart the arena keeps the largest arrays it has been
+ * given, so it grows with the longest sentence, up to a limit of
+ * {@link #getMaxBytes()} per thread; bigger charts are left to the garbage
+ * collector.  When the heap runs low (see
+ * {@link MemoryMonitor#addLowMemoryListener}) every arena is emptied.
+ * <p>
+ * The arenas are shared by all the parsers in the JVM, so the limit is a
+ * global setting.  It defaults to a sixteenth of the maximum heap, and can be
+ * set in megabytes with the system property {@code chartArenaMB}, e.g.,
+ * {@code -DchartArenaMB=0} to turn pooling off, or with {@link #setMaxBytes}.
+ */
+public class ChartArena {
+
+  /** Arenas of all threads, so they can be trimmed from another thread. */
+  private static final Set<ChartArena> arenas = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+  private static final ThreadLocal<ChartArena> current = ThreadLocal.withInitial(() -> {
+    ChartArena arena = new ChartArena();
+    arenas.add(arena);
+    return arena;
+  });
+
+  private static volatile long maxBytes = defaultMaxBytes();
+
+  static {
+    MemoryMonitor.addLowMemoryListener(ChartArena::trimAll);
+  }
+
+  private static class Entry {
+    final Object arrays;
+    final int size;
+    final long bytes;
+
+    Entry(Object arrays, int size, long bytes) {
+      this.arrays = arrays;
+      this.size = size;
+      this.bytes = bytes;
+    }
+  }
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private long bytes = 0;
+
+  private ChartArena() { }
+
+  private static long defaultMaxBytes() {
+    String mb = System.getProperty("chartArenaMB");
+    if (mb == null) {
+      return Runtime.getRuntime().maxMemory() / 16;
+    }
+    long maxBytes = Long.parseLong(mb.trim()) * 1024L * 1024L;
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Negative chart arena limit " + mb);
+    }
+    return maxBytes;
+  }
+
+  /** The arena of the current thread. */
+  public static ChartArena current() {
+    return current.get();
+  }
+
+  /** The most memory, in bytes, the arena of one thread holds on to. */
+  public static long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Limit the memory each thread's arena holds on to, for all parsers in
+   * the JVM.  Arenas which are over
+   * the new limit shrink the next time they are given arrays.
+   *
+   * @param maxBytes The limit in bytes; 0 turns pooling off
+   */
+  public static void setMaxBytes(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Negative chart arena limit " + maxBytes);
+    }
+    ChartArena.maxBytes = maxBytes;
+  }
+
+  /**
+   * Remove and return the arrays kept under the given key, if they are for
+   * sentences of at least the given size.  Smaller arrays are dropped, since
+   * the caller is about to allocate bigger ones.
+   *
+   * @return The arrays, or null if there are none big enough
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> T take(String key, int size) {
+    Entry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    bytes -= entry.bytes;
+    return entry.size >= size ? (T) entry.arrays : null;
+  }
+
+  /**
+   * Keep arrays for reuse, unless larger ones are already kept under the
+   * same key or they would take the arena over its limit.
+   *
+   * @param key The kind of chart; arrays are only handed to callers asking for the same key
+   * @param arrays The arrays.  The caller must not use them again.
+   * @param size The sentence size the arrays are good for
+   * @param bytes Roughly how much memory the arrays take up
+   */
+  public synchronized void give(String key, Object arrays, int size, long bytes) {
+    if (bytes > maxBytes) {
+      return;
+    }
+    Entry old = entries.get(key);
+    if (old != null) {
+      if (old.size >= size) {
+        return;
+      }
+      entries.remove(key);
+      this.bytes -= old.bytes;
+    }
+    // make room by dropping other charts, biggest first
+    while (this.bytes + bytes > maxBytes) {
+      String biggest = null;
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        if (biggest == null || e.getValue().bytes > entries.get(biggest).bytes) {
+          biggest = e.getKey();
+        }
+      }
+      this.bytes -= entries.remove(biggest).bytes;
+    }
+    entries.put(key, new Entry(arrays, size, bytes));
+    this.bytes += bytes;
+  }
+
+  /** How much memory, in bytes, the arena is holding on to. */
+  public synchronized long bytes() {
+    return bytes;
+  }
+
+  /** Drop all the arrays kept in this arena. */
+  public synchronized void trim() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /** Drop the arrays kept in the arenas of all threads. */
+  public static void trimAll() {
+    List<ChartArena> all;
+    synchronized (arenas) {
+      all = new ArrayList<>(arenas);
+    }
+    for (ChartArena arena : all) {
+      arena.trim();
+    }
+  }
+
+}
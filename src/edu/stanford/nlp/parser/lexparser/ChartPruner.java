@@ -0,0 +1,48 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * Decides which parts of the chart {@link ExhaustivePCFGParser} can leave
+ * out, to save time on long sentences.  A pruner can skip whole spans, e.g.,
+ * those a span classifier or a coarse grammar thinks are unlikely to be
+ * constituents, and can remove unlikely states from a span once its inside
+ * scores are known, e.g., those outside a beam.
+ * <p>
+ * The span of the whole sentence is never pruned, and if pruning removes
+ * every parse, the parser parses the sentence again without it.
+ * <p>
+ * A pruner named with the {@code -chartPruner} option must have a public
+ * constructor which takes the parser's {@link Options}.  A parser calls its
+ * pruner from one thread at a time.
+ */
+public interface ChartPruner {
+
+  /**
+   * Called before the chart is filled in for a sentence.
+   *
+   * @param sentence The words, or null if a lattice is being parsed
+   * @param length The length of the sentence, including the boundary symbol
+   */
+  default void initialize(List<? extends HasWord> sentence, int length) { }
+
+  /**
+   * Whether to fill in the span [start, end), which is at least two words
+   * long.  Spans which aren't filled in have no constituents.
+   */
+  default boolean keepSpan(int start, int end) {
+    return true;
+  }
+
+  /**
+   * Called once the inside scores of the span [start, end) are complete.
+   * States are removed by setting their scores to negative infinity.
+   *
+   * @param scores The inside scores of the chart; those of this span are
+   *               {@code scores[offset]} to {@code scores[offset + numStates - 1]}
+   */
+  default void pruneCell(int start, int end, float[] scores, int offset, int numStates) { }
+
+}
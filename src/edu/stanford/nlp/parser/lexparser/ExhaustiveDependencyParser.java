@@ -29,6 +29,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.util.*;
 
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Index;
 import edu.stanford.nlp.util.Timing;
 import edu.stanford.nlp.util.StringUtils;
@@ -44,7 +45,6 @@ import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.ling.Label;
 import edu.stanford.nlp.ling.Word;
 import edu.stanford.nlp.parser.KBestViterbiParser;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 
 /**
@@ -179,11 +179,16 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
     if (length > arraySize) {
       if (length > op.testOptions.maxLength + 1 || length >= myMaxLength) {
         throw new OutOfMemoryError("Refusal to create such large arrays.");
+      } else if (takeArrays(length + 1)) {
+        if (op.testOptions.verbose) {
+          log.info("Reused dparser arrays of size " + arraySize);
+        }
       } else {
         try {
           createArrays(length + 1);
         } catch (OutOfMemoryError e) {
           myMaxLength = length;
+          ChartArena.current().trim();
           if (arraySize > 0) {
             try {
               createArrays(arraySize);
@@ -231,9 +236,7 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
       }
     }
 
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
 
     // do tags
     for (int start = 0; start + 1 <= length; start++) {
@@ -358,9 +361,7 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
     }
     // do larger spans
     for (int diff = 2; diff <= length; diff++) {
-      if (Thread.interrupted()) {
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();
       if (DEBUG_MORE) log.info("SPAN " + diff + ": score = headPrev + argLeft + argRight + dep + argLStop + argRStop");
       for (int start = 0; start + diff <= length; start++) {
         int end = start + diff;
@@ -495,9 +496,7 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
     oScoreH[length - 1][goalTag][0] = 0.0f;
     oScoreH[length - 1][goalTag][length] = 0.0f;
     for (int diff = length; diff > 1; diff--) {
-      if (Thread.interrupted()) {
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();
       for (int start = 0; start + diff <= length; start++) {
         int end = start + diff;
         // left half
@@ -572,9 +571,7 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
         Arrays.fill(oPossibleByR[loc][head], false);
       }
     }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
     for (int head = 0; head < length; head++) {
       for (int tag = 0; tag < numTags; tag++) {
         if (!hasTag[head][tag]) {
@@ -807,6 +804,88 @@ public class ExhaustiveDependencyParser implements Scorer, KBestViterbiParser  {
     binDistance = new int[length + 1][length + 1];
   }
 
+  /**
+   * Give this parser's arrays to the current thread's {@link ChartArena}, so
+   * that the next parser for the same grammar on this thread can reuse them.
+   * The results of the last parse are lost, but the parser can go on
+   * parsing, with arrays from the arena or new ones.
+   */
+  public void releaseArrays() {
+    if (arraySize > 0 && iScoreH != null) {
+      ChartArena.current().give(chartKey(), new Chart(this), arraySize, chartBytes());
+    }
+    iScoreH = oScoreH = headStop = iScoreHSum = null;
+    iPossibleByL = iPossibleByR = oPossibleByL = oPossibleByR = null;
+    headScore = null;
+    rawDistance = binDistance = null;
+    arraySize = 0;
+  }
+
+  /** Take arrays for sentences of at least the given size from the {@link ChartArena}, if it has some. */
+  private boolean takeArrays(int size) {
+    Chart chart = ChartArena.current().take(chartKey(), size);
+    if (chart == null) {
+      return false;
+    }
+    chart.restore(this);
+    return true;
+  }
+
+  /** Parsers with the same key make the same arrays, which only differ in their size. */
+  private String chartKey() {
+    return "dep:" + dg.numTagBins() + ':' + dg.numDistBins();
+  }
+
+  /** Roughly how many bytes the arrays take up. */
+  private long chartBytes() {
+    long size = arraySize + 1;
+    long tagNum = dg.numTagBins();
+    long bytes = 3 * 4 * size * tagNum * size; // iScoreH, oScoreH, headStop
+    bytes += 4 * size * size * tagNum; // possibles
+    bytes += 4L * dg.numDistBins() * arraySize * tagNum * arraySize * tagNum; // headScore
+    bytes += 2 * 4 * size * size; // distances
+    return bytes;
+  }
+
+  /** The arrays of a parser, while they are kept in a {@link ChartArena}. */
+  private static class Chart {
+    final float[][][] iScoreH, oScoreH, iScoreHSum, headStop;
+    final float[][][][][] headScore;
+    final int[][] rawDistance, binDistance;
+    final boolean[][][] iPossibleByL, iPossibleByR, oPossibleByL, oPossibleByR;
+    final int size;
+
+    Chart(ExhaustiveDependencyParser parser) {
+      iScoreH = parser.iScoreH;
+      oScoreH = parser.oScoreH;
+      iScoreHSum = parser.iScoreHSum;
+      headStop = parser.headStop;
+      headScore = parser.headScore;
+      rawDistance = parser.rawDistance;
+      binDistance = parser.binDistance;
+      iPossibleByL = parser.iPossibleByL;
+      iPossibleByR = parser.iPossibleByR;
+      oPossibleByL = parser.oPossibleByL;
+      oPossibleByR = parser.oPossibleByR;
+      size = parser.arraySize;
+    }
+
+    void restore(ExhaustiveDependencyParser parser) {
+      parser.iScoreH = iScoreH;
+      parser.oScoreH = oScoreH;
+      parser.iScoreHSum = iScoreHSum;
+      parser.headStop = headStop;
+      parser.headScore = headScore;
+      parser.rawDistance = rawDistance;
+      parser.binDistance = binDistance;
+      parser.iPossibleByL = iPossibleByL;
+      parser.iPossibleByR = iPossibleByR;
+      parser.oPossibleByL = oPossibleByL;
+      parser.oPossibleByR = oPossibleByR;
+      parser.arraySize = size;
+    }
+  }
+
   /** Get the exact k best parses for the sentence.
    *
    *  @param k The number of best parses to return
@@ -80,13 +80,15 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   protected OutsideRuleFilter orf;
 
+  // The chart arrays are flattened: the entries for the states over the span
+  // [start, end) are at cell(start, end) + state.  See cell().
   // inside scores
-  protected float[][][] iScore;  // start idx, end idx, state -> logProb (ragged; null for end <= start)
+  protected float[] iScore;  // cell(start, end) + state -> logProb
   // outside scores
-  protected float[][][] oScore;  // start idx, end idx, state -> logProb
+  protected float[] oScore;  // cell(start, end) + state -> logProb
   protected float bestScore;
 
-  protected int[][][] wordsInSpan; // number of words in span with this state
+  protected int[] wordsInSpan; // cell(start, end) + state -> number of words in span with this state
 
   protected boolean[][] oFilteredStart; // [start][state]; only used by unused outsideRuleFilter
   protected boolean[][] oFilteredEnd; // [end][state]; only used by unused outsideRuleFilter
@@ -105,9 +107,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
   protected boolean[][] tags;
   protected int myMaxLength = -0xDEADBEEF;
 
+  /**
+   * The number of states which get entries in each chart cell.  States are
+   * numbered as in the stateIndex, but states after the last one used by a
+   * rule, a tag or the goal can never be built, so the chart leaves them out.
+   */
   protected final int numStates;
   protected int arraySize = 0;
 
+  /** Decides which spans and states to skip, or null to fill the whole chart */
+  protected ChartPruner pruner;
+  /** Whether pruning is turned off for the current sentence, because it pruned away every parse */
+  private boolean pruningFailed;
+
   /**
    * When you want to force the parser to parse a particular
    * subsequence into a particular state.  Parses will only be made
@@ -146,9 +158,9 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   @Override
   public double oScore(Edge edge) {
-    double oS = oScore[edge.start][edge.end][edge.state];
+    double oS = oScore[cell(edge.start, edge.end) + edge.state];
     if (op.testOptions.pcfgThreshold) {
-      double iS = iScore[edge.start][edge.end][edge.state];
+      double iS = iScore[cell(edge.start, edge.end) + edge.state];
       if (iS + oS - bestScore < op.testOptions.pcfgThresholdValue) {
         return Double.NEGATIVE_INFINITY;
       }
@@ -158,7 +170,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   @Override
   public double iScore(Edge edge) {
-    return iScore[edge.start][edge.end][edge.state];
+    return iScore[cell(edge.start, edge.end) + edge.state];
   }
 
   @Override
@@ -214,7 +226,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       int word = wordIndex.indexOf(wordStr);
       IntTaggedWord iTW = new IntTaggedWord(word, tag);
       float score = lex.score(iTW, start, wordStr, null);
-      float bound = iScore[start][start + 1][stateIndex.indexOf(tree.label().value())];
+      float bound = iScore[cell(start, start + 1) + stateIndex.indexOf(tree.label().value())];
       if (score > bound + epsilon) {
         System.out.println("Invalid tagging:");
         System.out.println("  Tag: " + tree.label().value());
@@ -229,7 +241,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (tree.numChildren() == 1) {
       UnaryRule ur = new UnaryRule(parent, firstChild);
       double score = SloppyMath.max(ug.scoreRule(ur), -10000.0) + validateBinarizedTree(tree.children()[0], start);
-      double bound = iScore[start][start + tree.yield().size()][parent];
+      double bound = iScore[cell(start, start + tree.yield().size()) + parent];
       if (score > bound + epsilon) {
         System.out.println("Invalid unary:");
         System.out.println("  Parent: " + tree.label().value());
@@ -244,7 +256,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     int secondChild = stateIndex.indexOf(tree.children()[1].label().value());
     BinaryRule br = new BinaryRule(parent, firstChild, secondChild);
     double score = SloppyMath.max(bg.scoreRule(br), -10000.0) + validateBinarizedTree(tree.children()[0], start) + validateBinarizedTree(tree.children()[1], start + tree.children()[0].yield().size());
-    double bound = iScore[start][start + tree.yield().size()][parent];
+    double bound = iScore[cell(start, start + tree.yield().size()) + parent];
     if (score > bound + epsilon) {
       System.out.println("Invalid binary:");
       System.out.println("  Parent: " + tree.label().value());
@@ -420,23 +432,17 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (spillGuts) {
       tick("Wiping arrays...");
     }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
+    Deadline.checkForInterrupt();
+    // the cells of this sentence are a prefix of the arrays
+    int usedCells = cell(0, length + 1);
+    Arrays.fill(iScore, 0, usedCells, Float.NEGATIVE_INFINITY);
+    if (op.doDep && ! op.testOptions.useFastFactored) {
+      Arrays.fill(oScore, 0, usedCells, Float.NEGATIVE_INFINITY);
     }
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
-        if (op.doDep && ! op.testOptions.useFastFactored) {
-          Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
-        }
-        if (op.testOptions.lengthNormalization) {
-          Arrays.fill(wordsInSpan[start][end], 1);
-        }
-      }
-    }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
+    if (op.testOptions.lengthNormalization) {
+      Arrays.fill(wordsInSpan, 0, usedCells, 1);
     }
+    Deadline.checkForInterrupt();
     for (int loc = 0; loc <= length; loc++) {
       Arrays.fill(narrowLExtent[loc], -1); // the rightmost left with state s ending at i that we can get is the beginning
       Arrays.fill(wideLExtent[loc], length + 1); // the leftmost left with state s ending at i that we can get is the end
@@ -453,14 +459,15 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       op.tlpParams.pw(System.err).println("Unknown words: " + unk + " " + unkWords);
       log.info("Starting filters...");
     }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
     // do tags
     if (spillGuts) {
       tick("Tagging...");
     }
     initializeChart(sentence);
+    if (activePruner() != null) {
+      pruner.initialize(sentence, length);
+    }
     //if (op.testOptions.outsideFilter)
     // buildOFilter();
     if (op.testOptions.verbose) {
@@ -472,10 +479,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (op.testOptions.verbose) {
       // insideTime += Timing.tick("done.");
       Timing.tick("done.");
-      System.out.println("PCFG parsing " + length + " words (incl. stop): insideScore = " + iScore[0][length][goal]);
+      System.out.println("PCFG parsing " + length + " words (incl. stop): insideScore = " + iScore[cell(0, length) + goal]);
     }
-    bestScore = iScore[0][length][goal];
+    bestScore = iScore[cell(0, length) + goal];
     boolean succeeded = hasParse();
+    if ( ! succeeded && activePruner() != null) {
+      // pruning removed every parse, so fill in the whole chart
+      pruningFailed = true;
+      try {
+        return parse(sentence);
+      } finally {
+        pruningFailed = false;
+      }
+    }
     if (op.testOptions.doRecovery && !succeeded && !floodTags) {
       floodTags = true; // sentence will try to reparse
       // ms: disabled message. this is annoying and it doesn't really provide much information
@@ -489,7 +505,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       log.info("Starting outsides...");
     }
     // outside scores
-    oScore[0][length][goal] = 0.0f;
+    oScore[cell(0, length) + goal] = 0.0f;
     doOutsideScores();
     //System.out.println("State rate: "+((int)(1000*ohits/otries))/10.0);
     //System.out.println("Traversals: "+ohits);
@@ -502,9 +518,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       initializePossibles();
     }
 
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
 
     return succeeded;
   }
@@ -586,12 +600,9 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 //      words[i++] = wordNumberer.number(s);
 //    }
 
-    for (int start = 0; start < length; start++) {
-    	for (int end = start + 1; end <= length; end++) {
-    		Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
-    		if (op.doDep) Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
-    	}
-    }
+    int usedCells = cell(0, length + 1);
+    Arrays.fill(iScore, 0, usedCells, Float.NEGATIVE_INFINITY);
+    if (op.doDep) Arrays.fill(oScore, 0, usedCells, Float.NEGATIVE_INFINITY);
 
     for (int loc = 0; loc <= length; loc++) {
       Arrays.fill(narrowLExtent[loc], -1); // the rightmost left with state s ending at i that we can get is the beginning
@@ -603,9 +614,12 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     }
 
     initializeChart(lr);
+    if (activePruner() != null) {
+      pruner.initialize(null, length);
+    }
 
     doInsideScores();
-    bestScore = iScore[0][length][goal];
+    bestScore = iScore[cell(0, length) + goal];
 
     if (op.testOptions.verbose) {
       Timing.tick("done.");
@@ -614,6 +628,16 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
     boolean succeeded = hasParse();
 
+    if ( ! succeeded && activePruner() != null) {
+      // pruning removed every parse, so fill in the whole chart
+      pruningFailed = true;
+      try {
+        return parse(lr);
+      } finally {
+        pruningFailed = false;
+      }
+    }
+
     // Try a recovery parse
     if (!succeeded && op.testOptions.doRecovery && !floodTags) {
       floodTags = true;
@@ -622,7 +646,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       if(!succeeded) return false;
     }
 
-    oScore[0][length][goal] = 0.0f;
+    oScore[cell(0, length) + goal] = 0.0f;
     doOutsideScores();
 
     if (op.testOptions.verbose) {
@@ -651,7 +675,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     for (int start = 0; start < length; start++) {
       for (int end = start + 1; end <= length; end++) {
         for (int state = 0; state < numStates; state++) {
-          if (iScore[start][end][state] > Float.NEGATIVE_INFINITY && oScore[start][end][state] > Float.NEGATIVE_INFINITY) {
+          if (iScore[cell(start, end) + state] > Float.NEGATIVE_INFINITY && oScore[cell(start, end) + state] > Float.NEGATIVE_INFINITY) {
             iPossibleByL[start][state] = true;
             iPossibleByR[end][state] = true;
             oPossibleByL[start][state] = true;
@@ -664,15 +688,13 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   private void doOutsideScores() {
     for (int diff = length; diff >= 1; diff--) {
-      if (Thread.interrupted()) {
-        throw new RuntimeInterruptedException();
-      }
-
       for (int start = 0; start + diff <= length; start++) {
+        Deadline.checkForInterrupt();  // once per chart cell, which is far more work than the check
         int end = start + diff;
+        int startEnd = cell(start, end);
         // do unaries
         for (int s = 0; s < numStates; s++) {
-          float oS = oScore[start][end][s];
+          float oS = oScore[startEnd + s];
           if (oS == Float.NEGATIVE_INFINITY) {
             continue;
           }
@@ -680,8 +702,8 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
           for (UnaryRule ur : rules) {
             float pS = ur.score;
             float tot = oS + pS;
-            if (tot > oScore[start][end][ur.child] && iScore[start][end][ur.child] > Float.NEGATIVE_INFINITY) {
-              oScore[start][end][ur.child] = tot;
+            if (tot > oScore[startEnd + ur.child] && iScore[startEnd + ur.child] > Float.NEGATIVE_INFINITY) {
+              oScore[startEnd + ur.child] = tot;
             }
           }
         }
@@ -693,7 +715,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
           }
           BinaryRule[] rules = bg.splitRulesWithLC(s);
           for (BinaryRule br  : rules) {
-            float oS = oScore[start][end][br.parent];
+            float oS = oScore[startEnd + br.parent];
             if (oS == Float.NEGATIVE_INFINITY) {
               continue;
             }
@@ -717,21 +739,23 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
             }
             float pS = br.score;
             for (int split = min; split <= max; split++) {
-              float lS = iScore[start][split][br.leftChild];
+              int startSplit = cell(start, split);
+              int splitEnd = cell(split, end);
+              float lS = iScore[startSplit + br.leftChild];
               if (lS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
-              float rS = iScore[split][end][br.rightChild];
+              float rS = iScore[splitEnd + br.rightChild];
               if (rS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
               float totL = pS + rS + oS;
-              if (totL > oScore[start][split][br.leftChild]) {
-                oScore[start][split][br.leftChild] = totL;
+              if (totL > oScore[startSplit + br.leftChild]) {
+                oScore[startSplit + br.leftChild] = totL;
               }
               float totR = pS + lS + oS;
-              if (totR > oScore[split][end][br.rightChild]) {
-                oScore[split][end][br.rightChild] = totR;
+              if (totR > oScore[splitEnd + br.rightChild]) {
+                oScore[splitEnd + br.rightChild] = totR;
               }
             }
           }
@@ -743,7 +767,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
           }
           BinaryRule[] rules = bg.splitRulesWithRC(s);
           for (BinaryRule br : rules) {
-            float oS = oScore[start][end][br.parent];
+            float oS = oScore[startEnd + br.parent];
             if (oS == Float.NEGATIVE_INFINITY) {
               continue;
             }
@@ -767,29 +791,31 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
             }
             float pS = br.score;
             for (int split = min; split <= max; split++) {
-              float lS = iScore[start][split][br.leftChild];
+              int startSplit = cell(start, split);
+              int splitEnd = cell(split, end);
+              float lS = iScore[startSplit + br.leftChild];
               if (lS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
-              float rS = iScore[split][end][br.rightChild];
+              float rS = iScore[splitEnd + br.rightChild];
               if (rS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
               float totL = pS + rS + oS;
-              if (totL > oScore[start][split][br.leftChild]) {
-                oScore[start][split][br.leftChild] = totL;
+              if (totL > oScore[startSplit + br.leftChild]) {
+                oScore[startSplit + br.leftChild] = totL;
               }
               float totR = pS + lS + oS;
-              if (totR > oScore[split][end][br.rightChild]) {
-                oScore[split][end][br.rightChild] = totR;
+              if (totR > oScore[splitEnd + br.rightChild]) {
+                oScore[splitEnd + br.rightChild] = totR;
               }
             }
           }
         }
         /*
           for (int s = 0; s < numStates; s++) {
-          float oS = oScore[start][end][s];
-          //if (iScore[start][end][s] == Float.NEGATIVE_INFINITY ||
+          float oS = oScore[cell(start, end) + s];
+          //if (iScore[cell(start, end) + s] == Float.NEGATIVE_INFINITY ||
           //             oS == Float.NEGATIVE_INFINITY)
           if (oS == Float.NEGATIVE_INFINITY)
           continue;
@@ -812,19 +838,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
               continue;
 float pS = (float) br.score;
 for (int split = min; split <= max; split++) {
-float lS = iScore[start][split][br.leftChild];
+float lS = iScore[cell(start, split) + br.leftChild];
 if (lS == Float.NEGATIVE_INFINITY)
           continue;
-float rS = iScore[split][end][br.rightChild];
+float rS = iScore[cell(split, end) + br.rightChild];
               if (rS == Float.NEGATIVE_INFINITY)
 continue;
 float totL = pS+rS+oS;
-if (totL > oScore[start][split][br.leftChild]) {
-oScore[start][split][br.leftChild] = totL;
+if (totL > oScore[cell(start, split) + br.leftChild]) {
+oScore[cell(start, split) + br.leftChild] = totL;
 }
 float totR = pS+lS+oS;
-if (totR > oScore[split][end][br.rightChild]) {
-oScore[split][end][br.rightChild] = totR;
+if (totR > oScore[cell(split, end) + br.rightChild]) {
+oScore[cell(split, end) + br.rightChild] = totR;
 }
 }
 }
@@ -838,16 +864,19 @@ oScore[split][end][br.rightChild] = totR;
    *  of length 2 or more.
    */
   void doInsideScores() {
+    ChartPruner pruner = activePruner();
     for (int diff = 2; diff <= length; diff++) {
-      if (Thread.interrupted()) {
-        throw new RuntimeInterruptedException();
-      }
-
       // usually stop one short because boundary symbol only combines
       // with whole sentence span. So for 3 word sentence + boundary = 4,
       // length == 4, and do [0,2], [1,3]; [0,3]; [0,4]
       for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
-        doInsideChartCell(diff, start);
+        Deadline.checkForInterrupt();  // once per chart cell, which is far more work than the check
+        if (pruner == null || diff == length) {
+          doInsideChartCell(diff, start);
+        } else if (pruner.keepSpan(start, start + diff)) {
+          doInsideChartCell(diff, start);
+          pruner.pruneCell(start, start + diff, iScore, cell(start, start + diff), numStates);
+        }
       } // for start
     } // for diff (i.e., span)
   } // end doInsideScores()
@@ -876,8 +905,7 @@ oScore[split][end][br.rightChild] = totR;
     int[] wideRExtent_start = wideRExtent[start];
     int[] narrowLExtent_end = narrowLExtent[end];
     int[] wideLExtent_end = wideLExtent[end];
-    float[][] iScore_start = iScore[start];
-    float[] iScore_start_end = iScore_start[end];
+    final int startEnd = cell(start, end);
 
     for (int leftState = 0; leftState < numStates; leftState++) {
       int narrowR = narrowRExtent_start[leftState];
@@ -905,7 +933,7 @@ oScore[split][end][br.rightChild] = totR;
         }
         float pS = rule.score;
         int parentState = rule.parent;
-        float oldIScore = iScore_start_end[parentState];
+        float oldIScore = iScore[startEnd + parentState];
         float bestIScore = oldIScore;
         boolean foundBetter;  // always set below for this rule
         //System.out.println("Min "+min+" max "+max+" start "+start+" end "+end);
@@ -943,11 +971,11 @@ oScore[split][end][br.rightChild] = totR;
               }
             }
 
-            float lS = iScore_start[split][leftState];
+            float lS = iScore[cell(start, split) + leftState];
             if (lS == Float.NEGATIVE_INFINITY) {
               continue;
             }
-            float rS = iScore[split][end][rightChild];
+            float rS = iScore[cell(split, end) + rightChild];
             if (rS == Float.NEGATIVE_INFINITY) {
               continue;
             }
@@ -960,21 +988,21 @@ oScore[split][end][br.rightChild] = totR;
           foundBetter = bestIScore > oldIScore;
         } else {
           // find split that uses this rule to make the max *length normalized* score
-          int bestWordsInSpan = wordsInSpan[start][end][parentState];
+          int bestWordsInSpan = wordsInSpan[cell(start, end) + parentState];
           float oldNormIScore = oldIScore / bestWordsInSpan;
           float bestNormIScore = oldNormIScore;
 
           for (int split = min; split <= max; split++) {
-            float lS = iScore_start[split][leftState];
+            float lS = iScore[cell(start, split) + leftState];
             if (lS == Float.NEGATIVE_INFINITY) {
               continue;
             }
-            float rS = iScore[split][end][rightChild];
+            float rS = iScore[cell(split, end) + rightChild];
             if (rS == Float.NEGATIVE_INFINITY) {
               continue;
             }
             float tot = pS + lS + rS;
-            int newWordsInSpan = wordsInSpan[start][split][leftState] + wordsInSpan[split][end][rightChild];
+            int newWordsInSpan = wordsInSpan[cell(start, split) + leftState] + wordsInSpan[cell(split, end) + rightChild];
             float normTot = tot / newWordsInSpan;
             if (normTot > bestNormIScore) {
               bestIScore = tot;
@@ -984,11 +1012,11 @@ oScore[split][end][br.rightChild] = totR;
           } // for split point
           foundBetter = bestNormIScore > oldNormIScore;
           if (foundBetter) {
-            wordsInSpan[start][end][parentState] = bestWordsInSpan;
+            wordsInSpan[cell(start, end) + parentState] = bestWordsInSpan;
           }
         } // fi op.testOptions.lengthNormalization
         if (foundBetter) { // this way of making "parentState" is better than previous
-          iScore_start_end[parentState] = bestIScore;
+          iScore[startEnd + parentState] = bestIScore;
 
           if (spillGuts) log.info("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end + " score " + bestIScore);
           if (oldIScore == Float.NEGATIVE_INFINITY) {
@@ -1035,7 +1063,7 @@ oScore[split][end][br.rightChild] = totR;
         }
         float pS = rule.score;
         int parentState = rule.parent;
-        float oldIScore = iScore_start_end[parentState];
+        float oldIScore = iScore[startEnd + parentState];
         float bestIScore = oldIScore;
         boolean foundBetter; // always initialized below
         //System.out.println("Start "+start+" end "+end+" min "+min+" max "+max);
@@ -1074,13 +1102,13 @@ oScore[split][end][br.rightChild] = totR;
               }
             }
 
-            float lS = iScore_start[split][leftChild];
+            float lS = iScore[cell(start, split) + leftChild];
             // cdm [2012]: Test whether removing these 2 tests might speed things up because less branching?
             // jab [2014]: oddly enough, removing these tests helps the chinese parser but not the english parser.
             if (lS == Float.NEGATIVE_INFINITY) {
               continue;
             }
-            float rS = iScore[split][end][rightState];
+            float rS = iScore[cell(split, end) + rightState];
             if (rS == Float.NEGATIVE_INFINITY) {
               continue;
             }
@@ -1092,20 +1120,20 @@ oScore[split][end][br.rightChild] = totR;
           foundBetter = bestIScore > oldIScore;
         } else {
           // find split that uses this rule to make the max *length normalized* score
-          int bestWordsInSpan = wordsInSpan[start][end][parentState];
+          int bestWordsInSpan = wordsInSpan[cell(start, end) + parentState];
           float oldNormIScore = oldIScore / bestWordsInSpan;
           float bestNormIScore = oldNormIScore;
           for (int split = min; split <= max; split++) {
-            float lS = iScore_start[split][leftChild];
+            float lS = iScore[cell(start, split) + leftChild];
             if (lS == Float.NEGATIVE_INFINITY) {
               continue;
             }
-            float rS = iScore[split][end][rightState];
+            float rS = iScore[cell(split, end) + rightState];
             if (rS == Float.NEGATIVE_INFINITY) {
               continue;
             }
             float tot = pS + lS + rS;
-            int newWordsInSpan = wordsInSpan[start][split][leftChild] + wordsInSpan[split][end][rightState];
+            int newWordsInSpan = wordsInSpan[cell(start, split) + leftChild] + wordsInSpan[cell(split, end) + rightState];
             float normTot = tot / newWordsInSpan;
             if (normTot > bestNormIScore) {
               bestIScore = tot;
@@ -1115,11 +1143,11 @@ oScore[split][end][br.rightChild] = totR;
           } // end for split
           foundBetter = bestNormIScore > oldNormIScore;
           if (foundBetter) {
-            wordsInSpan[start][end][parentState] = bestWordsInSpan;
+            wordsInSpan[cell(start, end) + parentState] = bestWordsInSpan;
           }
         } // end if lengthNormalization
         if (foundBetter) { // this way of making "parentState" is better than previous
-          iScore_start_end[parentState] = bestIScore;
+          iScore[startEnd + parentState] = bestIScore;
           if (spillGuts) log.info("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end + " with score " + bestIScore);
           if (oldIScore == Float.NEGATIVE_INFINITY) {
             if (start > narrowLExtent_end[parentState]) {
@@ -1141,7 +1169,7 @@ oScore[split][end][br.rightChild] = totR;
     }
     // do unary rules -- one could promote this loop and put start inside
     for (int state = 0; state < numStates; state++) {
-      float iS = iScore_start_end[state];
+      float iS = iScore[startEnd + state];
       if (iS == Float.NEGATIVE_INFINITY) {
         continue;
       }
@@ -1170,23 +1198,23 @@ oScore[split][end][br.rightChild] = totR;
         int parentState = ur.parent;
         float pS = ur.score;
         float tot = iS + pS;
-        float cur = iScore_start_end[parentState];
+        float cur = iScore[startEnd + parentState];
         boolean foundBetter;  // always set below
         if (lengthNormalization) {
-          int totWordsInSpan = wordsInSpan[start][end][state];
+          int totWordsInSpan = wordsInSpan[cell(start, end) + state];
           float normTot = tot / totWordsInSpan;
-          int curWordsInSpan = wordsInSpan[start][end][parentState];
+          int curWordsInSpan = wordsInSpan[cell(start, end) + parentState];
           float normCur = cur / curWordsInSpan;
           foundBetter = normTot > normCur;
           if (foundBetter) {
-            wordsInSpan[start][end][parentState] = wordsInSpan[start][end][state];
+            wordsInSpan[cell(start, end) + parentState] = wordsInSpan[cell(start, end) + state];
           }
         } else {
           foundBetter = (tot > cur);
         }
         if (foundBetter) {
           if (spillGuts) log.info("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end + " with score " + tot);
-          iScore_start_end[parentState] = tot;
+          iScore[startEnd + parentState] = tot;
           if (cur == Float.NEGATIVE_INFINITY) {
             if (start > narrowLExtent_end[parentState]) {
               narrowLExtent_end[parentState] = wideLExtent_end[parentState] = start;
@@ -1217,8 +1245,8 @@ oScore[split][end][br.rightChild] = totR;
           IntTaggedWord itw = new IntTaggedWord(word, stateIndex.get(state), wordIndex, tagIndex);
 
           float newScore = lex.score(itw, start, word, null) + (float) edge.weight;
-          if (newScore > iScore[start][end][state]) {
-            iScore[start][end][state] = newScore;
+          if (newScore > iScore[cell(start, end) + state]) {
+            iScore[cell(start, end) + state] = newScore;
             narrowRExtent[start][state] = Math.min(end, narrowRExtent[start][state]);
             narrowLExtent[end][state] = Math.max(start, narrowLExtent[end][state]);
             wideRExtent[start][state] = Math.max(end, wideRExtent[start][state]);
@@ -1230,9 +1258,9 @@ oScore[split][end][br.rightChild] = totR;
       // Give scores to all tags if the parse fails (more flexible tagging)
       if (floodTags && (!op.testOptions.noRecoveryTagging)) {
         for (int state = 0; state < numStates; state++) {
-          float iS = iScore[start][end][state];
+          float iS = iScore[cell(start, end) + state];
           if (isTag[state] && iS == Float.NEGATIVE_INFINITY) {
-            iScore[start][end][state] = -1000.0f + (float) edge.weight;
+            iScore[cell(start, end) + state] = -1000.0f + (float) edge.weight;
             narrowRExtent[start][state] = end;
             narrowLExtent[end][state] = start;
             wideRExtent[start][state] = end;
@@ -1243,7 +1271,7 @@ oScore[split][end][br.rightChild] = totR;
 
       // Add unary rules (possibly chains) that terminate in POS tags
       for (int state = 0; state < numStates; state++) {
-        float iS = iScore[start][end][state];
+        float iS = iScore[cell(start, end) + state];
         if (iS == Float.NEGATIVE_INFINITY) {
           continue;
         }
@@ -1252,8 +1280,8 @@ oScore[split][end][br.rightChild] = totR;
           int parentState = ur.parent;
           float pS = ur.score;
           float tot = iS + pS;
-          if (tot > iScore[start][end][parentState]) {
-            iScore[start][end][parentState] = tot;
+          if (tot > iScore[cell(start, end) + parentState]) {
+            iScore[cell(start, end) + parentState] = tot;
             narrowRExtent[start][parentState] = Math.min(end, narrowRExtent[start][parentState]);
             narrowLExtent[end][parentState] = Math.max(start, narrowLExtent[end][parentState]);
             wideRExtent[start][parentState] = Math.max(end, wideRExtent[start][parentState]);
@@ -1288,11 +1316,11 @@ oScore[split][end][br.rightChild] = totR;
             }
           }
           for (int state = 0; state < numStates; state++) {
-            float iS = iScore[start][end][state];
+            float iS = iScore[cell(start, end) + state];
             if (iS == Float.NEGATIVE_INFINITY && isTag[state]) {
               IntTaggedWord itw = new IntTaggedWord(word.toString(), stateIndex.get(state), wordIndex, tagIndex);
-              iScore[start][end][state] = lex.score(itw, start, word.toString(), null);
-              if (iScore[start][end][state] > Float.NEGATIVE_INFINITY) {
+              iScore[cell(start, end) + state] = lex.score(itw, start, word.toString(), null);
+              if (iScore[cell(start, end) + state] > Float.NEGATIVE_INFINITY) {
                 narrowRExtent[start][state] = start + 1;
                 narrowLExtent[end][state] = end - 1;
                 wideRExtent[start][state] = start + 1;
@@ -1308,7 +1336,7 @@ oScore[split][end][br.rightChild] = totR;
         int end = start + 1;
         Arrays.fill(tags[start], false);
 
-        float[] iScore_start_end = iScore[start][end];
+        int startEnd = cell(start, end);
         int[] narrowRExtent_start = narrowRExtent[start];
         int[] narrowLExtent_end = narrowLExtent[end];
         int[] wideRExtent_start = wideRExtent[start];
@@ -1375,7 +1403,7 @@ oScore[split][end][br.rightChild] = totR;
             float lexScore = lex.score(tagging, start, wordIndex.get(tagging.word), wordContextStr); // score the cell according to P(word|tag) in the lexicon
             if (lexScore > Float.NEGATIVE_INFINITY) {
               assignedSomeTag = true;
-              iScore_start_end[state] = lexScore;
+              iScore[startEnd + state] = lexScore;
               narrowRExtent_start[state] = end;
               narrowLExtent_end[state] = start;
               wideRExtent_start[state] = end;
@@ -1388,7 +1416,7 @@ oScore[split][end][br.rightChild] = totR;
             int tag = tagging.tag;
             tags[start][tag] = true;
             if (dumpTagging) {
-              EncodingPrintWriter.err.println("Word pos " + start + " tagging " + tagging + " score " + iScore_start_end[state] + " [state " + stateIndex.get(state) + " = " + state + "]", "UTF-8");
+              EncodingPrintWriter.err.println("Word pos " + start + " tagging " + tagging + " score " + iScore[startEnd + state] + " [state " + stateIndex.get(state) + " = " + state + "]", "UTF-8");
             }
             //if (start == length-2 && tagging.parent == puncTag)
             //  lastIsPunc = true;
@@ -1406,7 +1434,7 @@ oScore[split][end][br.rightChild] = totR;
             EncodingPrintWriter.err.println("Forced FlexiTagging " + wordIndex.get(word), "UTF-8");
           }
           for (int state = 0; state < numStates; state++) {
-            if (isTag[state] && iScore_start_end[state] == Float.NEGATIVE_INFINITY) {
+            if (isTag[state] && iScore[startEnd + state] == Float.NEGATIVE_INFINITY) {
               if (trueTagStr != null) {
                 String tagString = stateIndex.get(state);
                 if ( ! tlp.basicCategory(tagString).equals(trueTagStr)) {
@@ -1423,14 +1451,14 @@ oScore[split][end][br.rightChild] = totR;
               }
 
               if (lexScore > Float.NEGATIVE_INFINITY) {
-                iScore_start_end[state] = lexScore;
+                iScore[startEnd + state] = lexScore;
                 narrowRExtent_start[state] = end;
                 narrowLExtent_end[state] = start;
                 wideRExtent_start[state] = end;
                 wideLExtent_end[state] = start;
               }
               if (dumpTagging) {
-                EncodingPrintWriter.err.println("Word pos " + start + " tagging " + (new IntTaggedWord(word, tagIndex.indexOf(stateIndex.get(state)))) + " score " + iScore_start_end[state]  + " [state " + stateIndex.get(state) + " = " + state + "]", "UTF-8");
+                EncodingPrintWriter.err.println("Word pos " + start + " tagging " + (new IntTaggedWord(word, tagIndex.indexOf(stateIndex.get(state)))) + " score " + iScore[startEnd + state]  + " [state " + stateIndex.get(state) + " = " + state + "]", "UTF-8");
               }
             }
           }
@@ -1440,7 +1468,7 @@ oScore[split][end][br.rightChild] = totR;
         if (op.dcTags) {
           for (int state = 0; state < numStates; state++) {
             if (isTag[state]) {
-              iScore_start_end[state] *= (1.0 + op.testOptions.depWeight);
+              iScore[startEnd + state] *= (1.0 + op.testOptions.depWeight);
             }
           }
         }
@@ -1454,8 +1482,8 @@ oScore[split][end][br.rightChild] = totR;
             EncodingPrintWriter.err.println("Flooding tags for " + wordIndex.get(word), "UTF-8");
           }
           for (int state = 0; state < numStates; state++) {
-            if (isTag[state] && iScore_start_end[state] == Float.NEGATIVE_INFINITY) {
-              iScore_start_end[state] = -1000.0f;
+            if (isTag[state] && iScore[startEnd + state] == Float.NEGATIVE_INFINITY) {
+              iScore[startEnd + state] = -1000.0f;
               narrowRExtent_start[state] = end;
               narrowLExtent_end[state] = start;
               wideRExtent_start[state] = end;
@@ -1469,7 +1497,7 @@ oScore[split][end][br.rightChild] = totR;
           tick("Terminal Unary...");
         }
         for (int state = 0; state < numStates; state++) {
-          float iS = iScore_start_end[state];
+          float iS = iScore[startEnd + state];
           if (iS == Float.NEGATIVE_INFINITY) {
             continue;
           }
@@ -1478,8 +1506,8 @@ oScore[split][end][br.rightChild] = totR;
             int parentState = ur.parent;
             float pS = ur.score;
             float tot = iS + pS;
-            if (tot > iScore_start_end[parentState]) {
-              iScore_start_end[parentState] = tot;
+            if (tot > iScore[startEnd + parentState]) {
+              iScore[startEnd + parentState] = tot;
               narrowRExtent_start[parentState] = end;
               narrowLExtent_end[parentState] = start;
               wideRExtent_start[parentState] = end;
@@ -1521,10 +1549,10 @@ oScore[split][end][br.rightChild] = totR;
       return Double.NEGATIVE_INFINITY;
     }
     int goal = stateIndex.indexOf(stateName);
-    if (iScore == null || iScore.length == 0 || iScore[0].length <= length || iScore[0][length].length <= goal) {
+    if (iScore == null || goal >= numStates || cell(0, length) + goal >= iScore.length) {
       return Double.NEGATIVE_INFINITY;
     }
-    return iScore[0][length][goal];
+    return iScore[cell(0, length) + goal];
   }
 
 
@@ -1551,8 +1579,8 @@ oScore[split][end][br.rightChild] = totR;
   private Tree extractBestParse(int goal, int start, int end) {
     // find source of inside score
     // no backtraces so we can speed up the parsing for its primary use
-    double bestScore = iScore[start][end][goal];
-    double normBestScore = op.testOptions.lengthNormalization ? (bestScore / wordsInSpan[start][end][goal]) : bestScore;
+    double bestScore = iScore[cell(start, end) + goal];
+    double normBestScore = op.testOptions.lengthNormalization ? (bestScore / wordsInSpan[cell(start, end) + goal]) : bestScore;
     String goalStr = stateIndex.get(goal);
 
     // check tags
@@ -1625,10 +1653,10 @@ oScore[split][end][br.rightChild] = totR;
     for (int split = start + 1; split < end; split++) {
       for (Iterator<BinaryRule> binaryI = bg.ruleIteratorByParent(goal); binaryI.hasNext(); ) {
         BinaryRule br = binaryI.next();
-        double score = br.score + iScore[start][split][br.leftChild] + iScore[split][end][br.rightChild];
+        double score = br.score + iScore[cell(start, split) + br.leftChild] + iScore[cell(split, end) + br.rightChild];
         boolean matches;
         if (op.testOptions.lengthNormalization) {
-          double normScore = score / (wordsInSpan[start][split][br.leftChild] + wordsInSpan[split][end][br.rightChild]);
+          double normScore = score / (wordsInSpan[cell(start, split) + br.leftChild] + wordsInSpan[cell(split, end) + br.rightChild]);
           matches = matches(normScore, normBestScore);
         } else {
           matches = matches(score, bestScore);
@@ -1655,11 +1683,11 @@ oScore[split][end][br.rightChild] = totR;
     // for (Iterator<UnaryRule> unaryI = ug.closedRuleIteratorByParent(goal); unaryI.hasNext(); ) {
     for (Iterator<UnaryRule> unaryI = ug.ruleIteratorByParent(goal); unaryI.hasNext(); ) {
       UnaryRule ur = unaryI.next();
-      // log.info("  Trying " + ur + " dtr score: " + iScore[start][end][ur.child]);
-      double score = ur.score + iScore[start][end][ur.child];
+      // log.info("  Trying " + ur + " dtr score: " + iScore[cell(start, end) + ur.child]);
+      double score = ur.score + iScore[cell(start, end) + ur.child];
       boolean matches;
       if (op.testOptions.lengthNormalization) {
-        double normScore = score / wordsInSpan[start][end][ur.child];
+        double normScore = score / wordsInSpan[cell(start, end) + ur.child];
         matches = matches(normScore, normBestScore);
       } else {
         matches = matches(score, bestScore);
@@ -1715,7 +1743,7 @@ oScore[split][end][br.rightChild] = totR;
   protected List<Tree> extractBestParses(int goal, int start, int end) {
     // find sources of inside score
     // no backtraces so we can speed up the parsing for its primary use
-    double bestScore = iScore[start][end][goal];
+    double bestScore = iScore[cell(start, end) + goal];
     String goalStr = stateIndex.get(goal);
     //System.out.println("Searching for "+goalStr+" from "+start+" to "+end+" scored "+bestScore);
     // check tags
@@ -1740,7 +1768,7 @@ oScore[split][end][br.rightChild] = totR;
     for (int split = start + 1; split < end; split++) {
       for (Iterator<BinaryRule> binaryI = bg.ruleIteratorByParent(goal); binaryI.hasNext(); ) {
         BinaryRule br = binaryI.next();
-        double score = br.score + iScore[start][split][br.leftChild] + iScore[split][end][br.rightChild];
+        double score = br.score + iScore[cell(start, split) + br.leftChild] + iScore[cell(split, end) + br.rightChild];
         if (matches(score, bestScore)) {
           // build binary split
           List<Tree> leftChildTrees = extractBestParses(br.leftChild, start, split);
@@ -1765,7 +1793,7 @@ oScore[split][end][br.rightChild] = totR;
     // check unaries
     for (Iterator<UnaryRule> unaryI = ug.ruleIteratorByParent(goal); unaryI.hasNext(); ) {
       UnaryRule ur = unaryI.next();
-      double score = ur.score + iScore[start][end][ur.child];
+      double score = ur.score + iScore[cell(start, end) + ur.child];
       if (ur.child != ur.parent && matches(score, bestScore)) {
         // build unary
         List<Tree> childTrees = extractBestParses(ur.child, start, end);
@@ -1989,7 +2017,7 @@ oScore[split][end][br.rightChild] = totR;
     // pre-terminal??
     if (isTag[v.goal] && v.start + 1 == v.end) {
       List<Vertex> tails = new ArrayList<>();
-      double score = iScore[v.start][v.end][v.goal];
+      double score = iScore[cell(v.start, v.end) + v.goal];
       Arc arc = new Arc(tails, v, score);
       bs.add(arc);
     }
@@ -2034,7 +2062,7 @@ oScore[split][end][br.rightChild] = totR;
         List<Double> childrenScores = new ArrayList<>();
         for (int i = 0; i < size; i++) {
           Vertex child = arc.tails.get(i);
-          double s = iScore[child.start][child.end][child.goal];
+          double s = iScore[cell(child.start, child.end) + child.goal];
           childrenScores.add(s);
           score += s;
         }
@@ -2118,7 +2146,7 @@ oScore[split][end][br.rightChild] = totR;
     int start = 0;
     int end = length;
     int goal = stateIndex.indexOf(goalStr);
-    double bestScore = iScore[start][end][goal];
+    double bestScore = iScore[cell(start, end) + goal];
     List<Tree> internalTrees = extractBestParses(goal, start, end);
     //System.out.println("Got internal best parse...");
     // for (Tree internalTree : internalTrees) {
@@ -2159,7 +2187,7 @@ oScore[split][end][br.rightChild] = totR;
     this.tagIndex = tagIndex;
     tf = new LabeledScoredTreeFactory();
 
-    numStates = stateIndex.size();
+    numStates = liveStates(bg, ug, stateIndex, tagIndex, goalStr);
     isTag = new boolean[numStates];
     // tag index is smaller, so we fill by iterating over the tag index
     // rather than over the state index
@@ -2170,11 +2198,50 @@ oScore[split][end][br.rightChild] = totR;
       }
       isTag[state] = true;
     }
+
+    if (op.testOptions.chartPruner != null) {
+      pruner = ReflectionLoading.loadByReflection(op.testOptions.chartPruner, op);
+    } else if (op.testOptions.cellBeam > 0.0f) {
+      pruner = new BeamChartPruner(op.testOptions.cellBeam);
+    }
+  }
+
+  /** One more than the largest state which a rule, a tag or the goal refers to. */
+  private static int liveStates(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, Index<String> tagIndex, String goalStr) {
+    int live = stateIndex.indexOf(goalStr) + 1;
+    for (BinaryRule rule : bg) {
+      live = Math.max(live, Math.max(rule.parent, Math.max(rule.leftChild, rule.rightChild)) + 1);
+    }
+    for (UnaryRule rule : ug) {
+      live = Math.max(live, Math.max(rule.parent, rule.child) + 1);
+    }
+    for (String tag : tagIndex.objectsList()) {
+      live = Math.max(live, stateIndex.indexOf(tag) + 1);
+    }
+    return live;
+  }
+
+  /**
+   * Set the pruner which decides which parts of the chart to leave out,
+   * or null to always fill in the whole chart.
+   */
+  public void setChartPruner(ChartPruner pruner) {
+    this.pruner = pruner;
+  }
+
+  public ChartPruner getChartPruner() {
+    return pruner;
+  }
+
+  /** The pruner to use for the current sentence, if any. */
+  ChartPruner activePruner() {
+    return pruningFailed ? null : pruner;
   }
 
 
   public void nudgeDownArraySize() {
     try {
+      ChartArena.current().trim();
       if (arraySize > 2) {
         considerCreatingArrays(arraySize - 2);
       }
@@ -2186,11 +2253,16 @@ oScore[split][end][br.rightChild] = totR;
   private void considerCreatingArrays(int length) {
     if (length > op.testOptions.maxLength + 1 || length >= myMaxLength) {
       throw new OutOfMemoryError("Refusal to create such large arrays.");
+    } else if (takeArrays(length + 1)) {
+      if (op.testOptions.verbose) {
+        log.info("Reused PCFG parser arrays of size " + arraySize);
+      }
     } else {
       try {
         createArrays(length + 1);
       } catch (OutOfMemoryError e) {
         myMaxLength = length;
+        ChartArena.current().trim();
         if (arraySize > 0) {
           try {
             createArrays(arraySize);
@@ -2212,25 +2284,14 @@ oScore[split][end][br.rightChild] = totR;
     clearArrays();
 
     int numTags = tagIndex.size();
-    // allocate just the parts of iScore and oScore used (end > start, etc.)
-    // todo: with some modifications to doInsideScores, we wouldn't need to allocate iScore[i,length] for i != 0 and i != length
-    //    System.out.println("initializing iScore arrays with length " + length + " and numStates " + numStates);
-    iScore = new float[length][length + 1][];
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        iScore[start][end] = new float[numStates];
-      }
+    // allocate just the cells used (end > start), as one array per table
+    long cells = (long) length * (length + 1) / 2 * numStates;
+    if (cells > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("Refusal to create such large arrays.");
     }
-    //    System.out.println("finished initializing iScore arrays");
+    iScore = new float[(int) cells];
     if (op.doDep && !op.testOptions.useFastFactored) {
-      //      System.out.println("initializing oScore arrays with length " + length + " and numStates " + numStates);
-      oScore = new float[length][length + 1][];
-      for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          oScore[start][end] = new float[numStates];
-        }
-      }
-      // System.out.println("finished initializing oScore arrays");
+      oScore = new float[(int) cells];
     }
     narrowRExtent = new int[length][numStates];
     wideRExtent = new int[length][numStates];
@@ -2245,18 +2306,118 @@ oScore[split][end][br.rightChild] = totR;
     tags = new boolean[length][numTags];
 
     if (op.testOptions.lengthNormalization) {
-      wordsInSpan = new int[length][length + 1][];
-      for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          wordsInSpan[start][end] = new int[numStates];
-        }
-      }
+      wordsInSpan = new int[(int) cells];
+    }
+  }
+
+  /**
+   * The offset in the chart arrays of the entries for the span [start, end),
+   * with 0 &lt;= start &lt; end.  Cells are ordered by their end and then by
+   * their start, so the offsets don't depend on the size of the arrays, and
+   * the cells of a sentence of length n are the first cell(0, n + 1) entries.
+   */
+  protected final int cell(int start, int end) {
+    return ((end * (end - 1) >> 1) + start) * numStates;
+  }
+
+  /**
+   * Give this parser's arrays to the current thread's {@link ChartArena}, so
+   * that the next parser for the same grammar on this thread can reuse them.
+   * The results of the last parse are lost, but the parser can go on
+   * parsing, with arrays from the arena or new ones.
+   */
+  public void releaseArrays() {
+    if (arraySize > 0 && iScore != null) {
+      ChartArena.current().give(chartKey(), new Chart(this), arraySize, chartBytes());
+    }
+    clearArrays();
+    arraySize = 0;
+  }
+
+  /** Take arrays for sentences of at least the given size from the {@link ChartArena}, if it has some. */
+  private boolean takeArrays(int size) {
+    Chart chart = ChartArena.current().take(chartKey(), size);
+    if (chart == null) {
+      return false;
+    }
+    chart.restore(this);
+    return true;
+  }
+
+  /** Parsers with the same key make the same arrays, which only differ in their size. */
+  private String chartKey() {
+    StringBuilder key = new StringBuilder("pcfg:").append(numStates).append(':').append(tagIndex.size());
+    if (op.doDep && !op.testOptions.useFastFactored) {
+      key.append(":outside");
+    }
+    if (op.testOptions.lengthNormalization) {
+      key.append(":wordsInSpan");
+    }
+    return key.toString();
+  }
+
+  /** Roughly how many bytes the arrays take up. */
+  private long chartBytes() {
+    long bytes = 4L * iScore.length;
+    if (oScore != null) {
+      bytes += 4L * oScore.length;
+    }
+    if (wordsInSpan != null) {
+      bytes += 4L * wordsInSpan.length;
+    }
+    bytes += 4L * 4 * arraySize * numStates; // extents
+    if (iPossibleByL != null) {
+      bytes += 4L * arraySize * numStates;
+    }
+    bytes += (long) arraySize * tagIndex.size();
+    return bytes;
+  }
+
+  /** The arrays of a parser, while they are kept in a {@link ChartArena}. */
+  private static class Chart {
+    final float[] iScore, oScore;
+    final int[] wordsInSpan;
+    final int[][] narrowRExtent, wideRExtent, narrowLExtent, wideLExtent;
+    final boolean[][] iPossibleByL, iPossibleByR, oPossibleByL, oPossibleByR;
+    final boolean[][] tags;
+    final int size;
+
+    Chart(ExhaustivePCFGParser parser) {
+      iScore = parser.iScore;
+      oScore = parser.oScore;
+      wordsInSpan = parser.wordsInSpan;
+      narrowRExtent = parser.narrowRExtent;
+      wideRExtent = parser.wideRExtent;
+      narrowLExtent = parser.narrowLExtent;
+      wideLExtent = parser.wideLExtent;
+      iPossibleByL = parser.iPossibleByL;
+      iPossibleByR = parser.iPossibleByR;
+      oPossibleByL = parser.oPossibleByL;
+      oPossibleByR = parser.oPossibleByR;
+      tags = parser.tags;
+      size = parser.arraySize;
+    }
+
+    void restore(ExhaustivePCFGParser parser) {
+      parser.iScore = iScore;
+      parser.oScore = oScore;
+      parser.wordsInSpan = wordsInSpan;
+      parser.narrowRExtent = narrowRExtent;
+      parser.wideRExtent = wideRExtent;
+      parser.narrowLExtent = narrowLExtent;
+      parser.wideLExtent = wideLExtent;
+      parser.iPossibleByL = iPossibleByL;
+      parser.iPossibleByR = iPossibleByR;
+      parser.oPossibleByL = oPossibleByL;
+      parser.oPossibleByR = oPossibleByR;
+      parser.tags = tags;
+      parser.arraySize = size;
     }
-    //    System.out.println("ExhaustivePCFGParser constructor finished.");
   }
 
   private void clearArrays() {
     iScore = oScore = null;
+    wordsInSpan = null;
     iPossibleByL = iPossibleByR = oPossibleByL = oPossibleByR = null;
     oFilteredEnd = oFilteredStart = null;
     tags = null;
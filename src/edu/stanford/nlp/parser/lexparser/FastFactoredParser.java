@@ -126,9 +126,7 @@ public class FastFactoredParser implements KBestViterbiParser  {
       Beam<ScoredObject<Tree>> goodParses = new Beam<>(numToFind);
 
       for (ScoredObject<Tree> candidate : pcfgBest) {
-        if (Thread.interrupted()) {
-          throw new RuntimeInterruptedException();
-        }
+        Deadline.checkForInterrupt();
         double depScore = depScoreTree(candidate.object());
         ScoredObject<Tree> x = new ScoredObject<>(candidate.object(), candidate.score() + depScore);
         goodParses.add(x);
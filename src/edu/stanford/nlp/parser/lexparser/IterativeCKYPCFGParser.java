@@ -2,6 +2,7 @@ package edu.stanford.nlp.parser.lexparser;
 
 import java.util.regex.Matcher;
 import edu.stanford.nlp.parser.common.ParserConstraint;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Index;
 
 /** Does iterative deepening search inside the CKY algorithm for faster
@@ -9,6 +10,10 @@ import edu.stanford.nlp.util.Index;
  *  iterative deepening is only implemented in insideScores().
  *  Implements the algorithm described in Tsuruoka and Tsujii (2004)
  *  IJCNLP.
+ *  <p>
+ *  A {@link ChartPruner} is consulted on every pass, so that the spans it
+ *  skips stay empty and the states it prunes are removed again each time
+ *  the threshold is lowered.
  *
  *  @author Christopher Manning
  */
@@ -41,16 +46,22 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
    *      it has been determined that no parse exists.
    */
   private boolean doInsideScoresHelper(float threshold) {
+    ChartPruner pruner = activePruner();
     boolean prunedSomething = false;
     for (int diff = 2; diff <= length; diff++) {
       // usually stop one short because boundary symbol only combines
       // with whole sentence span
       for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
+        Deadline.checkForInterrupt();
 
         if (spillGuts) {
           tick("Binaries for span " + diff + "...");
         }
         int end = start + diff;
+        boolean pruneSpan = pruner != null && diff != length;
+        if (pruneSpan && ! pruner.keepSpan(start, end)) {
+          continue;
+        }
 
         if (getConstraints() != null) {
           boolean skip = false;
@@ -95,7 +106,7 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             }
             float pS = r.score;
             int parentState = r.parent;
-            float oldIScore = iScore[start][end][parentState];
+            float oldIScore = iScore[cell(start, end) + parentState];
             float bestIScore = oldIScore;
             boolean foundBetter;  // always set below for this rule
             //System.out.println("Min "+min+" max "+max+" start "+start+" end "+end);
@@ -133,11 +144,11 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
                   }
                 }
 
-                float lS = iScore[start][split][leftState];
+                float lS = iScore[cell(start, split) + leftState];
                 if (lS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
-                float rS = iScore[split][end][r.rightChild];
+                float rS = iScore[cell(split, end) + r.rightChild];
                 if (rS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
@@ -149,22 +160,22 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
               foundBetter = bestIScore > oldIScore;
             } else {
               // find split that uses this rule to make the max *length normalized* score
-              int bestWordsInSpan = wordsInSpan[start][end][parentState];
+              int bestWordsInSpan = wordsInSpan[cell(start, end) + parentState];
               float oldNormIScore = oldIScore / bestWordsInSpan;
               float bestNormIScore = oldNormIScore;
 
               for (int split = min; split <= max; split++) {
-                float lS = iScore[start][split][leftState];
+                float lS = iScore[cell(start, split) + leftState];
                 if (lS == Float.NEGATIVE_INFINITY) {
 
                   continue;
                 }
-                float rS = iScore[split][end][r.rightChild];
+                float rS = iScore[cell(split, end) + r.rightChild];
                 if (rS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
                 float tot = pS + lS + rS;
-                int newWordsInSpan = wordsInSpan[start][split][leftState] + wordsInSpan[split][end][r.rightChild];
+                int newWordsInSpan = wordsInSpan[cell(start, split) + leftState] + wordsInSpan[cell(split, end) + r.rightChild];
                 float normTot = tot / newWordsInSpan;
                 if (normTot > bestNormIScore) {
                   bestIScore = tot;
@@ -174,14 +185,14 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
               } // for split point
               foundBetter = bestNormIScore > oldNormIScore;
               if (foundBetter && bestIScore > threshold) {
-                wordsInSpan[start][end][parentState] = bestWordsInSpan;
+                wordsInSpan[cell(start, end) + parentState] = bestWordsInSpan;
               }
             } // fi op.testOptions.lengthNormalization
             if (foundBetter) {
               if (bestIScore > threshold) {
                 // this way of making "parentState" is better than previous
                 // and sufficiently good to be stored on this iteration
-                iScore[start][end][parentState] = bestIScore;
+                iScore[cell(start, end) + parentState] = bestIScore;
 
                 //              if (spillGuts) System.out.println("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end);
                 if (oldIScore == Float.NEGATIVE_INFINITY) {
@@ -238,7 +249,7 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             }
             float pS = r.score;
             int parentState = r.parent;
-            float oldIScore = iScore[start][end][parentState];
+            float oldIScore = iScore[cell(start, end) + parentState];
             float bestIScore = oldIScore;
             boolean foundBetter; // always initialized below
             //System.out.println("Start "+start+" end "+end+" min "+min+" max "+max);
@@ -277,11 +288,11 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
                   }
                 }
 
-                float lS = iScore[start][split][r.leftChild];
+                float lS = iScore[cell(start, split) + r.leftChild];
                 if (lS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
-                float rS = iScore[split][end][rightState];
+                float rS = iScore[cell(split, end) + rightState];
                 if (rS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
@@ -293,20 +304,20 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
               foundBetter = bestIScore > oldIScore;
             } else {
               // find split that uses this rule to make the max *length normalized* score
-              int bestWordsInSpan = wordsInSpan[start][end][parentState];
+              int bestWordsInSpan = wordsInSpan[cell(start, end) + parentState];
               float oldNormIScore = oldIScore / bestWordsInSpan;
               float bestNormIScore = oldNormIScore;
               for (int split = min; split <= max; split++) {
-                float lS = iScore[start][split][r.leftChild];
+                float lS = iScore[cell(start, split) + r.leftChild];
                 if (lS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
-                float rS = iScore[split][end][rightState];
+                float rS = iScore[cell(split, end) + rightState];
                 if (rS == Float.NEGATIVE_INFINITY) {
                   continue;
                 }
                 float tot = pS + lS + rS;
-                int newWordsInSpan = wordsInSpan[start][split][r.leftChild] + wordsInSpan[split][end][rightState];
+                int newWordsInSpan = wordsInSpan[cell(start, split) + r.leftChild] + wordsInSpan[cell(split, end) + rightState];
                 float normTot = tot / newWordsInSpan;
                 if (normTot > bestNormIScore) {
                   bestIScore = tot;
@@ -316,12 +327,12 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
               } // end for split
               foundBetter = bestNormIScore > oldNormIScore;
               if (foundBetter) {
-                wordsInSpan[start][end][parentState] = bestWordsInSpan;
+                wordsInSpan[cell(start, end) + parentState] = bestWordsInSpan;
               }
             } // end if lengthNormalization
             if (foundBetter) { // this way of making "parentState" is better than previous
               if (bestIScore > threshold) {
-                iScore[start][end][parentState] = bestIScore;
+                iScore[cell(start, end) + parentState] = bestIScore;
                 //              if (spillGuts) System.out.println("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end);
                 if (oldIScore == Float.NEGATIVE_INFINITY) {
                   if (start > narrowLExtent[end][parentState]) {
@@ -352,7 +363,7 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
         }
         // do unary rules -- one could promote this loop and put start inside
         for (int state = 0; state < numStates; state++) {
-          float iS = iScore[start][end][state];
+          float iS = iScore[cell(start, end) + state];
           if (iS == Float.NEGATIVE_INFINITY) {
             continue;
           }
@@ -380,16 +391,16 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             int parentState = ur.parent;
             float pS = ur.score;
             float tot = iS + pS;
-            float cur = iScore[start][end][parentState];
+            float cur = iScore[cell(start, end) + parentState];
             boolean foundBetter;  // always set below
             if (op.testOptions.lengthNormalization) {
-              int totWordsInSpan = wordsInSpan[start][end][state];
+              int totWordsInSpan = wordsInSpan[cell(start, end) + state];
               float normTot = tot / totWordsInSpan;
-              int curWordsInSpan = wordsInSpan[start][end][parentState];
+              int curWordsInSpan = wordsInSpan[cell(start, end) + parentState];
               float normCur = cur / curWordsInSpan;
               foundBetter = normTot > normCur;
               if (foundBetter && tot > threshold) {
-                wordsInSpan[start][end][parentState] = wordsInSpan[start][end][state];
+                wordsInSpan[cell(start, end) + parentState] = wordsInSpan[cell(start, end) + state];
               }
             } else {
               foundBetter = (tot > cur);
@@ -397,7 +408,7 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             if (foundBetter) {
               //              if (spillGuts) System.out.println("Could build " + stateIndex.get(parentState) + " from " + start + " to " + end);
               if (tot > threshold) {
-                iScore[start][end][parentState] = tot;
+                iScore[cell(start, end) + parentState] = tot;
                 if (cur == Float.NEGATIVE_INFINITY) {
                   if (start > narrowLExtent[end][parentState]) {
                     narrowLExtent[end][parentState] = start;
@@ -422,11 +433,14 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             } // end if foundBetter
           } // for UnaryRule r
         } // for unary rules
+        if (pruneSpan) {
+          pruner.pruneCell(start, end, iScore, cell(start, end), numStates);
+        }
       } // for start
     } // for diff (i.e., span)
     int goal = stateIndex.indexOf(goalStr);
     // return true if found the goal, or nothing was pruned (i.e., sentence has no parse)
-    return iScore[0][length][goal] > Float.NEGATIVE_INFINITY || ! prunedSomething;
+    return iScore[cell(0, length) + goal] > Float.NEGATIVE_INFINITY || ! prunedSomething;
   } // end doInsideScoresHelper()
 
 }
@@ -27,6 +27,7 @@
 package edu.stanford.nlp.parser.lexparser;
 
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedModelFile;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.ling.Word;
@@ -50,12 +51,12 @@ import edu.stanford.nlp.util.ReflectionLoading;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.Timing;
 import edu.stanford.nlp.util.Triple;
-import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
-import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -297,8 +298,17 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
    * an X tree is returned instead of barfing.
    */
   public Tree parse(List<? extends HasWord> lst) {
+    ParserQuery pq = parserQuery();
+    try {
+      return parse(pq, lst);
+    } finally {
+      pq.release();
+    }
+  }
+
+  @Override
+  protected Tree parse(ParserQuery pq, List<? extends HasWord> lst) {
     try {
-      ParserQuery pq = parserQuery();
       if (pq.parse(lst)) {
         Tree bestparse = pq.getBestParse();
         // -10000 denotes unknown words
@@ -328,29 +338,16 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
    * resulting parse trees in the same order.
    */
   public List<Tree> parseMultiple(final List<? extends List<? extends HasWord>> sentences, final int nthreads) {
-    MulticoreWrapper<List<? extends HasWord>, Tree> wrapper = new MulticoreWrapper<>(nthreads, new ThreadsafeProcessor<List<? extends HasWord>, Tree>() {
-      @Override
-      public Tree process(List<? extends HasWord> sentence) {
-        return parse(sentence);
-      }
-
-      @Override
-      public ThreadsafeProcessor<List<? extends HasWord>, Tree> newInstance() {
-        return this;
-      }
-    });
-    List<Tree> trees = new ArrayList<>();
-    for (List<? extends HasWord> sentence : sentences) {
-      wrapper.put(sentence);
-      while (wrapper.peek()) {
-        trees.add(wrapper.poll());
+    ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+    try {
+      List<Tree> trees = new ArrayList<>();
+      for (Tree tree : parseAll(sentences, executor)) {
+        trees.add(tree);
       }
+      return trees;
+    } finally {
+      executor.shutdownNow();
     }
-    wrapper.join();
-    while (wrapper.peek()) {
-      trees.add(wrapper.poll());
-    }
-    return trees;
   }
 
   /** Return a TreePrint for formatting parsed output trees.
@@ -365,10 +362,14 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
    */
   public Tree parseTree(List<? extends HasWord> sentence) {
     ParserQuery pq = parserQuery();
-    if (pq.parse(sentence)) {
-      return pq.getBestParse();
-    } else {
-      return null;
+    try {
+      if (pq.parse(sentence)) {
+        return pq.getBestParse();
+      } else {
+        return null;
+      }
+    } finally {
+      pq.release();
     }
   }
 
@@ -456,6 +457,28 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
     }
   }
 
+  /** Name of the section of a mapped model file which holds the parser */
+  private static final String MAPPED_PARSER_SECTION = "parser";
+
+  /**
+   * Saves the parser defined by pd to the given filename as a
+   * {@link MappedModelFile}, which {@link #loadModel(String, String...)}
+   * also reads.
+   * The grammars keep their scores in rule objects and counters rather
+   * than flat arrays, so for now the file holds the serialized parser in
+   * a single section, which is still read into the heap.
+   * If there is an error, a RuntimeIOException is thrown.
+   */
+  public void saveParserToMappedFile(String filename) {
+    try {
+      log.info("Writing parser in mapped format to file " + filename + ' ');
+      new MappedModelFile.Writer().putObject(MAPPED_PARSER_SECTION, this).write(filename);
+      log.info("done.");
+    } catch (IOException ioe) {
+      throw new RuntimeIOException(ioe);
+    }
+  }
+
   /**
    * Saves the parser defined by pd to the given filename.
    * If there is an error, a RuntimeIOException is thrown.
@@ -598,6 +621,11 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
   public static LexicalizedParser getParserFromSerializedFile(String serializedFileOrUrl) {
     try {
       Timing tim = new Timing();
+      if (MappedModelFile.isMappedModelFile(serializedFileOrUrl)) {
+        LexicalizedParser pd = (LexicalizedParser) MappedModelFile.open(serializedFileOrUrl).readObject(MAPPED_PARSER_SECTION);
+        log.info("Loading parser from mapped file " + serializedFileOrUrl + " ... done [" + tim.toSecondsString() + " sec].");
+        return pd;
+      }
       ObjectInputStream in = IOUtils.readStreamFromString(serializedFileOrUrl);
       LexicalizedParser pd = loadModel(in);
 
@@ -48,11 +48,11 @@ import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TreePrint;
 import edu.stanford.nlp.trees.TreeTransformer;
 import edu.stanford.nlp.trees.TreebankLanguagePack;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.Index;
 import edu.stanford.nlp.util.ScoredObject;
 import edu.stanford.nlp.util.DeltaIndex;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 
 public class LexicalizedParserQuery implements ParserQuery  {
@@ -179,6 +179,21 @@ public class LexicalizedParserQuery implements ParserQuery  {
     }
   }
 
+  /**
+   * Hand the PCFG and dependency charts to this thread's {@link ChartArena},
+   * so that the next query does not have to allocate its own.  Call this once
+   * the trees wanted from the last parse have been extracted.
+   */
+  @Override
+  public void release() {
+    if (pparser != null) {
+      pparser.releaseArrays();
+    }
+    if (dparser != null) {
+      dparser.releaseArrays();
+    }
+  }
+
   /**
    * Parse a sentence represented as a List of tokens.
    * The text must already have been tokenized and
@@ -263,9 +278,7 @@ public class LexicalizedParserQuery implements ParserQuery  {
       sentenceB.add(new TaggedWord(Lexicon.BOUNDARY, Lexicon.BOUNDARY_TAG));
     }
 
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
 
     if (op.doPCFG) {
       if (!pparser.parse(sentenceB)) {
@@ -277,9 +290,7 @@ public class LexicalizedParserQuery implements ParserQuery  {
         treePrint.printTree(getBestPCFGParse(false), pwOut); // without scores on nodes
       }
     }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
     if (op.doDep && ! op.testOptions.useFastFactored) {
       if ( ! dparser.parse(sentenceB)) {
         return parseSucceeded;
@@ -291,9 +302,7 @@ public class LexicalizedParserQuery implements ParserQuery  {
         treePrint.printTree(dparser.getBestParse(), pwOut);
       }
     }
-    if (Thread.interrupted()) {
-      throw new RuntimeInterruptedException();
-    }
+    Deadline.checkForInterrupt();
     if (op.doPCFG && op.doDep) {
       if ( ! bparser.parse(sentenceB)) {
         return parseSucceeded;
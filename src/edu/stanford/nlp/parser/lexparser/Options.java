@@ -249,6 +249,12 @@ public class Options implements Serializable  {
     } else if (args[i].equalsIgnoreCase("-iterativeCKY")) {
       testOptions.iterativeCKY = true;
       i++;
+    } else if (args[i].equalsIgnoreCase("-cellBeam") && (i + 1 < args.length)) {
+      testOptions.cellBeam = Float.parseFloat(args[i + 1]);
+      i += 2;
+    } else if (args[i].equalsIgnoreCase("-chartPruner") && (i + 1 < args.length)) {
+      testOptions.chartPruner = args[i + 1];
+      i += 2;
     } else if (args[i].equalsIgnoreCase("-vMarkov") && (i + 1 < args.length)) {
       int order = Integer.parseInt(args[i + 1]);
       if (order <= 1) {
@@ -69,6 +69,19 @@ public class TestOptions implements Serializable  {
   /** If true, use faster iterative deepening CKY algorithm. */
   public boolean iterativeCKY = false;
 
+  /**
+   * If positive, the PCFG parser drops the states of a span whose inside
+   * score is more than this log probability below the span's best state.
+   * See {@link BeamChartPruner}.
+   */
+  public float cellBeam = 0.0f;
+
+  /**
+   * The class name of a {@link ChartPruner} for the PCFG parser to use,
+   * instead of the one given by {@link #cellBeam}.
+   */
+  public String chartPruner = null;
+
   /**
    * The maximum sentence length (including punctuation, etc.) to parse.
    */
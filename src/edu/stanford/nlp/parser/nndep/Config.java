@@ -2,6 +2,7 @@ package edu.stanford.nlp.parser.nndep;
 
 import edu.stanford.nlp.international.Language;
 import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.neural.CompactMatrix;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 import edu.stanford.nlp.trees.TreebankLanguagePack;
 import edu.stanford.nlp.util.PropertiesUtils;
@@ -208,6 +209,16 @@ public class Config {
    */
   public String tagger = MaxentTagger.DEFAULT_JAR_PATH;
 
+  /**
+   * Precision at which to store the weights of a loaded model:
+   * {@code double}, {@code float} or {@code int8}. Lower precision
+   * saves memory and speeds up parsing, since the hidden layer is then
+   * also computed in {@code float}, possibly at some cost in
+   * accuracy (see the {@code -comparePrecision} option of
+   * {@link DependencyParser#main(String[])}).
+   */
+  public CompactMatrix.Precision inferencePrecision = CompactMatrix.Precision.DOUBLE;
+
   public Config(Properties properties) {
     setProperties(properties);
   }
@@ -236,6 +247,8 @@ public class Config {
     // Runtime parsing options
     sentenceDelimiter = PropertiesUtils.getString(props, "sentenceDelimiter", sentenceDelimiter);
     tagger = PropertiesUtils.getString(props, "tagger.model", tagger);
+    if (props.containsKey("inferencePrecision"))
+      inferencePrecision = CompactMatrix.Precision.fromString(props.getProperty("inferencePrecision"));
 
     String escaperClass = props.getProperty("escaper");
     escaper = escaperClass != null ? ReflectionLoading.loadByReflection(escaperClass) : null;
@@ -28,7 +28,7 @@ import edu.stanford.nlp.trees.UniversalEnglishGrammaticalStructure;
 import edu.stanford.nlp.trees.international.pennchinese.ChineseGrammaticalRelations;
 import edu.stanford.nlp.trees.international.pennchinese.ChineseGrammaticalStructure;
 import edu.stanford.nlp.util.CoreMap;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.Timing;
 
@@ -917,27 +917,107 @@ public class DependencyParser  {
    * for general parsing purposes.
    */
   private DependencyTree predictInner(CoreMap sentence) {
-    int numTrans = system.numTransitions();
-
     Configuration c = system.initialConfiguration(sentence);
     while (!system.isTerminal(c)) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       double[] scores = classifier.computeScores(getFeatureArray(c));
+      system.apply(c, bestTransition(c, scores));
+    }
+    return c.tree;
+  }
+
+  /**
+   * Determine the dependency parses of several sentences at once.
+   * <p>
+   * All the sentences are parsed in lockstep: at each step the
+   * configurations which are not yet finished are scored together
+   * with {@link Classifier#computeScores(int[][], int, double[][], double[][])},
+   * which is considerably faster than scoring them one at a time.
+   * The parses are exactly those {@link #predictInner(CoreMap)} would
+   * give.
+   */
+  private List<DependencyTree> predictAllInner(List<? extends CoreMap> sentences) {
+    int numSentences = sentences.size();
+    Configuration[] configurations = new Configuration[numSentences];
+    for (int i = 0; i < numSentences; ++i)
+      configurations[i] = system.initialConfiguration(sentences.get(i));
+
+    // Indices of the sentences still being parsed
+    int[] active = new int[numSentences];
+    int numActive = 0;
+    for (int i = 0; i < numSentences; ++i)
+      if (!system.isTerminal(configurations[i]))
+        active[numActive++] = i;
+
+    int[][] features = new int[numActive][];
+    double[][] hidden = new double[numActive][config.hiddenSize];
+    double[][] scores = new double[numActive][system.numTransitions()];
+    while (numActive > 0) {
+      Deadline.checkForInterrupt();  // Allow interrupting
+      for (int b = 0; b < numActive; ++b)
+        features[b] = getFeatureArray(configurations[active[b]]);
+      classifier.computeScores(features, numActive, hidden, scores);
+
+      int stillActive = 0;
+      for (int b = 0; b < numActive; ++b) {
+        Configuration c = configurations[active[b]];
+        system.apply(c, bestTransition(c, scores[b]));
+        if (!system.isTerminal(c))
+          active[stillActive++] = active[b];
+      }
+      numActive = stillActive;
+    }
 
-      double optScore = Double.NEGATIVE_INFINITY;
-      String optTrans = null;
+    List<DependencyTree> trees = new ArrayList<>(numSentences);
+    for (Configuration c : configurations)
+      trees.add(c.tree);
+    return trees;
+  }
 
-      for (int j = 0; j < numTrans; ++j) {
-        if (scores[j] > optScore && system.canApply(c, system.transitions.get(j))) {
-          optScore = scores[j];
-          optTrans = system.transitions.get(j);
+  /**
+   * Returns the largest difference between the transition scores of the two
+   * parsers, relative to the largest score, over the configurations the
+   * first parser goes through on the given sentences.  The parsers must
+   * have been loaded from the same model, such as at two precisions.
+   */
+  static double maxRelativeScoreError(DependencyParser parser, DependencyParser other,
+                                      List<? extends CoreMap> sentences) {
+    double maxError = 0.0;
+    for (CoreMap sentence : sentences) {
+      Configuration c = parser.system.initialConfiguration(sentence);
+      while (!parser.system.isTerminal(c)) {
+        int[] feature = parser.getFeatureArray(c);
+        double[] scores = parser.classifier.computeScores(feature);
+        double[] otherScores = other.classifier.computeScores(feature);
+        double largest = 0.0;
+        double error = 0.0;
+        for (int j = 0; j < scores.length; ++j) {
+          largest = Math.max(largest, Math.abs(scores[j]));
+          error = Math.max(error, Math.abs(scores[j] - otherScores[j]));
         }
+        maxError = Math.max(maxError, error / Math.max(largest, 1e-12));
+        parser.system.apply(c, parser.bestTransition(c, scores));
       }
-      system.apply(c, optTrans);
     }
-    return c.tree;
+    return maxError;
+  }
+
+  /**
+   * Returns the highest-scoring transition which can be applied in the
+   * given configuration.
+   */
+  private String bestTransition(Configuration c, double[] scores) {
+    int numTrans = system.numTransitions();
+    double optScore = Double.NEGATIVE_INFINITY;
+    String optTrans = null;
+
+    for (int j = 0; j < numTrans; ++j) {
+      if (scores[j] > optScore && system.canApply(c, system.transitions.get(j))) {
+        optScore = scores[j];
+        optTrans = system.transitions.get(j);
+      }
+    }
+    return optTrans;
   }
 
   /**
@@ -953,11 +1033,36 @@ public class DependencyParser  {
           "loaded and initialized; first load a model.");
 
     DependencyTree result = predictInner(sentence);
+    return toGrammaticalStructure(sentence, result);
+  }
+
+  /**
+   * Determine the dependency parses of several sentences using the
+   * loaded model. This gives the same parses as calling
+   * {@link #predict(CoreMap)} on each sentence, but scores the
+   * sentences together, which is faster when there are many of them.
+   * You must first load a parser before calling this method.
+   *
+   * @throws java.lang.IllegalStateException If parser has not yet been loaded and initialized
+   *         (see {@link #initialize(boolean)}
+   */
+  public List<GrammaticalStructure> predictAll(List<? extends CoreMap> sentences) {
+    if (system == null)
+      throw new IllegalStateException("Parser has not been  " +
+          "loaded and initialized; first load a model.");
 
-    // The rest of this method is just busy-work to convert the
-    // package-local representation into a CoreNLP-standard
-    // GrammaticalStructure.
+    List<DependencyTree> results = predictAllInner(sentences);
+    List<GrammaticalStructure> structures = new ArrayList<>(results.size());
+    for (int i = 0; i < results.size(); ++i)
+      structures.add(toGrammaticalStructure(sentences.get(i), results.get(i)));
+    return structures;
+  }
 
+  /**
+   * Convert the package-local representation of a parse into a
+   * CoreNLP-standard GrammaticalStructure.
+   */
+  private GrammaticalStructure toGrammaticalStructure(CoreMap sentence, DependencyTree result) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
     List<TypedDependency> dependencies = new ArrayList<>();
 
@@ -1167,6 +1272,8 @@ public class DependencyParser  {
     if (config.numPreComputed > 0) {
       classifier.preCompute();
     }
+
+    classifier.compact(config.inferencePrecision);
   }
 
   /**
@@ -1241,7 +1348,9 @@ public class DependencyParser  {
    * Runtime parsing options:
    * <table>
    *   <tr><th>Option</th><th>Default</th><th>Description</th></tr>
+   *   <tr><td><tt>&#8209;comparePrecision</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-testFile</tt>. If provided (<tt>float</tt> or <tt>int8</tt>), also test the model with its weights stored at this precision, and report the difference in accuracy and memory use.</td></tr>
    *   <tr><td><tt>&#8209;escaper</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>. If provided, use this word-escaper when parsing raw sentences. (Should be a fully-qualified class name like <tt>edu.stanford.nlp.trees.international.arabic.ATBEscaper</tt>.)</td></tr>
+   *   <tr><td><tt>&#8209;inferencePrecision</tt></td><td>double</td><td>Precision at which to store the weights of the loaded model: <tt>double</tt>, <tt>float</tt> or <tt>int8</tt>. Lower precision uses less memory and parses faster, possibly at some cost in accuracy. At <tt>float</tt> and <tt>int8</tt> the hidden layer is also computed in 32 bit floats.</td></tr>
    *   <tr><td><tt>&#8209;numPreComputed</tt></td><td>100000</td><td>The parser pre-computes hidden-layer unit activations for particular inputs words at both training and testing time in order to speed up feedforward computation in the neural network. This parameter determines how many words for which we should compute hidden-layer activations.</td></tr>
    *   <tr><td><tt>&#8209;sentenceDelimiter</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>.  If provided, assume that the given <tt>textFile</tt> has already been sentence-split, and that sentences are separated by this delimiter.</td></tr>
    *   <tr><td><tt>&#8209;tagger.model</tt></td><td>edu/stanford/nlp/models/pos-tagger/english-left3words/english-left3words-distsim.tagger</td><td>Only applicable for testing with <tt>-textFile</tt>. Path to a part-of-speech tagger to use to pre-tag the raw sentences before parsing.</td></tr>
@@ -1261,7 +1370,26 @@ public class DependencyParser  {
     if (props.containsKey("testFile")) {
       parser.loadModelFile(props.getProperty("model"));
       loaded = true;
-      parser.testCoNLL(props.getProperty("testFile"), props.getProperty("outFile"));
+      double las = parser.testCoNLL(props.getProperty("testFile"), props.getProperty("outFile"));
+
+      // Report how much accuracy is lost by storing the weights at a lower precision
+      if (props.containsKey("comparePrecision")) {
+        Properties compactProps = new Properties();
+        compactProps.putAll(props);
+        compactProps.setProperty("inferencePrecision", props.getProperty("comparePrecision"));
+        DependencyParser compactParser = new DependencyParser(compactProps);
+        compactParser.loadModelFile(props.getProperty("model"));
+        double compactLas = compactParser.testCoNLL(props.getProperty("testFile"), null);
+        System.err.printf("%s: LAS = %.4f, weights = %d MB%n", parser.config.inferencePrecision,
+            las, parser.classifier.sizeInBytes() >> 20);
+        System.err.printf("%s: LAS = %.4f, weights = %d MB%n", compactParser.config.inferencePrecision,
+            compactLas, compactParser.classifier.sizeInBytes() >> 20);
+        System.err.printf("LAS delta = %+.4f%n", compactLas - las);
+        List<CoreMap> testSents = new ArrayList<>();
+        Util.loadConllFile(props.getProperty("testFile"), testSents, new ArrayList<>(), parser.config.unlabeled, parser.config.cPOS);
+        System.err.printf("Largest relative change in transition scores = %.3g%n",
+            maxRelativeScoreError(parser, compactParser, testSents));
+      }
     }
 
     // Parse raw text data
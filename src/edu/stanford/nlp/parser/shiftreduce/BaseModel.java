@@ -1,6 +1,7 @@
 package edu.stanford.nlp.parser.shiftreduce;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -12,6 +13,7 @@ import edu.stanford.nlp.tagger.common.Tagger;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.Treebank;
 import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.ScoredComparator;
 import edu.stanford.nlp.util.ScoredObject;
 
 public abstract class BaseModel implements Serializable {
@@ -116,6 +118,29 @@ public abstract class BaseModel implements Serializable {
 
   public abstract Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints);
 
+  /**
+   * Finds the same transitions as the method above, but writes them
+   * into arrays supplied by the caller, best first, rather than making
+   * a new collection.  The beam search of {@link ShiftReduceParserQuery}
+   * uses this so it does not allocate per state.  Models which can
+   * select the transitions without allocating should override it.
+   *
+   * @param transitions Filled with the indices of the transitions found; must hold at least numTransitions
+   * @param scores Filled with the scores of the transitions found; must hold at least numTransitions
+   * @return The number of transitions found
+   */
+  public int findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints,
+                                           int[] transitions, double[] scores) {
+    List<ScoredObject<Integer>> found = new ArrayList<>(findHighestScoringTransitions(state, requireLegal, numTransitions, constraints));
+    found.sort(ScoredComparator.DESCENDING_COMPARATOR);
+    int count = Math.min(found.size(), numTransitions);
+    for (int i = 0; i < count; ++i) {
+      transitions[i] = found.get(i).object();
+      scores[i] = found.get(i).score();
+    }
+    return count;
+  }
+
   /**
    * Train a new model.  This is the method to override for new models
    * such that the ShiftReduceParser will fill in the model.  Given a
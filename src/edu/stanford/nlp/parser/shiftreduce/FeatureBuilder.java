@@ -0,0 +1,78 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.List;
+
+/**
+ * Builds features a piece at a time: each feature is the concatenation
+ * of everything appended since the last call to {@link #add()}.  This lets
+ * the same featurization code either make the feature strings, for
+ * training and for models which look features up by string, or only their
+ * hashes (see {@link HashedFeatures}), which is much cheaper when parsing.
+ * <br>
+ * Appending a value gives the same feature as concatenating it to a
+ * String with {@code +}.
+ */
+public abstract class FeatureBuilder {
+
+  public abstract FeatureBuilder append(String s);
+
+  public abstract FeatureBuilder append(char c);
+
+  public abstract FeatureBuilder append(int i);
+
+  public FeatureBuilder append(boolean b) {
+    return append(b ? "true" : "false");
+  }
+
+  public FeatureBuilder append(Object o) {
+    return append(String.valueOf(o));
+  }
+
+  /** Finish the current feature and start the next one. */
+  public abstract void add();
+
+  /** Add a feature which is just the given string. */
+  public void add(String feature) {
+    append(feature).add();
+  }
+
+  /** Builds the feature strings and adds them to a list. */
+  public static class Strings extends FeatureBuilder {
+    private final List<String> features;
+    private final StringBuilder feature = new StringBuilder();
+
+    public Strings(List<String> features) {
+      this.features = features;
+    }
+
+    @Override
+    public FeatureBuilder append(String s) {
+      feature.append(s);
+      return this;
+    }
+
+    @Override
+    public FeatureBuilder append(char c) {
+      feature.append(c);
+      return this;
+    }
+
+    @Override
+    public FeatureBuilder append(int i) {
+      feature.append(i);
+      return this;
+    }
+
+    @Override
+    public void add() {
+      features.add(feature.toString());
+      feature.setLength(0);
+    }
+
+    @Override
+    public void add(String feature) {
+      features.add(feature);
+    }
+  }
+
+}
@@ -16,6 +16,18 @@ public abstract class FeatureFactory implements Serializable {
 
   abstract public List<String> featurize(State state, List<String> features);
 
+  /**
+   * Add the hashes of the features of the state to the buffer.  This is
+   * what the parser uses to score states.  By default the feature strings
+   * are built and then hashed; factories which build their features with a
+   * {@link FeatureBuilder} can skip making the strings.
+   */
+  public void featurize(State state, HashedFeatures features) {
+    for (String feature : featurize(state)) {
+      features.add(feature);
+    }
+  }
+
   enum Transition {
     LEFT, RIGHT, UNARY
   };
@@ -0,0 +1,96 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+/**
+ * A reusable buffer of features, each kept only as a 64 bit hash of its
+ * string.  The hash is computed as the feature is built, so the feature
+ * string is never made; {@link #hash(String)} gives the same hash for the
+ * string, which is how {@link HashedWeights} indexes the weights of a
+ * model trained with string features.
+ * <br>
+ * The hash is 64 bit FNV-1a over the chars of the string.
+ */
+public class HashedFeatures extends FeatureBuilder {
+
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  private long[] hashes;
+  private int size = 0;
+  private long hash = OFFSET_BASIS;
+
+  public HashedFeatures() {
+    this(256);
+  }
+
+  public HashedFeatures(int capacity) {
+    hashes = new long[capacity];
+  }
+
+  /** The hash of the given feature string, which is the same as building it with append. */
+  public static long hash(String feature) {
+    long h = OFFSET_BASIS;
+    for (int i = 0; i < feature.length(); ++i) {
+      h = (h ^ feature.charAt(i)) * PRIME;
+    }
+    return h;
+  }
+
+  @Override
+  public FeatureBuilder append(String s) {
+    long h = hash;
+    for (int i = 0; i < s.length(); ++i) {
+      h = (h ^ s.charAt(i)) * PRIME;
+    }
+    hash = h;
+    return this;
+  }
+
+  @Override
+  public FeatureBuilder append(char c) {
+    hash = (hash ^ c) * PRIME;
+    return this;
+  }
+
+  @Override
+  public FeatureBuilder append(int i) {
+    long value = i;
+    if (value < 0) {
+      append('-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor * 10 <= value) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      append((char) ('0' + (value / divisor) % 10));
+    }
+    return this;
+  }
+
+  @Override
+  public void add() {
+    if (size == hashes.length) {
+      long[] bigger = new long[hashes.length * 2];
+      System.arraycopy(hashes, 0, bigger, 0, size);
+      hashes = bigger;
+    }
+    hashes[size++] = hash;
+    hash = OFFSET_BASIS;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long get(int i) {
+    return hashes[i];
+  }
+
+  /** Empty the buffer for the next state, keeping its memory. */
+  public void clear() {
+    size = 0;
+    hash = OFFSET_BASIS;
+  }
+
+}
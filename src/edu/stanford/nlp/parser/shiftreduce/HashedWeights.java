@@ -0,0 +1,102 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.Map;
+
+/**
+ * The feature weights of a {@link PerceptronModel} in an open addressing
+ * table keyed by the {@link HashedFeatures#hash hash} of each feature.
+ * Scoring a state then needs no feature strings, no String hashing or
+ * equality checks, and no pointer chasing through {@link Weight} objects.
+ * <br>
+ * The table shares the packed arrays of the model's Weights rather than
+ * copying them, so on top of the string keyed weights it costs only a key
+ * and a reference per slot, about 24 bytes per feature, and not a second
+ * copy of the weights.  It is a snapshot all the same: a Weight replaces
+ * its array when it gains a transition, so the table must be built again
+ * whenever the weights change.
+ */
+class HashedWeights {
+
+  private final long[] keys;
+  /** The packed weights of the feature in each slot, as in {@link Weight#packed}; null for an empty slot */
+  private final long[][] weights;
+  private final int shift;
+
+  private HashedWeights(int bits) {
+    keys = new long[1 << bits];
+    weights = new long[1 << bits][];
+    shift = 64 - bits;
+  }
+
+  /**
+   * Build the table for the given weights.
+   *
+   * @return The table, or null if two of the features have the same hash,
+   *   in which case the weights can only be looked up by string
+   */
+  static HashedWeights build(Map<String, Weight> featureWeights) {
+    int numFeatures = 0;
+    for (Weight weight : featureWeights.values()) {
+      if (weight.size() > 0) {
+        ++numFeatures;
+      }
+    }
+    // keep the table at most half full, so probes are short
+    int bits = 1;
+    while ((1 << bits) < numFeatures * 2L) {
+      ++bits;
+    }
+    HashedWeights table = new HashedWeights(bits);
+    for (Map.Entry<String, Weight> entry : featureWeights.entrySet()) {
+      Weight weight = entry.getValue();
+      if (weight.size() == 0) {
+        continue;
+      }
+      long key = HashedFeatures.hash(entry.getKey());
+      int slot = table.slot(key);
+      if (table.weights[slot] != null) {
+        // the keys of the map are distinct, so this is a collision
+        return null;
+      }
+      table.keys[slot] = key;
+      table.weights[slot] = weight.packed;
+    }
+    return table;
+  }
+
+  /** The slot which holds the key, or the empty slot where it would go. */
+  private int slot(long key) {
+    int mask = keys.length - 1;
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    while (weights[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** Add the weights of all the features to the transition scores.  Unknown features are ignored. */
+  void score(HashedFeatures features, float[] scores) {
+    for (int f = 0; f < features.size(); ++f) {
+      long[] packed = weights[slot(features.get(f))];
+      if (packed == null) {
+        continue;
+      }
+      for (long pack : packed) {
+        // same unpacking as Weight.score
+        scores[(int) (pack >>> 32)] += Float.intBitsToFloat((int) (pack & 0xFFFFFFFF));
+      }
+    }
+  }
+
+  /** The number of features in the table. */
+  int size() {
+    int size = 0;
+    for (long[] packed : weights) {
+      if (packed != null) {
+        ++size;
+      }
+    }
+    return size;
+  }
+
+}
@@ -3,6 +3,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -39,6 +40,19 @@ public class PerceptronModel extends BaseModel  {
   Map<String, Weight> featureWeights;
   final FeatureFactory featureFactory;
 
+  /**
+   * featureWeights keyed by feature hash, which is what parsing uses.
+   * Built the first time it is needed after the weights change; null if
+   * two features have the same hash, in which case parsing looks up the
+   * feature strings instead.  It shares the weight arrays of
+   * featureWeights, so it adds only its table to the model's memory.
+   */
+  private transient HashedWeights hashedWeights;
+  private transient volatile boolean hashedWeightsBuilt = false;
+
+  private static final ThreadLocal<HashedFeatures> featureBuffer = ThreadLocal.withInitial(HashedFeatures::new);
+  private static final ThreadLocal<float[]> scoreBuffer = ThreadLocal.withInitial(() -> new float[0]);
+
   public PerceptronModel(ShiftReduceOptions op, Index<Transition> transitionIndex,
                          Set<String> knownStates, Set<String> rootStates, Set<String> rootOnlyStates) {
     super(op, transitionIndex, knownStates, rootStates, rootOnlyStates);
@@ -103,6 +117,7 @@ public class PerceptronModel extends BaseModel  {
     }
 
     featureWeights = Generics.newHashMap();
+    weightsChanged();
     for (String feature : features) {
       featureWeights.put(feature, new Weight());
     }
@@ -124,6 +139,7 @@ public class PerceptronModel extends BaseModel  {
    * Any feature with no transitions left is then removed
    */
   void condenseFeatures() {
+    weightsChanged();
     Iterator<String> featureIt = featureWeights.keySet().iterator();
     while (featureIt.hasNext()) {
       String feature = featureIt.next();
@@ -136,6 +152,7 @@ public class PerceptronModel extends BaseModel  {
   }
 
   void filterFeatures(Set<String> keep) {
+    weightsChanged();
     Iterator<String> featureIt = featureWeights.keySet().iterator();
     while (featureIt.hasNext()) {
       if (!keep.contains(featureIt.next())) {
@@ -199,14 +216,71 @@ public class PerceptronModel extends BaseModel  {
     return transitions.iterator().next();
   }
 
+  /** Scores with hashed features if it can, which saves making the feature strings and looking them up */
   @Override
   public Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
-    List<String> features = featureFactory.featurize(state);
-    return findHighestScoringTransitions(state, features, requireLegal, numTransitions, constraints);
+    float[] scores = new float[transitionIndex.size()];
+    scoreTransitions(state, scores);
+    return findHighestScoringTransitions(state, scores, requireLegal, numTransitions, constraints);
   }
 
-  private Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, List<String> features, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
-    float[] scores = new float[transitionIndex.size()];
+  /**
+   * Selects the best transitions straight into the caller's arrays,
+   * scoring into a per-thread buffer, so nothing is allocated per state.
+   * Of transitions with equal scores, the later one in the index is
+   * preferred, which is what the queue based selection does.
+   */
+  @Override
+  public int findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints,
+                                           int[] transitions, double[] scores) {
+    if (numTransitions <= 0) {
+      return 0;
+    }
+    float[] transitionScores = scoreBuffer.get();
+    if (transitionScores.length != transitionIndex.size()) {
+      transitionScores = new float[transitionIndex.size()];
+      scoreBuffer.set(transitionScores);
+    } else {
+      Arrays.fill(transitionScores, 0.0f);
+    }
+    scoreTransitions(state, transitionScores);
+
+    int found = 0;
+    for (int i = 0; i < transitionScores.length; ++i) {
+      float score = transitionScores[i];
+      // check the score first: isLegal is much more expensive
+      if (found == numTransitions && score < scores[found - 1]) {
+        continue;
+      }
+      if (requireLegal && !transitionIndex.get(i).isLegal(state, constraints)) {
+        continue;
+      }
+      int position = found < numTransitions ? found++ : found - 1;
+      while (position > 0 && scores[position - 1] <= score) {
+        transitions[position] = transitions[position - 1];
+        scores[position] = scores[position - 1];
+        --position;
+      }
+      transitions[position] = i;
+      scores[position] = score;
+    }
+    return found;
+  }
+
+  /** Add the weights of the features of the state to the scores, using hashed features if the weights allow it */
+  private void scoreTransitions(State state, float[] scores) {
+    HashedWeights weights = hashedWeights();
+    if (weights == null) {
+      scoreTransitions(featureFactory.featurize(state), scores);
+      return;
+    }
+    HashedFeatures features = featureBuffer.get();
+    features.clear();
+    featureFactory.featurize(state, features);
+    weights.score(features, scores);
+  }
+
+  private void scoreTransitions(List<String> features, float[] scores) {
     for (String feature : features) {
       Weight weight = featureWeights.get(feature);
       if (weight == null) {
@@ -215,7 +289,15 @@ public class PerceptronModel extends BaseModel  {
       }
       weight.score(scores);
     }
+  }
+
+  private Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, List<String> features, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    float[] scores = new float[transitionIndex.size()];
+    scoreTransitions(features, scores);
+    return findHighestScoringTransitions(state, scores, requireLegal, numTransitions, constraints);
+  }
 
+  private Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, float[] scores, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
     PriorityQueue<ScoredObject<Integer>> queue = new PriorityQueue<>(numTransitions + 1, ScoredComparator.ASCENDING_COMPARATOR);
     for (int i = 0; i < scores.length; ++i) {
       if (!requireLegal || transitionIndex.get(i).isLegal(state, constraints)) {
@@ -229,6 +311,27 @@ public class PerceptronModel extends BaseModel  {
     return queue;
   }
 
+  private HashedWeights hashedWeights() {
+    if (!hashedWeightsBuilt) {
+      synchronized (this) {
+        if (!hashedWeightsBuilt) {
+          hashedWeights = HashedWeights.build(featureWeights);
+          if (hashedWeights == null) {
+            log.info("Some features have the same hash; scoring states with feature strings instead");
+          }
+          hashedWeightsBuilt = true;
+        }
+      }
+    }
+    return hashedWeights;
+  }
+
+  /** Must be called when featureWeights changes, so that the hashed weights are rebuilt */
+  private synchronized void weightsChanged() {
+    hashedWeights = null;
+    hashedWeightsBuilt = false;
+  }
+
   private static class Update {
     final List<String> features;
     final int goldTransition;
@@ -550,6 +653,7 @@ public class PerceptronModel extends BaseModel  {
           }
         }
         updates.clear();
+        weightsChanged();
       }
       trainingTimer.done("Iteration " + iteration);
       log.info("While training, got " + numCorrect + " transitions correct and " + numWrong + " transitions wrong");
@@ -650,6 +754,7 @@ public class PerceptronModel extends BaseModel  {
       temp.saveModel(tempName);
       Set<String> features = featureWeights.keySet();
       featureWeights = Generics.newHashMap();
+      weightsChanged();
       trainModel(serializedPath, tagger, random, binarizedTrees, transitionLists, devTreebank, nThreads, features);
     } else {
       trainModel(serializedPath, tagger, random, binarizedTrees, transitionLists, devTreebank, nThreads, null);
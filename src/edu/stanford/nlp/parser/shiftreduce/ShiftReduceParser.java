@@ -46,7 +46,6 @@ import edu.stanford.nlp.ling.Word;
 import edu.stanford.nlp.parser.common.ArgUtils;
 import edu.stanford.nlp.parser.common.ParserGrammar;
 import edu.stanford.nlp.parser.common.ParserQuery;
-import edu.stanford.nlp.parser.common.ParserUtils;
 import edu.stanford.nlp.parser.lexparser.BinaryHeadFinder;
 import edu.stanford.nlp.parser.lexparser.EvaluateTreebank;
 import edu.stanford.nlp.parser.lexparser.Options;
@@ -179,11 +178,7 @@ public class ShiftReduceParser extends ParserGrammar implements Serializable  {
 
   @Override
   public Tree parse(List<? extends HasWord> sentence) {
-    ShiftReduceParserQuery pq = new ShiftReduceParserQuery(this);
-    if (pq.parse(sentence)) {
-      return pq.getBestParse();
-    }
-    return ParserUtils.xTree(sentence);
+    return parse(new ShiftReduceParserQuery(this), sentence);
   }
 
 
@@ -3,11 +3,11 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 
 import java.io.PrintWriter;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.ling.Label;
@@ -20,8 +20,7 @@ import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.tregex.TregexPattern;
 import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
 import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
-import edu.stanford.nlp.util.Generics;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.ScoredComparator;
 import edu.stanford.nlp.util.ScoredObject;
 
@@ -44,6 +43,13 @@ public class ShiftReduceParserQuery implements ParserQuery  {
 
   List<ParserConstraint> constraints = null;
 
+  // The beam and the transitions selected for the next one, reused from sentence to sentence
+  private State[] beam, nextBeam;
+  private int[] stateTransitions;
+  private double[] stateScores;
+  private int[] selectedStates, selectedTransitions;
+  private double[] selectedDeltas, selectedScores;
+
   public ShiftReduceParserQuery(ShiftReduceParser parser) {
     this.parser = parser;
   }
@@ -69,44 +75,90 @@ public class ShiftReduceParserQuery implements ParserQuery  {
   private static TsurgeonPattern rearrangeFinalPunctuationTsurgeon =
     Tsurgeon.parseOperation("[move punc >-1 top] [if exists single prune single]");
 
+  /**
+   * Make sure the beam arrays can hold a beam of the given size.  They are
+   * kept between sentences, so a query which parses many sentences only
+   * allocates them once.
+   */
+  private void ensureBeamArrays(int maxBeamSize) {
+    if (beam != null && beam.length >= maxBeamSize) {
+      return;
+    }
+    beam = new State[maxBeamSize];
+    nextBeam = new State[maxBeamSize];
+    stateTransitions = new int[maxBeamSize];
+    stateScores = new double[maxBeamSize];
+    selectedStates = new int[maxBeamSize];
+    selectedTransitions = new int[maxBeamSize];
+    selectedDeltas = new double[maxBeamSize];
+    selectedScores = new double[maxBeamSize];
+  }
+
+  /**
+   * Add a candidate to the selected transitions, which are kept sorted
+   * best first.  When the selection is full the candidate replaces the
+   * worst one, if it is at least as good.
+   *
+   * @return The new number of selected transitions
+   */
+  private int select(int numSelected, int maxBeamSize, int state, int transition, double delta, double score) {
+    if (numSelected == maxBeamSize && score < selectedScores[numSelected - 1]) {
+      return numSelected;
+    }
+    int position = numSelected < maxBeamSize ? numSelected++ : numSelected - 1;
+    while (position > 0 && selectedScores[position - 1] <= score) {
+      selectedStates[position] = selectedStates[position - 1];
+      selectedTransitions[position] = selectedTransitions[position - 1];
+      selectedDeltas[position] = selectedDeltas[position - 1];
+      selectedScores[position] = selectedScores[position - 1];
+      --position;
+    }
+    selectedStates[position] = state;
+    selectedTransitions[position] = transition;
+    selectedDeltas[position] = delta;
+    selectedScores[position] = score;
+    return numSelected;
+  }
+
+  /**
+   * Beam search over the transitions.  The beam is kept in an array,
+   * sorted best first.  At each step the best maxBeamSize successors of
+   * all the states in the beam are chosen by their scores alone, and only
+   * then are their transitions applied, so each step builds at most
+   * maxBeamSize new states rather than one for every transition
+   * considered.
+   */
   private boolean parseInternal() {
     final int maxBeamSize = Math.max(parser.op.testOptions().beamSize, 1);
+    ensureBeamArrays(maxBeamSize);
 
     success = true;
     unparsable = false;
-    PriorityQueue<State> beam = new PriorityQueue<>(maxBeamSize + 1, ScoredComparator.ASCENDING_COMPARATOR);
-    beam.add(initialState);
-    // TODO: don't construct as many PriorityQueues
-    while (beam.size() > 0) {
-      if (Thread.interrupted()) { // Allow interrupting the parser
-        throw new RuntimeInterruptedException();
-      }
-      // log.info("================================================");
-      // log.info("Current beam:");
-      // log.info(beam);
-      PriorityQueue<State> oldBeam = beam;
-      beam = new PriorityQueue<>(maxBeamSize + 1, ScoredComparator.ASCENDING_COMPARATOR);
-      State bestState = null;
-      for (State state : oldBeam) {
-        if (Thread.interrupted()) {  // Allow interrupting the parser
-          throw new RuntimeInterruptedException();
-        }
-        Collection<ScoredObject<Integer>> predictedTransitions = parser.model.findHighestScoringTransitions(state, true, maxBeamSize, constraints);
-        // log.info("Examining state: " + state);
-        for (ScoredObject<Integer> predictedTransition : predictedTransitions) {
-          Transition transition = parser.model.transitionIndex.get(predictedTransition.object());
-          State newState = transition.apply(state, predictedTransition.score());
-          // log.info("  Transition: " + transition + " (" + predictedTransition.score() + ")");
-          if (bestState == null || bestState.score() < newState.score()) {
-            bestState = newState;
-          }
-          beam.add(newState);
-          if (beam.size() > maxBeamSize) {
-            beam.poll();
+    beam[0] = initialState;
+    int beamSize = 1;
+    while (beamSize > 0) {
+      Deadline.checkForInterrupt(); // Allow interrupting the parser
+      int numSelected = 0;
+      for (int i = 0; i < beamSize; ++i) {
+        Deadline.checkForInterrupt();  // Allow interrupting the parser
+        State state = beam[i];
+        int numTransitions = parser.model.findHighestScoringTransitions(state, true, maxBeamSize, constraints, stateTransitions, stateScores);
+        for (int j = 0; j < numTransitions; ++j) {
+          double score = state.score() + stateScores[j];
+          if (numSelected == maxBeamSize && score < selectedScores[numSelected - 1]) {
+            // the transitions of this state come best first, so none of the rest fit either
+            break;
           }
+          numSelected = select(numSelected, maxBeamSize, i, stateTransitions[j], stateScores[j], score);
         }
       }
-      if (beam.size() == 0) {
+
+      int nextSize = 0;
+      for (int i = 0; i < numSelected; ++i) {
+        Transition transition = parser.model.transitionIndex.get(selectedTransitions[i]);
+        nextBeam[nextSize++] = transition.apply(beam[selectedStates[i]], selectedDeltas[i]);
+      }
+      if (nextSize == 0) {
         // Oops, time for some fallback plan
         // This can happen with the set of constraints given by the original paper
         // For example, one particular French model had a situation where it would reach
@@ -114,25 +166,28 @@ public class ShiftReduceParserQuery implements ParserQuery  {
         // without a left(Ssub) transition, so finishing the parse was impossible.
         // This will probably result in a bad parse, but at least it
         // will result in some sort of parse.
-        for (State state : oldBeam) {
-          Transition transition = parser.model.findEmergencyTransition(state, constraints);
+        for (int i = 0; i < beamSize; ++i) {
+          Transition transition = parser.model.findEmergencyTransition(beam[i], constraints);
           if (transition != null) {
-            State newState = transition.apply(state);
-            if (bestState == null || bestState.score() < newState.score()) {
-              bestState = newState;
-            }
-            beam.add(newState);
+            nextBeam[nextSize++] = transition.apply(beam[i]);
           }
         }
+        Arrays.sort(nextBeam, 0, nextSize, ScoredComparator.DESCENDING_COMPARATOR);
       }
 
-      // bestState == null only happens when we have failed to make progress, so quit
-      // If the bestState is finished, we are done
-      if (bestState == null || bestState.isFinished()) {
+      State[] swap = beam;
+      beam = nextBeam;
+      nextBeam = swap;
+      Arrays.fill(nextBeam, null);
+      beamSize = nextSize;
+
+      // an empty beam means we have failed to make progress, so quit
+      // If the best state is finished, we are done
+      if (beamSize == 0 || beam[0].isFinished()) {
         break;
       }
     }
-    if (beam.size() == 0) {
+    if (beamSize == 0) {
       success = false;
       unparsable = true;
       debinarized = null;
@@ -140,13 +195,13 @@ public class ShiftReduceParserQuery implements ParserQuery  {
       bestParses = Collections.emptyList();
     } else {
       // TODO: filter out beam elements that aren't finished
-      bestParses = Generics.newArrayList(beam);
-      Collections.sort(bestParses, beam.comparator());
-      Collections.reverse(bestParses);
+      bestParses = new ArrayList<>(Arrays.asList(beam).subList(0, beamSize));
       finalState = bestParses.get(0);
       debinarized = debinarizer.transformTree(finalState.stack.peek());
       debinarized = Tsurgeon.processPattern(rearrangeFinalPunctuationTregex, rearrangeFinalPunctuationTsurgeon, debinarized);
     }
+    // don't hold on to the states of this sentence
+    Arrays.fill(beam, null);
     return success;
   }
 
@@ -0,0 +1,394 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether the server takes on an annotation request, and runs the
+ * requests it admits on a fixed pool of threads.
+ * <p>
+ * Each request gets an estimated cost: its length in characters times the
+ * summed relative costs of the annotators it asks for (see
+ * {@link #estimateCost(int, Collection)}).  Requests up to a configurable
+ * cost go into the interactive lane, and everything else, along with
+ * requests which ask for it, into the bulk lane.  Interactive requests
+ * are always run before bulk ones; within a lane requests run in the
+ * order they arrived.
+ * <p>
+ * A request is turned away straight away, rather than left to time out
+ * in a queue, if
+ * <ul>
+ *   <li>its lane already has as many requests waiting as it can hold
+ *       ({@code 503 Service Unavailable});</li>
+ *   <li>the time it would wait, going by the costs of the requests ahead of
+ *       it, is longer than its timeout ({@code 503 Service Unavailable}); or</li>
+ *   <li>it uses an annotator which has a concurrency limit, and that many
+ *       requests using the annotator are already waiting or running
+ *       ({@code 429 Too Many Requests}).</li>
+ * </ul>
+ * Either way the rejection says how many seconds to wait before trying
+ * again.  The time per unit of cost, which the wait estimates are based
+ * on, is learned from the requests which complete.
+ * <p>
+ * Work submitted to the executor without going through {@link #admit}
+ * (e.g., the server's TokensRegex queries) is run in the interactive lane
+ * and isn't counted against any limit.
+ */
+public class AdmissionController {
+
+  /** The status code of a request rejected for asking too much of a limited annotator. */
+  public static final int TOO_MANY_REQUESTS = 429;
+  /** The status code of a request rejected because the server is saturated. */
+  public static final int SERVICE_UNAVAILABLE = 503;
+
+  /** The relative cost per character of each annotator; tokenizing is 1. */
+  private static final Map<String, Double> ANNOTATOR_COSTS = new HashMap<>();
+  static {
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_TOKENIZE, 1.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_CLEAN_XML, 1.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_SSPLIT, 0.5);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_POS, 3.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_LEMMA, 0.5);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_NER, 8.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_REGEXNER, 1.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_TOKENSREGEX, 1.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_ENTITY_MENTIONS, 0.5);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_TRUECASE, 3.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_PARSE, 40.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_DEPENDENCIES, 5.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_MENTION, 3.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_COREF, 40.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_DETERMINISTIC_COREF, 30.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_RELATION, 5.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_SENTIMENT, 10.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_NATLOG, 2.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_OPENIE, 10.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_KBP, 15.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_QUOTE, 1.0);
+    ANNOTATOR_COSTS.put(Annotator.STANFORD_LINK, 2.0);
+  }
+  /** The cost of annotators not in the table. */
+  private static final double DEFAULT_ANNOTATOR_COST = 2.0;
+  /** Characters added to every request, for the fixed overhead of a document. */
+  private static final int DOCUMENT_OVERHEAD = 100;
+  /** The time per unit of cost assumed before any request has completed. */
+  private static final double INITIAL_NANOS_PER_COST = 2000.0;
+  /** How much each completed request moves the time per unit of cost. */
+  private static final double SMOOTHING = 0.1;
+
+  /** The lanes requests wait in; lanes earlier in the list run first. */
+  public enum Lane { INTERACTIVE, BULK }
+
+  /** Thrown by {@link #admit} when a request is turned away. */
+  public static class RejectedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The HTTP status to respond with, {@link #TOO_MANY_REQUESTS} or {@link #SERVICE_UNAVAILABLE}. */
+    public final int status;
+    /** The number of seconds to wait before trying again. */
+    public final long retryAfterSeconds;
+
+    RejectedException(int status, long retryAfterSeconds, String message) {
+      super(message);
+      this.status = status;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+  }
+
+  /**
+   * An admitted request.  It counts against the limits until it has run,
+   * failed, or been cancelled.
+   */
+  public class Ticket {
+
+    public final Lane lane;
+    public final long cost;
+    /** The annotators the request uses which have a concurrency limit. */
+    private final List<String> limited;
+    /** False for work submitted without going through {@link #admit}, which isn't counted */
+    private final boolean admitted;
+    private final long sequence = sequenceNumbers.incrementAndGet();
+    /** Guarded by the controller */
+    private long startNanos = -1;
+    /** Guarded by the controller */
+    private boolean finished;
+
+    private Ticket(Lane lane, long cost, List<String> limited, boolean admitted) {
+      this.lane = lane;
+      this.cost = cost;
+      this.limited = limited;
+      this.admitted = admitted;
+    }
+
+    /** Called when the request leaves the queue and starts to run. */
+    void start() {
+      synchronized (AdmissionController.this) {
+        if ( ! finished && startNanos < 0) {
+          startNanos = System.nanoTime();
+          if ( ! admitted) {
+            return;
+          }
+          queued[lane.ordinal()] -= 1;
+          queuedCost[lane.ordinal()] -= cost;
+        }
+      }
+    }
+
+    /**
+     * Called when the request is done, whether it succeeded or not.
+     * Calling this more than once has no further effect.
+     *
+     * @param completed If true, the request succeeded, and its time is used to refine the cost estimates
+     */
+    void finish(boolean completed) {
+      synchronized (AdmissionController.this) {
+        if (finished) {
+          return;
+        }
+        finished = true;
+        if ( ! admitted) {
+          return;
+        }
+        if (startNanos < 0) {
+          queued[lane.ordinal()] -= 1;
+          queuedCost[lane.ordinal()] -= cost;
+        } else if (completed && cost > 0) {
+          double observed = (double) (System.nanoTime() - startNanos) / cost;
+          nanosPerCost += SMOOTHING * (observed - nanosPerCost);
+        }
+        for (String annotator : limited) {
+          inFlight.merge(annotator, -1, Integer::sum);
+        }
+      }
+    }
+
+  }
+
+  /** A task on the executor's queue, ordered by lane and then by arrival. */
+  private class Job<V> extends FutureTask<V> implements Comparable<Job<?>> {
+
+    private final Ticket ticket;
+    /** Whether the task returned normally, rather than failing, timing out or being cancelled */
+    private volatile boolean succeeded;
+
+    Job(Callable<V> callable, Ticket ticket) {
+      super(callable);
+      this.ticket = ticket;
+    }
+
+    @Override
+    public void run() {
+      ticket.start();
+      super.run();
+    }
+
+    @Override
+    protected void set(V value) {
+      succeeded = true;
+      super.set(value);
+    }
+
+    @Override
+    protected void done() {
+      ticket.finish(succeeded);
+    }
+
+    @Override
+    public int compareTo(Job<?> other) {
+      int byLane = ticket.lane.compareTo(other.ticket.lane);
+      return byLane != 0 ? byLane : Long.compare(ticket.sequence, other.ticket.sequence);
+    }
+
+  }
+
+  private final int threads;
+  private final int maxQueued;
+  private final long maxInteractiveCost;
+  private final Map<String, Integer> annotatorLimits;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong sequenceNumbers = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+
+  /** The number of requests waiting in each lane.  Guarded by this */
+  private final int[] queued = new int[Lane.values().length];
+  /** The summed cost of the requests waiting in each lane.  Guarded by this */
+  private final long[] queuedCost = new long[Lane.values().length];
+  /** The number of admitted requests using each limited annotator.  Guarded by this */
+  private final Map<String, Integer> inFlight = new HashMap<>();
+  /** Guarded by this */
+  private double nanosPerCost = INITIAL_NANOS_PER_COST;
+
+  /**
+   * Create an admission controller, and the threads to run requests on.
+   *
+   * @param threads The number of requests to run at once
+   * @param maxQueued The number of requests each lane can hold, not counting those running
+   * @param maxInteractiveCost The highest cost of a request in the interactive lane
+   * @param annotatorLimits The number of requests which can be waiting or running at once
+   *                        for each annotator which has a limit; see {@link #parseLimits(String)}
+   */
+  public AdmissionController(int threads, int maxQueued, long maxInteractiveCost, Map<String, Integer> annotatorLimits) {
+    this.threads = threads;
+    this.maxQueued = maxQueued;
+    this.maxInteractiveCost = maxInteractiveCost;
+    this.annotatorLimits = new HashMap<>(annotatorLimits);
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>()) {
+      @Override
+      protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new Job<>(callable, new Ticket(Lane.INTERACTIVE, 0, Collections.emptyList(), false));
+      }
+
+      @Override
+      protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return newTaskFor(Executors.callable(runnable, value));
+      }
+
+      @Override
+      public void execute(Runnable command) {
+        super.execute(command instanceof Job ? command : newTaskFor(command, null));
+      }
+    };
+  }
+
+  /**
+   * Parse concurrency limits of the form {@code coref=2,parse=4}.
+   *
+   * @throws IllegalArgumentException If the limits are malformed
+   */
+  public static Map<String, Integer> parseLimits(String spec) {
+    Map<String, Integer> limits = new HashMap<>();
+    if (spec == null) {
+      return limits;
+    }
+    for (String entry : spec.split("[,;\\s]+")) {
+      if (entry.isEmpty()) {
+        continue;
+      }
+      int eq = entry.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expected annotator=limit, but got: " + entry);
+      }
+      int limit = Integer.parseInt(entry.substring(eq + 1).trim());
+      if (limit <= 0) {
+        throw new IllegalArgumentException("Annotator limits must be positive: " + entry);
+      }
+      limits.put(entry.substring(0, eq).trim(), limit);
+    }
+    return limits;
+  }
+
+  /**
+   * The estimated cost of annotating a document: its length in characters,
+   * plus a fixed overhead, times the summed relative costs of the annotators.
+   */
+  public static long estimateCost(int numChars, Collection<String> annotators) {
+    double perChar = 0.0;
+    for (String annotator : annotators) {
+      perChar += ANNOTATOR_COSTS.getOrDefault(annotator.trim(), DEFAULT_ANNOTATOR_COST);
+    }
+    return (long) Math.ceil((numChars + DOCUMENT_OVERHEAD) * perChar);
+  }
+
+  /**
+   * Admit a request, or turn it away.  The returned ticket must be passed to
+   * {@link #submit(Ticket, Callable)}, or, if the request is abandoned
+   * before that, to {@link #abandon(Ticket)}.
+   *
+   * @param numChars The length of the document
+   * @param annotators The annotators to run over it
+   * @param bulk If true, put the request in the bulk lane even if it is cheap
+   * @param timeoutMillis How long the request can take, including the time it waits
+   *
+   * @throws RejectedException If the request is turned away
+   */
+  public Ticket admit(int numChars, Collection<String> annotators, boolean bulk, long timeoutMillis) throws RejectedException {
+    long cost = estimateCost(numChars, annotators);
+    Lane lane = bulk || cost > maxInteractiveCost ? Lane.BULK : Lane.INTERACTIVE;
+    synchronized (this) {
+      List<String> limited = new ArrayList<>();
+      for (String annotator : annotators) {
+        Integer limit = annotatorLimits.get(annotator.trim());
+        if (limit != null) {
+          if (inFlight.getOrDefault(annotator.trim(), 0) >= limit) {
+            throw reject(TOO_MANY_REQUESTS, lane, "Too many concurrent requests using annotator " + annotator.trim());
+          }
+          limited.add(annotator.trim());
+        }
+      }
+      if (queued[lane.ordinal()] >= maxQueued) {
+        throw reject(SERVICE_UNAVAILABLE, lane, "The server is saturated; too many " + lane.name().toLowerCase() + " requests are waiting");
+      }
+      long waitMillis = estimatedWaitMillis(lane);
+      if (queued[lane.ordinal()] > 0 && waitMillis > timeoutMillis) {
+        throw reject(SERVICE_UNAVAILABLE, lane, "The server is saturated; the request would wait about " + waitMillis + "ms, but times out after " + timeoutMillis + "ms");
+      }
+      for (String annotator : limited) {
+        inFlight.merge(annotator, 1, Integer::sum);
+      }
+      queued[lane.ordinal()] += 1;
+      queuedCost[lane.ordinal()] += cost;
+      return new Ticket(lane, cost, limited, true);
+    }
+  }
+
+  private RejectedException reject(int status, Lane lane, String message) {
+    rejections.incrementAndGet();
+    long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(estimatedWaitMillis(lane) + 999));
+    return new RejectedException(status, retryAfter, message);
+  }
+
+  /**
+   * The estimated time a new request in the given lane would wait before it
+   * starts: the cost of the requests which would run before it, spread over
+   * the threads.
+   */
+  synchronized long estimatedWaitMillis(Lane lane) {
+    long costAhead = 0;
+    for (Lane ahead : Lane.values()) {
+      costAhead += queuedCost[ahead.ordinal()];
+      if (ahead == lane) {
+        break;
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis((long) (costAhead * nanosPerCost / threads));
+  }
+
+  /** Run an admitted request. */
+  public <V> Future<V> submit(Ticket ticket, Callable<V> task) {
+    Job<V> job = new Job<>(task, ticket);
+    try {
+      executor.execute(job);
+    } catch (RejectedExecutionException e) {
+      ticket.finish(false);
+      throw e;
+    }
+    return job;
+  }
+
+  /** Give up on an admitted request which was never submitted. */
+  public void abandon(Ticket ticket) {
+    ticket.finish(false);
+  }
+
+  /**
+   * The executor requests are run on.  Tasks submitted to it directly are
+   * run in the interactive lane.
+   */
+  public ThreadPoolExecutor executor() {
+    return executor;
+  }
+
+  /** The number of admitted requests waiting to run in the given lane. */
+  public synchronized int queued(Lane lane) {
+    return queued[lane.ordinal()];
+  }
+
+  /** The number of requests turned away so far. */
+  public long rejections() {
+    return rejections.get();
+  }
+
+}
@@ -33,6 +33,10 @@ public class AnnotationPipeline implements Annotator {
 
   private final List<Annotator> annotators;
   private List<MutableLong> accumulatedTime;
+  private SentenceScheduler sentenceScheduler; // = null
+  private PipelineMetrics metrics = new PipelineMetrics();
+  /** The metrics of each annotator, in the same order as the annotators */
+  private List<PipelineMetrics.StageMetrics> annotatorMetrics;
 
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
@@ -43,6 +47,7 @@ public class AnnotationPipeline implements Annotator {
         accumulatedTime.add(new MutableLong());
       }
     }
+    this.annotatorMetrics = metricsFor(annotators, metrics);
   }
 
   public AnnotationPipeline() {
@@ -54,34 +59,105 @@ public class AnnotationPipeline implements Annotator {
     if (TIME) {
       accumulatedTime.add(new MutableLong());
     }
+    annotatorMetrics.add(metrics.annotator(StringUtils.getShortClassName(annotator)));
+  }
+
+  private static List<PipelineMetrics.StageMetrics> metricsFor(List<Annotator> annotators, PipelineMetrics metrics) {
+    List<PipelineMetrics.StageMetrics> annotatorMetrics = new ArrayList<>(annotators.size());
+    for (Annotator annotator : annotators) {
+      annotatorMetrics.add(metrics.annotator(StringUtils.getShortClassName(annotator)));
+    }
+    return annotatorMetrics;
+  }
+
+  /**
+   * Record metrics into the given object rather than this pipeline's own,
+   * for instance to share them between several pipelines.
+   * Metrics recorded so far are not carried over.
+   */
+  public void setMetrics(PipelineMetrics metrics) {
+    this.metrics = metrics;
+    this.annotatorMetrics = metricsFor(annotators, metrics);
+  }
+
+  /** The counters and latency histograms of this pipeline and its annotators. */
+  public PipelineMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * If set, runs of consecutive {@link SentenceAnnotator}s are run sentence by
+   * sentence on the scheduler's threads, rather than one annotator at a time.
+   * The same scheduler can be shared by several pipelines.
+   *
+   * @param sentenceScheduler The scheduler to use, or null to run each annotator in turn
+   */
+  public void setSentenceScheduler(SentenceScheduler sentenceScheduler) {
+    this.sentenceScheduler = sentenceScheduler;
   }
 
   /**
    * Run the pipeline on an input annotation.
    * The annotation is modified in place.
+   * If the annotation has a {@link CoreAnnotations.DeadlineAnnotation}, annotators
+   * stop with a {@link DeadlineExceededException} once it has passed.
    *
    * @param annotation The input annotation, usually a raw document
    */
   @Override
+  @SuppressWarnings("try")
   public void annotate(Annotation annotation) {
-    Iterator<MutableLong> it = accumulatedTime.iterator();
-    Timing t = new Timing();
-    for (Annotator annotator : annotators) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
-      if (TIME) {
-        t.start();
+    long documentStart = System.nanoTime();
+    long documentBytes = metrics.allocationMark();
+    boolean failed = true;
+    try (Deadline.Scope ignored = Deadline.enter(annotation.get(CoreAnnotations.DeadlineAnnotation.class))) {
+      int i = 0;
+      while (i < annotators.size()) {
+        Deadline.checkForInterrupt();  // Allow interrupting
+        int groupEnd = (sentenceScheduler == null) ? i : SentenceScheduler.groupEnd(annotators, i);
+        if (groupEnd > i) {
+          long[] elapsed = sentenceScheduler.annotate(annotation, annotators.subList(i, groupEnd));
+          for (int j = i; j < groupEnd; j++) {
+            if (TIME) {
+              accumulatedTime.get(j).incValue(elapsed[j - i]);
+            }
+            // the sentences are annotated on the scheduler's threads, so allocation can't be measured here
+            annotatorMetrics.get(j).record(elapsed[j - i] * 1000000, -1, false);
+          }
+          i = groupEnd;
+          continue;
+        }
+        annotateOne(i, annotation);
+        i++;
       }
-      annotator.annotate(annotation);
-      if (TIME) {
-        long elapsed = t.stop();
-        MutableLong m = it.next();
-        m.incValue(elapsed);
+      failed = false;
+    } finally {
+      metrics.recordDocument(numTokens(annotation), System.nanoTime() - documentStart,
+          PipelineMetrics.allocatedSince(documentBytes), failed);
+    }
+  }
+
+  private void annotateOne(int i, Annotation annotation) {
+    long start = System.nanoTime();
+    long bytes = metrics.allocationMark();
+    boolean failed = true;
+    try {
+      annotators.get(i).annotate(annotation);
+      failed = false;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      annotatorMetrics.get(i).record(elapsed, PipelineMetrics.allocatedSince(bytes), failed);
+      if (TIME && ! failed) {
+        accumulatedTime.get(i).incValue(elapsed / 1000000);
       }
     }
   }
 
+  private static int numTokens(Annotation annotation) {
+    List<?> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    return tokens == null ? 0 : tokens.size();
+  }
+
   /**
    * Annotate a collection of input annotations IN PARALLEL, making use of
    * all available cores.
@@ -130,6 +206,7 @@ public class AnnotationPipeline implements Annotator {
         annotate(ann);
         callback.accept(ann);
       }
+      return;
     }
     // Java's equivalent to ".map{ lambda(annotation) => annotate(annotation) }
     Iterable<Runnable> threads = () -> {
@@ -167,6 +244,39 @@ public class AnnotationPipeline implements Annotator {
     Redwood.Util.threadAndRun(this.getClass().getSimpleName(), threads, numThreads );
   }
 
+  /**
+   * Annotate a stream of input annotations IN PARALLEL, holding at most
+   * maxInFlight documents in memory at any one time.
+   * Unlike {@link #annotate(Iterable, int, Consumer)}, the input is read lazily,
+   * and each annotator runs as a separate stage, so that different documents
+   * can be at different stages of the pipeline at once.
+   * The callback is run on the calling thread.
+   * If an annotator fails on a document, the exception is stored in the
+   * document's {@link CoreAnnotations.ExceptionAnnotation} and the document is
+   * passed to the callback without running the remaining annotators.
+   *
+   * @param annotations The input annotations to process
+   * @param numThreads The number of threads to run on
+   * @param maxInFlight The maximum number of documents that have been read but
+   *                    not yet passed to the callback
+   * @param ordered If true, the callback sees documents in input order.
+   *                Otherwise, documents are passed on as soon as they are finished.
+   * @param callback A function to be called when an annotation finishes.
+   */
+  public void annotateStreaming(Iterable<Annotation> annotations, int numThreads, int maxInFlight,
+                                boolean ordered, Consumer<Annotation> callback) {
+    StagedAnnotationRunner runner = new StagedAnnotationRunner(annotators, TIME ? accumulatedTime : null,
+        numThreads, maxInFlight, ordered);
+    PipelineMetrics metrics = this.metrics;
+    runner.setStageMetrics(annotatorMetrics, metrics.tracksAllocation());
+    runner.run(annotations.iterator(), annotation -> {
+      // Documents move between threads here, so only the annotators' time and allocation are known
+      metrics.recordDocument(numTokens(annotation), -1, -1,
+          annotation.containsKey(CoreAnnotations.ExceptionAnnotation.class));
+      callback.accept(annotation);
+    });
+  }
+
   /** Return the total pipeline annotation time in milliseconds.
    *
    *  @return The total pipeline annotation time in milliseconds
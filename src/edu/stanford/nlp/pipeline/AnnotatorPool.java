@@ -139,12 +139,19 @@ public class AnnotatorPool  {
    * been requested, it will be created. Otherwise, the existing instance of
    * the Annotator will be returned.
    *
+   * The annotator is created outside of the lock on the pool, so that
+   * a slow annotator being created in one thread does not hold up
+   * threads asking for other annotators.
+   *
    * @param name The annotator to retrieve from the pool
    * @return The annotator
    * @throws IllegalArgumentException If the annotator cannot be created
    */
-  public synchronized Annotator get(String name) {
-    CachedAnnotator factory =  this.cachedAnnotators.get(name);
+  public Annotator get(String name) {
+    CachedAnnotator factory;
+    synchronized (this.cachedAnnotators) {
+      factory = this.cachedAnnotators.get(name);
+    }
     if (factory != null) {
       return factory.annotator.get();
     } else {
@@ -152,6 +159,18 @@ public class AnnotatorPool  {
     }
   }
 
+  /**
+   * Returns whether the named annotator has been created already, so that
+   * {@link #get(String)} would return without creating it.
+   */
+  public boolean isLoaded(String name) {
+    CachedAnnotator factory;
+    synchronized (this.cachedAnnotators) {
+      factory = this.cachedAnnotators.get(name);
+    }
+    return factory != null && factory.annotator.getIfDefined() != null;
+  }
+
 
   /**
    * A global singleton annotator pool, so that we can cache globally on a JVM instance.
@@ -0,0 +1,266 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * A directory of snapshots of fully initialized annotators, so that a
+ * new process can restore its annotators instead of building them from
+ * their models, rules and gazetteers again.
+ * <p>
+ * Snapshots are turned on by setting {@value #SNAPSHOT_DIR_PROPERTY} to
+ * a directory.  The first process to build an annotator writes a
+ * snapshot of it there, and later processes with the same settings read
+ * the snapshot back.  Snapshots are keyed by the annotator name, its
+ * {@link StanfordCoreNLP.AnnotatorSignature}, checksums of the model
+ * files named in its properties, and the jars on the class path, so
+ * changing any of these builds the annotator afresh.  A snapshot which
+ * can't be read is ignored and rewritten.
+ * <p>
+ * Only annotators which are {@link Serializable} are snapshotted, such
+ * as the part of speech tagger; the others, such as NER, are built as
+ * usual, and a line is logged naming them.  An annotator which
+ * implements Serializable promises that a copy made by Java
+ * serialization works the same as the original.
+ * <p>
+ * Reading a snapshot only creates objects of classes from CoreNLP, the
+ * Java class library and the libraries named in {@link #ALLOWED_PACKAGES};
+ * a snapshot naming any other class is ignored and rewritten.  Even so,
+ * deserialization runs code chosen by whoever wrote the file, so the
+ * snapshot directory should be writable only by the users who run CoreNLP.
+ */
+public class AnnotatorSnapshots {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotatorSnapshots.class);
+
+  /** The property naming the snapshot directory */
+  public static final String SNAPSHOT_DIR_PROPERTY = "snapshot.dir";
+
+  /** The packages whose classes may appear in a snapshot */
+  private static final String[] ALLOWED_PACKAGES = { "edu.stanford.nlp.", "java.", "org.ejml." };
+
+  private static final Pattern VALUE_SPLIT_PATTERN = Pattern.compile("[\\s,;]+");
+
+  /** Checksums of model files, keyed by path, length and modification time */
+  private static final Map<String, Long> checksums = new ConcurrentHashMap<>();
+
+  private final File dir;
+
+  public AnnotatorSnapshots(File dir) {
+    this.dir = dir;
+  }
+
+  /** Returns the snapshots named by the given properties, or null if snapshots are not turned on. */
+  public static AnnotatorSnapshots fromProperties(Properties props) {
+    String dir = props.getProperty(SNAPSHOT_DIR_PROPERTY);
+    if (dir == null || dir.trim().isEmpty()) {
+      return null;
+    }
+    return new AnnotatorSnapshots(new File(dir.trim()));
+  }
+
+  /**
+   * Returns the annotator restored from its snapshot if there is one, or
+   * else builds it with the given factory and writes a snapshot of it.
+   */
+  public Annotator getOrCreate(StanfordCoreNLP.AnnotatorSignature signature, Properties props,
+                               Supplier<Annotator> factory) {
+    File file = snapshotFile(signature, props);
+    if (file.isFile()) {
+      Timing timing = new Timing();
+      try (ObjectInputStream in = new SnapshotInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+        Annotator annotator = (Annotator) in.readObject();
+        timing.done(log, "Restoring annotator " + signature.name + " from snapshot " + file);
+        return annotator;
+      } catch (IOException | ClassNotFoundException | ClassCastException e) {
+        log.warn("Could not read annotator snapshot " + file + ", building the annotator instead: " + e);
+      }
+    }
+
+    Annotator annotator = factory.get();
+    if (annotator instanceof Serializable) {
+      write(annotator, file);
+    } else {
+      log.info("Annotator " + signature.name + " (" + annotator.getClass().getName() +
+          ") can't be snapshotted, so it is built from its models each time");
+    }
+    return annotator;
+  }
+
+  /** Reads a snapshot, refusing classes outside {@link #ALLOWED_PACKAGES}. */
+  private static class SnapshotInputStream extends ObjectInputStream {
+
+    SnapshotInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if ( ! isAllowed(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "not allowed in an annotator snapshot");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+      for (String name : interfaces) {
+        if ( ! isAllowed(name)) {
+          throw new InvalidClassException(name, "not allowed in an annotator snapshot");
+        }
+      }
+      return super.resolveProxyClass(interfaces);
+    }
+  }
+
+  /** Whether a class, or the element class of an array, is in one of the {@link #ALLOWED_PACKAGES}. */
+  static boolean isAllowed(String className) {
+    int dims = 0;
+    while (dims < className.length() && className.charAt(dims) == '[') {
+      dims++;
+    }
+    if (dims > 0) {
+      if (className.charAt(dims) != 'L') {
+        return true;  // an array of primitives
+      }
+      className = className.substring(dims + 1, className.length() - 1);
+    }
+    for (String prefix : ALLOWED_PACKAGES) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Writes a snapshot atomically, so that processes starting at the same time never see part of one. */
+  private static void write(Annotator annotator, File file) {
+    File temp = null;
+    try {
+      if ( ! file.getParentFile().isDirectory() && ! file.getParentFile().mkdirs()) {
+        throw new IOException("Could not create " + file.getParentFile());
+      }
+      temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+        out.writeObject(annotator);
+      }
+      if ( ! temp.renameTo(file)) {
+        throw new IOException("Could not rename " + temp + " to " + file);
+      }
+      log.info("Wrote annotator snapshot " + file);
+    } catch (IOException e) {
+      log.warn("Could not write annotator snapshot " + file + ": " + e);
+      if (temp != null && ! temp.delete()) {
+        temp.deleteOnExit();
+      }
+    }
+  }
+
+  File snapshotFile(StanfordCoreNLP.AnnotatorSignature signature, Properties props) {
+    return new File(dir, signature.name + '-' + key(signature, props) + ".snapshot");
+  }
+
+  /** A digest of everything which determines the state of the annotator. */
+  static String key(StanfordCoreNLP.AnnotatorSignature signature, Properties props) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(digest, signature.name);
+    update(digest, signature.signature);
+    // the same model files in the same order, whichever order the properties are in
+    SortedSet<File> files = new TreeSet<>();
+    for (String name : props.stringPropertyNames()) {
+      if ((';' + signature.signature).contains(';' + name + ':')) {
+        for (String value : VALUE_SPLIT_PATTERN.split(props.getProperty(name))) {
+          File file = modelFile(value);
+          if (file != null) {
+            files.add(file);
+          }
+        }
+      }
+    }
+    for (File file : files) {
+      update(digest, file.getPath());
+      update(digest, Long.toString(checksum(file)));
+    }
+    // code and default models
+    for (String entry : System.getProperty("java.class.path", "").split(Pattern.quote(File.pathSeparator))) {
+      File file = new File(entry);
+      if (file.isFile()) {
+        update(digest, entry + ':' + file.length() + ':' + file.lastModified());
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  /**
+   * The file holding a model named in a property value: the file itself,
+   * or the jar holding a classpath resource.  Returns null if the value
+   * names neither.
+   */
+  private static File modelFile(String value) {
+    if (value.isEmpty()) {
+      return null;
+    }
+    File file = new File(value);
+    if (file.isFile()) {
+      return file.getAbsoluteFile();
+    }
+    URL url = AnnotatorSnapshots.class.getClassLoader().getResource(value);
+    if (url == null) {
+      return null;
+    }
+    try {
+      if ("file".equals(url.getProtocol())) {
+        return new File(url.toURI());
+      } else if ("jar".equals(url.getProtocol())) {
+        return new File(((JarURLConnection) url.openConnection()).getJarFileURL().toURI());
+      }
+    } catch (Exception e) {
+      log.debug("Could not locate " + url + ": " + e);
+    }
+    return null;
+  }
+
+  private static long checksum(File file) {
+    String key = file.getPath() + ':' + file.length() + ':' + file.lastModified();
+    return checksums.computeIfAbsent(key, k -> {
+      CRC32 crc = new CRC32();
+      byte[] buffer = new byte[1 << 16];
+      try (InputStream in = new FileInputStream(file)) {
+        for (int read; (read = in.read(buffer)) > 0; ) {
+          crc.update(buffer, 0, read);
+        }
+      } catch (IOException e) {
+        log.debug("Could not read " + file + ": " + e);
+      }
+      return crc.getValue();
+    });
+  }
+
+}
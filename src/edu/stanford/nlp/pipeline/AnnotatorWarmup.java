@@ -0,0 +1,205 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a list of annotators in the background, so that a server can
+ * start taking requests before its slowest annotators (e.g., coref) are
+ * loaded.
+ * <p>
+ * Annotators are loaded on a small pool of daemon threads in dependency
+ * order: an annotator is started once everything it requires (see
+ * {@link Annotator#DEFAULT_REQUIREMENTS}) has been loaded, and annotators
+ * which don't depend on each other are loaded in parallel.  Prerequisites
+ * missing from the list are added, as in
+ * {@link StanfordCoreNLP#ensurePrerequisiteAnnotators(String[], Properties)}.
+ * <p>
+ * Annotators are loaded into the global annotator cache, so a pipeline
+ * built with the same properties picks up the loaded annotators, and a
+ * pipeline which asks for an annotator still being loaded waits for that
+ * load rather than starting another one.  A pipeline which only needs
+ * annotators which are already loaded is built straight away.
+ */
+public class AnnotatorWarmup {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotatorWarmup.class);
+
+  /** The state of one annotator being warmed up. */
+  public enum State {
+    /** Waiting for its prerequisites, or for a free thread. */
+    PENDING,
+    /** Being loaded. */
+    LOADING,
+    /** Loaded. */
+    READY,
+    /** Could not be loaded; a pipeline asking for it will try again. */
+    FAILED,
+  }
+
+  private final Properties props;
+  private final int numThreads;
+  /** The annotators to load, in dependency order. */
+  private final List<String> annotators;
+  /** The prerequisites of each annotator, restricted to those being loaded. */
+  private final Map<String, List<String>> prerequisites = new HashMap<>();
+  private final Map<String, State> states = new ConcurrentHashMap<>();
+  private final CountDownLatch done;
+  private boolean started;
+
+  /**
+   * Create a warmup for the annotators listed in the {@code annotators}
+   * property.  Nothing is loaded until {@link #start()} is called.
+   *
+   * @param props The properties to create the annotators with.  These should
+   *              be the properties later pipelines are built with, so that
+   *              they share the loaded annotators.
+   * @param numThreads The number of annotators to load at once.
+   */
+  public AnnotatorWarmup(Properties props, int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be positive: " + numThreads);
+    }
+    this.props = new Properties();
+    this.props.putAll(props);
+    this.numThreads = numThreads;
+    this.annotators = orderAnnotators(this.props.getProperty("annotators", ""), this.props);
+    for (String name : annotators) {
+      List<String> requirements = new ArrayList<>();
+      for (String requirement : Annotator.DEFAULT_REQUIREMENTS.getOrDefault(name, Collections.emptySet())) {
+        if (annotators.contains(requirement)) {
+          requirements.add(requirement);
+        }
+      }
+      prerequisites.put(name, requirements);
+      states.put(name, State.PENDING);
+    }
+    this.done = new CountDownLatch(annotators.size());
+  }
+
+  /**
+   * The annotators in the given list along with their prerequisites, in
+   * dependency order.  Lists with annotators the default requirements
+   * don't know about (e.g., custom annotators) are kept as they are.
+   */
+  private static List<String> orderAnnotators(String annotators, Properties props) {
+    List<String> names = new ArrayList<>();
+    for (String name : annotators.split("[, \t]+")) {
+      if ( ! name.trim().isEmpty()) {
+        names.add(name.trim());
+      }
+    }
+    if (names.isEmpty()) {
+      return names;
+    }
+    try {
+      return Arrays.asList(StanfordCoreNLP.ensurePrerequisiteAnnotators(names.toArray(new String[names.size()]), props).split(","));
+    } catch (IllegalArgumentException e) {
+      log.debug("Loading annotators in the given order: " + e.getMessage());
+      return names;
+    }
+  }
+
+  /**
+   * Start loading the annotators in the background.  This returns immediately.
+   *
+   * @return This object, for chaining.
+   */
+  public synchronized AnnotatorWarmup start() {
+    if (started) {
+      throw new IllegalStateException("An AnnotatorWarmup can only be started once");
+    }
+    started = true;
+    if (annotators.isEmpty()) {
+      return this;
+    }
+
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+      Thread thread = new Thread(runnable, getClass().getSimpleName() + '-' + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    AnnotatorPool pool = StanfordCoreNLP.constructAnnotatorPool(props, new AnnotatorImplementations());
+    Map<String, CompletableFuture<Void>> loaded = new HashMap<>();
+    for (String name : annotators) {
+      // the annotators are in dependency order, so the prerequisites have futures already
+      CompletableFuture<?>[] requirements = prerequisites.get(name).stream().map(loaded::get).toArray(CompletableFuture<?>[]::new);
+      loaded.put(name, CompletableFuture.allOf(requirements).thenRunAsync(() -> load(pool, name), executor));
+    }
+    CompletableFuture.allOf(loaded.values().toArray(new CompletableFuture<?>[loaded.size()]))
+        .thenRun(executor::shutdown);
+    return this;
+  }
+
+  /** Loads one annotator.  This never throws, so that the annotators which depend on it are still loaded. */
+  private void load(AnnotatorPool pool, String name) {
+    states.put(name, State.LOADING);
+    Timing timing = new Timing();
+    try {
+      pool.get(name);
+      states.put(name, State.READY);
+      timing.done(log, "Warmed up annotator " + name);
+    } catch (Throwable t) {
+      states.put(name, State.FAILED);
+      log.warn("Could not warm up annotator " + name + ": " + t);
+    } finally {
+      done.countDown();
+    }
+  }
+
+  /** The annotators being loaded, in dependency order. */
+  public List<String> annotators() {
+    return Collections.unmodifiableList(annotators);
+  }
+
+  /** The state of the given annotator, or null if it is not being loaded. */
+  public State state(String name) {
+    return states.get(name);
+  }
+
+  /** The state of every annotator being loaded, in dependency order. */
+  public Map<String, State> states() {
+    Map<String, State> result = new LinkedHashMap<>();
+    for (String name : annotators) {
+      result.put(name, states.get(name));
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether every annotator in the given list, and every
+   * prerequisite of those, has been loaded.  Annotators which are not
+   * part of this warmup are never ready.
+   *
+   * @param annotators A list of annotators, as in the {@code annotators} property.
+   */
+  public boolean isReady(String annotators) {
+    for (String name : orderAnnotators(annotators, new Properties())) {
+      if (states.get(name) != State.READY) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether every annotator has either been loaded or failed to load. */
+  public boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  /**
+   * Waits until every annotator has either been loaded or failed to load.
+   *
+   * @return True if the warmup finished, false if the wait timed out.
+   */
+  public boolean awaitDone(long timeout, TimeUnit unit) throws InterruptedException {
+    return done.await(timeout, unit);
+  }
+
+}
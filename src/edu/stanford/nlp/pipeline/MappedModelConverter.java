@@ -0,0 +1,56 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.Properties;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.io.MappedModelFile;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Converts a serialized model to a {@link MappedModelFile}, whose
+ * weights are mapped rather than read into the heap, so that the
+ * processes on a machine share one copy of them.  The converted files
+ * can be used anywhere the original model could, for instance as
+ * {@code ner.model}, {@code pos.model} or {@code parse.model}, as long
+ * as they are on the file system rather than in a jar.
+ * <p>
+ * Usage: {@code java edu.stanford.nlp.pipeline.MappedModelConverter
+ * -type crf|tagger|lexparser -model english.all.3class.distsim.crf.ser.gz -output english.all.3class.distsim.crf.mapped}
+ */
+public class MappedModelConverter {
+
+  private static final Redwood.RedwoodChannels log = Redwood.channels(MappedModelConverter.class);
+
+  private MappedModelConverter() { } // static main only
+
+  public static void main(String[] args) throws Exception {
+    Properties props = StringUtils.argsToProperties(args);
+    String type = props.getProperty("type");
+    String model = props.getProperty("model");
+    String output = props.getProperty("output");
+    if (type == null || model == null || output == null) {
+      log.info("Usage: java edu.stanford.nlp.pipeline.MappedModelConverter -type crf|tagger|lexparser -model <model> -output <file>");
+      return;
+    }
+    switch (type) {
+      case "crf":
+        CRFClassifier<CoreLabel> crf = CRFClassifier.getClassifier(model);
+        crf.serializeMappedClassifier(output);
+        break;
+      case "tagger":
+        new MaxentTagger(model).saveMappedModel(output);
+        break;
+      case "lexparser":
+        LexicalizedParser.loadModel(model).saveParserToMappedFile(output);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown model type " + type);
+    }
+    log.info("Wrote " + output);
+  }
+
+}
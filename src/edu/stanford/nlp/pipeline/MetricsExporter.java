@@ -0,0 +1,20 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes out {@link PipelineMetrics} in some format, e.g., for a monitoring
+ * system to scrape.
+ *
+ * @see PrometheusMetricsExporter
+ */
+public interface MetricsExporter {
+
+  /** The MIME type of what {@link #export} writes. */
+  String contentType();
+
+  /** Write the current value of all the metrics. */
+  void export(PipelineMetrics metrics, Writer out) throws IOException;
+
+}
@@ -10,6 +10,7 @@ import edu.stanford.nlp.ling.tokensregex.types.Tags;
 import edu.stanford.nlp.time.TimeAnnotations;
 import edu.stanford.nlp.time.TimeExpression;
 import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.DeadlineExceededException;
 import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.RuntimeInterruptedException;
 
@@ -153,13 +154,17 @@ public class NERCombinerAnnotator extends SentenceAnnotator  {
     }
 
     super.annotate(annotation);
-    this.ner.finalizeAnnotation(annotation);
 
     if (VERBOSE) {
       log.info("done.");
     }
   }
 
+  @Override
+  protected void finishDocument(Annotation annotation) {
+    this.ner.finalizeAnnotation(annotation);
+  }
+
   @Override
   public void doOneSentence(Annotation annotation, CoreMap sentence) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
@@ -167,6 +172,9 @@ public class NERCombinerAnnotator extends SentenceAnnotator  {
     if (tokens.size() <= this.maxSentenceLength) {
       try {
         output = this.ner.classifySentenceWithGlobalInformation(tokens, annotation, sentence);
+      } catch (DeadlineExceededException e) {
+        // the whole document is out of time, not just this sentence
+        throw e;
       } catch (RuntimeInterruptedException e) {
         // If we get interrupted, set the NER labels to the background
         // symbol if they are not already set, then exit.
@@ -1,20 +1,21 @@
 package edu.stanford.nlp.pipeline; 
 import edu.stanford.nlp.util.logging.Redwood;
 
+import java.io.Serializable;
 import java.util.*;
 
 import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 import edu.stanford.nlp.util.*;
-import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
-import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 /**
  * Wrapper for the maxent part of speech tagger.
  *
  * @author Anna Rafferty
  */
-public class POSTaggerAnnotator implements Annotator  {
+public class POSTaggerAnnotator extends SentenceAnnotator implements Serializable  {
+
+  private static final long serialVersionUID = 1L;
 
   /** A logger for this class */
   private static Redwood.RedwoodChannels log = Redwood.channels(POSTaggerAnnotator.class);
@@ -90,44 +91,17 @@ public class POSTaggerAnnotator implements Annotator  {
   }
 
   @Override
-  public void annotate(Annotation annotation) {
-    // turn the annotation into a sentence
-    if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      if (nThreads == 1) {
-        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-          doOneSentence(sentence);
-        }
-      } else {
-        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<>(nThreads, new POSTaggerProcessor());
-        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-          wrapper.put(sentence);
-          while (wrapper.peek()) {
-            wrapper.poll();
-          }
-        }
-        wrapper.join();
-        while (wrapper.peek()) {
-          wrapper.poll();
-        }
-      }
-    } else {
-      throw new RuntimeException("unable to find words/tokens in: " + annotation);
-    }
+  protected int nThreads() {
+    return nThreads;
   }
 
-  private class POSTaggerProcessor implements ThreadsafeProcessor<CoreMap, CoreMap> {
-    @Override
-    public CoreMap process(CoreMap sentence) {
-      return doOneSentence(sentence);
-    }
-
-    @Override
-    public ThreadsafeProcessor<CoreMap, CoreMap> newInstance() {
-      return this;
-    }
+  @Override
+  protected long maxTime() {
+    return 0;
   }
 
-  private CoreMap doOneSentence(CoreMap sentence) {
+  @Override
+  protected void doOneSentence(Annotation annotation, CoreMap sentence) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
     List<TaggedWord> tagged = null;
     if (tokens.size() <= maxSentenceLength) {
@@ -146,11 +120,15 @@ public class POSTaggerAnnotator implements Annotator  {
         tokens.get(i).set(CoreAnnotations.PartOfSpeechAnnotation.class, tagged.get(i).tag());
       }
     } else {
-      for (CoreLabel token : tokens) {
-        token.set(CoreAnnotations.PartOfSpeechAnnotation.class, "X");
-      }
+      doOneFailedSentence(annotation, sentence);
+    }
+  }
+
+  @Override
+  protected void doOneFailedSentence(Annotation annotation, CoreMap sentence) {
+    for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+      token.set(CoreAnnotations.PartOfSpeechAnnotation.class, "X");
     }
-    return sentence;
   }
 
   @Override
@@ -252,6 +252,9 @@ public class ParserAnnotator extends SentenceAnnotator  {
       try {
         final List<ParserConstraint> constraints = sentence.get(ParserAnnotations.ConstraintAnnotation.class);
         trees = doOneSentence(constraints, words);
+      } catch (DeadlineExceededException e) {
+        // the whole document is out of time, not just this sentence
+        throw e;
       } catch (RuntimeInterruptedException e) {
         if (VERBOSE) {
           log.info("Took too long parsing: " + words);
@@ -320,7 +323,16 @@ public class ParserAnnotator extends SentenceAnnotator  {
                              List<CoreLabel> words) {
     ParserQuery pq = parser.parserQuery();
     pq.setConstraints(constraints);
-    pq.parse(words);
+    try {
+      pq.parse(words);
+      return bestTrees(pq, words);
+    } finally {
+      // lets the next sentence on this thread reuse the chart
+      pq.release();
+    }
+  }
+
+  private List<Tree> bestTrees(ParserQuery pq, List<CoreLabel> words) {
     List<Tree> trees = Generics.newLinkedList();
     try {
       // Use bestParse if kBest is set to 1.
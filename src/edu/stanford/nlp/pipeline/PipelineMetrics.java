@@ -0,0 +1,277 @@
+package edu.stanford.nlp.pipeline;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms for an annotation pipeline: per annotator,
+ * the number of calls and failures, how long the calls took and how much
+ * memory they allocated, and per document, the same plus the number of
+ * tokens.  Other components can register gauges, such as the depth of a
+ * work queue.  The metrics are written out by a {@link MetricsExporter}.
+ * <p>
+ * An {@link AnnotationPipeline} records into its own metrics by default,
+ * but several pipelines can share one instance, as the server's do, in which
+ * case annotators with the same name are counted together.
+ * All methods are thread safe.
+ * <p>
+ * Allocation is only measured once {@link #setTrackAllocation} has turned it
+ * on, since it costs a call into the JVM before and after every annotator.
+ * It is measured with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * on the thread which calls the annotator, so memory allocated by an annotator's
+ * own worker threads is not counted.  If the JVM can't measure allocation, no
+ * allocation is reported.
+ */
+public class PipelineMetrics {
+
+  /** The upper bounds of the latency histogram buckets, in seconds. */
+  private static final double[] LATENCY_BUCKETS = {
+      0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 30.0, 60.0 };
+
+  /**
+   * A histogram of latencies, with fixed buckets from a millisecond to a
+   * minute, and one more for anything longer.
+   */
+  public static class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+    private final LongAdder sumNanos = new LongAdder();
+
+    void observe(long nanos) {
+      double seconds = nanos / 1e9;
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKETS.length && seconds > LATENCY_BUCKETS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+      sumNanos.add(nanos);
+    }
+
+    /** The upper bounds of the buckets, in seconds, not including the last, unbounded one. */
+    public static double[] bounds() {
+      return LATENCY_BUCKETS.clone();
+    }
+
+    /** The number of latencies in each bucket; the last one counts those longer than all the bounds. */
+    public long[] counts() {
+      long[] counts = new long[buckets.length()];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = buckets.get(i);
+      }
+      return counts;
+    }
+
+    public long count() {
+      long count = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        count += buckets.get(i);
+      }
+      return count;
+    }
+
+    public double sumSeconds() {
+      return sumNanos.sum() / 1e9;
+    }
+
+  }
+
+  /** The metrics of one annotator, or of whole documents. */
+  public static class StageMetrics {
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final Histogram latency = new Histogram();
+
+    StageMetrics(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Record one call.
+     *
+     * @param nanos How long the call took
+     * @param bytes The memory it allocated, or a negative number if unknown
+     * @param failed Whether it threw an exception
+     */
+    public void record(long nanos, long bytes, boolean failed) {
+      calls.increment();
+      if (failed) {
+        errors.increment();
+      }
+      if (bytes >= 0) {
+        allocatedBytes.add(bytes);
+      }
+      latency.observe(nanos);
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public long calls() {
+      return calls.sum();
+    }
+
+    public long errors() {
+      return errors.sum();
+    }
+
+    public long allocatedBytes() {
+      return allocatedBytes.sum();
+    }
+
+    public Histogram latency() {
+      return latency;
+    }
+
+  }
+
+  /** A value which is read when the metrics are exported. */
+  public static class Gauge {
+
+    public final String name;
+    public final String help;
+    private final LongSupplier value;
+
+    Gauge(String name, String help, LongSupplier value) {
+      this.name = name;
+      this.help = help;
+      this.value = value;
+    }
+
+    public long value() {
+      return value.getAsLong();
+    }
+
+  }
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final boolean ALLOCATION_SUPPORTED = THREADS instanceof com.sun.management.ThreadMXBean &&
+      ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported() &&
+      ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+
+  private volatile boolean trackAllocation; // = false
+
+  private final StageMetrics documents = new StageMetrics("document");
+  private final LongAdder tokens = new LongAdder();
+  /** Tokens in the documents whose time is known */
+  private final LongAdder timedTokens = new LongAdder();
+  /** Guarded by itself */
+  private final Map<String, StageMetrics> annotators = new LinkedHashMap<>();
+  /** Guarded by itself */
+  private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+  /**
+   * The number of bytes the current thread has allocated so far, or -1 if the
+   * JVM can't tell.  Subtract two readings to get the allocation in between.
+   */
+  public static long threadAllocatedBytes() {
+    if ( ! ALLOCATION_SUPPORTED) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** The allocation between two readings of {@link #threadAllocatedBytes()}, or -1 if unknown. */
+  static long allocatedSince(long before) {
+    return before < 0 ? -1 : threadAllocatedBytes() - before;
+  }
+
+  /**
+   * Whether to measure the memory allocated by each annotator and document.
+   * Off by default.
+   */
+  public void setTrackAllocation(boolean trackAllocation) {
+    this.trackAllocation = trackAllocation;
+  }
+
+  public boolean tracksAllocation() {
+    return trackAllocation;
+  }
+
+  /**
+   * A reading of {@link #threadAllocatedBytes()} to pass to {@link #allocatedSince}
+   * later, or -1 if allocation isn't being tracked.
+   */
+  long allocationMark() {
+    return trackAllocation ? threadAllocatedBytes() : -1;
+  }
+
+  /** The metrics of the annotator with the given name, created if needed. */
+  public StageMetrics annotator(String name) {
+    synchronized (annotators) {
+      return annotators.computeIfAbsent(name, StageMetrics::new);
+    }
+  }
+
+  /** The metrics of each annotator, in the order they were first used. */
+  public List<StageMetrics> annotators() {
+    synchronized (annotators) {
+      return new ArrayList<>(annotators.values());
+    }
+  }
+
+  /** The metrics of whole documents. */
+  public StageMetrics documents() {
+    return documents;
+  }
+
+  /**
+   * Record a document which has been through the pipeline.
+   *
+   * @param numTokens The number of tokens in the document
+   * @param nanos How long the document took, or a negative number if unknown
+   * @param bytes The memory it allocated, or a negative number if unknown
+   * @param failed Whether annotating it threw an exception
+   */
+  public void recordDocument(int numTokens, long nanos, long bytes, boolean failed) {
+    tokens.add(numTokens);
+    if (nanos >= 0) {
+      timedTokens.add(numTokens);
+      documents.record(nanos, bytes, failed);
+    } else {
+      documents.calls.increment();
+      if (failed) {
+        documents.errors.increment();
+      }
+    }
+  }
+
+  /** The number of tokens in all documents so far. */
+  public long tokens() {
+    return tokens.sum();
+  }
+
+  /** The number of tokens per second of time spent annotating documents, or 0 if none have been timed. */
+  public double tokensPerSecond() {
+    double seconds = documents.latency().sumSeconds();
+    return seconds > 0 ? timedTokens.sum() / seconds : 0.0;
+  }
+
+  /**
+   * Add a gauge, which is read whenever the metrics are exported.
+   * A gauge with the same name is replaced.
+   *
+   * @param name The name of the gauge, without the prefix an exporter may add, e.g., "server_queue_depth"
+   * @param help A description of the gauge
+   * @param value Returns the gauge's current value
+   */
+  public void registerGauge(String name, String help, LongSupplier value) {
+    synchronized (gauges) {
+      gauges.put(name, new Gauge(name, help, value));
+    }
+  }
+
+  public List<Gauge> gauges() {
+    synchronized (gauges) {
+      return new ArrayList<>(gauges.values());
+    }
+  }
+
+}
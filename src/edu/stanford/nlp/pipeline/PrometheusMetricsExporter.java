@@ -0,0 +1,99 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports {@link PipelineMetrics} in the Prometheus text exposition format
+ * (version 0.0.4), as served by the server's {@code /metrics} endpoint.
+ * All metric names start with {@code corenlp_}; the per annotator
+ * metrics are labeled with the annotator's name.
+ */
+public class PrometheusMetricsExporter implements MetricsExporter {
+
+  private static final String PREFIX = "corenlp_";
+
+  @Override
+  public String contentType() {
+    return "text/plain; version=0.0.4; charset=utf-8";
+  }
+
+  @Override
+  public void export(PipelineMetrics metrics, Writer out) throws IOException {
+    PipelineMetrics.StageMetrics documents = metrics.documents();
+    header(out, "documents_total", "counter", "Documents annotated");
+    sample(out, "documents_total", "", documents.calls());
+    header(out, "document_errors_total", "counter", "Documents whose annotation failed");
+    sample(out, "document_errors_total", "", documents.errors());
+    header(out, "tokens_total", "counter", "Tokens in annotated documents");
+    sample(out, "tokens_total", "", metrics.tokens());
+    header(out, "document_allocated_bytes_total", "counter", "Memory allocated while annotating documents");
+    sample(out, "document_allocated_bytes_total", "", documents.allocatedBytes());
+    header(out, "document_seconds", "histogram", "Time taken to annotate a document");
+    histogram(out, "document_seconds", "", documents.latency());
+
+    List<PipelineMetrics.StageMetrics> annotators = metrics.annotators();
+    if ( ! annotators.isEmpty()) {
+      header(out, "annotator_calls_total", "counter", "Documents run through each annotator");
+      for (PipelineMetrics.StageMetrics annotator : annotators) {
+        sample(out, "annotator_calls_total", label(annotator), annotator.calls());
+      }
+      header(out, "annotator_errors_total", "counter", "Calls to each annotator which failed");
+      for (PipelineMetrics.StageMetrics annotator : annotators) {
+        sample(out, "annotator_errors_total", label(annotator), annotator.errors());
+      }
+      header(out, "annotator_allocated_bytes_total", "counter", "Memory allocated by each annotator");
+      for (PipelineMetrics.StageMetrics annotator : annotators) {
+        sample(out, "annotator_allocated_bytes_total", label(annotator), annotator.allocatedBytes());
+      }
+      header(out, "annotator_seconds", "histogram", "Time taken by each annotator on a document");
+      for (PipelineMetrics.StageMetrics annotator : annotators) {
+        histogram(out, "annotator_seconds", label(annotator), annotator.latency());
+      }
+    }
+
+    for (PipelineMetrics.Gauge gauge : metrics.gauges()) {
+      header(out, gauge.name, "gauge", gauge.help);
+      sample(out, gauge.name, "", gauge.value());
+    }
+    out.flush();
+  }
+
+  private static String label(PipelineMetrics.StageMetrics annotator) {
+    return "annotator=\"" + escape(annotator.name()) + '"';
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static void header(Writer out, String name, String type, String help) throws IOException {
+    out.write("# HELP " + PREFIX + name + ' ' + help + '\n');
+    out.write("# TYPE " + PREFIX + name + ' ' + type + '\n');
+  }
+
+  private static void sample(Writer out, String name, String labels, Object value) throws IOException {
+    out.write(PREFIX + name);
+    if ( ! labels.isEmpty()) {
+      out.write('{' + labels + '}');
+    }
+    out.write(" " + value + '\n');
+  }
+
+  private static void histogram(Writer out, String name, String labels, PipelineMetrics.Histogram histogram) throws IOException {
+    String separator = labels.isEmpty() ? "" : ",";
+    double[] bounds = PipelineMetrics.Histogram.bounds();
+    long[] counts = histogram.counts();
+    long cumulative = 0;
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+      String le = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+      sample(out, name + "_bucket", labels + separator + "le=\"" + le + '"', cumulative);
+    }
+    sample(out, name + "_sum", labels, String.format(Locale.ROOT, "%.6f", histogram.sumSeconds()));
+    sample(out, name + "_count", labels, cumulative);
+  }
+
+}
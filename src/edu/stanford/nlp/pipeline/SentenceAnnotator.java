@@ -5,7 +5,7 @@ import java.util.concurrent.RejectedExecutionException;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.util.CoreMap;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.concurrent.InterruptibleMulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
@@ -13,8 +13,6 @@ import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
  * A parent class for annotators which might want to analyze one
  * sentence at a time, possibly in a multithreaded manner.
  *
- * TODO: also factor out the POS
- *
  * @author John Bauer
  */
 public abstract class SentenceAnnotator implements Annotator {
@@ -27,8 +25,11 @@ public abstract class SentenceAnnotator implements Annotator {
     }
 
     @Override
+    @SuppressWarnings("try")
     public CoreMap process(CoreMap sentence) {
-      doOneSentence(annotation, sentence);
+      try (Deadline.Scope ignored = Deadline.enter(annotation.get(CoreAnnotations.DeadlineAnnotation.class))) {
+        doOneSentence(annotation, sentence);
+      }
       return sentence;
     }
 
@@ -49,6 +50,7 @@ public abstract class SentenceAnnotator implements Annotator {
       if (nThreads() != 1 || maxTime() > 0) {
         InterruptibleMulticoreWrapper<CoreMap, CoreMap> wrapper = buildWrapper(annotation);
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+          Deadline.checkForInterrupt();
           boolean success = false;
           // We iterate twice for each sentence so that if we fail for
           // a sentence once, we start a new queue and try again.
@@ -96,12 +98,11 @@ public abstract class SentenceAnnotator implements Annotator {
         }
       } else {
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-          if (Thread.interrupted()) {
-            throw new RuntimeInterruptedException();
-          }
+          Deadline.checkForInterrupt();
           doOneSentence(annotation, sentence);
         }
       }
+      finishDocument(annotation);
     } else {
       throw new RuntimeException("unable to find sentences in: " + annotation);
     }
@@ -114,6 +115,16 @@ public abstract class SentenceAnnotator implements Annotator {
    */
   protected abstract long maxTime();
 
+  /**
+   * Whether this annotator processes the sentences of a document
+   * together in its own {@link #annotate} rather than one at a time, in
+   * which case it must not be driven by a {@link SentenceScheduler}.
+   * False by default.
+   */
+  protected boolean batchesSentences() {
+    return false;
+  }
+
   /** annotation is included in case there is global information we care about */
   protected abstract void doOneSentence(Annotation annotation, CoreMap sentence);
 
@@ -126,5 +137,15 @@ public abstract class SentenceAnnotator implements Annotator {
    */
   protected abstract void doOneFailedSentence(Annotation annotation, CoreMap sentence);
 
+  /**
+   * Called once all sentences of the document have been processed, for
+   * annotators which need to do some document-level work afterwards.
+   * Does nothing by default.
+   *
+   * @param annotation The whole Annotation object
+   */
+  protected void finishDocument(Annotation annotation) {
+  }
+
 }
 
@@ -0,0 +1,197 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Deadline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs consecutive {@link SentenceAnnotator}s sentence by sentence rather than
+ * annotator by annotator.
+ * <p>
+ * Normally each SentenceAnnotator processes every sentence of a document and
+ * waits for all of them to finish before the next annotator starts, so one long
+ * sentence holds up the whole document at every stage.  Here each sentence is a
+ * single task which runs all of the annotators in the group in order, so sentence
+ * N can be in the parser while sentence N+1 is still being tagged.
+ * The tasks go to one work-stealing pool which can be shared by every
+ * document being annotated at the same time, so that threads which run out of
+ * sentences in one document pick up work from another.  Pipelines which
+ * don't manage a scheduler of their own use a {@link #shared} one.
+ * <p>
+ * Only annotators without a time limit ({@code maxTime() <= 0}) are grouped,
+ * since time limits are enforced per annotator by {@link SentenceAnnotator} itself.
+ * A sentence which is already running is not interrupted if another sentence
+ * fails; it stops at its annotators' next {@link Deadline#checkForInterrupt()}
+ * once the document's deadline has passed, or else at the end of the annotator
+ * it is in.
+ * After all sentences are done, each annotator's
+ * {@link SentenceAnnotator#finishDocument(Annotation)} is called in pipeline order.
+ */
+public class SentenceScheduler {
+
+  /**
+   * The pools of the shared schedulers, by number of threads.  They belong to
+   * this class rather than to any one pipeline: their threads are daemons, and
+   * they run until {@link #shutdownShared()} is called.
+   */
+  private static final Map<Integer, ForkJoinPool> sharedPools = new ConcurrentHashMap<>();
+
+  /** The shared schedulers, by number of threads */
+  private static final Map<Integer, SentenceScheduler> sharedSchedulers = new ConcurrentHashMap<>();
+
+  private final int numThreads;
+
+  /** The scheduler's own pool, or null if it uses the shared pool for its number of threads */
+  private final ForkJoinPool pool;
+
+  /** Create a scheduler with its own pool, which the caller should {@link #shutdown} when done with it. */
+  public SentenceScheduler(int numThreads) {
+    this(numThreads, newPool(numThreads));
+  }
+
+  private SentenceScheduler(int numThreads, ForkJoinPool pool) {
+    this.numThreads = numThreads;
+    this.pool = pool;
+  }
+
+  private static ForkJoinPool newPool(int numThreads) {
+    // ForkJoinPool's default thread factory makes daemon threads
+    return new ForkJoinPool(numThreads);
+  }
+
+  /**
+   * Returns the scheduler with the given number of threads which is shared
+   * by every pipeline asking for one, so that each new pipeline doesn't
+   * leave a pool of its own behind.  Its pool is owned by this class; see
+   * {@link #shutdownShared()}.
+   */
+  public static SentenceScheduler shared(int numThreads) {
+    return sharedSchedulers.computeIfAbsent(numThreads, n -> new SentenceScheduler(n, null));
+  }
+
+  /**
+   * Stops the threads of all shared schedulers.  Documents already submitted
+   * are still processed.  A shared scheduler which is used again afterwards
+   * starts a new pool, so this is safe to call while pipelines still hold
+   * shared schedulers, for example when an application unloads its pipelines.
+   */
+  public static void shutdownShared() {
+    for (Integer numThreads : new ArrayList<>(sharedPools.keySet())) {
+      ForkJoinPool sharedPool = sharedPools.remove(numThreads);
+      if (sharedPool != null) {
+        sharedPool.shutdown();
+      }
+    }
+  }
+
+  private ForkJoinPool pool() {
+    return (pool != null) ? pool : sharedPools.computeIfAbsent(numThreads, SentenceScheduler::newPool);
+  }
+
+  /**
+   * Returns the end (exclusive) of the run of annotators starting at
+   * {@code start} which can be scheduled together.  If the annotator at
+   * {@code start} cannot be scheduled by sentence, returns {@code start}.
+   */
+  public static int groupEnd(List<Annotator> annotators, int start) {
+    int end = start;
+    while (end < annotators.size() && canSchedule(annotators.get(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  private static boolean canSchedule(Annotator annotator) {
+    if ( ! (annotator instanceof SentenceAnnotator)) {
+      return false;
+    }
+    SentenceAnnotator sentenceAnnotator = (SentenceAnnotator) annotator;
+    return sentenceAnnotator.maxTime() <= 0 && ! sentenceAnnotator.batchesSentences();
+  }
+
+  /**
+   * Run the given annotators over every sentence of the annotation.
+   *
+   * @param annotation The document to annotate
+   * @param group A list of annotators for which {@link #canSchedule} holds, in pipeline order
+   * @return The time spent in each annotator, in milliseconds, summed over all sentences
+   */
+  @SuppressWarnings("try")
+  public long[] annotate(Annotation annotation, List<Annotator> group) {
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    if (sentences == null) {
+      throw new RuntimeException("unable to find sentences in: " + annotation);
+    }
+    long[] nanos = new long[group.size()];
+    Deadline deadline = annotation.get(CoreAnnotations.DeadlineAnnotation.class);
+    // set once a sentence fails, so that the others stop before their next annotator
+    AtomicBoolean abandoned = new AtomicBoolean(false);
+    ForkJoinPool pool = pool();
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(sentences.size());
+    for (CoreMap sentence : sentences) {
+      tasks.add(pool.submit(() -> {
+        long[] sentenceNanos = new long[group.size()];
+        try (Deadline.Scope ignored = Deadline.enter(deadline)) {
+          for (int i = 0; i < group.size() && ! abandoned.get(); i++) {
+            Deadline.checkForInterrupt();
+            long start = System.nanoTime();
+            ((SentenceAnnotator) group.get(i)).doOneSentence(annotation, sentence);
+            sentenceNanos[i] = System.nanoTime() - start;
+          }
+        } catch (RuntimeException | Error e) {
+          abandoned.set(true);
+          throw e;
+        }
+        synchronized (nanos) {
+          for (int i = 0; i < nanos.length; i++) {
+            nanos[i] += sentenceNanos[i];
+          }
+        }
+      }));
+    }
+    try {
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } finally {
+      if (abandoned.get()) {
+        // ForkJoinTasks can't be interrupted, so drop the ones which haven't
+        // started and wait for the running ones to reach a stopping point, so
+        // that nothing is still writing to the document once we return
+        for (ForkJoinTask<?> task : tasks) {
+          task.cancel(false);
+        }
+        for (ForkJoinTask<?> task : tasks) {
+          task.quietlyJoin();
+        }
+      }
+    }
+
+    long[] millis = new long[group.size()];
+    for (int i = 0; i < group.size(); i++) {
+      long start = System.nanoTime();
+      ((SentenceAnnotator) group.get(i)).finishDocument(annotation);
+      millis[i] = (nanos[i] + System.nanoTime() - start) / 1000000;
+    }
+    return millis;
+  }
+
+  /**
+   * Stop the worker threads.  Sentences already submitted are still processed.
+   * This does nothing to a {@link #shared} scheduler, which other pipelines may be using.
+   */
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,282 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.Deadline;
+import edu.stanford.nlp.util.MutableLong;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streams a (possibly unbounded) sequence of documents through a list of
+ * Annotators with a fixed ceiling on the number of documents in flight.
+ * <p>
+ * Each annotator is a stage with its own bounded queue of documents waiting
+ * for it.  A fixed set of worker threads is shared by all stages; a free worker
+ * always picks up the document that is furthest along the pipeline, so finished
+ * documents drain quickly and a slow stage (e.g., parse) gets every core that the
+ * cheaper stages do not need.  Because a document only ever occupies one stage at a
+ * time, documents at different stages are processed concurrently, and one very long
+ * document no longer holds up the rest of the feed.
+ * <p>
+ * Input is pulled lazily from the iterator only when there is room for another
+ * document, so memory use is bounded by {@code maxInFlight} documents regardless of
+ * the size of the input.  Output is delivered on the calling thread, either in input
+ * order or as soon as each document completes.
+ * <p>
+ * If an annotator throws, the exception is stored under
+ * {@link CoreAnnotations.ExceptionAnnotation} on the document, the remaining
+ * stages are skipped, and the document is passed to the callback as usual.
+ */
+public class StagedAnnotationRunner {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(StagedAnnotationRunner.class);
+
+  /** A document in flight, along with its position in the input. */
+  private static class Job {
+    final long index;
+    final Annotation annotation;
+    Job(long index, Annotation annotation) {
+      this.index = index;
+      this.annotation = annotation;
+    }
+  }
+
+  private final List<Annotator> stages;
+  private final List<MutableLong> stageTime;
+  private List<PipelineMetrics.StageMetrics> stageMetrics; // = null
+  private boolean trackAllocation; // = false
+  private final int numThreads;
+  private final int maxInFlight;
+  private final boolean ordered;
+
+  /** One queue per stage, plus a final one for completed documents. Guarded by {@code lock}. */
+  private final List<ArrayDeque<Job>> queues;
+  private final Object lock = new Object();
+  /** Number of documents read from the input but not yet handed to the callback. Guarded by {@code lock}. */
+  private int inFlight;
+  /** Set when the input is exhausted or the run is aborted. Guarded by {@code lock}. */
+  private boolean done;
+  private boolean started;
+
+  /**
+   * Create a runner over the given annotators.
+   *
+   * @param stages The annotators to run, in order.
+   * @param stageTime If not null, one accumulator per stage to which time spent in that stage is added.
+   * @param numThreads The number of worker threads shared by all stages.
+   * @param maxInFlight The maximum number of documents held at any one time, including those
+   *                    waiting to be delivered in order.
+   * @param ordered If true, documents are passed to the callback in input order.
+   */
+  public StagedAnnotationRunner(List<Annotator> stages, List<MutableLong> stageTime,
+                                int numThreads, int maxInFlight, boolean ordered) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be positive: " + numThreads);
+    }
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+    if (stageTime != null && stageTime.size() != stages.size()) {
+      throw new IllegalArgumentException("Need one timer per stage");
+    }
+    this.stages = new ArrayList<>(stages);
+    this.stageTime = stageTime;
+    this.numThreads = numThreads;
+    this.maxInFlight = maxInFlight;
+    this.ordered = ordered;
+    this.queues = new ArrayList<>(stages.size() + 1);
+    for (int i = 0; i <= stages.size(); i++) {
+      queues.add(new ArrayDeque<>(maxInFlight));
+    }
+  }
+
+  /**
+   * If set, each stage's time and failures are also recorded in the given metrics.
+   *
+   * @param stageMetrics One entry per stage, or null
+   * @param trackAllocation Whether to also record the memory each stage allocates
+   */
+  void setStageMetrics(List<PipelineMetrics.StageMetrics> stageMetrics, boolean trackAllocation) {
+    if (stageMetrics != null && stageMetrics.size() != stages.size()) {
+      throw new IllegalArgumentException("Need one metrics object per stage");
+    }
+    this.stageMetrics = stageMetrics;
+    this.trackAllocation = stageMetrics != null && trackAllocation;
+  }
+
+  /**
+   * Run every document through all stages, passing each one to the callback once it is finished.
+   * This method returns when the input is exhausted and every document has been delivered.
+   * The callback is always invoked on the calling thread.
+   *
+   * @param annotations The documents to annotate.  The iterator is consumed lazily.
+   * @param callback Called once for each finished document.
+   */
+  public void run(Iterator<Annotation> annotations, Consumer<Annotation> callback) {
+    synchronized (lock) {
+      if (started) {
+        throw new IllegalStateException("A StagedAnnotationRunner can only be run once");
+      }
+      started = true;
+    }
+    List<Thread> workers = new ArrayList<>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      Thread worker = new Thread(this::work, getClass().getSimpleName() + '-' + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+
+    try {
+      deliver(annotations, callback);
+    } finally {
+      synchronized (lock) {
+        done = true;
+        lock.notifyAll();
+      }
+      for (Thread worker : workers) {
+        worker.interrupt();
+      }
+    }
+  }
+
+  /** The loop on the calling thread: feed input when there is room, and hand finished documents to the callback. */
+  private void deliver(Iterator<Annotation> annotations, Consumer<Annotation> callback) {
+    ArrayDeque<Job> finished = queues.get(stages.size());
+    PriorityQueue<Job> reorder = new PriorityQueue<>(Comparator.comparingLong(job -> job.index));
+    long nextIndex = 0;
+    long nextToDeliver = 0;
+    boolean inputExhausted = false;
+
+    while (true) {
+      // Pull more input, but never more than we have room for.
+      boolean wantInput;
+      synchronized (lock) {
+        wantInput = ! inputExhausted && inFlight < maxInFlight;
+      }
+      if (wantInput) {
+        if (annotations.hasNext()) {
+          Job job = new Job(nextIndex++, annotations.next());
+          synchronized (lock) {
+            inFlight += 1;
+            queues.get(0).addLast(job);
+            lock.notifyAll();
+          }
+          continue;
+        }
+        inputExhausted = true;
+      }
+
+      List<Job> ready = new ArrayList<>();
+      synchronized (lock) {
+        while (finished.isEmpty() && (inputExhausted || inFlight >= maxInFlight) && inFlight > 0) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+          }
+        }
+        ready.addAll(finished);
+        finished.clear();
+        if (inputExhausted && inFlight == 0) {
+          return;
+        }
+      }
+
+      int delivered = 0;
+      if (ordered) {
+        reorder.addAll(ready);
+        while ( ! reorder.isEmpty() && reorder.peek().index == nextToDeliver) {
+          callback.accept(reorder.poll().annotation);
+          nextToDeliver += 1;
+          delivered += 1;
+        }
+      } else {
+        for (Job job : ready) {
+          callback.accept(job.annotation);
+          delivered += 1;
+        }
+      }
+      if (delivered > 0) {
+        synchronized (lock) {
+          inFlight -= delivered;
+        }
+      }
+    }
+  }
+
+  /** The loop run by each worker thread. */
+  @SuppressWarnings("try")
+  private void work() {
+    while (true) {
+      Job job = null;
+      int stage = -1;
+      synchronized (lock) {
+        while (job == null) {
+          if (done) {
+            return;
+          }
+          // Prefer the most advanced document, so that finished work drains first.
+          for (int i = stages.size() - 1; i >= 0; i--) {
+            if ( ! queues.get(i).isEmpty()) {
+              job = queues.get(i).pollFirst();
+              stage = i;
+              break;
+            }
+          }
+          if (job == null) {
+            try {
+              lock.wait();
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+      }
+
+      int next = stage + 1;
+      try {
+        long start = System.nanoTime();
+        long bytes = trackAllocation ? PipelineMetrics.threadAllocatedBytes() : -1;
+        boolean failed = true;
+        try (Deadline.Scope ignored = Deadline.enter(job.annotation.get(CoreAnnotations.DeadlineAnnotation.class))) {
+          stages.get(stage).annotate(job.annotation);
+          failed = false;
+        } finally {
+          if (stageMetrics != null) {
+            stageMetrics.get(stage).record(System.nanoTime() - start, PipelineMetrics.allocatedSince(bytes), failed);
+          }
+        }
+        if (stageTime != null) {
+          MutableLong m = stageTime.get(stage);
+          synchronized (m) {
+            m.incValue((System.nanoTime() - start) / 1000000);
+          }
+        }
+      } catch (RuntimeInterruptedException e) {
+        synchronized (lock) {
+          if (done) {
+            return;
+          }
+        }
+        job.annotation.set(CoreAnnotations.ExceptionAnnotation.class, e);
+        next = stages.size();
+      } catch (Throwable t) {
+        log.warn("Annotator " + StringUtils.getShortClassName(stages.get(stage)) + " failed on document " + job.index + ": " + t);
+        job.annotation.set(CoreAnnotations.ExceptionAnnotation.class, t);
+        next = stages.size();
+      }
+
+      synchronized (lock) {
+        queues.get(next).addLast(job);
+        lock.notifyAll();
+      }
+    }
+  }
+
+}
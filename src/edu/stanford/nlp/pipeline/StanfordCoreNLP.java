@@ -48,6 +48,7 @@ import java.util.concurrent.Semaphore;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 
@@ -477,6 +478,13 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     } else {
       this.availableProcessors = new Semaphore(1);
     }
+    // Optionally run sentence-level annotators sentence by sentence, sharing one pool across documents and pipelines
+    int sentenceThreads = PropertiesUtils.getInt(this.properties, "sentenceThreads", 0);
+    if (sentenceThreads > 0) {
+      this.setSentenceScheduler(SentenceScheduler.shared(sentenceThreads));
+    }
+    // Measuring each annotator's allocation costs a call into the JVM around every annotator, so it is off by default
+    this.getMetrics().setTrackAllocation(PropertiesUtils.getBool(this.properties, "trackAllocation", false));
 
     // now construct the annotators from the given properties in the given order
     List<String> annoNames = Arrays.asList(getRequiredProperty(props, "annotators").split("[, \t]+"));
@@ -574,13 +582,27 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     AnnotatorPool pool = AnnotatorPool.SINGLETON;
     for (Map.Entry<String, BiFunction<Properties, AnnotatorImplementations, Annotator>> entry : getNamedAnnotators().entrySet()) {
       AnnotatorSignature key = new AnnotatorSignature(entry.getKey(), PropertiesUtils.getSignature(entry.getKey(), inputProps));
-      pool.register(entry.getKey(), inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> entry.getValue().apply(inputProps, annotatorImplementation))));
+      pool.register(entry.getKey(), inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> createAnnotator(sig, inputProps, () -> entry.getValue().apply(inputProps, annotatorImplementation)))));
     }
     registerCustomAnnotators(pool, annotatorImplementation, inputProps);
     return pool;
   }
 
 
+  /**
+   * Creates an annotator with the given factory, unless snapshots are turned on with
+   * {@link AnnotatorSnapshots#SNAPSHOT_DIR_PROPERTY} and the annotator can be restored
+   * from one.
+   */
+  private static Annotator createAnnotator(AnnotatorSignature signature, Properties inputProps, Supplier<Annotator> factory) {
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(inputProps);
+    if (snapshots == null) {
+      return factory.get();
+    }
+    return snapshots.getOrCreate(signature, inputProps, factory);
+  }
+
+
   /**
    * register any custom annotators defined in the input properties, and add them to the pool.
    *
@@ -598,7 +620,7 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
         final String customClassName = inputProps.getProperty(property);
         logger.info("Registering annotator " + customName + " with class " + customClassName);
         AnnotatorSignature key = new AnnotatorSignature(customName, PropertiesUtils.getSignature(customName, inputProps));
-        pool.register(customName, inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> annotatorImplementation.custom(inputProps, property))));
+        pool.register(customName, inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> createAnnotator(sig, inputProps, () -> annotatorImplementation.custom(inputProps, property)))));
       }
     }
   }
@@ -613,11 +635,11 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
    * @param annotatorImplementation
    * @return A populated AnnotatorPool
    */
-  private static AnnotatorPool constructAnnotatorPool(final Properties inputProps, final AnnotatorImplementations annotatorImplementation) {
+  static AnnotatorPool constructAnnotatorPool(final Properties inputProps, final AnnotatorImplementations annotatorImplementation) {
     AnnotatorPool pool = new AnnotatorPool();
     for (Map.Entry<String, BiFunction<Properties, AnnotatorImplementations, Annotator>> entry : getNamedAnnotators().entrySet()) {
       AnnotatorSignature key = new AnnotatorSignature(entry.getKey(), PropertiesUtils.getSignature(entry.getKey(), inputProps));
-      pool.register(entry.getKey(), inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> entry.getValue().apply(inputProps, annotatorImplementation))));
+      pool.register(entry.getKey(), inputProps, GLOBAL_ANNOTATOR_CACHE.computeIfAbsent(key, (sig) -> Lazy.cache(() -> createAnnotator(sig, inputProps, () -> entry.getValue().apply(inputProps, annotatorImplementation)))));
     }
     registerCustomAnnotators(pool, annotatorImplementation, inputProps);
     return pool;
@@ -653,6 +675,20 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   }
 
 
+  /** {@inheritDoc} */
+  @Override
+  public void annotateStreaming(Iterable<Annotation> annotations, int numThreads, int maxInFlight,
+                                boolean ordered, Consumer<Annotation> callback) {
+    super.annotateStreaming(annotations, numThreads, maxInFlight, ordered, annotation -> {
+      List<CoreLabel> words = annotation.get(CoreAnnotations.TokensAnnotation.class);
+      if (words != null) {
+        numWords += words.size();
+      }
+      callback.accept(annotation);
+    });
+  }
+
+
   public void annotate(final Annotation annotation, final Consumer<Annotation> callback){
     if (PropertiesUtils.getInt(properties, "threads", 1) == 1) {
       annotate(annotation);
@@ -888,6 +924,8 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"replaceExtension\" - flag to chop off the last extension before adding outputExtension to file");
     os.println("\t\"noClobber\" - don't automatically override (clobber) output files that already exist");
 		os.println("\t\"threads\" - multithread on this number of threads");
+    os.println("\t\"sentenceThreads\" - run sentence-level annotators (parse, depparse, ner, ...) sentence by sentence on this number of shared threads");
+    os.println("\t\"trackAllocation\" - also record the memory allocated by each annotator in the pipeline metrics");
     os.println();
     os.println("If none of the above are present, run the pipeline in an interactive shell (default properties will be loaded from the classpath).");
     os.println("The shell accepts input from stdin and displays the output at stdout.");
@@ -77,8 +77,18 @@ public class StanfordCoreNLPServer implements Runnable {
   protected static String defaultAnnotators = "tokenize,ssplit,pos,lemma,ner,parse,depparse,mention,coref,natlog,openie,regexner,kbp";
   @ArgumentParser.Option(name="preload", gloss="Cache the following annotators on startup")
   protected static String preloadedAnnotators = "";
+  @ArgumentParser.Option(name="preload_threads", gloss="The number of annotators to load at once on startup")
+  protected static int preloadThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
   @ArgumentParser.Option(name="serverProperties", gloss="Default properties file for server's StanfordCoreNLP instance")
   protected static String serverPropertiesPath = null;
+  @ArgumentParser.Option(name="max_queued", gloss="The number of annotation requests which can wait in each of the interactive and bulk lanes before more are turned away. By default, four per thread")
+  protected static int maxQueued = -1;
+  @ArgumentParser.Option(name="interactive_cost", gloss="The highest estimated cost of a request in the interactive lane; the default is about a 1000 character document with the default annotators")
+  protected static long interactiveCost = 150000;
+  @ArgumentParser.Option(name="annotator_limits", gloss="The number of annotation requests which can use an annotator at once, e.g., coref=2,parse=4")
+  protected static String annotatorLimits = "";
+  @ArgumentParser.Option(name="track_allocation", gloss="If true, also report the memory allocated by each annotator at /metrics. This costs a call into the JVM around every annotator")
+  protected static boolean trackAllocation = false;
 
   protected final String shutdownKey;
 
@@ -88,16 +98,37 @@ public class StanfordCoreNLPServer implements Runnable {
   /**
    * The thread pool for the HTTP server.
    */
-  private final ExecutorService serverExecutor;
+  private final ThreadPoolExecutor serverExecutor;
   /**
    * To prevent grossly wasteful over-creation of pipeline objects, cache the last
    *  one we created.
    */
   private SoftReference<Pair<String, StanfordCoreNLP>> lastPipeline = new SoftReference<>(null);
+  /**
+   * The annotators being loaded in the background on startup, or null if none were preloaded.
+   */
+  protected AnnotatorWarmup warmup = null;
+  /**
+   * Decides which annotation requests to take on, and runs them.
+   */
+  private final AdmissionController admission;
   /**
    * An executor to time out CoreNLP execution with.
+   * This is the admission controller's, so work submitted directly runs with interactive priority.
+   */
+  private final ThreadPoolExecutor corenlpExecutor;
+  /**
+   * The metrics of all the pipelines the server runs, served at /metrics.
+   */
+  private final PipelineMetrics metrics = new PipelineMetrics();
+  /**
+   * Answers annotation requests which haven't finished in time.
    */
-  private final ExecutorService corenlpExecutor;
+  private final ScheduledThreadPoolExecutor timeoutTimer = new ScheduledThreadPoolExecutor(1, r -> {
+    Thread thread = new Thread(r, "corenlp-server-timeouts");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   /**
    * Create a new Stanford CoreNLP Server.
@@ -179,8 +210,29 @@ public class StanfordCoreNLPServer implements Runnable {
       PropertiesUtils.overWriteProperties(this.defaultProps, serverProperties);
     }
 
-    this.serverExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
-    this.corenlpExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
+    int queuedPerLane = maxQueued >= 0 ? maxQueued : 4 * ArgumentParser.threads;
+    this.admission = new AdmissionController(ArgumentParser.threads, queuedPerLane,
+        interactiveCost, AdmissionController.parseLimits(annotatorLimits));
+    // An HTTP thread hands annotation requests to the admission controller without waiting for
+    // them, so the admission controller's queues bound the backlog, and the HTTP threads only
+    // need to keep up with reading requests and answering those for the other endpoints.
+    this.serverExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(ArgumentParser.threads);
+    this.corenlpExecutor = admission.executor();
+    metrics.setTrackAllocation(trackAllocation);
+    // most requests finish in time, so don't keep their timeouts around until they would have fired
+    timeoutTimer.setRemoveOnCancelPolicy(true);
+    metrics.registerGauge("server_http_queue_depth", "HTTP requests waiting for a server thread",
+        () -> serverExecutor.getQueue().size());
+    metrics.registerGauge("server_annotation_queue_depth", "Annotation jobs waiting for a CoreNLP thread",
+        () -> corenlpExecutor.getQueue().size());
+    metrics.registerGauge("server_annotation_active_threads", "CoreNLP threads busy with a job",
+        corenlpExecutor::getActiveCount);
+    metrics.registerGauge("server_interactive_queue_depth", "Admitted interactive requests waiting to be annotated",
+        () -> admission.queued(AdmissionController.Lane.INTERACTIVE));
+    metrics.registerGauge("server_bulk_queue_depth", "Admitted bulk requests waiting to be annotated",
+        () -> admission.queued(AdmissionController.Lane.BULK));
+    metrics.registerGauge("server_rejected_requests", "Annotation requests turned away since the server started",
+        admission::rejections);
 
     // Generate and write a shutdown key, get optional server_id from passed in properties
     // this way if multiple servers running can shut them all down with different ids
@@ -329,12 +381,18 @@ public class StanfordCoreNLPServer implements Runnable {
             StanfordCoreNLP.GLOBAL_ANNOTATOR_CACHE.remove(entry.getKey());
           }
         }
-        // Create a CoreNLP
-        impl = new StanfordCoreNLP(props);
-        this.lastPipeline = new SoftReference<>(Pair.makePair(cacheKey, impl));
       }
     }
 
+    // Create a CoreNLP.
+    // This is done outside the lock, so that a request which needs an annotator that is
+    // still loading (e.g., coref during warmup) doesn't hold up requests which don't.
+    impl = new StanfordCoreNLP(props);
+    impl.setMetrics(metrics);
+    synchronized (this) {
+      this.lastPipeline = new SoftReference<>(Pair.makePair(cacheKey, impl));
+    }
+
     return impl;
   }
 
@@ -371,6 +429,24 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * A helper function to respond to a request which was turned away because the server is busy.
+   *
+   * @param rejection Why the request was turned away, and when to try again.
+   * @param httpExchange The exchange to send the error over.
+   *
+   * @throws IOException Thrown if the HttpExchange cannot communicate the error.
+   */
+  private static void respondRejected(AdmissionController.RejectedException rejection, HttpExchange httpExchange) throws IOException {
+    byte[] content = rejection.getMessage().getBytes("utf-8");
+    httpExchange.getResponseHeaders().add("Content-type", "text/plain");
+    httpExchange.getResponseHeaders().add("Retry-After", Long.toString(rejection.retryAfterSeconds));
+    httpExchange.sendResponseHeaders(rejection.status, content.length);
+    httpExchange.getResponseBody().write(content);
+    httpExchange.close();
+  }
+
+
   /**
    * A helper function to respond to a request with an error stating that the user is not authorized
    * to make this request.
@@ -388,6 +464,34 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * An annotation request which is waiting for its job, and which is answered
+   * either by the job or by its timeout, whichever comes first.
+   */
+  private static class PendingResponse {
+
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+    volatile Future<Annotation> job;
+    volatile ScheduledFuture<?> timeout;
+
+    /** Returns true to the first caller only, which must then answer the request. */
+    boolean claim() {
+      if ( ! claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      ScheduledFuture<?> timeout = this.timeout;
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      return true;
+    }
+
+    boolean isClaimed() {
+      return claimed.get();
+    }
+
+  }
+
   /**
    * A callback object that lets us hook into the result of an annotation request.
    */
@@ -432,16 +536,29 @@ public class StanfordCoreNLPServer implements Runnable {
   /**
    * A handler to let the caller know if the server is alive AND ready to respond to requests.
    * The canonical use-case for this is for Kubernetes readiness checks.
+   *
+   * If annotators are being preloaded, the server is ready once they have all been loaded
+   * (or have failed to load), and the response lists the state of each of them.
+   * With {@code ?annotators=tokenize,ssplit,pos}, the server is ready as soon as the
+   * given annotators and their prerequisites have been loaded.
    */
   protected static class ReadyHandler implements HttpHandler {
     /** If true, the server is running and ready for requests. */
     public final AtomicBoolean serverReady;
+    /** The annotators being preloaded, or null if there are none. */
+    public final AnnotatorWarmup warmup;
     /** The creation time of this handler. This is used to tell the caller how long we've been waiting for. */
     public final long startTime;
 
     /** The trivial constructor. */
     public ReadyHandler(AtomicBoolean serverReady) {
+      this(serverReady, null);
+    }
+
+    /** Create a handler which also waits for the given annotators to load. */
+    public ReadyHandler(AtomicBoolean serverReady, AnnotatorWarmup warmup) {
       this.serverReady = serverReady;
+      this.warmup = warmup;
       this.startTime = System.currentTimeMillis();
     }
 
@@ -450,14 +567,26 @@ public class StanfordCoreNLPServer implements Runnable {
     public void handle(HttpExchange httpExchange) throws IOException {
       // Return a simple text message that says pong.
       httpExchange.getResponseHeaders().set("Content-type", "text/plain");
+      String annotators = getURLParams(httpExchange.getRequestURI()).get("annotators");
       String response;
       int status;
-      if (this.serverReady.get()) {
+      if ( ! this.serverReady.get()) {
+        response = "server is not ready yet. uptime=" + Redwood.formatTimeDifference(System.currentTimeMillis() - this.startTime) + "\n";
+        status = HTTP_UNAVAILABLE;
+      } else if (warmup == null) {
         response = "ready\n";
         status = HTTP_OK;
       } else {
-        response = "server is not ready yet. uptime=" + Redwood.formatTimeDifference(System.currentTimeMillis() - this.startTime) + "\n";
-        status = HTTP_UNAVAILABLE;
+        boolean ready = annotators == null ? warmup.isDone() : warmup.isReady(annotators);
+        StringBuilder sb = new StringBuilder();
+        if (ready) {
+          sb.append("ready\n");
+        } else {
+          sb.append("annotators are not ready yet. uptime=").append(Redwood.formatTimeDifference(System.currentTimeMillis() - this.startTime)).append('\n');
+        }
+        warmup.states().forEach((name, state) -> sb.append(name).append('\t').append(state).append('\n'));
+        response = sb.toString();
+        status = ready ? HTTP_OK : HTTP_UNAVAILABLE;
       }
       httpExchange.sendResponseHeaders(status, response.getBytes().length);
       httpExchange.getResponseBody().write(response.getBytes());
@@ -484,6 +613,31 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * Serves the server's metrics, by default in the Prometheus text format.
+   */
+  protected static class MetricsHandler implements HttpHandler {
+    private final PipelineMetrics metrics;
+    private final MetricsExporter exporter;
+
+    public MetricsHandler(PipelineMetrics metrics, MetricsExporter exporter) {
+      this.metrics = metrics;
+      this.exporter = exporter;
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+      StringWriter sw = new StringWriter();
+      exporter.export(metrics, sw);
+      byte[] response = sw.toString().getBytes("utf-8");
+      httpExchange.getResponseHeaders().set("Content-type", exporter.contentType());
+      httpExchange.sendResponseHeaders(HTTP_OK, response.length);
+      httpExchange.getResponseBody().write(response);
+      httpExchange.close();
+    }
+  }
+
+
   /**
    * Sending the appropriate shutdown key will gracefully shutdown the server.
    * This key is, by default, saved into the local file /tmp/corenlp.shutdown on the
@@ -635,7 +789,8 @@ public class StanfordCoreNLPServer implements Runnable {
           log("[" + httpExchange.getRemoteAddress() + "] API call w/annotators " + props.getProperty("annotators", "<unknown>"));
           ann = getDocument(props, httpExchange);
           of = StanfordCoreNLP.OutputFormat.valueOf(props.getProperty("outputFormat", "json").toUpperCase());
-          String text = ann.get(CoreAnnotations.TextAnnotation.class).replace('\n', ' ');
+          String text = ann.get(CoreAnnotations.TextAnnotation.class);
+          text = (text == null) ? "" : text.replace('\n', ' ');
           if (!quiet) {
             System.out.println(text);
           }
@@ -650,18 +805,11 @@ public class StanfordCoreNLPServer implements Runnable {
         return;
       }
 
-      Future<Annotation> completedAnnotationFuture = null;
       try {
-        // Annotate
-        StanfordCoreNLP pipeline = mkStanfordCoreNLP(props);
-        completedAnnotationFuture = corenlpExecutor.submit(() -> {
-          pipeline.annotate(ann);
-          return ann;
-        });
-        Annotation completedAnnotation;
+        int timeoutMilliseconds;
         try {
-          int timeoutMilliseconds = Integer.parseInt(props.getProperty("timeout",
-                                                     Integer.toString(StanfordCoreNLPServer.this.timeoutMilliseconds)));
+          timeoutMilliseconds = Integer.parseInt(props.getProperty("timeout",
+                                                 Integer.toString(StanfordCoreNLPServer.this.timeoutMilliseconds)));
           // Check for too long a timeout from an unauthorized source
           if (timeoutMilliseconds > 15000) {
             // If two conditions:
@@ -673,51 +821,102 @@ public class StanfordCoreNLPServer implements Runnable {
               timeoutMilliseconds = 15000;
             }
           }
-          completedAnnotation = completedAnnotationFuture.get(timeoutMilliseconds, TimeUnit.MILLISECONDS);
         } catch (NumberFormatException e) {
-          completedAnnotation = completedAnnotationFuture.get(StanfordCoreNLPServer.this.timeoutMilliseconds, TimeUnit.MILLISECONDS);
-        }
-        completedAnnotationFuture = null;  // No longer any need for the future
-
-        // Get output
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        AnnotationOutputter.Options options = AnnotationOutputter.getOptions(pipeline);
-        StanfordCoreNLP.createOutputter(props, options).accept(completedAnnotation, os);
-        os.close();
-        byte[] response = os.toByteArray();
-
-        String contentType = getContentType(props, of);
-        if (contentType.equals("application/json") || contentType.startsWith("text/")) {
-          contentType += ";charset=" + options.encoding;
+          timeoutMilliseconds = StanfordCoreNLPServer.this.timeoutMilliseconds;
         }
-        httpExchange.getResponseHeaders().add("Content-type", contentType);
-        httpExchange.getResponseHeaders().add("Content-length", Integer.toString(response.length));
-        httpExchange.sendResponseHeaders(HTTP_OK, response.length);
-        httpExchange.getResponseBody().write(response);
-        httpExchange.close();
-        if (completedAnnotation != null && props.getProperty("annotators") != null && !"".equals(props.getProperty("annotators"))) {
-          callback.accept(new FinishedRequest(props, completedAnnotation));
+        // The annotators give up once the deadline has passed, so that a timed out
+        // request doesn't keep a CoreNLP thread busy after we have stopped waiting for it.
+        // The time spent waiting in the executor's queue counts.
+        ann.set(CoreAnnotations.DeadlineAnnotation.class, Deadline.after(timeoutMilliseconds));
+
+        // Turn the request away now if the server can't get to it in time
+        String text = ann.get(CoreAnnotations.TextAnnotation.class);
+        AdmissionController.Ticket ticket = admission.admit(
+            text == null ? 0 : text.length(),
+            Arrays.asList(props.getProperty("annotators", "").split("[, \t]+")),
+            "bulk".equalsIgnoreCase(props.getProperty("priority")), timeoutMilliseconds);
+
+        // Annotate
+        StanfordCoreNLP pipeline;
+        try {
+          pipeline = mkStanfordCoreNLP(props);
+        } catch (RuntimeException e) {
+          admission.abandon(ticket);
+          throw e;
         }
-      } catch (TimeoutException e) {
-        // Print the stack trace for debugging
-        e.printStackTrace();
-        // Return error message.
-        respondError("CoreNLP request timed out. Your document may be too long.", httpExchange);
-        // Cancel the future if it's alive
-        //noinspection ConstantConditions
-        if (completedAnnotationFuture != null) {
-          completedAnnotationFuture.cancel(true);
+        // This thread doesn't wait for the annotation.  The job answers the request
+        // itself once it is done, unless the timeout answers it first.  So the
+        // number of requests waiting for a CoreNLP thread is bounded by the admission
+        // controller, not by the number of HTTP threads.
+        PendingResponse pending = new PendingResponse();
+        pending.job = admission.submit(ticket, () -> {
+          try {
+            pipeline.annotate(ann);
+          } catch (RuntimeException | Error e) {
+            if (pending.claim()) {
+              e.printStackTrace();
+              respondError(e.getClass().getName() + ": " + e.getMessage(), httpExchange);
+            }
+            throw e;
+          } finally {
+            ann.remove(CoreAnnotations.DeadlineAnnotation.class);
+          }
+          if (pending.claim()) {
+            try {
+              respond(httpExchange, props, of, pipeline, ann);
+            } catch (RuntimeException e) {
+              e.printStackTrace();
+              respondError(e.getClass().getName() + ": " + e.getMessage(), httpExchange);
+            }
+          }
+          return ann;
+        });
+        pending.timeout = timeoutTimer.schedule(() -> {
+          if (pending.claim()) {
+            pending.job.cancel(true);
+            try {
+              respondError("CoreNLP request timed out. Your document may be too long.", httpExchange);
+            } catch (IOException e) {
+              warn("[" + httpExchange.getRemoteAddress() + "] Could not send timeout: " + e.getMessage());
+            }
+          }
+        }, timeoutMilliseconds, TimeUnit.MILLISECONDS);
+        if (pending.isClaimed()) {
+          // the job finished before the timeout was set
+          pending.timeout.cancel(false);
         }
+      } catch (AdmissionController.RejectedException e) {
+        warn("[" + httpExchange.getRemoteAddress() + "] Rejected request: " + e.getMessage());
+        respondRejected(e, httpExchange);
       } catch (Exception e) {
         // Print the stack trace for debugging
         e.printStackTrace();
         // Return error message.
         respondError(e.getClass().getName() + ": " + e.getMessage(), httpExchange);
-        // Cancel the future if it's alive
-        //noinspection ConstantConditions
-        if (completedAnnotationFuture != null) {  // just in case...
-          completedAnnotationFuture.cancel(true);
-        }
+      }
+    }
+
+    /** Write out an annotated document as the response to the request. */
+    private void respond(HttpExchange httpExchange, Properties props, StanfordCoreNLP.OutputFormat of,
+                         StanfordCoreNLP pipeline, Annotation completedAnnotation) throws IOException {
+      // Get output
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      AnnotationOutputter.Options options = AnnotationOutputter.getOptions(pipeline);
+      StanfordCoreNLP.createOutputter(props, options).accept(completedAnnotation, os);
+      os.close();
+      byte[] response = os.toByteArray();
+
+      String contentType = getContentType(props, of);
+      if (contentType.equals("application/json") || contentType.startsWith("text/")) {
+        contentType += ";charset=" + options.encoding;
+      }
+      httpExchange.getResponseHeaders().add("Content-type", contentType);
+      httpExchange.getResponseHeaders().add("Content-length", Integer.toString(response.length));
+      httpExchange.sendResponseHeaders(HTTP_OK, response.length);
+      httpExchange.getResponseBody().write(response);
+      httpExchange.close();
+      if (completedAnnotation != null && props.getProperty("annotators") != null && !"".equals(props.getProperty("annotators"))) {
+        callback.accept(new FinishedRequest(props, completedAnnotation));
       }
     }
 
@@ -1224,7 +1423,7 @@ public class StanfordCoreNLPServer implements Runnable {
         }
         // Add the two status endpoints
         withAuth(server.createContext("/live", new LiveHandler()), Optional.empty());
-        withAuth(server.createContext("/ready", new ReadyHandler(live)), Optional.empty());
+        withAuth(server.createContext("/ready", new ReadyHandler(live, warmup)), Optional.empty());
         // Start the server
         server.start();
         // Server started
@@ -1236,6 +1435,14 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * Returns the metrics of the pipelines this server runs, to which more gauges can be added.
+   */
+  public PipelineMetrics getMetrics() {
+    return metrics;
+  }
+
+
   /**
    * Returns the implementing Http server.
    */
@@ -1300,10 +1507,11 @@ public class StanfordCoreNLPServer implements Runnable {
       withAuth(server.createContext("/corenlp-brat.cs", new FileHandler("edu/stanford/nlp/pipeline/demo/corenlp-brat.css", "text/css")), basicAuth);
       withAuth(server.createContext("/corenlp-parseviewer.js", new FileHandler("edu/stanford/nlp/pipeline/demo/corenlp-parseviewer.js", "application/javascript")), basicAuth);
       withAuth(server.createContext("/ping", new PingHandler()), Optional.empty());
+      withAuth(server.createContext("/metrics", new MetricsHandler(metrics, new PrometheusMetricsExporter())), basicAuth);
       withAuth(server.createContext("/shutdown", new ShutdownHandler()), basicAuth);
       if (this.serverPort == this.statusPort) {
         withAuth(server.createContext("/live", new LiveHandler()), Optional.empty());
-        withAuth(server.createContext("/ready", new ReadyHandler(live)), Optional.empty());
+        withAuth(server.createContext("/ready", new ReadyHandler(live, warmup)), Optional.empty());
 
       }
       server.setExecutor(serverExecutor);
@@ -1346,6 +1554,19 @@ public class StanfordCoreNLPServer implements Runnable {
     }
     log("    Threads: " + ArgumentParser.threads);
 
+    // Pre-load the models in the background
+    if (StanfordCoreNLPServer.preloadedAnnotators != null && ! StanfordCoreNLPServer.preloadedAnnotators.trim().isEmpty()) {
+      Properties props = new Properties();
+      server.defaultProps.entrySet().forEach(entry -> props.setProperty(entry.getKey().toString(), entry.getValue().toString()));
+      props.setProperty("annotators", StanfordCoreNLPServer.preloadedAnnotators);
+      try {
+        server.warmup = new AnnotatorWarmup(props, StanfordCoreNLPServer.preloadThreads);
+      } catch (Throwable ignored) {
+        err("Could not pre-load annotators in server; encountered exception:");
+        ignored.printStackTrace();
+      }
+    }
+
     // Start the liveness server
     AtomicBoolean live = new AtomicBoolean(false);
     server.livenessServer(live);
@@ -1358,17 +1579,8 @@ public class StanfordCoreNLPServer implements Runnable {
       throw new RuntimeIOException(e);
     }
 
-    // Pre-load the models
-    if (StanfordCoreNLPServer.preloadedAnnotators != null && ! StanfordCoreNLPServer.preloadedAnnotators.trim().isEmpty()) {
-      Properties props = new Properties();
-      server.defaultProps.entrySet().forEach(entry -> props.setProperty(entry.getKey().toString(), entry.getValue().toString()));
-      props.setProperty("annotators", StanfordCoreNLPServer.preloadedAnnotators);
-      try {
-        new StanfordCoreNLP(props);
-      } catch (Throwable ignored) {
-        err("Could not pre-load annotators in server; encountered exception:");
-        ignored.printStackTrace();
-      }
+    if (server.warmup != null) {
+      server.warmup.start();
     }
 
     // Credentials
@@ -7,6 +7,7 @@ import java.util.*;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.CoreLabelColumns;
 import edu.stanford.nlp.process.*;
 import edu.stanford.nlp.international.spanish.process.SpanishTokenizer;
 import edu.stanford.nlp.international.french.process.FrenchTokenizer;
@@ -125,6 +126,8 @@ public class TokenizerAnnotator implements Annotator  {
 
   private final boolean VERBOSE;
   private final TokenizerFactory<CoreLabel> factory;
+  /** If true, tokens are stored in a {@link CoreLabelColumns} store */
+  private final boolean columnar;
 
   /** new segmenter properties **/
   private final boolean useSegmenter;
@@ -214,6 +217,7 @@ public class TokenizerAnnotator implements Annotator  {
       segmenterAnnotator = null;
     }
     VERBOSE = PropertiesUtils.getBool(props, "tokenize.verbose", verbose);
+    columnar = PropertiesUtils.getBool(props, "tokenize.columnar", false);
     TokenizerType type = TokenizerType.getTokenizerType(props);
     factory = initFactory(type, props, options);
   }
@@ -316,6 +320,9 @@ public class TokenizerAnnotator implements Annotator  {
       // don't wrap in BufferedReader.  It gives you nothing for in-memory String unless you need the readLine() method!
 
       List<CoreLabel> tokens = getTokenizer(r).tokenize();
+      if (columnar) {
+        tokens = CoreLabelColumns.compact(tokens);
+      }
       // cdm 2010-05-15: This is now unnecessary, as it is done in CoreLabelTokenFactory
       // for (CoreLabel token: tokens) {
       // token.set(CoreAnnotations.TextAnnotation.class, token.get(CoreAnnotations.TextAnnotation.class));
@@ -13,6 +13,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -126,7 +127,9 @@ import java.util.regex.Pattern;
  *
  * @author Angel Chang
  */
-public class TokensRegexNERAnnotator implements Annotator  {
+public class TokensRegexNERAnnotator implements Annotator, Serializable  {
+
+  private static final long serialVersionUID = 1L;
 
   /** A logger for this class */
   private static Redwood.RedwoodChannels log = Redwood.channels(TokensRegexNERAnnotator.class);
@@ -146,6 +149,11 @@ public class TokensRegexNERAnnotator implements Annotator  {
   private final List<Entry> entries;
   private final Map<SequencePattern<CoreMap>,Entry> patternToEntry;
   private final MultiPatternMatcher<CoreMap>  multiPatternMatcher;
+  // Entries which are just a sequence of token strings are not compiled into patterns,
+  // but looked up by their tokens, with the case sensitive ones in literalEntries
+  // and the others (lowercased) in caselessLiteralEntries
+  private final TrieMap<String,List<Entry>> literalEntries;
+  private final TrieMap<String,List<Entry>> caselessLiteralEntries;
   private final List<Class> annotationFields; // list of fields to annotate (default to just NamedEntityTag)
 
   private final Set<String> myLabels;  // set of labels to always overwrite
@@ -292,7 +300,9 @@ public class TokensRegexNERAnnotator implements Annotator  {
     processPerFileOptions(name, mappings, ignoreCaseList, validPosPatternList, ignoreCase, validPosPattern);
     entries = Collections.unmodifiableList(readEntries(name, noDefaultOverwriteLabels, ignoreCaseList, entryToMappingFileNumber, verbose, headerFields, annotationFieldnames, mappings));
     IdentityHashMap<SequencePattern<CoreMap>, Entry> patternToEntry = new IdentityHashMap<>();
-    multiPatternMatcher = createPatternMatcher(patternToEntry);
+    literalEntries = new TrieMap<>();
+    caselessLiteralEntries = new TrieMap<>();
+    multiPatternMatcher = createPatternMatcher(patternToEntry, literalEntries, caselessLiteralEntries);
     this.patternToEntry = Collections.unmodifiableMap(patternToEntry);
     Set<String> myLabels = Generics.newHashSet();
     // Can always override background or none.
@@ -330,7 +340,13 @@ public class TokensRegexNERAnnotator implements Annotator  {
       log.info("done.");
   }
 
-  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry) {
+  /**
+   * Puts the entries which only match literal token strings into the given tries,
+   * and returns a matcher for the patterns of the other entries.
+   */
+  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry,
+                                                            TrieMap<String,List<Entry>> literalEntries,
+                                                            TrieMap<String,List<Entry>> caselessLiteralEntries) {
     // Convert to tokensregex pattern
 
     List<TokenSequencePattern> patterns = new ArrayList<>(entries.size());
@@ -339,13 +355,32 @@ public class TokensRegexNERAnnotator implements Annotator  {
 
       Boolean ignoreCaseEntry = ignoreCaseList.get(entryToMappingFileNumber.get(entry));
       int patternFlags = ignoreCaseEntry? Pattern.CASE_INSENSITIVE:0;
+
+      NodePattern<String> posTagPattern = (validPosPatternList.get(entryToMappingFileNumber.get(entry)) != null && PosMatchType.MATCH_ALL_TOKENS.equals(posMatchType))?
+              new CoreMapNodePattern.StringAnnotationRegexPattern(validPosPatternList.get(entryToMappingFileNumber.get(entry))):null;
+      if (posTagPattern == null && isLiteral(entry, patternFlags)) {
+        String[] key = entry.regex;
+        if (ignoreCaseEntry) {
+          key = new String[key.length];
+          for (int i = 0; i < key.length; i++) {
+            key[i] = foldCase(entry.regex[i]);
+          }
+        }
+        TrieMap<String,List<Entry>> trie = ignoreCaseEntry? caselessLiteralEntries: literalEntries;
+        List<Entry> keyEntries = trie.get(key);
+        if (keyEntries == null) {
+          keyEntries = new ArrayList<>(1);
+          trie.put(key, keyEntries);
+        }
+        keyEntries.add(entry);
+        continue;
+      }
+
       int stringMatchFlags = ignoreCaseEntry? NodePattern.CASE_INSENSITIVE:0;
       Env env = TokenSequencePattern.getNewEnv();
       env.setDefaultStringPatternFlags(patternFlags);
       env.setDefaultStringMatchFlags(stringMatchFlags);
 
-      NodePattern<String> posTagPattern = (validPosPatternList.get(entryToMappingFileNumber.get(entry)) != null && PosMatchType.MATCH_ALL_TOKENS.equals(posMatchType))?
-              new CoreMapNodePattern.StringAnnotationRegexPattern(validPosPatternList.get(entryToMappingFileNumber.get(entry))):null;
       if (entry.tokensRegex != null) {
         // TODO: posTagPatterns...
         pattern = TokenSequencePattern.compile(env, entry.tokensRegex);
@@ -372,21 +407,157 @@ public class TokensRegexNERAnnotator implements Annotator  {
     return TokenSequencePattern.getMultiPatternMatcher(patterns);
   }
 
-  private void annotateMatched(List<CoreLabel> tokens) {
-    List<SequenceMatchResult<CoreMap>> matched = multiPatternMatcher.findNonOverlapping(tokens);
-    for (SequenceMatchResult<CoreMap> m:matched) {
+  /**
+   * Folds the case of each character the way {@link String#equalsIgnoreCase} compares them,
+   * so that two strings fold to the same string exactly when they are equal ignoring case,
+   * whatever the default locale.
+   */
+  private static String foldCase(String str) {
+    char[] chars = null;
+    for (int i = 0; i < str.length(); i++) {
+      char ch = str.charAt(i);
+      char folded = Character.toLowerCase(Character.toUpperCase(ch));
+      if (folded != ch) {
+        if (chars == null) {
+          chars = str.toCharArray();
+        }
+        chars[i] = folded;
+      }
+    }
+    return (chars == null) ? str : new String(chars);
+  }
+
+  /** Whether the entry is a sequence of strings which each match a token exactly (or ignoring case). */
+  private static boolean isLiteral(Entry entry, int patternFlags) {
+    if (entry.tokensRegex != null || entry.annotateGroup != 0) {
+      return false;
+    }
+    for (String p:entry.regex) {
+      if ( ! ComplexNodePattern.isLiteral(p, patternFlags)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A match of an entry: tokens from start to end, of which the entry annotates groupStart to groupEnd. */
+  private static class EntryMatch implements HasInterval<Integer> {
+    final Entry entry;
+    final Interval<Integer> interval;
+    final int groupStart;
+    final int groupEnd;
+
+    EntryMatch(Entry entry, int start, int end, int groupStart, int groupEnd) {
+      this.entry = entry;
+      this.interval = Interval.toInterval(start, end, Interval.INTERVAL_OPEN_END);
+      this.groupStart = groupStart;
+      this.groupEnd = groupEnd;
+    }
+
+    @Override
+    public Interval<Integer> getInterval() {
+      return interval;
+    }
+
+    int length() {
+      return interval.getEnd() - interval.getBegin();
+    }
+  }
+
+  /**
+   * The order in which overlapping matches are chosen, as for {@link SequenceMatchResult#DEFAULT_COMPARATOR}:
+   * by priority, then weight, then length, then position, and then the order of the entries.
+   */
+  private static final Comparator<EntryMatch> ENTRY_MATCH_COMPARATOR = (m1, m2) -> {
+    if (m1.entry.priority != m2.entry.priority) {
+      return (m1.entry.priority > m2.entry.priority)? -1: 1;
+    }
+    if (m1.entry.weight != m2.entry.weight) {
+      return (m1.entry.weight > m2.entry.weight)? -1: 1;
+    }
+    if (m1.length() != m2.length()) {
+      return (m1.length() > m2.length())? -1: 1;
+    }
+    int cmp = m1.interval.compareTo(m2.interval);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return Integer.compare(m1.entry.index, m2.entry.index);
+  };
+
+  /**
+   * Finds the non overlapping matches of all entries, in order of their position.
+   * The literal entries are found by looking up the tokens from each position in the tries,
+   * so that this takes time linear in the number of tokens, however many entries there are,
+   * and only the patterns of the other entries which are triggered by the tokens are run.
+   */
+  private List<EntryMatch> findNonOverlapping(List<CoreLabel> tokens) {
+    List<EntryMatch> all = new ArrayList<>();
+    for (SequenceMatchResult<CoreMap> m:multiPatternMatcher.findAllNonOverlappingMatchesPerPattern(tokens)) {
       Entry entry = patternToEntry.get(m.pattern());
+      int g = entry.annotateGroup;
+      all.add(new EntryMatch(entry, m.start(), m.end(), m.start(g), m.end(g)));
+    }
+    findLiteralMatches(tokens, literalEntries, false, all);
+    findLiteralMatches(tokens, caselessLiteralEntries, true, all);
+    List<EntryMatch> res = IntervalTree.getNonOverlapping(all, ENTRY_MATCH_COMPARATOR);
+    res.sort(Comparator.comparing(EntryMatch::getInterval));
+    return res;
+  }
+
+  /**
+   * Adds the matches of the entries in the given trie.  As for a pattern, the matches
+   * of one entry don't overlap each other; each is the first one after the last.
+   */
+  private static void findLiteralMatches(List<CoreLabel> tokens, TrieMap<String,List<Entry>> trie, boolean lowercase,
+                                         List<EntryMatch> matches) {
+    if (trie.isEmpty()) {
+      return;
+    }
+    Map<Entry,Integer> lastEnds = null;
+    for (int start = 0; start < tokens.size(); start++) {
+      Deadline.checkForInterrupt();  // Allow interrupting
+      TrieMap<String,List<Entry>> node = trie;
+      for (int end = start + 1; end <= tokens.size(); end++) {
+        String word = tokens.get(end - 1).get(CoreAnnotations.TextAnnotation.class);
+        if (word == null) {
+          break;
+        }
+        node = node.getChildTrie(lowercase? foldCase(word): word);
+        if (node == null) {
+          break;
+        }
+        if (node.getValue() != null) {
+          if (lastEnds == null) {
+            lastEnds = new IdentityHashMap<>();
+          }
+          for (Entry entry:node.getValue()) {
+            Integer lastEnd = lastEnds.get(entry);
+            if (lastEnd == null || lastEnd <= start) {
+              matches.add(new EntryMatch(entry, start, end, start, end));
+              lastEnds.put(entry, end);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void annotateMatched(List<CoreLabel> tokens) {
+    List<EntryMatch> matched = findNonOverlapping(tokens);
+    for (EntryMatch m:matched) {
+      Entry entry = m.entry;
 
       // Check if we will overwrite the existing annotation with this annotation
-      int g = entry.annotateGroup;
-      int start = m.start(g);
-      int end = m.end(g);
+      int start = m.groupStart;
+      int end = m.groupEnd;
 
-      String str = m.group(g);
+      List<CoreLabel> groupTokens = tokens.subList(start, end);
+      String str = ChunkAnnotationUtils.getTokenText(groupTokens, CoreAnnotations.TextAnnotation.class);
       if (commonWords.contains(str)) {
         if (verbose) {
           log.info("Not annotating (common word) '" + str + "': " +
-              StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
+              StringUtils.joinFields(groupTokens, CoreAnnotations.NamedEntityTagAnnotation.class)
               + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
         }
         continue;
@@ -406,8 +577,8 @@ public class TokensRegexNERAnnotator implements Annotator  {
         }
       } else {
         if (verbose) {
-          log.info("Not annotating  '" + m.group(g) + "': " +
-                  StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
+          log.info("Not annotating  '" + str + "': " +
+                  StringUtils.joinFields(groupTokens, CoreAnnotations.NamedEntityTagAnnotation.class)
                   + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
         }
       }
@@ -531,7 +702,10 @@ public class TokensRegexNERAnnotator implements Annotator  {
     return overwriteOriginalNer;
   }
 
-  private static class Entry {
+  private static class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     public final String tokensRegex;
     public final String[] regex; // the regex, tokenized by splitting on white space
     public final String[] types; // the associated types
@@ -539,8 +713,9 @@ public class TokensRegexNERAnnotator implements Annotator  {
     public final double priority;
     public final double weight;
     public final int annotateGroup;
+    public final int index; // the position of the entry in the list of entries
 
-    public Entry(String tokensRegex, String[] regex, String[] types, Set<String> overwritableTypes, double priority, double weight, int annotateGroup) {
+    public Entry(String tokensRegex, String[] regex, String[] types, Set<String> overwritableTypes, double priority, double weight, int annotateGroup, int index) {
       this.tokensRegex = tokensRegex;
       this.regex = regex;
       this.types = new String[types.length];
@@ -552,6 +727,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
       this.priority = priority;
       this.weight = weight;
       this.annotateGroup = annotateGroup;
+      this.index = index;
     }
 
     public String getTypeDescription() {
@@ -692,7 +868,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
       if (ignoreCase) {
         String[] norm = new String[key.length];
         for (int i = 0; i < key.length; i++) {
-          norm[i] = key[i].toLowerCase();
+          norm[i] = foldCase(key[i]);
         }
         key = norm;
       }
@@ -755,7 +931,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
         }
       }
 
-      Entry entry = new Entry(tokensRegex, regexes, types, overwritableTypes, priority, weight, annotateGroup);
+      Entry entry = new Entry(tokensRegex, regexes, types, overwritableTypes, priority, weight, annotateGroup, entries.size());
 
       if (seenRegexes.containsKey(key)) {
         Entry oldEntry = seenRegexes.get(key);
@@ -2,7 +2,7 @@ package edu.stanford.nlp.sequences;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import edu.stanford.nlp.util.Beam;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Scored;
 import edu.stanford.nlp.util.ScoredComparator;
 
@@ -127,9 +127,7 @@ public class BeamBestSequenceFinder implements BestSequenceFinder  {
     TagSeq initSeq = new TagSeq();
     newBeam.add(initSeq);
     for (int pos = 0; pos < padLength; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       //System.out.println("scoring word " + pos + " / " + (leftWindow + length) + ", tagNum = " + tagNum[pos] + "...");
       //System.out.flush();
 
@@ -141,9 +139,7 @@ public class BeamBestSequenceFinder implements BestSequenceFinder  {
       }
       // each hypothesis gets extended and beamed
       for (Object anOldBeam : oldBeam) {
-        if (Thread.interrupted()) {  // Allow interrupting
-          throw new RuntimeInterruptedException();
-        }
+        Deadline.checkForInterrupt();  // Allow interrupting
         // System.out.print("#"); System.out.flush();
         TagSeq tagSeq = (TagSeq) anOldBeam;
         for (int nextTagNum = 0; nextTagNum < tagNum[pos]; nextTagNum++) {
@@ -1,8 +1,8 @@
 package edu.stanford.nlp.sequences; 
 import edu.stanford.nlp.util.logging.Redwood;
 
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Pair;
-import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 import java.util.Arrays;
 
@@ -49,9 +49,7 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     int[] tagNum = new int[padLength];
     if (DEBUG) { log.info("Doing bestSequence length " + length + "; leftWin " + leftWindow + "; rightWin " + rightWindow + "; padLength " + padLength); }
     for (int pos = 0; pos < padLength; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       tags[pos] = ts.getPossibleValues(pos);
       tagNum[pos] = tags[pos].length;
       if (DEBUG) { log.info("There are " + tagNum[pos] + " values at position " + pos + ": " + Arrays.toString(tags[pos])); }
@@ -67,9 +65,7 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       curProduct *= tagNum[i];
     }
     for (int pos = leftWindow + rightWindow; pos < padLength; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       if (pos > leftWindow + rightWindow) {
         curProduct /= tagNum[pos - leftWindow - rightWindow - 1]; // shift off
       }
@@ -80,18 +76,14 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     // Score all of each window's options
     double[][] windowScore = new double[padLength][];
     for (int pos = leftWindow; pos < leftWindow + length; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       if (DEBUG) { log.info("scoring word " + pos + " / " + (leftWindow + length) + ", productSizes =  " + productSizes[pos] + ", tagNum = " + tagNum[pos] + "..."); }
       windowScore[pos] = new double[productSizes[pos]];
       Arrays.fill(tempTags, tags[0][0]);
       if (DEBUG) { log.info("windowScore[" + pos + "] has size (productSizes[pos]) " + windowScore[pos].length); }
 
       for (int product = 0; product < productSizes[pos]; product++) {
-        if (Thread.interrupted()) {  // Allow interrupting
-          throw new RuntimeInterruptedException();
-        }
+        Deadline.checkForInterrupt();  // Allow interrupting
         int p = product;
         int shift = 1;
         for (int curPos = pos + rightWindow; curPos >= pos - leftWindow; curPos--) {
@@ -123,9 +115,7 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     double[][] score = new double[padLength][];
     int[][] trace = new int[padLength][];
     for (int pos = 0; pos < padLength; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
+      Deadline.checkForInterrupt();  // Allow interrupting
       score[pos] = new double[productSizes[pos]];
       trace[pos] = new int[productSizes[pos]];
     }
@@ -138,9 +128,7 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       //log.info(".");
       // loop over window product types
       for (int product = 0; product < productSizes[pos]; product++) {
-        if (Thread.interrupted()) {  // Allow interrupting
-          throw new RuntimeInterruptedException();
-        }
+        Deadline.checkForInterrupt();  // Allow interrupting
         // check for initial spot
         if (pos == leftWindow) {
           // no predecessor type
@@ -80,6 +80,34 @@ public abstract class FeatureFactory<IN> implements Serializable {
    */
   public abstract Collection<String> getCliqueFeatures(PaddedList<IN> info, int position, Clique clique);
 
+  /**
+   * Whether this factory, with its current flags, extracts hashed features
+   * with {@link #getCliqueFeatures(PaddedList, int, Clique, FeatureHasher)}
+   * without building them as Strings.  By default it doesn't.
+   */
+  public boolean supportsHashedFeatures() {
+    return false;
+  }
+
+  /**
+   * Adds the ids of the features that
+   * {@link #getCliqueFeatures(PaddedList, int, Clique)} would return to the
+   * given hasher, without building the features as Strings.  That is, for each
+   * feature {@code f} it returns, this adds {@link FeatureHasher#hash(String) hash(f)}
+   * once.  Unless {@link #supportsHashedFeatures()} is true, this builds the
+   * String features and hashes them, which saves nothing over using them.
+   *
+   * @param info A PaddedList of the feature-value pairs
+   * @param position The current position to extract features at
+   * @param clique The particular clique for which to extract features
+   * @param features The hasher the feature ids are added to
+   */
+  public void getCliqueFeatures(PaddedList<IN> info, int position, Clique clique, FeatureHasher features) {
+    for (String feature : getCliqueFeatures(info, position, clique)) {
+      features.add(feature);
+    }
+  }
+
 
   /** Makes more complete feature names out of partial feature names, by
    *  adding a suffix to the String feature name, adding results to an
@@ -107,6 +135,24 @@ public abstract class FeatureFactory<IN> implements Serializable {
     }
   }
 
+  /**
+   * The hashed counterpart of {@link #addAllInterningAndSuffixing}: adds the
+   * suffix, as that method would, to each of the features from {@code start}
+   * to {@code end}.
+   *
+   * @param features The features
+   * @param start The first feature to add the suffix to
+   * @param end One past the last feature to add the suffix to
+   * @param suffix The suffix added to each feature
+   */
+  @SuppressWarnings({"MethodMayBeStatic"})
+  protected void addAllSuffixing(FeatureHasher features, int start, int end, String suffix) {
+    if (suffix != null && ! suffix.isEmpty()) {
+      features.appendToEach(start, end, "|");
+      features.appendToEach(start, end, suffix);
+    }
+  }
+
   /**
    * Convenience methods for subclasses which use CoreLabel.  Gets the
    * word after applying any wordFunction present in the
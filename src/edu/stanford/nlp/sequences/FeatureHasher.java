@@ -0,0 +1,148 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of 64-bit feature ids, each the hash of a String
+ * feature name, built up piece by piece so that the name itself is never
+ * made.
+ * <p>
+ * The hash is FNV-1a over the chars of the name, so a feature is built
+ * by appending its parts in order, and the id of
+ * {@code word + "-WORD"} is the same as
+ * {@code begin().append(word).append("-WORD").end()} and as
+ * {@link #hash(String) hash(word + "-WORD")}.  This lets a model map the
+ * hashes of its String features to weights when it is loaded, and then
+ * look up features extracted by {@link FeatureFactory#getCliqueFeatures(edu.stanford.nlp.util.PaddedList, int, Clique, FeatureHasher)}
+ * without building any Strings.
+ * <p>
+ * As in String concatenation, appending a null String appends "null".
+ * A FeatureHasher is not thread-safe; use one per thread.
+ */
+public class FeatureHasher {
+
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  private long[] ids = new long[64];
+  private int size; // = 0
+
+  /** The hash of the feature being built. */
+  private long current = OFFSET_BASIS;
+
+  /** The id of the given feature name. */
+  public static long hash(String feature) {
+    return extend(OFFSET_BASIS, feature);
+  }
+
+  /** The id of the name with the given id followed by the given String. */
+  public static long extend(long hash, String str) {
+    if (str == null) {
+      str = "null";
+    }
+    for (int i = 0, len = str.length(); i < len; i++) {
+      hash = (hash ^ str.charAt(i)) * PRIME;
+    }
+    return hash;
+  }
+
+  /** Starts a new feature. */
+  public FeatureHasher begin() {
+    current = OFFSET_BASIS;
+    return this;
+  }
+
+  public FeatureHasher append(String str) {
+    current = extend(current, str);
+    return this;
+  }
+
+  public FeatureHasher append(char ch) {
+    current = (current ^ ch) * PRIME;
+    return this;
+  }
+
+  /** Appends {@code str.substring(start, end)}. */
+  public FeatureHasher append(String str, int start, int end) {
+    long hash = current;
+    for (int i = start; i < end; i++) {
+      hash = (hash ^ str.charAt(i)) * PRIME;
+    }
+    current = hash;
+    return this;
+  }
+
+  /** Adds the feature built since {@link #begin()}. */
+  public void end() {
+    push(current);
+  }
+
+  /** Adds the feature with the given name. */
+  public void add(String feature) {
+    push(hash(feature));
+  }
+
+  /** Adds the feature {@code a + b}. */
+  public void add(String a, String b) {
+    push(extend(extend(OFFSET_BASIS, a), b));
+  }
+
+  /** Adds the feature {@code a + b + c}. */
+  public void add(String a, String b, String c) {
+    push(extend(extend(extend(OFFSET_BASIS, a), b), c));
+  }
+
+  private void push(long id) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    ids[size++] = id;
+  }
+
+  /** The number of features added since the last {@link #clear()}. */
+  public int size() {
+    return size;
+  }
+
+  public long get(int i) {
+    return ids[i];
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /** Appends the given String to each of the features from {@code start} to {@code end}. */
+  public void appendToEach(int start, int end, String str) {
+    for (int i = start; i < end; i++) {
+      ids[i] = extend(ids[i], str);
+    }
+  }
+
+  /** Adds a copy of each of the features from {@code start} to {@code end}. */
+  public void copy(int start, int end) {
+    for (int i = start; i < end; i++) {
+      push(ids[i]);
+    }
+  }
+
+  /**
+   * Removes repeated features from {@code start} on, as adding them to a
+   * Set would.  The features from {@code start} on are left in no
+   * particular order.
+   */
+  public void removeDuplicates(int start) {
+    if (size - start < 2) {
+      return;
+    }
+    Arrays.sort(ids, start, size);
+    int last = start;
+    for (int i = start + 1; i < size; i++) {
+      if (ids[i] != ids[last]) {
+        ids[++last] = ids[i];
+      }
+    }
+    size = last + 1;
+  }
+
+}
@@ -1067,6 +1067,13 @@ public class SeqClassifierFlags implements Serializable  {
    */
   public boolean useMoreNeighborNGrams = false;
 
+  /**
+   * If true, build features as Strings when classifying even if the feature
+   * factories can extract them as hashes, which gives the same features
+   * without making the Strings.
+   */
+  public boolean dontHashFeatures = false;
+
 
   // "ADD VARIABLES ABOVE HERE"
 
@@ -2616,6 +2623,8 @@ public class SeqClassifierFlags implements Serializable  {
         combinationMode = val;
       } else if (key.equalsIgnoreCase("ner.model")) {
         nerModel = val;
+      } else if (key.equalsIgnoreCase("dontHashFeatures")) {
+        dontHashFeatures = Boolean.parseBoolean(val);
         // ADD VALUE ABOVE HERE
       } else if ( ! key.isEmpty() && ! key.equals("prop")) {
         log.info("Unknown property: |" + key + '|');
@@ -89,4 +89,21 @@ public interface SequenceModel {
    */
   double[] scoresOf(int[] sequence, int position);
 
+  /**
+   * Computes the same scores as {@link #scoresOf(int[], int)}, but stores
+   * them in the first {@code getPossibleValues(position).length} elements
+   * of the given array rather than allocating a new one.  Models which are
+   * decoded often should override this so that decoding allocates nothing
+   * per position; the default just copies the result of scoresOf.
+   *
+   * @param sequence The sequence containing the rest of the values to condition on
+   * @param position The position of the element to give a distribution for
+   * @param scores The array to store the scores in, which is at least as
+   *               long as the number of possible values at this position
+   */
+  default void scoresOf(int[] sequence, int position, double[] scores) {
+    double[] result = scoresOf(sequence, position);
+    System.arraycopy(result, 0, scores, 0, result.length);
+  }
+
 }
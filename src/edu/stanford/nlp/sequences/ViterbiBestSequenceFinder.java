@@ -0,0 +1,232 @@
+package edu.stanford.nlp.sequences;
+
+import edu.stanford.nlp.util.Deadline;
+
+import java.util.Arrays;
+
+/**
+ * Finds the best sequence given a SequenceModel with the Viterbi algorithm,
+ * giving the same answer as {@link ExactBestSequenceFinder} but without
+ * allocating per position.
+ * <p>
+ * The lattice of window scores, path scores and back pointers is kept in
+ * flat primitive arrays which belong to the calling thread and are reused
+ * from one sequence to the next, growing as needed.  Window scores are
+ * fetched with {@link SequenceModel#scoresOf(int[], int, double[])}, so a
+ * model which overrides that method (as the CRF and the tagger do) is
+ * decoded without allocating anything but the returned sequence.  The
+ * lattice works for any window, but is meant for the first and second
+ * order models used in practice, where it is small.
+ * <p>
+ * This class is thread-safe: each thread decodes in its own lattice.
+ */
+public class ViterbiBestSequenceFinder implements BestSequenceFinder {
+
+  /**
+   * Lattices larger than this many cells (e.g., for a very long document)
+   * are not kept after decoding, so that a thread doesn't hold on to them.
+   */
+  private static final int MAX_RETAINED_CELLS = 1 << 20;
+
+  private static final ThreadLocal<Lattice> lattices = ThreadLocal.withInitial(Lattice::new);
+
+  /** The reusable arrays for decoding one sequence. */
+  private static class Lattice {
+    boolean inUse;
+    int[][] tags = new int[0][];
+    int[] tagNum = new int[0];
+    int[] tempTags = new int[0];
+    int[] productSizes = new int[0];
+    /** Where the cells of each position start in windowScore, score and trace */
+    int[] offsets = new int[0];
+    double[] windowScore = new double[0];
+    double[] score = new double[0];
+    int[] trace = new int[0];
+    double[] scores = new double[0];
+
+    void ensurePositions(int padLength) {
+      if (tagNum.length < padLength) {
+        int n = Math.max(padLength, tagNum.length * 2);
+        tags = new int[n][];
+        tagNum = new int[n];
+        tempTags = new int[n];
+        productSizes = new int[n];
+        offsets = new int[n + 1];
+      } else {
+        Arrays.fill(productSizes, 0, padLength, 0);
+      }
+    }
+
+    void ensureCells(int cells) {
+      if (score.length < cells) {
+        int n = Math.max(cells, score.length * 2);
+        windowScore = new double[n];
+        score = new double[n];
+        trace = new int[n];
+      }
+    }
+
+    void ensureScores(int numTags) {
+      if (scores.length < numTags) {
+        scores = new double[numTags];
+      }
+    }
+
+    int retainedCells() {
+      return score.length;
+    }
+  }
+
+  /**
+   * Runs the Viterbi algorithm on the sequence model given by the TagScorer
+   * in order to find the best sequence.
+   *
+   * @param ts The SequenceModel to be used for scoring
+   * @return An array containing the int tags of the best sequence
+   */
+  @Override
+  public int[] bestSequence(SequenceModel ts) {
+    Lattice lattice = lattices.get();
+    if (lattice.inUse) {
+      // a model which decodes another sequence while it is being scored
+      lattice = new Lattice();
+    }
+    lattice.inUse = true;
+    try {
+      return bestSequence(ts, lattice);
+    } finally {
+      lattice.inUse = false;
+      if (lattice.retainedCells() > MAX_RETAINED_CELLS && lattice == lattices.get()) {
+        lattices.remove();
+      }
+    }
+  }
+
+  private static int[] bestSequence(SequenceModel ts, Lattice lattice) {
+    // Set up tag options
+    int length = ts.length();
+    int leftWindow = ts.leftWindow();
+    int rightWindow = ts.rightWindow();
+    int padLength = length + leftWindow + rightWindow;
+    lattice.ensurePositions(padLength);
+    int[][] tags = lattice.tags;
+    int[] tagNum = lattice.tagNum;
+    int maxTagNum = 0;
+    for (int pos = 0; pos < padLength; pos++) {
+      tags[pos] = ts.getPossibleValues(pos);
+      tagNum[pos] = tags[pos].length;
+      maxTagNum = Math.max(maxTagNum, tagNum[pos]);
+    }
+    lattice.ensureScores(maxTagNum);
+    double[] scores = lattice.scores;
+    int[] tempTags = lattice.tempTags;
+
+    // Set up product space sizes
+    int[] productSizes = lattice.productSizes;
+    int curProduct = 1;
+    for (int i = 0; i < leftWindow + rightWindow; i++) {
+      curProduct *= tagNum[i];
+    }
+    for (int pos = leftWindow + rightWindow; pos < padLength; pos++) {
+      if (pos > leftWindow + rightWindow) {
+        curProduct /= tagNum[pos - leftWindow - rightWindow - 1]; // shift off
+      }
+      curProduct *= tagNum[pos]; // shift on
+      productSizes[pos - rightWindow] = curProduct;
+    }
+
+    // Lay out the cells of each position one after another
+    int[] offsets = lattice.offsets;
+    offsets[0] = 0;
+    for (int pos = 0; pos < padLength; pos++) {
+      offsets[pos + 1] = offsets[pos] + productSizes[pos];
+    }
+    lattice.ensureCells(offsets[padLength]);
+    double[] windowScore = lattice.windowScore;
+    double[] score = lattice.score;
+    int[] trace = lattice.trace;
+
+    // Score all of each window's options
+    for (int pos = leftWindow; pos < leftWindow + length; pos++) {
+      Deadline.checkForInterrupt();  // Allow interrupting
+      int offset = offsets[pos];
+      Arrays.fill(tempTags, 0, padLength, tags[0][0]);
+      for (int product = 0; product < productSizes[pos]; product++) {
+        int p = product;
+        int shift = 1;
+        for (int curPos = pos + rightWindow; curPos >= pos - leftWindow; curPos--) {
+          tempTags[curPos] = tags[curPos][p % tagNum[curPos]];
+          p /= tagNum[curPos];
+          if (curPos > pos) {
+            shift *= tagNum[curPos];
+          }
+        }
+        // as in ExactBestSequenceFinder, get the scores of all tags at once
+        if (tempTags[pos] == tags[pos][0]) {
+          ts.scoresOf(tempTags, pos, scores);
+          for (int t = 0; t < tagNum[pos]; t++) {
+            windowScore[offset + product + t * shift] = scores[t];
+          }
+        }
+      }
+    }
+
+    // Do forward Viterbi algorithm
+    for (int pos = leftWindow; pos < length + leftWindow; pos++) {
+      Deadline.checkForInterrupt();  // Allow interrupting
+      int offset = offsets[pos];
+      if (pos == leftWindow) {
+        // no predecessor type
+        System.arraycopy(windowScore, offset, score, offset, productSizes[pos]);
+        Arrays.fill(trace, offset, offset + productSizes[pos], -1);
+        continue;
+      }
+      int predOffset = offsets[pos - 1];
+      int predTagNum = tagNum[pos - leftWindow - 1];
+      int curTagNum = tagNum[pos + rightWindow];
+      int factor = productSizes[pos] / curTagNum;
+      for (int product = 0; product < productSizes[pos]; product++) {
+        double best = Double.NEGATIVE_INFINITY;
+        int bestPred = -1;
+        int sharedProduct = product / curTagNum;
+        double local = windowScore[offset + product];
+        for (int newTagNum = 0; newTagNum < predTagNum; newTagNum++) {
+          int predProduct = newTagNum * factor + sharedProduct;
+          double predScore = score[predOffset + predProduct] + local;
+          if (predScore > best) {
+            best = predScore;
+            bestPred = predProduct;
+          }
+        }
+        score[offset + product] = best;
+        trace[offset + product] = bestPred;
+      }
+    }
+
+    // Project the actual tag sequence
+    int lastPos = leftWindow + length - 1;
+    double bestFinalScore = Double.NEGATIVE_INFINITY;
+    int bestCurrentProduct = -1;
+    for (int product = 0; product < productSizes[lastPos]; product++) {
+      if (score[offsets[lastPos] + product] > bestFinalScore) {
+        bestCurrentProduct = product;
+        bestFinalScore = score[offsets[lastPos] + product];
+      }
+    }
+    int[] bestTags = new int[padLength];
+    int lastProduct = bestCurrentProduct;
+    for (int last = padLength - 1; last >= length - 1 && last >= 0; last--) {
+      bestTags[last] = tags[last][lastProduct % tagNum[last]];
+      lastProduct /= tagNum[last];
+    }
+    for (int pos = leftWindow + length - 2; pos >= leftWindow; pos--) {
+      int bestNextProduct = bestCurrentProduct;
+      bestCurrentProduct = trace[offsets[pos + 1] + bestNextProduct];
+      bestTags[pos - leftWindow] = tags[pos - leftWindow][bestCurrentProduct / (productSizes[pos] / tagNum[pos - leftWindow])];
+    }
+    // don't hold on to the model's arrays
+    Arrays.fill(tags, 0, padLength, null);
+    return bestTags;
+  }
+
+}
@@ -0,0 +1,170 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * The features of one extractor of a tagger: for each value the extractor
+ * can take, the tags which have a feature with that value, and the index of
+ * each of those features' weight in the lambda array.
+ * <p>
+ * This holds what a {@code Map<String, int[]>} from value to an array over
+ * all tags of weight indices (or -1) does, in much less space and faster to
+ * use at tagging time: the values are kept in an open addressing hash table,
+ * and each value is numbered by its slot, under which only the tags it has
+ * features for are listed, in flat arrays.  It is read only.
+ */
+class FeatureAssociationTable implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The values, by slot, with null for empty slots. */
+  private final String[] values;
+  /** The features of slot s are at starts[s] to starts[s+1] in tags and fNums. */
+  private final int[] starts;
+  /** The tag index of each feature. */
+  final int[] tags;
+  /** The index of each feature's weight. */
+  final int[] fNums;
+
+  /**
+   * Builds the table from a map from value to an array over all tags of
+   * the index of the feature's weight, or -1 if there is no feature for
+   * that tag.  Values with no features are left out.
+   */
+  FeatureAssociationTable(Map<String, int[]> fValueAssociations) {
+    int numValues = 0;
+    int numFeatures = 0;
+    for (int[] fTagAssociations : fValueAssociations.values()) {
+      int n = countFeatures(fTagAssociations);
+      if (n > 0) {
+        numValues++;
+        numFeatures += n;
+      }
+    }
+    int capacity = 2;
+    while (capacity < 2 * numValues) {
+      capacity <<= 1;
+    }
+    values = new String[capacity];
+    int[] counts = new int[capacity];
+    for (Map.Entry<String, int[]> entry : fValueAssociations.entrySet()) {
+      int n = countFeatures(entry.getValue());
+      if (n > 0) {
+        int slot = hash(entry.getKey()) & (capacity - 1);
+        while (values[slot] != null) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        values[slot] = entry.getKey();
+        counts[slot] = n;
+      }
+    }
+    starts = new int[capacity + 1];
+    for (int slot = 0; slot < capacity; slot++) {
+      starts[slot + 1] = starts[slot] + counts[slot];
+    }
+    tags = new int[numFeatures];
+    fNums = new int[numFeatures];
+    for (int slot = 0; slot < capacity; slot++) {
+      if (values[slot] != null) {
+        int[] fTagAssociations = fValueAssociations.get(values[slot]);
+        int feature = starts[slot];
+        for (int tag = 0; tag < fTagAssociations.length; tag++) {
+          if (fTagAssociations[tag] >= 0) {
+            tags[feature] = tag;
+            fNums[feature] = fTagAssociations[tag];
+            feature++;
+          }
+        }
+      }
+    }
+  }
+
+  private static int countFeatures(int[] fTagAssociations) {
+    int n = 0;
+    for (int fNum : fTagAssociations) {
+      if (fNum >= 0) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  private static int hash(String value) {
+    int h = value.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /** Returns the slot of the given value, or -1 if it has no features. */
+  int lookup(String value) {
+    if (value == null) {
+      return -1;
+    }
+    int mask = values.length - 1;
+    for (int slot = hash(value) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      if (values[slot].equals(value)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /** The index of the first feature of the value in the given slot. */
+  int start(int slot) {
+    return starts[slot];
+  }
+
+  /** One past the index of the last feature of the value in the given slot. */
+  int end(int slot) {
+    return starts[slot + 1];
+  }
+
+  /** Returns the index of the weight of the feature for the value in the given slot and the given tag, or -1. */
+  int fNum(int slot, int tag) {
+    for (int feature = starts[slot], end = starts[slot + 1]; feature < end; feature++) {
+      if (tags[feature] == tag) {
+        return fNums[feature];
+      }
+    }
+    return -1;
+  }
+
+  /** The number of slots, for going through the values with {@link #value(int)}. */
+  int capacity() {
+    return values.length;
+  }
+
+  /** The value in the given slot, or null if it is empty. */
+  String value(int slot) {
+    return values[slot];
+  }
+
+  /**
+   * The map this table was built from, less any values without features:
+   * from value to an array over all tags of the index of the feature's
+   * weight, or -1.
+   */
+  Map<String, int[]> toMap(int numTags) {
+    Map<String, int[]> fValueAssociations = Generics.newHashMap();
+    for (int slot = 0; slot < values.length; slot++) {
+      if (values[slot] != null) {
+        int[] fTagAssociations = new int[numTags];
+        Arrays.fill(fTagAssociations, -1);
+        for (int feature = starts[slot]; feature < starts[slot + 1]; feature++) {
+          fTagAssociations[tags[feature]] = fNums[feature];
+        }
+        fValueAssociations.put(values[slot], fTagAssociations);
+      }
+    }
+    return fValueAssociations;
+  }
+
+  /** The number of features in the table. */
+  int numFeatures() {
+    return fNums.length;
+  }
+
+}
@@ -27,6 +27,7 @@
 package edu.stanford.nlp.tagger.maxent;
 
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedModelFile;
 import edu.stanford.nlp.io.PrintFile;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.*;
@@ -57,6 +58,7 @@ import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
+import java.nio.DoubleBuffer;
 import java.util.*;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -355,7 +357,11 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
   private LambdaSolveTagger prob;
   // For each extractor index, we have a map from possible extracted
   // features to an array which maps from tag number to feature weight index in the lambdas array.
-  List<Map<String, int[]>> fAssociations = Generics.newArrayList();
+  // This is only kept while training or reading a model: it is then compiled into associationTables,
+  // and rebuilt from them by featureAssociationMaps() if it is needed again.
+  private List<Map<String, int[]>> fAssociations = Generics.newArrayList();
+  // The same features, in the compact form used for tagging
+  private volatile FeatureAssociationTable[] associationTables;
   //PairsHolder pairs = new PairsHolder();
   Extractors extractors;
   Extractors extractorsRare;
@@ -456,6 +462,80 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
     return prob;
   }
 
+  /**
+   * If the tagger was loaded from a mapped model file, its feature
+   * weights, which are used in place.  The lambda array of {@link #prob}
+   * is then empty.
+   */
+  private DoubleBuffer mappedLambda;
+
+  /** Names of the sections of a mapped model file */
+  static final String MAPPED_MODEL_SECTION = "tagger";
+  private static final String MAPPED_LAMBDA_SECTION = "lambda";
+
+  /** The weight of the given feature.  Package access - shouldn't be part of public API. */
+  double lambda(int fNum) {
+    return mappedLambda != null ? mappedLambda.get(fNum) : prob.lambda[fNum];
+  }
+
+  /** The number of feature weights.  Package access - shouldn't be part of public API. */
+  int numLambdas() {
+    return mappedLambda != null ? mappedLambda.limit() : prob.lambda.length;
+  }
+
+  /**
+   * For each extractor index, the features of the values it extracts.
+   * The first call compiles these from {@link #fAssociations}, which isn't kept.
+   * Package access - shouldn't be part of public API.
+   */
+  FeatureAssociationTable[] featureAssociations() {
+    FeatureAssociationTable[] tables = associationTables;
+    if (tables == null) {
+      synchronized (this) {
+        tables = associationTables;
+        if (tables == null) {
+          tables = new FeatureAssociationTable[fAssociations.size()];
+          for (int i = 0; i < tables.length; i++) {
+            tables[i] = new FeatureAssociationTable(fAssociations.get(i));
+          }
+          associationTables = tables;
+          fAssociations = null;
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * For each extractor index, a map from the values it extracts to an
+   * array over all tags of the index of the feature's weight, or -1, for
+   * training code to fill in or change.  If the features have been compiled
+   * for tagging, the maps are rebuilt from the compiled tables, which are
+   * then dropped and compiled again from the maps when next needed.
+   * Package access - shouldn't be part of public API.
+   */
+  synchronized List<Map<String, int[]>> featureAssociationMaps() {
+    if (fAssociations == null) {
+      FeatureAssociationTable[] tables = associationTables;
+      fAssociations = Generics.newArrayList(tables.length);
+      for (FeatureAssociationTable table : tables) {
+        fAssociations.add(table.toMap(ySize));
+      }
+    }
+    associationTables = null;
+    return fAssociations;
+  }
+
+  /** The feature weights, copied out of the mapped file if need be. */
+  private double[] lambdaArray() {
+    if (mappedLambda == null) {
+      return prob.lambda;
+    }
+    double[] lambda = new double[mappedLambda.limit()];
+    mappedLambda.duplicate().get(lambda);
+    return lambda;
+  }
+
   // TODO: make these constructors instead of init methods?
   void init(TaggerConfig config) {
     if (initted) return;  // TODO: why not reinit?
@@ -649,7 +729,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
    *  the fAssociations' appropriate Map.
    */
   private void removeDeadRules() {
-    for (Map<String, int[]> fAssociation : fAssociations) {
+    for (Map<String, int[]> fAssociation : featureAssociationMaps()) {
       List<String> deadRules = Generics.newArrayList();
       for (Map.Entry<String, int[]> entry : fAssociation.entrySet()) {
         String value = entry.getKey();
@@ -705,7 +785,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
       }
     }
 
-    for (Map<String, int[]> featureMap : fAssociations) {
+    for (Map<String, int[]> featureMap : featureAssociationMaps()) {
       for (Map.Entry<String, int[]> entry : featureMap.entrySet()) {
         int[] fAssociations = entry.getValue();
         for (int index = 0; index < ySize; ++index) {
@@ -731,6 +811,32 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
   }
 
   protected void saveModel(DataOutputStream file) throws IOException {
+    saveModel(file, lambdaArray());
+  }
+
+  /**
+   * Saves the tagger as a {@link MappedModelFile}, which
+   * {@link #readModelAndInit(Properties, String, boolean)}, and so the
+   * usual constructors, will load with the feature weights mapped
+   * rather than read into the heap.
+   */
+  public void saveMappedModel(String filename) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream file = new DataOutputStream(bytes)) {
+        saveModel(file, new double[0]);
+      }
+      new MappedModelFile.Writer()
+          .putBytes(MAPPED_MODEL_SECTION, bytes.toByteArray())
+          .putDoubles(MAPPED_LAMBDA_SECTION, lambdaArray())
+          .write(filename);
+    } catch (IOException ioe) {
+      log.info("Error saving tagger to file " + filename);
+      throw new RuntimeIOException(ioe);
+    }
+  }
+
+  private void saveModel(DataOutputStream file, double[] lambda) throws IOException {
       config.saveConfig(file);
       file.writeInt(xSize);
       file.writeInt(ySize);
@@ -739,34 +845,28 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
 
       saveExtractors(file);
 
+      FeatureAssociationTable[] tables = featureAssociations();
       int sizeAssoc = 0;
-      for (Map<String, int[]> fValueAssociations : fAssociations) {
-        for (int[] fTagAssociations : fValueAssociations.values()) {
-          for (int association : fTagAssociations) {
-            if (association >= 0) {
-              ++sizeAssoc;
-            }
-          }
-        }
+      for (FeatureAssociationTable table : tables) {
+        sizeAssoc += table.numFeatures();
       }
       file.writeInt(sizeAssoc);
-      for (int i = 0; i < fAssociations.size(); ++i) {
-        Map<String, int[]> fValueAssociations = fAssociations.get(i);
-        for (Map.Entry<String, int[]> item : fValueAssociations.entrySet()) {
-          String featureValue = item.getKey();
-          int[] fTagAssociations = item.getValue();
-          for (int j = 0; j < fTagAssociations.length; ++j) {
-            int association = fTagAssociations[j];
-            if (association >= 0) {
-              file.writeInt(association);
-              FeatureKey fk = new FeatureKey(i, featureValue, tags.getTag(j));
-              fk.save(file);
-            }
+      for (int i = 0; i < tables.length; ++i) {
+        FeatureAssociationTable table = tables[i];
+        for (int slot = 0; slot < table.capacity(); ++slot) {
+          String featureValue = table.value(slot);
+          if (featureValue == null) {
+            continue;
+          }
+          for (int f = table.start(slot); f < table.end(slot); ++f) {
+            file.writeInt(table.fNums[f]);
+            FeatureKey fk = new FeatureKey(i, featureValue, tags.getTag(table.tags[f]));
+            fk.save(file);
           }
         }
       }
 
-      LambdaSolve.save_lambdas(file, prob.lambda);
+      LambdaSolve.save_lambdas(file, lambda);
   }
 
   /** This reads the complete tagger from a single model stored in a file, at a URL,
@@ -781,10 +881,17 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
    *
    *  @param config The tagger config
    *  @param modelFileOrUrl The name of the model file. This routine opens and closes it.
+   *         If it was written by {@link #saveMappedModel(String)}, the weights are mapped instead.
    *  @param printLoading Whether to print a message saying what model file is being loaded and how long it took when finished.
    *  @throws RuntimeIOException if I/O errors or serialization errors
    */
   protected void readModelAndInit(Properties config, String modelFileOrUrl, boolean printLoading) {
+    if (MappedModelFile.isMappedModelFile(modelFileOrUrl)) {
+      MappedModelFile file = MappedModelFile.open(modelFileOrUrl);
+      readModelAndInit(config, file.stream(MAPPED_MODEL_SECTION), printLoading);
+      mappedLambda = file.doubles(MAPPED_LAMBDA_SECTION);
+      return;
+    }
     try {
       readModelAndInit(config, IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(modelFileOrUrl), printLoading);
     } catch (IOException e) {
@@ -868,6 +975,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
 
       int[] numFA = new int[extractors.size() + extractorsRare.size()];
       int sizeAssoc = rf.readInt();
+      associationTables = null;
       fAssociations = Generics.newArrayList();
       for (int i = 0; i < extractors.size() + extractorsRare.size(); ++i) {
         fAssociations.add(Generics.<String, int[]>newHashMap());
@@ -906,6 +1014,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
           log.info("Number of features of kind " + k + ' ' + numFA[k]);
         }
       }
+      featureAssociations();
       prob = new LambdaSolveTagger(rf);
       if (VERBOSE) {
         log.info("prob read ");
@@ -922,19 +1031,21 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
   protected void dumpModel(PrintStream out) {
     out.println("Features: template featureValue tag: lambda");
     NumberFormat nf = new DecimalFormat(" 0.000000;-0.000000");
-    for (int i = 0; i < fAssociations.size(); ++i) {
-      Map<String, int[]> fValueAssociations = fAssociations.get(i);
-      List<String> features = Generics.newArrayList();
-      Collections.sort(features);
-      for (String featureValue : features) {
-        int[] fTagAssociations = fValueAssociations.get(featureValue);
-        for (int j = 0; j < fTagAssociations.length; ++j) {
-          int association = fTagAssociations[j];
-          if (association >= 0) {
-            FeatureKey fk = new FeatureKey(i, featureValue, tags.getTag(j));
-            out.println((fk.num < extractors.size() ? extractors.get(fk.num) : extractorsRare.get(fk.num - extractors.size()))
-                    + " " + fk.val + " " + fk.tag + ": " + nf.format(getLambdaSolve().lambda[association]));
-          }
+    FeatureAssociationTable[] tables = featureAssociations();
+    for (int i = 0; i < tables.length; ++i) {
+      FeatureAssociationTable table = tables[i];
+      List<Integer> slots = Generics.newArrayList();
+      for (int slot = 0; slot < table.capacity(); ++slot) {
+        if (table.value(slot) != null) {
+          slots.add(slot);
+        }
+      }
+      slots.sort(Comparator.comparing(table::value));
+      for (int slot : slots) {
+        for (int f = table.start(slot); f < table.end(slot); ++f) {
+          FeatureKey fk = new FeatureKey(i, table.value(slot), tags.getTag(table.tags[f]));
+          out.println((fk.num < extractors.size() ? extractors.get(fk.num) : extractorsRare.get(fk.num - extractors.size()))
+                  + " " + fk.val + " " + fk.tag + ": " + nf.format(lambda(table.fNums[f])));
         }
       }
     }
@@ -1918,6 +2029,35 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
     }
   }
 
+  /**
+   * A tagger is serialized as its model file, since that is what it is
+   * built from, and deserialized by reading the model again.
+   */
+  private Object writeReplace() throws ObjectStreamException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream file = new DataOutputStream(bytes)) {
+      saveModel(file);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    return new SerializedModel(bytes.toByteArray());
+  }
+
+  private static class SerializedModel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] model;
+
+    SerializedModel(byte[] model) {
+      this.model = model;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      return new MaxentTagger(new ByteArrayInputStream(model), new Properties(), false);
+    }
+  }
+
   private static final long serialVersionUID = 2;
 
 }
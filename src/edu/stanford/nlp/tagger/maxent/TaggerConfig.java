@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedModelFile;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.StringUtils;
@@ -147,7 +148,9 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
       if (name != null) {
         try {
           log.info("Loading default properties from tagger " + name);
-          DataInputStream in = new DataInputStream(IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(name));
+          InputStream modelStream = MappedModelFile.isMappedModelFile(name) ?
+              MappedModelFile.open(name).stream(MaxentTagger.MAPPED_MODEL_SECTION) : IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(name);
+          DataInputStream in = new DataInputStream(modelStream);
           this.putAll(TaggerConfig.readConfig(in)); // overwrites defaults with any serialized values.
           in.close();
         } catch (Exception e) {
@@ -36,6 +36,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Arrays;
@@ -167,6 +168,7 @@ public class TaggerExperiments extends Experiments  {
       int current = 0;
       int numFeats = 0;
       final boolean VERBOSE = false;
+      List<Map<String, int[]>> fAssociations = maxentTagger.featureAssociationMaps();
       for (FeatureKey fK : sTemplates) {
         int numF = fK.num;
         int[] xValues;
@@ -254,12 +256,12 @@ public class TaggerExperiments extends Experiments  {
 
           // TODO: rearrange some of this code, such as not needing to
           // look up the tag # in the index
-          if (maxentTagger.fAssociations.size() <= fK.num) {
-            for (int i = maxentTagger.fAssociations.size(); i <= fK.num; ++i) {
-              maxentTagger.fAssociations.add(Generics.<String, int[]>newHashMap());
+          if (fAssociations.size() <= fK.num) {
+            for (int i = fAssociations.size(); i <= fK.num; ++i) {
+              fAssociations.add(Generics.<String, int[]>newHashMap());
             }
           }
-          Map<String, int[]> fValueAssociations = maxentTagger.fAssociations.get(fK.num);
+          Map<String, int[]> fValueAssociations = fAssociations.get(fK.num);
           int[] fTagAssociations = fValueAssociations.get(fK.val);
           if (fTagAssociations == null) {
             fTagAssociations = new int[ySize];
@@ -153,7 +153,7 @@ public class TestClassifier  {
             maxentTagger.config.getModel(),
             maxentTagger.xSize,
             maxentTagger.ySize,
-            maxentTagger.getLambdaSolve().lambda.length));
+            maxentTagger.numLambdas()));
     output.append(String.format("Results on %d sentences and %d words, of which %d were unknown.%n",
             numSentences, numRight + numWrong, unknownWords));
     output.append(String.format("Total sentences right: %d (%f%%); wrong: %d (%f%%).%n",
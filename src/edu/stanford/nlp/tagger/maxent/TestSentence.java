@@ -33,8 +33,8 @@ import edu.stanford.nlp.ling.SentenceUtils;
 import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.math.SloppyMath;
 import edu.stanford.nlp.sequences.BestSequenceFinder;
-import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
 import edu.stanford.nlp.sequences.SequenceModel;
+import edu.stanford.nlp.sequences.ViterbiBestSequenceFinder;
 import edu.stanford.nlp.tagger.common.Tagger;
 import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.logging.Redwood;
@@ -63,6 +63,8 @@ public class TestSentence implements SequenceModel  {
   private static final String[] naTagArr = { naTag };
   protected static final boolean DBG = false;
   protected static final int kBestSize = 1;
+  // Don't remember the values of a dynamic extractor at a position if its tags have more combinations than this
+  private static final int MAX_DYNAMIC_SLOTS = 4096;
 
   protected final String tagSeparator;
   protected final String encoding;
@@ -85,6 +87,25 @@ public class TestSentence implements SequenceModel  {
   private volatile History history;
   private volatile Map<String,double[]> localScores = Generics.newHashMap();
   private volatile double[][] localContextScores;
+  private boolean[] rareAt;
+  // The possible tags of each position of the sentence, including the padding, and their indices
+  private String[][] tagsAt;
+  private int[][] tagIndicesAt;
+  // For each position, the ordinal among its possible tags of each tag, or -1
+  private int[][] tagOrdinalsAt;
+  // For dynamic extractors, by position and extractor: the slot of the value
+  // extracted for each combination of the possible tags at the positions the
+  // extractor looks at, or -2 if it isn't known yet
+  private int[][][] dynamicSlots;
+  // The tag sequence and position given to scoresOf, or null outside of it,
+  // and whether the tags have been put in the history yet
+  private int[] scoringTags;
+  private int scoringPos;
+  private boolean historyTagsSet;
+  // Whether to remember tags and dynamic extractor values as above, and for
+  // at most how many combinations of tags.  Package access for testing
+  boolean memoize = true;
+  int maxDynamicSlots = MAX_DYNAMIC_SLOTS;
 
   protected final MaxentTagger maxentTagger;
 
@@ -165,6 +186,23 @@ public class TestSentence implements SequenceModel  {
   protected void init() {
     //the eos are assumed already there
     localContextScores = new double[size][];
+    rareAt = new boolean[size];
+    if (memoize) {
+      tagsAt = new String[size + leftWindow() + rightWindow()][];
+      tagIndicesAt = new int[tagsAt.length][];
+    } else {
+      tagsAt = null;
+      tagIndicesAt = null;
+    }
+    // A left-only model scores each left context of a position just once,
+    // so there is little to remember for it, and it isn't worth doing
+    if (memoize && rightWindow() > 0) {
+      tagOrdinalsAt = new int[tagsAt.length][];
+      dynamicSlots = new int[tagsAt.length][][];
+    } else {
+      tagOrdinalsAt = null;
+      dynamicSlots = null;
+    }
     for (int i = 0; i < size - 1; i++) {
       if (maxentTagger.dict.isUnknown(sent.get(i))) {
         numUnknown++;
@@ -335,7 +373,7 @@ public class TestSentence implements SequenceModel  {
       throw new RuntimeInterruptedException();
     }
 
-    BestSequenceFinder ti = new ExactBestSequenceFinder();
+    BestSequenceFinder ti = new ViterbiBestSequenceFinder();
       //new BeamBestSequenceFinder(50);
       //new KBestSequenceFinder()
     int[] bestTags = ti.bestSequence(this);
@@ -397,16 +435,19 @@ public class TestSentence implements SequenceModel  {
 
   private double[] getExactScores(History h) {
     String[] tags = stringTagsAt(h.current - h.start + leftWindow());
+    double[] scores = new double[tags.length];
+    getExactScores(h, tags, scores);
+    return scores;
+  }
+
+  private void getExactScores(History h, String[] tags, double[] scores) {
     double[] histories = getHistories(tags, h); // log score for each tag
     ArrayMath.logNormalize(histories);
-    double[] scores = new double[tags.length];
+    int[] tagIndices = tagIndicesAt(h.current - h.start + leftWindow());
     for (int j = 0; j < tags.length; j++) {
       // score the j-th tag
-      String tag = tags[j];
-      int tagindex = maxentTagger.tags.getIndex(tag);
-      scores[j] = histories[tagindex];
+      scores[j] = histories[tagIndices[j]];
     }
-    return scores;
   }
 
   // In this method, each tag that is incompatible with the current word
@@ -428,30 +469,34 @@ public class TestSentence implements SequenceModel  {
 
   // This precomputes scores of local features (localScores).
   protected double[] getHistories(String[] tags, History h) {
-    boolean rare = maxentTagger.isRare(ExtractorFrames.cWord.extract(h));
     Extractors ex = maxentTagger.extractors, exR = maxentTagger.extractorsRare;
-    String w = pairs.getWord(h.current);
-    double[] lS, lcS;
-    lS = localScores.get(w);
-    if (lS == null) {
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
-      localScores.put(w,lS);
-    } else if (lS.length != tags.length) {
-      // This case can occur when a word was given a specific forced
-      // tag, and then later it shows up without the forced tag.
-      // TODO: if a word is given a forced tag, we should always get
-      // its features rather than use the cache, just in case the tag
-      // given is not the same tag as before
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
-      if (tags.length > 1) {
+    double[] lcS = localContextScores[h.current];
+    if (lcS == null) {
+      boolean rare = maxentTagger.isRare(ExtractorFrames.cWord.extract(h));
+      rareAt[h.current] = rare;
+      String w = pairs.getWord(h.current);
+      // exact scores are over all tags, approximate ones only over the possible tags
+      int length = maxentTagger.hasApproximateScoring() ? tags.length : maxentTagger.ySize;
+      double[] lS = localScores.get(w);
+      if (lS == null) {
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
         localScores.put(w,lS);
+      } else if (lS.length != length) {
+        // This case can occur when a word was given a specific forced
+        // tag, and then later it shows up without the forced tag.
+        // TODO: if a word is given a forced tag, we should always get
+        // its features rather than use the cache, just in case the tag
+        // given is not the same tag as before
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+        if (tags.length > 1) {
+          localScores.put(w,lS);
+        }
       }
-    }
-    if((lcS = localContextScores[h.current]) == null) {
       lcS = getHistories(tags, h, ex.localContext, rare ? exR.localContext : null);
       localContextScores[h.current] = lcS;
       ArrayMath.pairwiseAddInPlace(lcS,lS);
     }
+    boolean rare = rareAt[h.current];
     double[] totalS = getHistories(tags, h, ex.dynamic, rare ? exR.dynamic : null);
     ArrayMath.pairwiseAddInPlace(totalS,lcS);
     return totalS;
@@ -465,84 +510,137 @@ public class TestSentence implements SequenceModel  {
 
   private double[] getExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
     double[] scores = new double[maxentTagger.ySize];
-    int szCommon = maxentTagger.extractors.size();
-
-    for (Pair<Integer,Extractor> e : extractors) {
-      int kf = e.first();
-      Extractor ex = e.second();
-      String val = ex.extract(h);
-      int[] fAssociations = maxentTagger.fAssociations.get(kf).get(val);
-      if (fAssociations != null) {
-        for (int i = 0; i < maxentTagger.ySize; i++) {
-          int fNum = fAssociations[i];
-          if (fNum > -1) {
-            scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
-          }
-        }
-      }
-    }
+    FeatureAssociationTable[] tables = maxentTagger.featureAssociations();
+    addExactScores(scores, h, extractors, tables, 0);
     if (extractorsRare != null) {
-      for (Pair<Integer,Extractor> e : extractorsRare) {
-        int kf = e.first();
-        Extractor ex = e.second();
-        String val = ex.extract(h);
-        int[] fAssociations = maxentTagger.fAssociations.get(kf+szCommon).get(val);
-        if (fAssociations != null) {
-          for (int i = 0; i < maxentTagger.ySize; i++) {
-            int fNum = fAssociations[i];
-            if (fNum > -1) {
-              scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
-            }
-          }
+      addExactScores(scores, h, extractorsRare, tables, maxentTagger.extractors.size());
+    }
+    return scores;
+  }
+
+  private void addExactScores(double[] scores, History h, List<Pair<Integer,Extractor>> extractors,
+                              FeatureAssociationTable[] tables, int offset) {
+    for (int k = 0, size = extractors.size(); k < size; k++) {
+      Pair<Integer,Extractor> e = extractors.get(k);
+      FeatureAssociationTable table = tables[e.first() + offset];
+      int slot = lookup(table, e.second(), e.first() + offset, h);
+      if (slot >= 0) {
+        for (int f = table.start(slot), end = table.end(slot); f < end; f++) {
+          scores[table.tags[f]] += maxentTagger.lambda(table.fNums[f]);
         }
       }
     }
-    return scores;
   }
 
-  // todo [cdm 2016]: Could this be sped up a bit by caching lambda array, extracting method for shared code?
-  // todo [cdm 2016]: Also it's allocating java.util.ArrayList$Itr for for loop - why can't it just random access array?
   /** Returns an unnormalized score (in log space) for each tag. */
   private double[] getApproximateHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
 
     double[] scores = new double[tags.length];
-    int szCommon = maxentTagger.extractors.size();
-
-    for (Pair<Integer,Extractor> e : extractors) {
-      int kf = e.first();
-      Extractor ex = e.second();
-      String val = ex.extract(h);
-      int[] fAssociations = maxentTagger.fAssociations.get(kf).get(val);
-      if (fAssociations != null) {
-        for (int j = 0; j < tags.length; j++) {
-          String tag = tags[j];
-          int tagIndex = maxentTagger.tags.getIndex(tag);
-          int fNum = fAssociations[tagIndex];
+    int[] tagIndices = tagIndicesAt(h.current - h.start + leftWindow());
+    FeatureAssociationTable[] tables = maxentTagger.featureAssociations();
+    addApproximateScores(scores, tagIndices, h, extractors, tables, 0);
+    if (extractorsRare != null) {
+      addApproximateScores(scores, tagIndices, h, extractorsRare, tables, maxentTagger.extractors.size());
+    }
+    return scores;
+  }
+
+  private void addApproximateScores(double[] scores, int[] tagIndices, History h, List<Pair<Integer,Extractor>> extractors,
+                                    FeatureAssociationTable[] tables, int offset) {
+    for (int k = 0, size = extractors.size(); k < size; k++) {
+      Pair<Integer,Extractor> e = extractors.get(k);
+      FeatureAssociationTable table = tables[e.first() + offset];
+      int slot = lookup(table, e.second(), e.first() + offset, h);
+      if (slot >= 0) {
+        for (int j = 0; j < tagIndices.length; j++) {
+          int fNum = table.fNum(slot, tagIndices[j]);
           if (fNum > -1) {
-            scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
+            scores[j] += maxentTagger.lambda(fNum);
           }
         }
       }
     }
-    if (extractorsRare != null) {
-      for (Pair<Integer,Extractor> e : extractorsRare) {
-        int kf = e.first();
-        Extractor ex = e.second();
-        String val = ex.extract(h);
-        int[] fAssociations = maxentTagger.fAssociations.get(szCommon+kf).get(val);
-        if (fAssociations != null) {
-          for (int j = 0; j < tags.length; j++) {
-            String tag = tags[j];
-            int tagIndex = maxentTagger.tags.getIndex(tag);
-            int fNum = fAssociations[tagIndex];
-            if (fNum > -1) {
-              scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
-            }
-          }
+  }
+
+  /**
+   * Returns the slot in the table of the value the extractor gives for the
+   * history, or -1 if it has no features.  While scoring a tag sequence, the
+   * slots of dynamic extractors are remembered by position and the tags
+   * around it that the extractor depends on, since the sequence finder asks
+   * for the scores of many sequences which only differ in other tags.
+   */
+  private int lookup(FeatureAssociationTable table, Extractor extractor, int kf, History h) {
+    if (scoringTags == null || ! extractor.isDynamic()) {
+      return table.lookup(extractor.extract(h));
+    }
+    if (dynamicSlots == null) {
+      return table.lookup(extractDynamic(extractor, h));
+    }
+    int left = extractor.leftContext();
+    int right = extractor.rightContext();
+    if (left == 0 && right == 0) {
+      // it doesn't say which tags it looks at, so take all it could
+      left = leftWindow();
+      right = rightWindow();
+    }
+    int index = 0;
+    int combinations = 1;
+    for (int j = Math.max(scoringPos - left, 0), end = Math.min(scoringPos + right, tagsAt.length - 1); j <= end; j++) {
+      if (j == scoringPos) {
+        continue;
+      }
+      int numTags = tagIndicesAt(j).length;
+      if (numTags > 1) {
+        int ordinal = tagOrdinal(j, scoringTags[j]);
+        if (ordinal < 0 || combinations * numTags > maxDynamicSlots) {
+          return table.lookup(extractDynamic(extractor, h));
         }
+        index += combinations * ordinal;
+        combinations *= numTags;
       }
     }
-    return scores;
+    int[][] slotsAt = dynamicSlots[scoringPos];
+    if (slotsAt == null) {
+      slotsAt = new int[maxentTagger.extractors.size() + maxentTagger.extractorsRare.size()][];
+      dynamicSlots[scoringPos] = slotsAt;
+    }
+    int[] slots = slotsAt[kf];
+    if (slots == null) {
+      slots = new int[combinations];
+      Arrays.fill(slots, -2);
+      slotsAt[kf] = slots;
+    }
+    int slot = slots[index];
+    if (slot == -2) {
+      slot = table.lookup(extractDynamic(extractor, h));
+      slots[index] = slot;
+    }
+    return slot;
+  }
+
+  private String extractDynamic(Extractor extractor, History h) {
+    if ( ! historyTagsSet) {
+      setHistory(scoringPos, h, scoringTags);
+      historyTagsSet = true;
+    }
+    return extractor.extract(h);
+  }
+
+  /** Returns the ordinal of a tag among the possible tags at a position, or -1 if it isn't one of them. */
+  private int tagOrdinal(int pos, int tag) {
+    int[] ordinals = tagOrdinalsAt[pos];
+    if (ordinals == null) {
+      ordinals = new int[maxentTagger.ySize];
+      Arrays.fill(ordinals, -1);
+      int[] tagIndices = tagIndicesAt(pos);
+      for (int i = 0; i < tagIndices.length; i++) {
+        if (tagIndices[i] >= 0) {
+          ordinals[tagIndices[i]] = i;
+        }
+      }
+      tagOrdinalsAt[pos] = ordinals;
+    }
+    return tag >= 0 && tag < ordinals.length ? ordinals[tag] : -1;
   }
 
 
@@ -709,6 +807,19 @@ public class TestSentence implements SequenceModel  {
     return arr;
   }
 
+  /** The same as getPossibleValues, but remembered for the sentence, so the array must not be changed. */
+  private int[] tagIndicesAt(int pos) {
+    if (tagIndicesAt == null || pos < 0 || pos >= tagIndicesAt.length) {
+      return getPossibleValues(pos);
+    }
+    int[] arr = tagIndicesAt[pos];
+    if (arr == null) {
+      arr = getPossibleValues(pos);
+      tagIndicesAt[pos] = arr;
+    }
+    return arr;
+  }
+
   @Override
   public double scoreOf(int[] tags, int pos) {
     double[] scores = scoresOf(tags, pos);
@@ -733,9 +844,39 @@ public class TestSentence implements SequenceModel  {
       log.info("scoresOf(): length of tags is " + tags.length + "; position is " + pos + "; endSizePairs = " + endSizePairs + "; size is " + size + "; leftWindow is " + leftWindow());
       log.info("  History h = new History(" + (endSizePairs - size) + ", " + (endSizePairs - 1) + ", " + (endSizePairs - size + pos - leftWindow()) + ")");
     }
+    startScoring(tags, pos);
+    try {
+      return getScores(history);
+    } finally {
+      scoringTags = null;
+    }
+  }
+
+  @Override
+  public void scoresOf(int[] tags, int pos, double[] scores) {
+    if (maxentTagger.hasApproximateScoring()) {
+      double[] result = scoresOf(tags, pos);
+      System.arraycopy(result, 0, scores, 0, result.length);
+      return;
+    }
+    startScoring(tags, pos);
+    try {
+      getExactScores(history, stringTagsAt(pos), scores);
+    } finally {
+      scoringTags = null;
+    }
+  }
+
+  private void startScoring(int[] tags, int pos) {
     history.init(endSizePairs - size, endSizePairs - 1, endSizePairs - size + pos - leftWindow());
-    setHistory(pos, history, tags);
-    return getScores(history);
+    if (memoize) {
+      // the tags are only put in the history if a dynamic extractor needs them
+      scoringTags = tags;
+      scoringPos = pos;
+      historyTagsSet = false;
+    } else {
+      setHistory(pos, history, tags);
+    }
   }
 
   // todo [cdm 2013]: Tagging could be sped up quite a bit here if we cached int arrays of tags by index, not Strings
@@ -743,6 +884,18 @@ public class TestSentence implements SequenceModel  {
     if ((pos < leftWindow()) || (pos >= size + leftWindow())) {
       return naTagArr;
     }
+    if (tagsAt == null) {
+      return findTagsAt(pos);
+    }
+    String[] arr = tagsAt[pos];
+    if (arr == null) {
+      arr = findTagsAt(pos);
+      tagsAt[pos] = arr;
+    }
+    return arr;
+  }
+
+  private String[] findTagsAt(int pos) {
 
     String[] arr1;
     if (originalTags != null && originalTags.get(pos - leftWindow()) != null) {
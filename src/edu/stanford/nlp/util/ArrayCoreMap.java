@@ -210,7 +210,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   public Set<Class<?>> keySetNotNull() {
     Set<Class<?>> mapKeys = new IdentityHashSet<>();
-    for (int i = 0; i < size(); ++i) {
+    for (int i = 0; i < size; ++i) {
       if (values[i] != null) {
         mapKeys.add(this.keys[i]);
       }
@@ -348,6 +348,23 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   private static final int SHORTER_STRING_CHARSTRING_START_SIZE = 64;
   private static final int SHORTER_STRING_MAX_SIZE_BEFORE_HASHING = 5;
 
+  /**
+   * The name of a key as {@link #toShorterString} prints it: its simple
+   * name up to "Annotation".
+   */
+  protected static String shortName(Class<?> key) {
+    String name = shortNames.get(key);
+    if (name == null) {
+      name = key.getSimpleName();
+      int annoIdx = name.lastIndexOf("Annotation");
+      if (annoIdx >= 0) {
+        name = name.substring(0, annoIdx);
+      }
+      shortNames.put(key, name);
+    }
+    return name;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -361,16 +378,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       whatSet = new HashSet<>(Arrays.asList(what));
     }
     for (int i = 0; i < size; i++) {
-      Class klass = keys[i];
-      String name = shortNames.get(klass);
-      if (name == null) {
-        name = klass.getSimpleName();
-        int annoIdx = name.lastIndexOf("Annotation");
-        if (annoIdx >= 0) {
-          name = name.substring(0, annoIdx);
-        }
-        shortNames.put(klass, name);
-      }
+      String name = shortName(keys[i]);
 
       boolean include;
       if (what.length == 0) {
@@ -465,6 +473,16 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     }
   }
 
+  /**
+   * Whether this map keeps some of its keys outside of its arrays, as a
+   * subclass may.  Such a subclass overrides {@link #equals} and
+   * {@link #hashCode} to take them into account, and an ArrayCoreMap
+   * compared with it defers to its equals.
+   */
+  protected boolean keepsKeysOutsideArrays() {
+    return false;
+  }
+
   /**
    * Keeps track of which pairs of ArrayCoreMaps have had equals
    * called on them.  We do not want to loop forever when there are
@@ -492,6 +510,11 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       return obj.equals(this);
     }
 
+    if (obj instanceof ArrayCoreMap && ((ArrayCoreMap) obj).keepsKeysOutsideArrays()) {
+      // a subclass which compares the keys it keeps elsewhere itself
+      return obj.equals(this);
+    }
+
     if (obj instanceof ArrayCoreMap) {
       // specialized equals for ArrayCoreMap
       return equals((ArrayCoreMap)obj);
@@ -0,0 +1,131 @@
+package edu.stanford.nlp.util;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time by which some work has to be finished.  A deadline is attached to
+ * a document with {@link edu.stanford.nlp.ling.CoreAnnotations.DeadlineAnnotation},
+ * and while the document is being annotated it is also the current deadline
+ * of each thread working on it (see {@link #enter}).  Long running loops,
+ * such as parser chart filling or sequence decoding, call
+ * {@link #checkForInterrupt()}, which throws once the current deadline has
+ * passed or the thread has been interrupted, so that work which is no longer
+ * wanted stops promptly.
+ * <p>
+ * Unlike interrupting a thread, which sets a flag that the first check
+ * clears, an expired deadline stays expired, so code which catches the
+ * exception to give up on one sentence will give up on the rest too.
+ * <p>
+ * The end time is relative to this JVM, so a deadline which is serialized
+ * and read back starts over with its original timeout.
+ */
+public class Deadline implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+  /** In terms of {@link System#nanoTime()}, so it is only meaningful within one JVM. */
+  private final transient long endNanos;
+  private final long timeoutMillis;
+
+  private Deadline(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+    this.endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+  }
+
+  private Object readResolve() {
+    return new Deadline(timeoutMillis);
+  }
+
+  /** A deadline the given number of milliseconds from now. */
+  public static Deadline after(long timeoutMillis) {
+    return new Deadline(timeoutMillis);
+  }
+
+  public boolean expired() {
+    return System.nanoTime() - endNanos >= 0;
+  }
+
+  /** The time left until the deadline in milliseconds, which is negative once it has passed. */
+  public long remainingMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime());
+  }
+
+  /** The timeout the deadline was made with. */
+  public long timeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /** Throws a {@link DeadlineExceededException} if the deadline has passed. */
+  public void check() {
+    if (expired()) {
+      throw new DeadlineExceededException(this);
+    }
+  }
+
+  /**
+   * Make the given deadline the current thread's deadline, until the returned
+   * object is closed, when the previous one (usually none) is restored:
+   * <pre>
+   *   try (Deadline.Scope ignored = Deadline.enter(deadline)) {
+   *     ...
+   *   }
+   * </pre>
+   *
+   * @param deadline The deadline, or null for none
+   */
+  public static Scope enter(Deadline deadline) {
+    Deadline previous = current.get();
+    current.set(deadline);
+    return new Scope(previous);
+  }
+
+  /** The current thread's deadline, or null if it has none. */
+  public static Deadline current() {
+    return current.get();
+  }
+
+  /**
+   * Throws a {@link RuntimeInterruptedException} if the current thread has
+   * been interrupted, or a {@link DeadlineExceededException} if its deadline
+   * has passed.  This is cheap enough to call once per unit of real work,
+   * such as a chart cell or a beam state.
+   */
+  public static void checkForInterrupt() {
+    if (Thread.interrupted()) {
+      throw new RuntimeInterruptedException();
+    }
+    Deadline deadline = current.get();
+    if (deadline != null && deadline.expired()) {
+      throw new DeadlineExceededException(deadline);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline[timeout=" + timeoutMillis + "ms, remaining=" + remainingMillis() + "ms]";
+  }
+
+  /** Restores the previous deadline of a thread when closed.  See {@link #enter}. */
+  public static class Scope implements AutoCloseable {
+
+    private final Deadline previous;
+
+    private Scope(Deadline previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (previous == null) {
+        current.remove();
+      } else {
+        current.set(previous);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,28 @@
+package edu.stanford.nlp.util;
+
+/**
+ * Thrown when work is abandoned because its {@link Deadline} has passed.
+ * It is a {@link RuntimeInterruptedException}, so it stops the same code
+ * that checks for interrupts.
+ */
+public class DeadlineExceededException extends RuntimeInterruptedException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient Deadline deadline;
+
+  public DeadlineExceededException(Deadline deadline) {
+    super();
+    this.deadline = deadline;
+  }
+
+  public Deadline deadline() {
+    return deadline;
+  }
+
+  @Override
+  public String getMessage() {
+    return deadline == null ? "Deadline exceeded" : "Deadline of " + deadline.timeoutMillis() + "ms exceeded";
+  }
+
+}
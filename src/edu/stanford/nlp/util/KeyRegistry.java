@@ -0,0 +1,69 @@
+package edu.stanford.nlp.util;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Assigns each {@link TypesafeMap.Key} class (for instance, each
+ * {@code CoreAnnotation}) a small, dense integer id, so that maps over these
+ * keys can be indexed by id rather than by searching for the key.
+ * <p>
+ * Ids are handed out in the order in which keys are first seen, starting
+ * from 0, and are stable for the life of the JVM.  They are <em>not</em>
+ * stable across JVMs, so they should never be written to disk; store the key
+ * classes themselves instead.
+ *
+ * @see SlottedCoreMap
+ */
+public class KeyRegistry {
+
+  private KeyRegistry() { } // static methods only
+
+  private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> key) {
+      return register(key);
+    }
+  };
+
+  /** All keys registered so far, by id.  Guarded by the class lock for writes. */
+  private static volatile Class<?>[] keys = new Class<?>[128];
+  private static final Map<Class<?>, Integer> registered = new IdentityHashMap<>();
+
+  private static synchronized int register(Class<?> key) {
+    Integer id = registered.get(key);
+    if (id != null) {
+      return id;
+    }
+    id = registered.size();
+    Class<?>[] newKeys = keys;
+    if (id == newKeys.length) {
+      newKeys = Arrays.copyOf(newKeys, newKeys.length * 2);
+    }
+    newKeys[id] = key;
+    keys = newKeys;
+    registered.put(key, id);
+    return id;
+  }
+
+  /** Returns the id of the given key, registering it if it has not been seen before. */
+  public static int idOf(Class<?> key) {
+    return ids.get(key);
+  }
+
+  /** Returns the key with the given id. */
+  public static Class<?> keyOf(int id) {
+    Class<?>[] current = keys;
+    if (id < 0 || id >= current.length || current[id] == null) {
+      throw new IllegalArgumentException("No key registered with id " + id);
+    }
+    return current[id];
+  }
+
+  /** Returns the number of keys registered so far. */
+  public static synchronized int size() {
+    return registered.size();
+  }
+
+}
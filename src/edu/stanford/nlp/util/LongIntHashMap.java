@@ -0,0 +1,173 @@
+package edu.stanford.nlp.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A map from {@code long} keys to {@code int} values backed by two
+ * primitive arrays with open addressing and linear probing.
+ * <p>
+ * This is meant for large, mostly read-only lookup tables on hot paths
+ * (feature ids to weight rows, and so on), where a {@code Map<Long, Integer>}
+ * costs several objects per entry and a boxing allocation per lookup.
+ * It does not support removal.  Like the Collections classes, it is not
+ * thread-safe for writes, but any number of threads may read it concurrently
+ * once it has been built.
+ */
+public class LongIntHashMap implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Marks an empty slot.  The key itself is stored in {@link #zeroValue}. */
+  private static final long EMPTY = 0L;
+
+  private long[] keys;
+  private int[] values;
+  private int size; // = 0
+  private int mask;
+
+  /** The key {@link #EMPTY} can't be stored in the table, so it is kept to the side */
+  private boolean hasZero;
+  private int zeroValue;
+
+  public LongIntHashMap() {
+    this(16);
+  }
+
+  /**
+   * Create a map with room for the given number of entries before it needs to grow.
+   *
+   * @param expectedSize The expected number of entries
+   */
+  public LongIntHashMap(int expectedSize) {
+    int capacity = 4;
+    while (capacity * 3 < expectedSize * 4 + 4) {  // at most 3/4 full
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  /** Spread the bits of the key, since feature ids often differ only in their high bits. */
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /**
+   * Returns the value for the given key, or {@code missing} if it is absent.
+   */
+  public int get(long key, int missing) {
+    if (key == EMPTY) {
+      return hasZero ? zeroValue : missing;
+    }
+    long[] keys = this.keys;
+    int mask = this.mask;
+    for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        return values[i];
+      } else if (k == EMPTY) {
+        return missing;
+      }
+    }
+  }
+
+  /** Returns whether the map contains the given key. */
+  public boolean containsKey(long key) {
+    if (key == EMPTY) {
+      return hasZero;
+    }
+    for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        return true;
+      } else if (k == EMPTY) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Sets the value for the given key.
+   *
+   * @return The previous value, or {@code missing} if there was none
+   */
+  public int put(long key, int value, int missing) {
+    if (key == EMPTY) {
+      int old = hasZero ? zeroValue : missing;
+      if ( ! hasZero) {
+        size++;
+      }
+      hasZero = true;
+      zeroValue = value;
+      return old;
+    }
+    if ((size + 1) * 4 > keys.length * 3) {
+      rehash(keys.length * 2);
+    }
+    for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        int old = values[i];
+        values[i] = value;
+        return old;
+      } else if (k == EMPTY) {
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return missing;
+      }
+    }
+  }
+
+  /** Sets the value for the given key. */
+  public void put(long key, int value) {
+    put(key, value, 0);
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int j = 0; j < oldKeys.length; j++) {
+      long key = oldKeys[j];
+      if (key != EMPTY) {
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /** The number of entries in the map. */
+  public int size() {
+    return size;
+  }
+
+  /** The number of slots in the underlying arrays, for estimating memory use. */
+  public int capacity() {
+    return keys.length;
+  }
+
+  /** Removes all entries without shrinking the table. */
+  public void clear() {
+    Arrays.fill(keys, EMPTY);
+    hasZero = false;
+    size = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "LongIntHashMap[size=" + size + ", capacity=" + keys.length + ']';
+  }
+
+}
@@ -5,7 +5,14 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.NotificationEmitter;
 
 /**
  * Utilities for monitoring memory use, including peak memory use.
@@ -18,6 +25,12 @@ public class MemoryMonitor  {
 
   public static final int MAX_SWAPS = 50;
 
+  /** The fraction of the old generation which, if still in use after a collection, counts as low memory. */
+  public static final double LOW_MEMORY_FRACTION = 0.85;
+
+  private static final List<Runnable> lowMemoryListeners = new CopyOnWriteArrayList<>();
+  private static boolean watchingMemory = false;
+
   protected long lastPoll;
   protected long pollEvery;
   protected int freeMem;
@@ -180,6 +193,60 @@ public class MemoryMonitor  {
     return (getSystemSwapsPerSec() > MAX_SWAPS);
   }
 
+  /**
+   * Run the given listener whenever the heap is running low, that is, when
+   * more than {@link #LOW_MEMORY_FRACTION} of the old generation is still in
+   * use after a garbage collection.  Listeners should free whatever caches
+   * they can; they are run on a JVM notification thread, so they should be
+   * quick and thread safe.
+   */
+  public static void addLowMemoryListener(Runnable listener) {
+    lowMemoryListeners.add(listener);
+    watchMemory();
+  }
+
+  public static void removeLowMemoryListener(Runnable listener) {
+    lowMemoryListeners.remove(listener);
+  }
+
+  /** Run the low memory listeners now, for code which finds out about memory pressure some other way. */
+  public static void lowMemory() {
+    for (Runnable listener : lowMemoryListeners) {
+      try {
+        listener.run();
+      } catch (RuntimeException e) {
+        log.warn(e);
+      }
+    }
+  }
+
+  private static synchronized void watchMemory() {
+    if (watchingMemory) {
+      return;
+    }
+    watchingMemory = true;
+    try {
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        // only the tenured pools support usage thresholds
+        if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported()) {
+          long max = pool.getUsage().getMax();
+          if (max > 0) {
+            pool.setCollectionUsageThreshold((long) (max * LOW_MEMORY_FRACTION));
+          }
+        }
+      }
+      NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+      emitter.addNotificationListener((notification, handback) -> {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+          lowMemory();
+        }
+      }, null, null);
+    } catch (RuntimeException e) {
+      // some JVMs don't have the management beans; listeners are then only run by lowMemory()
+      log.warn("Cannot watch heap usage: " + e);
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
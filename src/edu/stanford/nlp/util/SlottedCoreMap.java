@@ -0,0 +1,483 @@
+package edu.stanford.nlp.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+import edu.stanford.nlp.util.logging.PrettyLogger;
+import edu.stanford.nlp.util.logging.Redwood;
+import edu.stanford.nlp.util.logging.Redwood.RedwoodChannels;
+
+/**
+ * An implementation of {@link CoreMap} which finds keys in constant time.
+ * <p>
+ * {@link ArrayCoreMap} searches its array of keys on every
+ * {@code get} and {@code set}, which is fast for a few keys but adds up
+ * for a fully annotated token with twenty or so.  Here each key is first
+ * mapped to its dense id from {@link KeyRegistry}, and the id is looked up in a
+ * small open-addressing table.  Since ids are consecutive integers, keys
+ * almost never collide, so a lookup is usually a single probe.
+ * <p>
+ * The semantics are those of ArrayCoreMap: keys may map to null, equality is
+ * defined over the full set of keys and values (and agrees with ArrayCoreMap),
+ * and the map is <em>not thread-safe</em>.  Unlike ArrayCoreMap, the iteration
+ * order of {@link #keySet()} is not the insertion order.
+ */
+public class SlottedCoreMap implements CoreMap {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Smallest table size */
+  private static final int MIN_CAPACITY = 4;
+
+  /** Key id + 1 in each slot, or 0 if the slot is empty */
+  private transient int[] slotIds;
+
+  /** The value in each slot */
+  private transient Object[] slotValues;
+
+  /** Number of keys in the map */
+  private transient int size; // = 0
+
+  public SlottedCoreMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * Create a map with room for the given number of keys before it needs to grow.
+   *
+   * @param capacity The expected number of keys
+   */
+  public SlottedCoreMap(int capacity) {
+    allocate(tableSizeFor(capacity));
+  }
+
+  /**
+   * Copy constructor.
+   *
+   * @param other The CoreMap to copy. It may not be null.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public SlottedCoreMap(CoreMap other) {
+    this(other.size());
+    for (Class key : other.keySet()) {
+      set(key, other.get(key));
+    }
+  }
+
+  /** The table size for the given number of keys, keeping the table at most half full. */
+  private static int tableSizeFor(int numKeys) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < numKeys * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private void allocate(int capacity) {
+    slotIds = new int[capacity];
+    slotValues = new Object[capacity];
+  }
+
+  /** Returns the slot holding the key with the given id, or -1 if it is absent. */
+  private int find(int id) {
+    int mask = slotIds.length - 1;
+    int stored = id + 1;
+    for (int i = id & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+      int slotId = slotIds[i];
+      if (slotId == stored) {
+        return i;
+      } else if (slotId == 0) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+    int slot = find(KeyRegistry.idOf(key));
+    if (slot < 0) {
+      return null;
+    }
+    if (ArrayCoreMap.listener != null) {
+      ArrayCoreMap.listener.accept(key);  // For tracking which entities were returned by the CoreMap
+    }
+    return (VALUE) slotValues[slot];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+    int id = KeyRegistry.idOf(key);
+    int slot = find(id);
+    if (slot >= 0) {
+      VALUE rv = (VALUE) slotValues[slot];
+      slotValues[slot] = value;
+      return rv;
+    }
+    if ((size + 1) * 2 > slotIds.length) {
+      rehash(slotIds.length * 2);
+    }
+    insert(id, value);
+    size++;
+    return null;
+  }
+
+  /** Put a key known not to be present into the table. */
+  private void insert(int id, Object value) {
+    int mask = slotIds.length - 1;
+    int i = id & mask;
+    while (slotIds[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    slotIds[i] = id + 1;
+    slotValues[i] = value;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldIds = slotIds;
+    Object[] oldValues = slotValues;
+    allocate(capacity);
+    for (int i = 0; i < oldIds.length; i++) {
+      if (oldIds[i] != 0) {
+        insert(oldIds[i] - 1, oldValues[i]);
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+    int slot = find(KeyRegistry.idOf(key));
+    if (slot < 0) {
+      return null;
+    }
+    VALUE rv = (VALUE) slotValues[slot];
+    // Remove by shifting later members of the probe sequence back, so that no tombstones are needed
+    int mask = slotIds.length - 1;
+    int hole = slot;
+    for (int i = (hole + 1) & mask; slotIds[i] != 0; i = (i + 1) & mask) {
+      int home = (slotIds[i] - 1) & mask;
+      // move the entry at i into the hole unless its home lies cyclically in (hole, i]
+      boolean stays = (hole <= i) ? (hole < home && home <= i) : (hole < home || home <= i);
+      if ( ! stays) {
+        slotIds[hole] = slotIds[i];
+        slotValues[hole] = slotValues[i];
+        hole = i;
+      }
+    }
+    slotIds[hole] = 0;
+    slotValues[hole] = null;
+    size--;
+    return rv;
+  }
+
+  @Override
+  public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+    return find(KeyRegistry.idOf(key)) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Class<?>> keySet() {
+    return new AbstractSet<Class<?>>() {
+      @Override
+      public Iterator<Class<?>> iterator() {
+        // Removal can move keys between slots, so iterate over a snapshot
+        Class<?>[] keys = new Class<?>[size];
+        for (int i = 0, k = 0; i < slotIds.length; i++) {
+          if (slotIds[i] != 0) {
+            keys[k++] = KeyRegistry.keyOf(slotIds[i] - 1);
+          }
+        }
+        return new Iterator<Class<?>>() {
+          private int i; // = 0;
+
+          @Override
+          public boolean hasNext() {
+            return i < keys.length;
+          }
+
+          @Override
+          public Class<?> next() {
+            if ( ! hasNext()) {
+              throw new NoSuchElementException("SlottedCoreMap keySet iterator exhausted");
+            }
+            return keys[i++];
+          }
+
+          @Override
+          @SuppressWarnings("unchecked")
+          public void remove() {
+            if (i == 0) {
+              throw new IllegalStateException();
+            }
+            SlottedCoreMap.this.remove((Class) keys[i - 1]);
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof Class && find(KeyRegistry.idOf((Class<?>) o)) >= 0;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Reduces memory consumption to the minimum for representing the values
+   * currently stored in this object.
+   */
+  public void compact() {
+    int capacity = tableSizeFor(size);
+    if (capacity < slotIds.length) {
+      rehash(capacity);
+    }
+  }
+
+  /**
+   * Keeps track of which maps have had toString called on them on this
+   * thread, so that cycles in the annotation graph print as "[...]".
+   */
+  private static final ThreadLocal<IdentityHashSet<CoreMap>> toStringCalled =
+          ThreadLocal.withInitial(IdentityHashSet::new);
+
+  /** Prints a full dump of the map. This method is robust to
+   *  circularity in the CoreMap.
+   */
+  @Override
+  public String toString() {
+    IdentityHashSet<CoreMap> calledSet = toStringCalled.get();
+    boolean createdCalledSet = calledSet.isEmpty();
+    if (calledSet.contains(this)) {
+      return "[...]";
+    }
+    calledSet.add(this);
+
+    StringBuilder s = new StringBuilder("[");
+    for (int i = 0; i < slotIds.length; i++) {
+      if (slotIds[i] != 0) {
+        if (s.length() > 1) {
+          s.append(' ');
+        }
+        s.append(KeyRegistry.keyOf(slotIds[i] - 1).getSimpleName());
+        s.append('=');
+        s.append(slotValues[i]);
+      }
+    }
+    s.append(']');
+
+    if (createdCalledSet) {
+      toStringCalled.remove();
+    } else {
+      calledSet.remove(this);
+    }
+    return s.toString();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toShorterString(String... what) {
+    Set<String> whatSet = new HashSet<>(Arrays.asList(what));
+    StringBuilder s = new StringBuilder("[");
+    for (int i = 0; i < slotIds.length; i++) {
+      if (slotIds[i] == 0) {
+        continue;
+      }
+      String name = KeyRegistry.keyOf(slotIds[i] - 1).getSimpleName();
+      int annoIdx = name.lastIndexOf("Annotation");
+      if (annoIdx >= 0) {
+        name = name.substring(0, annoIdx);
+      }
+      if (what.length == 0 || whatSet.contains(name)) {
+        if (s.length() > 1) {
+          s.append(' ');
+        }
+        s.append(name);
+        s.append('=');
+        s.append(slotValues[i]);
+      }
+    }
+    s.append(']');
+    return s.toString();
+  }
+
+  /**
+   * Pairs of maps being compared on this thread, so that cycles in the
+   * annotation graph do not recurse forever.  As in ArrayCoreMap, a pair met
+   * again during the recursion is taken to be equal.
+   */
+  private static final ThreadLocal<TwoDimensionalMap<CoreMap, CoreMap, Boolean>> equalsCalled =
+          new ThreadLocal<>();
+
+  /**
+   * Two CoreMaps are equal iff all keys and values are .equal.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if ( ! (obj instanceof CoreMap)) {
+      return false;
+    }
+    if (obj instanceof HashableCoreMap) {
+      // overridden behavior for HashableCoreMap
+      return obj.equals(this);
+    }
+    CoreMap other = (CoreMap) obj;
+    if (other.size() != size) {
+      return false;
+    }
+
+    TwoDimensionalMap<CoreMap, CoreMap, Boolean> calledMap = equalsCalled.get();
+    boolean createdCalledMap = (calledMap == null);
+    if (createdCalledMap) {
+      calledMap = TwoDimensionalMap.identityHashMap();
+      equalsCalled.set(calledMap);
+    }
+    if (calledMap.contains(this, other)) {
+      return true;
+    }
+    calledMap.put(this, other, true);
+    calledMap.put(other, this, true);
+
+    boolean result = true;
+    for (int i = 0; i < slotIds.length; i++) {
+      if (slotIds[i] == 0) {
+        continue;
+      }
+      Class key = KeyRegistry.keyOf(slotIds[i] - 1);
+      if ( ! other.containsKey(key)) {
+        result = false;
+        break;
+      }
+      Object thisV = slotValues[i];
+      Object otherV = other.get(key);
+      if (thisV == otherV) {
+        continue;
+      }
+      if (thisV == null || otherV == null || ! thisV.equals(otherV)) {
+        result = false;
+        break;
+      }
+    }
+
+    if (createdCalledMap) {
+      equalsCalled.set(null);
+    }
+    return result;
+  }
+
+  /**
+   * Maps whose hashCode is being computed on this thread, so that cycles in
+   * the annotation graph contribute 0 instead of recursing forever.
+   */
+  private static final ThreadLocal<IdentityHashSet<CoreMap>> hashCodeCalled =
+          new ThreadLocal<>();
+
+  /**
+   * Returns a composite hashCode over all the keys and values currently
+   * stored in the map, computed the same way as {@link ArrayCoreMap#hashCode()}.
+   */
+  @Override
+  public int hashCode() {
+    IdentityHashSet<CoreMap> calledSet = hashCodeCalled.get();
+    boolean createdCalledSet = (calledSet == null);
+    if (createdCalledSet) {
+      calledSet = new IdentityHashSet<>();
+      hashCodeCalled.set(calledSet);
+    }
+    if (calledSet.contains(this)) {
+      return 0;
+    }
+    calledSet.add(this);
+
+    int keysCode = 0;
+    int valuesCode = 0;
+    for (int i = 0; i < slotIds.length; i++) {
+      if (slotIds[i] != 0 && slotValues[i] != null) {
+        keysCode += KeyRegistry.keyOf(slotIds[i] - 1).hashCode();
+        valuesCode += slotValues[i].hashCode();
+      }
+    }
+
+    if (createdCalledSet) {
+      hashCodeCalled.set(null);
+    } else {
+      calledSet.remove(this);
+    }
+    return keysCode * 37 + valuesCode;
+  }
+
+  //
+  // serialization magic
+  //
+
+  /**
+   * Key ids are only meaningful within one JVM, so the map is written as
+   * a list of key classes and values.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(size);
+    for (int i = 0; i < slotIds.length; i++) {
+      if (slotIds[i] != 0) {
+        out.writeObject(KeyRegistry.keyOf(slotIds[i] - 1));
+        out.writeObject(slotValues[i]);
+      }
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    int numKeys = in.readInt();
+    allocate(tableSizeFor(numKeys));
+    for (int i = 0; i < numKeys; i++) {
+      Class key = (Class) in.readObject();
+      Object value = in.readObject();
+      set(key, value);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public void prettyLog(RedwoodChannels channels, String description) {
+    Redwood.startTrack(description);
+
+    // sort keys by class name
+    List<Class> sortedKeys = new ArrayList<>(this.keySet());
+    Collections.sort(sortedKeys,
+        (a, b) -> a.getCanonicalName().compareTo(b.getCanonicalName()));
+
+    // log key/value pairs
+    for (Class key : sortedKeys) {
+      String keyName = key.getCanonicalName().replace("class ", "");
+      Object value = this.get(key);
+      if (PrettyLogger.dispatchable(value)) {
+        PrettyLogger.log(channels, keyName, value);
+      } else {
+        channels.logf("%s = %s", keyName, value);
+      }
+    }
+    Redwood.endTrack(description);
+  }
+
+}
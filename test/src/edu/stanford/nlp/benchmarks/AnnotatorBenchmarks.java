@@ -0,0 +1,358 @@
+package edu.stanford.nlp.benchmarks;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.ling.tokensregex.TokenSequenceMatcher;
+import edu.stanford.nlp.ling.tokensregex.TokenSequencePattern;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.nndep.DependencyParser;
+import edu.stanford.nlp.parser.shiftreduce.ShiftReduceParser;
+import edu.stanford.nlp.parser.shiftreduce.ShiftReduceParserQuery;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.DefaultPaths;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.process.CoreLabelTokenFactory;
+import edu.stanford.nlp.process.PTBTokenizer;
+import edu.stanford.nlp.process.TokenizerFactory;
+import edu.stanford.nlp.process.WordToSentenceProcessor;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.semgrex.SemgrexMatcher;
+import edu.stanford.nlp.semgraph.semgrex.SemgrexPattern;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.StringUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput and allocation benchmarks for the hot paths of the main
+ * annotators: tokenizing, POS tagging, NER, constituency and dependency
+ * parsing, TokensRegex and Semgrex matching, and whole pipelines.  The
+ * input is the checked in text and graphs in {@code data/edu/stanford/nlp/benchmarks},
+ * so runs from different builds are comparable.  Benchmarks whose models
+ * can't be loaded are skipped.
+ * <p>
+ * Run with {@code java edu.stanford.nlp.benchmarks.AnnotatorBenchmarks}, or
+ * {@code ant benchmark} or {@code ./gradlew benchmark}.  Options:
+ * <ul>
+ *   <li>{@code -report file} Writes a report of the results which later runs can be compared with</li>
+ *   <li>{@code -compare before after} Compares two reports instead of running anything</li>
+ *   <li>{@code -threshold percent} The change in throughput {@code -compare} flags (default 5)</li>
+ *   <li>{@code -only regex} Only runs the benchmarks whose names match</li>
+ *   <li>{@code -warmup n}, {@code -iterations n}, {@code -time seconds} The warmup and measured
+ *       iterations, and the minimum length of each (default 3, 5 and 1)</li>
+ *   <li>{@code -text file}, {@code -graphs file} Other input</li>
+ *   <li>{@code -pos.model}, {@code -pos.bidirectional.model}, {@code -ner.model}, {@code -parse.model},
+ *       {@code -depparse.model}, {@code -srparse.model} Other models</li>
+ *   <li>{@code -srparse.treebank path} Runs the shift-reduce parser over the gold tagged trees
+ *       of a treebank, such as WSJ section 23, instead of the tagged text</li>
+ * </ul>
+ */
+public class AnnotatorBenchmarks {
+
+  private static final String TEXT = "edu/stanford/nlp/benchmarks/english.txt";
+  private static final String GRAPHS = "edu/stanford/nlp/benchmarks/graphs.txt";
+  private static final String SR_PARSER_MODEL = "edu/stanford/nlp/models/srparser/englishSR.ser.gz";
+  private static final String BIDIRECTIONAL_TAGGER_MODEL =
+      "edu/stanford/nlp/models/pos-tagger/english-bidirectional/english-bidirectional-distsim.tagger";
+
+  private static final String[] TOKENSREGEX_PATTERNS = {
+      "[ { tag:/NNP.*/ } ]+ [ { word:/said|says/ } ]",
+      "/the/ [ { word:/[A-Z].*/ } ]+ /of/ [ { word:/[A-Z].*/ } ]+",
+      "[ { word:/[0-9]+(\\.[0-9]+)?/ } ] /percent|million|billion|dollars/",
+      "( /on|in|by/ ) [ { word:/Monday|Tuesday|Wednesday|Thursday|Friday|Saturday|Sunday/ } ]",
+  };
+
+  private static final String[] SEMGREX_PATTERNS = {
+      "{}=verb >nsubj {}=subject >obj {}=object",
+      "{tag:/VB.*/} >/obl|nmod/ ({} >case {word:/in|on|at/})",
+      "{tag:/NN.*/}=noun >amod {}=adj",
+      "{} >conj {}",
+  };
+
+  private final BenchmarkRunner runner;
+  private final Pattern only;
+  private final List<CoreLabel> tokens;
+  private final List<List<CoreLabel>> sentences;
+  private final int numTokens;
+  private final String text;
+  private final List<String> graphLines;
+  /** Counts matches, so that matching can't be optimized away. */
+  private long matches;
+
+  private AnnotatorBenchmarks(BenchmarkRunner runner, Pattern only, String text, List<String> graphLines) {
+    this.runner = runner;
+    this.only = only;
+    this.text = text;
+    this.graphLines = graphLines;
+    this.tokens = tokenize(text);
+    this.sentences = new WordToSentenceProcessor<CoreLabel>().process(tokens);
+    this.numTokens = tokens.size();
+  }
+
+  private static String readResource(String path) throws IOException {
+    // The data directory is on the classpath in the ant and gradle tasks, but check for the file too
+    String file = "data/" + path;
+    return IOUtils.slurpReader(IOUtils.readerFromString(IOUtils.existsInClasspathOrFileSystem(path) ? path : file));
+  }
+
+  private static List<CoreLabel> tokenize(String text) {
+    TokenizerFactory<CoreLabel> factory = PTBTokenizer.factory(new CoreLabelTokenFactory(), "");
+    return factory.getTokenizer(new StringReader(text)).tokenize();
+  }
+
+  private boolean selected(String name) {
+    return only == null || only.matcher(name).find();
+  }
+
+  private void run(String name, String unit, BenchmarkRunner.Benchmark benchmark) throws Exception {
+    if (selected(name)) {
+      runner.run(name, unit, benchmark);
+    }
+  }
+
+  /** Loads a model, or returns null and says the benchmarks which need it are skipped. */
+  private static <T> T load(String what, String path, Callable<T> loader) {
+    try {
+      T model = loader.call();
+      if (model == null) {
+        throw new IllegalStateException("nothing loaded");
+      }
+      return model;
+    } catch (Exception | LinkageError e) {
+      System.err.println("Skipping the " + what + " benchmarks: couldn't load " + path + ": " + e);
+      return null;
+    }
+  }
+
+  private void runModelFree() throws Exception {
+    run("tokenize", "token", () -> tokenize(text).size());
+
+    run("ssplit", "token", () -> {
+      new WordToSentenceProcessor<CoreLabel>().process(tokens);
+      return numTokens;
+    });
+
+    if (selected("tokensregex")) {
+      List<TokenSequencePattern> patterns = new ArrayList<>();
+      for (String pattern : TOKENSREGEX_PATTERNS) {
+        patterns.add(TokenSequencePattern.compile(pattern));
+      }
+      run("tokensregex", "token", () -> {
+        long matches = 0;
+        for (List<CoreLabel> sentence : sentences) {
+          for (TokenSequencePattern pattern : patterns) {
+            TokenSequenceMatcher matcher = pattern.getMatcher(sentence);
+            while (matcher.find()) {
+              matches++;
+            }
+          }
+        }
+        this.matches += matches;
+        return numTokens;
+      });
+    }
+
+    if (selected("semgrex")) {
+      List<SemanticGraph> graphs = new ArrayList<>();
+      for (String line : graphLines) {
+        graphs.add(SemanticGraph.valueOf(line));
+      }
+      List<SemgrexPattern> patterns = new ArrayList<>();
+      for (String pattern : SEMGREX_PATTERNS) {
+        patterns.add(SemgrexPattern.compile(pattern));
+      }
+      run("semgrex", "graph", () -> {
+        long matches = 0;
+        for (SemanticGraph graph : graphs) {
+          for (SemgrexPattern pattern : patterns) {
+            SemgrexMatcher matcher = pattern.matcher(graph);
+            while (matcher.find()) {
+              matches++;
+            }
+          }
+        }
+        this.matches += matches;
+        return graphs.size();
+      });
+    }
+
+    if (selected("pipeline.tokenize,ssplit")) {
+      StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize,ssplit"));
+      run("pipeline.tokenize,ssplit", "token", () -> annotate(pipeline));
+    }
+  }
+
+  private int annotate(StanfordCoreNLP pipeline) {
+    Annotation annotation = new Annotation(text);
+    pipeline.annotate(annotation);
+    return annotation.get(CoreAnnotations.TokensAnnotation.class).size();
+  }
+
+  private void runModels(Properties props) throws Exception {
+    MaxentTagger tagger = null;
+    if (selected("pos") || selected("depparse") || (selected("srparse") && ! props.containsKey("srparse.treebank"))) {
+      String path = props.getProperty("pos.model", MaxentTagger.DEFAULT_JAR_PATH);
+      tagger = load("pos", path, () -> new MaxentTagger(path));
+    }
+    if (tagger != null) {
+      MaxentTagger posTagger = tagger;
+      run("pos", "token", () -> {
+        for (List<CoreLabel> sentence : sentences) {
+          posTagger.tagSentence(sentence);
+        }
+        return numTokens;
+      });
+    }
+
+    // the bidirectional tagger scores many more tag sequences per word than left3words
+    if (selected("pos.bidirectional")) {
+      String path = props.getProperty("pos.bidirectional.model", BIDIRECTIONAL_TAGGER_MODEL);
+      MaxentTagger bidirectional = load("pos.bidirectional", path, () -> new MaxentTagger(path));
+      if (bidirectional != null) {
+        run("pos.bidirectional", "token", () -> {
+          for (List<CoreLabel> sentence : sentences) {
+            bidirectional.tagSentence(sentence);
+          }
+          return numTokens;
+        });
+      }
+    }
+
+    if (selected("ner")) {
+      String path = props.getProperty("ner.model", DefaultPaths.DEFAULT_NER_THREECLASS_MODEL);
+      CRFClassifier<CoreLabel> classifier = load("ner", path, () -> CRFClassifier.getClassifier(path));
+      if (classifier != null) {
+        run("ner", "token", () -> {
+          for (List<CoreLabel> sentence : sentences) {
+            classifier.classifySentence(sentence);
+          }
+          return numTokens;
+        });
+      }
+    }
+
+    if (selected("parse")) {
+      String path = props.getProperty("parse.model", LexicalizedParser.DEFAULT_PARSER_LOC);
+      LexicalizedParser parser = load("parse", path, () -> LexicalizedParser.loadModel(path));
+      if (parser != null) {
+        run("parse", "token", () -> {
+          for (List<CoreLabel> sentence : sentences) {
+            parser.parse(sentence);
+          }
+          return numTokens;
+        });
+      }
+    }
+
+    if (selected("depparse") && tagger != null) {
+      String path = props.getProperty("depparse.model", DependencyParser.DEFAULT_MODEL);
+      DependencyParser parser = load("depparse", path, () -> DependencyParser.loadFromModelFile(path));
+      if (parser != null) {
+        List<List<TaggedWord>> tagged = new ArrayList<>();
+        for (List<CoreLabel> sentence : sentences) {
+          tagged.add(tagger.tagSentence(sentence));
+        }
+        run("depparse", "token", () -> {
+          for (List<TaggedWord> sentence : tagged) {
+            parser.predict(sentence);
+          }
+          return numTokens;
+        });
+      }
+    }
+
+    if (selected("srparse")) {
+      String path = props.getProperty("srparse.model", SR_PARSER_MODEL);
+      ShiftReduceParser parser = load("srparse", path, () -> ShiftReduceParser.loadModel(path));
+      if (parser != null && props.containsKey("srparse.treebank")) {
+        // parse the trees of a treebank, such as WSJ section 23, with their gold tags
+        Treebank treebank = parser.getOp().tlpParams.memoryTreebank();
+        treebank.loadPath(props.getProperty("srparse.treebank"));
+        List<Tree> trees = new ArrayList<>(treebank);
+        int treebankTokens = trees.stream().mapToInt(tree -> tree.yield().size()).sum();
+        ShiftReduceParserQuery query = new ShiftReduceParserQuery(parser);
+        run("srparse", "token", () -> {
+          for (Tree tree : trees) {
+            query.parse(tree);
+          }
+          return treebankTokens;
+        });
+      } else if (parser != null && tagger != null) {
+        List<List<TaggedWord>> tagged = new ArrayList<>();
+        for (List<CoreLabel> sentence : sentences) {
+          tagged.add(tagger.tagSentence(sentence));
+        }
+        ShiftReduceParserQuery query = new ShiftReduceParserQuery(parser);
+        run("srparse", "token", () -> {
+          for (List<TaggedWord> sentence : tagged) {
+            query.parse(sentence);
+          }
+          return numTokens;
+        });
+      }
+    }
+
+    if (selected("pipeline.full")) {
+      String annotators = "tokenize,ssplit,pos,lemma,ner,depparse";
+      StanfordCoreNLP pipeline = load("pipeline.full", annotators,
+          () -> new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", annotators)));
+      if (pipeline != null) {
+        run("pipeline.full", "token", () -> annotate(pipeline));
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, Integer> flagsToNumArgs = new HashMap<>();
+    flagsToNumArgs.put("compare", 2);
+    Properties props = StringUtils.argsToProperties(args, flagsToNumArgs);
+    double threshold = PropertiesUtils.getDouble(props, "threshold", 5.0);
+
+    if (props.containsKey("compare")) {
+      String[] reports = props.getProperty("compare").split("\\s+");
+      if (reports.length != 2) {
+        throw new IllegalArgumentException("-compare needs two reports, before and after");
+      }
+      int slower = BenchmarkRunner.compare(BenchmarkRunner.readReport(reports[0]),
+          BenchmarkRunner.readReport(reports[1]), threshold, System.out);
+      System.out.println(slower + " benchmark(s) got slower");
+      return;
+    }
+
+    BenchmarkRunner runner = new BenchmarkRunner(PropertiesUtils.getInt(props, "warmup", 3),
+        PropertiesUtils.getInt(props, "iterations", 5), PropertiesUtils.getDouble(props, "time", 1.0));
+    String only = props.getProperty("only");
+    String text = props.containsKey("text") ? IOUtils.slurpFile(props.getProperty("text")) : readResource(TEXT);
+    List<String> graphLines = new ArrayList<>();
+    String graphs = props.containsKey("graphs") ? IOUtils.slurpFile(props.getProperty("graphs")) : readResource(GRAPHS);
+    for (String line : graphs.split("\n")) {
+      if ( ! line.trim().isEmpty()) {
+        graphLines.add(line.trim());
+      }
+    }
+
+    AnnotatorBenchmarks benchmarks = new AnnotatorBenchmarks(runner,
+        only == null ? null : Pattern.compile(only), text, graphLines);
+    System.out.println("Input: " + benchmarks.numTokens + " tokens in " + benchmarks.sentences.size() +
+        " sentences, " + graphLines.size() + " graphs");
+    benchmarks.runModelFree();
+    benchmarks.runModels(props);
+
+    String report = props.getProperty("report");
+    if (report != null) {
+      runner.writeReport(report);
+      System.out.println("Wrote " + report);
+    }
+  }
+
+}
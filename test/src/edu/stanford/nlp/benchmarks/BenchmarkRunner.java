@@ -0,0 +1,252 @@
+package edu.stanford.nlp.benchmarks;
+
+import edu.stanford.nlp.io.IOUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * A small harness for throughput benchmarks, in the spirit of JMH but
+ * without a dependency on it.  Each benchmark is run for a number of
+ * warmup iterations, which are thrown away, and then for a number of
+ * measured iterations, each of which repeats the benchmark until a minimum
+ * time has passed.  For the measured iterations it records the throughput in
+ * units of work (tokens, sentences, ...) per second, the memory allocated
+ * per unit by the benchmark thread, and the number and time of garbage
+ * collections.
+ * <p>
+ * Results are written as a tab separated report, one line per benchmark,
+ * so that reports from two builds can be compared with {@link #compare}
+ * or simply diffed.
+ */
+public class BenchmarkRunner {
+
+  /** Something to benchmark.  It returns the number of units of work it did. */
+  public interface Benchmark {
+    long run() throws Exception;
+  }
+
+  /** The measurements of one benchmark. */
+  public static class Result {
+
+    public final String name;
+    public final String unit;
+    /** Mean units per second over the measured iterations */
+    public final double throughput;
+    /** Standard deviation of the units per second of the measured iterations */
+    public final double error;
+    /** Bytes allocated per unit, or NaN if the JVM can't tell */
+    public final double bytesPerUnit;
+    public final long gcCount;
+    public final long gcMillis;
+
+    public Result(String name, String unit, double throughput, double error, double bytesPerUnit, long gcCount, long gcMillis) {
+      this.name = name;
+      this.unit = unit;
+      this.throughput = throughput;
+      this.error = error;
+      this.bytesPerUnit = bytesPerUnit;
+      this.gcCount = gcCount;
+      this.gcMillis = gcMillis;
+    }
+
+    String toReportLine() {
+      return String.format(Locale.ROOT, "%s\t%s\t%.1f\t%.1f\t%.1f\t%d\t%d",
+          name, unit, throughput, error, bytesPerUnit, gcCount, gcMillis);
+    }
+
+    static Result fromReportLine(String line) {
+      String[] fields = line.split("\t");
+      if (fields.length != 7) {
+        throw new IllegalArgumentException("Not a benchmark report line: " + line);
+      }
+      return new Result(fields[0], fields[1], Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+          Double.parseDouble(fields[4]), Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%-32s %12.1f +- %9.1f %s/s %10.1f B/%s %4d GCs %6d ms",
+          name, throughput, error, unit, bytesPerUnit, unit, gcCount, gcMillis);
+    }
+
+  }
+
+  static final String REPORT_HEADER = "benchmark\tunit\tunits/s\terror\tbytes/unit\tgc.count\tgc.ms";
+
+  /** Keeps the JIT from deciding the benchmarks' results are unused. */
+  @SuppressWarnings("unused")
+  private static volatile long sink;
+
+  private final int warmupIterations;
+  private final int iterations;
+  private final long minIterationNanos;
+  private final List<Result> results = new ArrayList<>();
+
+  /**
+   * @param warmupIterations The number of iterations run before measuring
+   * @param iterations The number of measured iterations
+   * @param minIterationSeconds Each iteration repeats the benchmark until at least this much time has passed
+   */
+  public BenchmarkRunner(int warmupIterations, int iterations, double minIterationSeconds) {
+    if (iterations < 1) {
+      throw new IllegalArgumentException("Need at least one measured iteration");
+    }
+    this.warmupIterations = warmupIterations;
+    this.iterations = iterations;
+    this.minIterationNanos = (long) (minIterationSeconds * 1e9);
+  }
+
+  /** Runs a benchmark, prints its result to stdout, and remembers it for the report. */
+  public Result run(String name, String unit, Benchmark benchmark) throws Exception {
+    for (int i = 0; i < warmupIterations; i++) {
+      iteration(benchmark);
+    }
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    boolean allocation = threads instanceof com.sun.management.ThreadMXBean &&
+        ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported() &&
+        ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+    long threadId = Thread.currentThread().getId();
+    long bytesBefore = allocation ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+    long gcCountBefore = gcCount();
+    long gcMillisBefore = gcMillis();
+
+    double[] throughputs = new double[iterations];
+    long units = 0;
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      long iterationUnits = iteration(benchmark);
+      throughputs[i] = iterationUnits / ((System.nanoTime() - start) / 1e9);
+      units += iterationUnits;
+    }
+
+    double bytesPerUnit = Double.NaN;
+    if (allocation) {
+      long bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) - bytesBefore;
+      bytesPerUnit = (double) bytes / units;
+    }
+    double mean = 0.0;
+    for (double throughput : throughputs) {
+      mean += throughput / iterations;
+    }
+    double variance = 0.0;
+    for (double throughput : throughputs) {
+      variance += (throughput - mean) * (throughput - mean) / iterations;
+    }
+    Result result = new Result(name, unit, mean, Math.sqrt(variance), bytesPerUnit,
+        gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    System.out.println(result);
+    results.add(result);
+    return result;
+  }
+
+  private long iteration(Benchmark benchmark) throws Exception {
+    long units = 0;
+    long start = System.nanoTime();
+    do {
+      units += benchmark.run();
+    } while (System.nanoTime() - start < minIterationNanos);
+    sink += units;
+    return units;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(gc.getCollectionCount(), 0);
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(gc.getCollectionTime(), 0);
+    }
+    return millis;
+  }
+
+  /** The results of the benchmarks run so far, in order. */
+  public List<Result> results() {
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * Writes the results as a report: a few comment lines describing the JVM,
+   * a header, and a tab separated line per benchmark.
+   */
+  public void writeReport(String path) throws IOException {
+    try (PrintWriter pw = IOUtils.getPrintWriter(path)) {
+      pw.println("# java.version=" + System.getProperty("java.version") +
+          " java.vm.name=" + System.getProperty("java.vm.name") +
+          " os.arch=" + System.getProperty("os.arch") +
+          " processors=" + Runtime.getRuntime().availableProcessors() +
+          " max.memory=" + Runtime.getRuntime().maxMemory());
+      pw.println("# warmup=" + warmupIterations + " iterations=" + iterations +
+          " iteration.ms=" + minIterationNanos / 1000000);
+      pw.println(REPORT_HEADER);
+      for (Result result : results) {
+        pw.println(result.toReportLine());
+      }
+    }
+  }
+
+  /** Reads the results from a report written by {@link #writeReport}. */
+  public static List<Result> readReport(String path) throws IOException {
+    List<Result> results = new ArrayList<>();
+    for (String line : IOUtils.readLines(path)) {
+      if (line.isEmpty() || line.startsWith("#") || line.equals(REPORT_HEADER)) {
+        continue;
+      }
+      results.add(Result.fromReportLine(line));
+    }
+    return results;
+  }
+
+  /**
+   * Prints how the throughput and allocation of each benchmark in the
+   * second report changed from the first, flagging changes in throughput
+   * of more than the threshold and more than the measurement error.
+   *
+   * @return The number of benchmarks which got slower
+   */
+  public static int compare(List<Result> before, List<Result> after, double thresholdPercent, PrintStream out) {
+    Map<String, Result> beforeByName = new LinkedHashMap<>();
+    for (Result result : before) {
+      beforeByName.put(result.name, result);
+    }
+    int slower = 0;
+    out.printf(Locale.ROOT, "%-32s %14s %14s %9s %12s %12s %9s%n",
+        "benchmark", "before/s", "after/s", "change", "before B/u", "after B/u", "change");
+    for (Result result : after) {
+      Result old = beforeByName.remove(result.name);
+      if (old == null) {
+        out.printf(Locale.ROOT, "%-32s %14s %14.1f%n", result.name, "-", result.throughput);
+        continue;
+      }
+      double change = 100.0 * (result.throughput - old.throughput) / old.throughput;
+      double allocationChange = 100.0 * (result.bytesPerUnit - old.bytesPerUnit) / old.bytesPerUnit;
+      String flag = "";
+      if (Math.abs(change) > thresholdPercent &&
+          Math.abs(result.throughput - old.throughput) > result.error + old.error) {
+        flag = change < 0 ? "  SLOWER" : "  faster";
+        if (change < 0) {
+          slower++;
+        }
+      }
+      out.printf(Locale.ROOT, "%-32s %14.1f %14.1f %+8.1f%% %12.1f %12.1f %+8.1f%%%s%n",
+          result.name, old.throughput, result.throughput, change,
+          old.bytesPerUnit, result.bytesPerUnit, allocationChange, flag);
+    }
+    for (Result old : beforeByName.values()) {
+      out.printf(Locale.ROOT, "%-32s %14.1f %14s%n", old.name, old.throughput, "-");
+    }
+    return slower;
+  }
+
+}
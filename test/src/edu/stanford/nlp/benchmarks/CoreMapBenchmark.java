@@ -0,0 +1,93 @@
+package edu.stanford.nlp.benchmarks;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.SlottedCoreMap;
+import edu.stanford.nlp.util.TypesafeMap;
+
+import java.util.function.Supplier;
+
+/**
+ * Compares key lookup in {@link ArrayCoreMap} and {@link SlottedCoreMap} for a
+ * map shaped like a token after a full pipeline (about twenty keys), looking up
+ * keys the way feature extractors do: a few common ones, many times.
+ *
+ * Run with {@code java edu.stanford.nlp.benchmarks.CoreMapBenchmark}.
+ */
+public class CoreMapBenchmark {
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static final Class<? extends TypesafeMap.Key<String>>[] KEYS = new Class[] {
+      CoreAnnotations.ValueAnnotation.class,
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.OriginalTextAnnotation.class,
+      CoreAnnotations.BeforeAnnotation.class,
+      CoreAnnotations.AfterAnnotation.class,
+      CoreAnnotations.DocIDAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.ShapeAnnotation.class,
+      CoreAnnotations.AnswerAnnotation.class,
+      CoreAnnotations.GoldAnswerAnnotation.class,
+      CoreAnnotations.CategoryAnnotation.class,
+      CoreAnnotations.ChineseCharAnnotation.class,
+      CoreAnnotations.GazAnnotation.class,
+      CoreAnnotations.NormalizedNamedEntityTagAnnotation.class,
+      CoreAnnotations.CoarseTagAnnotation.class,
+      CoreAnnotations.StemAnnotation.class,
+      CoreAnnotations.TrueCaseAnnotation.class,
+      CoreAnnotations.DistSimAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+  };
+
+  /** The keys a feature extractor typically asks for, set late in the pipeline. */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static final Class<? extends TypesafeMap.Key<String>>[] LOOKUPS = new Class[] {
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+      CoreAnnotations.DistSimAnnotation.class,
+      CoreAnnotations.ShapeAnnotation.class,
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.AnswerAnnotation.class,
+  };
+
+  private static final int NUM_MAPS = 10000;
+  private static final int ROUNDS = 200;
+
+  private static long run(String name, Supplier<CoreMap> factory) {
+    CoreMap[] maps = new CoreMap[NUM_MAPS];
+    for (int i = 0; i < NUM_MAPS; i++) {
+      maps[i] = factory.get();
+      for (Class<? extends TypesafeMap.Key<String>> key : KEYS) {
+        maps[i].set(key, key.getSimpleName());
+      }
+    }
+    long checksum = 0;
+    // warm up, then time
+    for (int pass = 0; pass < 2; pass++) {
+      long start = System.nanoTime();
+      for (int round = 0; round < ROUNDS; round++) {
+        for (CoreMap map : maps) {
+          for (Class<? extends TypesafeMap.Key<String>> key : LOOKUPS) {
+            checksum += map.get(key).length();
+          }
+        }
+      }
+      long elapsed = System.nanoTime() - start;
+      if (pass == 1) {
+        long lookups = (long) ROUNDS * NUM_MAPS * LOOKUPS.length;
+        System.out.printf("%s: %.2f ns/lookup%n", name, ((double) elapsed) / lookups);
+      }
+    }
+    return checksum;
+  }
+
+  public static void main(String[] args) {
+    for (int i = 0; i < 3; i++) {
+      run("ArrayCoreMap", ArrayCoreMap::new);
+      run("SlottedCoreMap", SlottedCoreMap::new);
+    }
+  }
+
+}
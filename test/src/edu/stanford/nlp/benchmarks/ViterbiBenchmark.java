@@ -0,0 +1,88 @@
+package edu.stanford.nlp.benchmarks;
+
+import edu.stanford.nlp.ie.crf.CRFCliqueTree;
+import edu.stanford.nlp.ie.crf.FactorTable;
+import edu.stanford.nlp.ie.crf.TestSequenceModel;
+import edu.stanford.nlp.sequences.BestSequenceFinder;
+import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
+import edu.stanford.nlp.sequences.SequenceModel;
+import edu.stanford.nlp.sequences.ViterbiBestSequenceFinder;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares Viterbi decoding with {@link ExactBestSequenceFinder} and
+ * {@link ViterbiBestSequenceFinder} on CRF sequence models with random clique
+ * potentials, for first and second order models (CRF windows of 2 and 3)
+ * over the 9 labels of an IOB2-encoded 4 class NER model.  Only decoding
+ * is timed; the models are built beforehand.
+ *
+ * Run with {@code java edu.stanford.nlp.benchmarks.ViterbiBenchmark}.
+ */
+public class ViterbiBenchmark {
+
+  private static final int NUM_CLASSES = 9;
+  private static final int NUM_SENTENCES = 500;
+  private static final int SENTENCE_LENGTH = 25;
+  private static final int ROUNDS = 10;
+
+  private static SequenceModel[] models(int window, Random random) {
+    Index<String> classIndex = new HashIndex<>();
+    classIndex.add("O");
+    for (int i = 1; i < NUM_CLASSES; i++) {
+      classIndex.add("C" + i);
+    }
+    SequenceModel[] models = new SequenceModel[NUM_SENTENCES];
+    for (int s = 0; s < NUM_SENTENCES; s++) {
+      FactorTable[] factorTables = new FactorTable[SENTENCE_LENGTH];
+      for (int i = 0; i < SENTENCE_LENGTH; i++) {
+        factorTables[i] = new FactorTable(NUM_CLASSES, window);
+        for (int j = 0; j < factorTables[i].size(); j++) {
+          factorTables[i].setValue(j, random.nextGaussian());
+        }
+      }
+      models[s] = new TestSequenceModel(new CRFCliqueTree<>(factorTables, classIndex, "O"));
+    }
+    return models;
+  }
+
+  private static long run(String name, BestSequenceFinder finder, SequenceModel[] models) {
+    long checksum = 0;
+    // warm up, then time
+    for (int pass = 0; pass < 2; pass++) {
+      long start = System.nanoTime();
+      for (int round = 0; round < ROUNDS; round++) {
+        for (SequenceModel model : models) {
+          checksum += finder.bestSequence(model)[SENTENCE_LENGTH / 2];
+        }
+      }
+      long elapsed = System.nanoTime() - start;
+      if (pass == 1) {
+        long tokens = (long) ROUNDS * NUM_SENTENCES * SENTENCE_LENGTH;
+        System.out.printf("%s: %.0f tokens/s%n", name, tokens / (elapsed / 1e9));
+      }
+    }
+    return checksum;
+  }
+
+  public static void main(String[] args) {
+    BestSequenceFinder exact = new ExactBestSequenceFinder();
+    BestSequenceFinder viterbi = new ViterbiBestSequenceFinder();
+    for (int window = 2; window <= 3; window++) {
+      SequenceModel[] models = models(window, new Random(window));
+      for (SequenceModel model : models) {
+        if ( ! Arrays.equals(exact.bestSequence(model), viterbi.bestSequence(model))) {
+          throw new AssertionError("Finders disagree");
+        }
+      }
+      for (int i = 0; i < 3; i++) {
+        run("ExactBestSequenceFinder, window " + window, exact, models);
+        run("ViterbiBestSequenceFinder, window " + window, viterbi, models);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package edu.stanford.nlp.coref.neural;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+import edu.stanford.nlp.neural.CompactMatrix;
+
+/**
+ * Checks that a model compacted to float or int8 weights scores mentions
+ * within a stated tolerance of the full precision model.  There is no
+ * trained model in the tree, so this uses one of the same shape with
+ * weights scaled as a trained network's usually are.
+ */
+public class NeuralCorefModelCompactorTest {
+
+  private static final int MENTION_SIZE = 100;
+  private static final int HIDDEN_SIZE = 60;
+  private static final int PAIR_FEATURES = 20;
+  private static final int ANAPHORICITY_FEATURES = 10;
+
+  /** A weight matrix with the usual scale of 1/sqrt(fan in). */
+  private static SimpleMatrix weights(int rows, int cols, Random random) {
+    SimpleMatrix matrix = new SimpleMatrix(rows, cols);
+    double scale = 1.0 / Math.sqrt(cols);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        matrix.set(i, j, random.nextGaussian() * scale);
+      }
+    }
+    return matrix;
+  }
+
+  private static SimpleMatrix bias(int rows, Random random) {
+    return SimpleMatrix.random(rows, 1, -0.1, 0.1, random);
+  }
+
+  private static NeuralCorefModel model(Random random) {
+    List<SimpleMatrix> anaphoricityModel = Arrays.asList(
+        weights(40, MENTION_SIZE + ANAPHORICITY_FEATURES, random), bias(40, random),
+        weights(1, 40, random), bias(1, random));
+    List<SimpleMatrix> pairwiseModel = Arrays.asList(
+        weights(30, HIDDEN_SIZE, random), bias(30, random),
+        weights(1, 30, random), bias(1, random));
+    return new NeuralCorefModel(weights(HIDDEN_SIZE, MENTION_SIZE, random), weights(HIDDEN_SIZE, MENTION_SIZE, random),
+        weights(HIDDEN_SIZE, PAIR_FEATURES, random), bias(HIDDEN_SIZE, random),
+        anaphoricityModel, pairwiseModel, null);
+  }
+
+  /**
+   * The largest difference between the anaphoricity and pairwise scores of
+   * the two models, relative to the largest score of the full precision model.
+   */
+  private static double maxScoreError(NeuralCorefModel model, NeuralCorefModel compactModel, Random random) {
+    List<double[]> scores = new ArrayList<>();
+    for (int probe = 0; probe < 200; probe++) {
+      SimpleMatrix mention = SimpleMatrix.random(MENTION_SIZE, 1, -1.0, 1.0, random);
+      SimpleMatrix antecedent = SimpleMatrix.random(MENTION_SIZE, 1, -1.0, 1.0, random);
+      SimpleMatrix anaphoricityFeatures = SimpleMatrix.random(ANAPHORICITY_FEATURES, 1, 0.0, 1.0, random);
+      SimpleMatrix pairFeatures = SimpleMatrix.random(PAIR_FEATURES, 1, 0.0, 1.0, random);
+      scores.add(new double[] {
+          model.getAnaphoricityScore(mention, anaphoricityFeatures),
+          compactModel.getAnaphoricityScore(mention, anaphoricityFeatures) });
+      scores.add(new double[] {
+          model.getPairwiseScore(model.getAntecedentEmbedding(antecedent), model.getAnaphorEmbedding(mention), pairFeatures),
+          compactModel.getPairwiseScore(compactModel.getAntecedentEmbedding(antecedent),
+              compactModel.getAnaphorEmbedding(mention), pairFeatures) });
+    }
+    double largest = 0.0;
+    double error = 0.0;
+    for (double[] pair : scores) {
+      largest = Math.max(largest, Math.abs(pair[0]));
+      error = Math.max(error, Math.abs(pair[0] - pair[1]));
+    }
+    return error / largest;
+  }
+
+  private static void checkPrecision(CompactMatrix.Precision precision, double tolerance) {
+    NeuralCorefModel model = model(new Random(1234));
+    NeuralCorefModel compactModel = model.compact(precision);
+    assertTrue(compactModel.isCompact());
+    assertTrue(compactModel.sizeInBytes() < model.sizeInBytes());
+
+    double representationError = NeuralCorefModelCompactor.maxRelativeError(model, compactModel, new Random(5678));
+    assertTrue(precision + " representation error " + representationError, representationError < tolerance);
+    double scoreError = maxScoreError(model, compactModel, new Random(42));
+    assertTrue(precision + " score error " + scoreError, scoreError < tolerance);
+  }
+
+  @Test
+  public void testFloat() {
+    checkPrecision(CompactMatrix.Precision.FLOAT, 1e-6);
+  }
+
+  /** The errors are about 1e-2, from rounding each weight to one of 255 steps of its row's scale. */
+  @Test
+  public void testInt8() {
+    checkPrecision(CompactMatrix.Precision.INT8, 0.03);
+  }
+
+}
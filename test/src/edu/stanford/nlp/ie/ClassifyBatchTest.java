@@ -0,0 +1,160 @@
+package edu.stanford.nlp.ie;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.sequences.DocumentReaderAndWriter;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Deadline;
+import edu.stanford.nlp.util.DeadlineExceededException;
+import edu.stanford.nlp.util.HashIndex;
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link AbstractSequenceClassifier#classifyBatch} gives the same
+ * answers as classifying one document at a time, in order, on any executor.
+ */
+public class ClassifyBatchTest extends TestCase {
+
+  /** Labels the words in a set with a label, and everything else as background. */
+  private static class WordListClassifier extends AbstractSequenceClassifier<CoreLabel> {
+    private final Set<String> words;
+    private final String label;
+
+    WordListClassifier(String label, String... words) {
+      super(new Properties());
+      this.words = new HashSet<>(Arrays.asList(words));
+      this.label = label;
+      classIndex = new HashIndex<>();
+      classIndex.add(flags.backgroundSymbol);
+      classIndex.add(label);
+    }
+
+    @Override
+    public List<CoreLabel> classify(List<CoreLabel> document) {
+      for (CoreLabel token : document) {
+        if ("boom".equals(token.word())) {
+          throw new IllegalStateException("boom");
+        }
+        token.set(CoreAnnotations.AnswerAnnotation.class, words.contains(token.word()) ? label : flags.backgroundSymbol);
+      }
+      return document;
+    }
+
+    @Override
+    public List<CoreLabel> classifyWithGlobalInformation(List<CoreLabel> tokens, CoreMap document, CoreMap sentence) {
+      return classify(tokens);
+    }
+
+    @Override
+    public void train(Collection<List<CoreLabel>> docs, DocumentReaderAndWriter<CoreLabel> readerAndWriter) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void serializeClassifier(String serializePath) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void serializeClassifier(ObjectOutputStream oos) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void loadClassifier(ObjectInputStream in, Properties props) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static final String[] WORDS = { "Joe", "Smith", "drank", "Budweiser", "at", "Monaco", "Brewing", "." };
+
+  private static List<List<CoreLabel>> documents(int n) {
+    Random random = new Random(n);
+    List<List<CoreLabel>> documents = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      List<CoreLabel> document = new ArrayList<>();
+      for (int j = 0, length = 1 + random.nextInt(12); j < length; j++) {
+        CoreLabel token = new CoreLabel();
+        token.setWord(WORDS[random.nextInt(WORDS.length)]);
+        token.setValue(token.word());
+        document.add(token);
+      }
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  private static List<List<String>> answers(List<List<CoreLabel>> documents) {
+    List<List<String>> answers = new ArrayList<>();
+    for (List<CoreLabel> document : documents) {
+      List<String> labels = new ArrayList<>();
+      for (CoreLabel token : document) {
+        labels.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      answers.add(labels);
+    }
+    return answers;
+  }
+
+  private static void checkBatch(AbstractSequenceClassifier<CoreLabel> classifier) {
+    List<List<CoreLabel>> expected = new ArrayList<>();
+    for (List<CoreLabel> document : documents(100)) {
+      expected.add(classifier.classify(document));
+    }
+    assertEquals(answers(expected), answers(classifier.classifyBatch(documents(100))));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(answers(expected), answers(classifier.classifyBatch(documents(100), executor)));
+      assertEquals(Collections.emptyList(), classifier.classifyBatch(Collections.emptyList(), executor));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testClassifyBatch() {
+    checkBatch(new WordListClassifier("PER", "Joe", "Smith"));
+  }
+
+  public void testClassifierCombinerBatch() {
+    checkBatch(new ClassifierCombiner<CoreLabel>(new WordListClassifier("PER", "Joe", "Smith"),
+        new WordListClassifier("ORG", "Monaco", "Brewing", "Smith")));
+  }
+
+  public void testExceptionsArePassedOn() {
+    List<List<CoreLabel>> documents = documents(50);
+    CoreLabel boom = new CoreLabel();
+    boom.setWord("boom");
+    documents.get(37).add(boom);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      new WordListClassifier("PER", "Joe").classifyBatch(documents, executor);
+      fail("Expected an exception");
+    } catch (IllegalStateException e) {
+      assertEquals("boom", e.getMessage());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Chunks classified on other threads are stopped by the caller's deadline. */
+  @SuppressWarnings("try")
+  public void testChunksKeepTheDeadline() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (Deadline.Scope ignored = Deadline.enter(Deadline.after(0))) {
+      new WordListClassifier("PER", "Joe").classifyBatch(documents(50), executor);
+      fail("Expected the deadline to be exceeded");
+    } catch (DeadlineExceededException e) {
+      // expected
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
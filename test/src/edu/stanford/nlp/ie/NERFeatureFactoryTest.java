@@ -0,0 +1,149 @@
+package edu.stanford.nlp.ie;
+
+import java.util.*;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.process.WordShapeClassifier;
+import edu.stanford.nlp.sequences.Clique;
+import edu.stanford.nlp.sequences.FeatureFactory;
+import edu.stanford.nlp.sequences.FeatureHasher;
+import edu.stanford.nlp.sequences.SeqClassifierFlags;
+import edu.stanford.nlp.util.PaddedList;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the hashed features of {@link NERFeatureFactory} are the
+ * hashes of its String features.
+ */
+public class NERFeatureFactoryTest extends TestCase {
+
+  private static final String[][] SENTENCE = {
+      { "John", "NNP", "John" }, { "Smith-Jones", "NNP", "Smith-Jones" }, { "visited", "VBD", "visit" },
+      { "the", "DT", "the" }, { "U.S.", "NNP", "U.S." }, { "in", "IN", "in" }, { "1999", "CD", "1999" },
+      { ",", ",", "," }, { "costing", "VBG", "cost" }, { "$", "$", "$" }, { "3.5m", "CD", "3.5m" }, { ".", ".", "." },
+  };
+
+  private static List<CoreLabel> sentence(SeqClassifierFlags flags, String domain) {
+    List<CoreLabel> sentence = new ArrayList<>();
+    for (String[] token : SENTENCE) {
+      CoreLabel label = new CoreLabel();
+      label.setWord(token[0]);
+      label.setTag(token[1]);
+      label.setLemma(token[2]);
+      label.set(CoreAnnotations.ShapeAnnotation.class, WordShapeClassifier.wordShape(token[0], flags.wordShape));
+      if (domain != null) {
+        label.set(CoreAnnotations.DomainAnnotation.class, domain);
+      }
+      sentence.add(label);
+    }
+    return sentence;
+  }
+
+  private static SeqClassifierFlags flags(String... settings) {
+    Properties props = new Properties();
+    for (int i = 0; i < settings.length; i += 2) {
+      props.setProperty(settings[i], settings[i + 1]);
+    }
+    return new SeqClassifierFlags(props);
+  }
+
+  private static void checkHashes(SeqClassifierFlags flags, String domain) {
+    NERFeatureFactory<CoreLabel> factory = new NERFeatureFactory<>();
+    factory.init(flags);
+    assertTrue(factory.supportsHashedFeatures());
+    CoreLabel pad = new CoreLabel();
+    pad.set(CoreAnnotations.AnswerAnnotation.class, flags.backgroundSymbol);
+    pad.set(CoreAnnotations.GoldAnswerAnnotation.class, flags.backgroundSymbol);
+    PaddedList<CoreLabel> info = new PaddedList<>(sentence(flags, domain), pad);
+
+    FeatureHasher hasher = new FeatureHasher();
+    for (int loc = 0; loc < SENTENCE.length; loc++) {
+      for (Clique clique : FeatureFactory.getCliques(flags.maxLeft, 0)) {
+        Set<Long> expected = new HashSet<>();
+        for (String feature : factory.getCliqueFeatures(info, loc, clique)) {
+          expected.add(FeatureHasher.hash(feature));
+        }
+        hasher.clear();
+        factory.getCliqueFeatures(info, loc, clique, hasher);
+        Set<Long> actual = new HashSet<>();
+        for (int i = 0; i < hasher.size(); i++) {
+          actual.add(hasher.get(i));
+        }
+        assertEquals("Clique " + clique + " at " + loc, expected, actual);
+        assertEquals(actual.size(), hasher.size());
+      }
+    }
+  }
+
+  public void testHashMatchesString() {
+    FeatureHasher hasher = new FeatureHasher();
+    hasher.begin().append("Jo").append("xhn-WORD", 1, 8).append('|').append("C").end();
+    hasher.add("John", "-WORD|C");
+    hasher.add("John", "-WORD", "|C");
+    assertEquals(3, hasher.size());
+    for (int i = 0; i < hasher.size(); i++) {
+      assertEquals(FeatureHasher.hash("John-WORD|C"), hasher.get(i));
+    }
+    assertEquals(FeatureHasher.hash("nullx"), FeatureHasher.extend(FeatureHasher.hash(null), "x"));
+  }
+
+  public void testEnglishNERFeatures() {
+    checkHashes(flags("useClassFeature", "true", "useWord", "true", "useNGrams", "true", "noMidNGrams", "true",
+        "maxNGramLeng", "6", "usePrev", "true", "useNext", "true", "useDisjunctive", "true",
+        "useSequences", "true", "usePrevSequences", "true", "maxLeft", "1", "useTypeSeqs", "true",
+        "useTypeSeqs2", "true", "useTypeySequences", "true", "wordShape", "chris2useLC"), null);
+  }
+
+  public void testTaggyFeatures() {
+    SeqClassifierFlags flags = flags("useWord", "true", "useNGrams", "true", "maxNGramLeng", "4",
+        "usePrev", "true", "useNext", "true", "useTags", "true", "useLC", "true", "use2W", "true",
+        "useLemmas", "true", "usePrevNextLemmas", "true", "useWordPairs", "true", "useTaggySequences", "true",
+        "useSequences", "true", "usePrevSequences", "true", "maxLeft", "2", "wordShape", "dan2useLC",
+        "useTypeSeqs", "true", "useTypeSeqs2", "true", "useTypeSeqs3", "true");
+    checkHashes(flags, null);
+    checkHashes(flags, "news");
+  }
+
+  /** Flags whose features are hashed from their Strings rather than built piece by piece. */
+  public void testOtherFeatures() {
+    SeqClassifierFlags flags = flags("useWord", "true", "useNGrams", "true", "cacheNGrams", "true",
+        "conjoinShapeNGrams", "true", "dehyphenateNGrams", "true", "usePrev", "true", "useNext", "true",
+        "useTags", "true", "useWordTag", "true", "useOrdinal", "true", "useOccurrencePatterns", "true",
+        "useDisjShape", "true", "useNeighborNGrams", "true", "useParenMatching", "true", "useIfInteger", "true",
+        "useSequences", "true", "usePrevSequences", "true", "maxLeft", "3", "wordShape", "chris2useLC");
+    checkHashes(flags, null);
+    checkHashes(flags, "news");
+  }
+
+  /** A factory without hashed features of its own, which falls back to hashing its Strings. */
+  private static class WordFeatureFactory extends FeatureFactory<CoreLabel> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Collection<String> getCliqueFeatures(PaddedList<CoreLabel> info, int position, Clique clique) {
+      return Arrays.asList(info.get(position).word() + "-W", "#" + clique.size());
+    }
+  }
+
+  public void testStringFeaturesHashedByDefault() {
+    SeqClassifierFlags flags = flags("useWord", "true");
+    WordFeatureFactory factory = new WordFeatureFactory();
+    factory.init(flags);
+    assertFalse(factory.supportsHashedFeatures());
+    PaddedList<CoreLabel> info = new PaddedList<>(sentence(flags, null), new CoreLabel());
+    FeatureHasher hasher = new FeatureHasher();
+    factory.getCliqueFeatures(info, 1, FeatureFactory.cliqueCpC, hasher);
+    assertEquals(2, hasher.size());
+    assertEquals(FeatureHasher.hash(SENTENCE[1][0] + "-W"), hasher.get(0));
+    assertEquals(FeatureHasher.hash("#2"), hasher.get(1));
+  }
+
+  public void testLongSequenceFeatures() {
+    checkHashes(flags("useWord", "true", "usePrev", "true", "useNext", "true", "useTags", "true",
+        "useSequences", "true", "usePrevSequences", "true", "useNextSequences", "true", "useLongSequences", "true",
+        "useBoundarySequences", "true", "useTaggySequences", "true", "useTaggySequencesShapeInteraction", "true",
+        "useSymWordPairs", "true", "useShapeStrings", "true", "maxLeft", "4", "wordShape", "chris4"), null);
+  }
+
+}
@@ -0,0 +1,137 @@
+package edu.stanford.nlp.ie.crf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.io.MappedModelFile;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.stats.Counter;
+
+/**
+ * Checks that a CRFClassifier saved as a mapped model and loaded again
+ * labels text just as the same classifier loaded into the heap.
+ */
+public class CRFClassifierMappedTest {
+
+  private static final String[] TRAIN = {
+      "John/PERS Smith/PERS lives/O in/O Paris/LOC ./O",
+      "Mary/PERS visited/O London/LOC on/O Monday/O ./O",
+      "The/O office/O in/O Berlin/LOC hired/O Peter/PERS Jones/PERS ./O",
+      "Paris/LOC and/O London/LOC are/O big/O cities/O ./O",
+      "Smith/PERS flew/O to/O Berlin/LOC with/O Mary/PERS ./O",
+      "Jones/PERS said/O the/O trip/O to/O Paris/LOC was/O long/O ./O",
+  };
+
+  private static final String[] TEST = {
+      "Peter Smith lives in London .",
+      "Mary said Berlin was big .",
+      "The trip to Paris with John Jones .",
+  };
+
+  private static String heapPath;
+  private static String mappedPath;
+
+  private static List<CoreLabel> sentence(String text, boolean withAnswers) {
+    List<CoreLabel> sentence = new ArrayList<>();
+    for (String token : text.split(" ")) {
+      CoreLabel label = new CoreLabel();
+      String word = token;
+      if (withAnswers) {
+        int slash = token.lastIndexOf('/');
+        word = token.substring(0, slash);
+        label.set(CoreAnnotations.AnswerAnnotation.class, token.substring(slash + 1));
+        label.set(CoreAnnotations.GoldAnswerAnnotation.class, token.substring(slash + 1));
+      }
+      label.setWord(word);
+      label.setValue(word);
+      label.setOriginalText(word);
+      sentence.add(label);
+    }
+    return sentence;
+  }
+
+  @BeforeClass
+  public static void trainClassifier() throws IOException {
+    Properties props = new Properties();
+    props.setProperty("useWord", "true");
+    props.setProperty("usePrev", "true");
+    props.setProperty("useNext", "true");
+    props.setProperty("useClassFeature", "true");
+    props.setProperty("useSequences", "true");
+    props.setProperty("usePrevSequences", "true");
+    props.setProperty("maxLeft", "1");
+    props.setProperty("maxNGramLeng", "4");
+    props.setProperty("useNGrams", "true");
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<>(props);
+    List<List<CoreLabel>> docs = new ArrayList<>();
+    for (String text : TRAIN) {
+      docs.add(sentence(text, true));
+    }
+    crf.train(docs);
+
+    File heap = File.createTempFile("crf", ".ser.gz");
+    heap.deleteOnExit();
+    heapPath = heap.getPath();
+    crf.serializeClassifier(heapPath);
+    File mapped = File.createTempFile("crf", ".mapped");
+    mapped.deleteOnExit();
+    mappedPath = mapped.getPath();
+    crf.serializeMappedClassifier(mappedPath);
+  }
+
+  private static List<String> answers(CRFClassifier<CoreLabel> crf, String text) {
+    List<String> answers = new ArrayList<>();
+    for (CoreLabel label : crf.classify(sentence(text, false))) {
+      answers.add(label.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+    return answers;
+  }
+
+  @Test
+  public void testMappedClassifierLabelsLikeHeapClassifier() throws Exception {
+    CRFClassifier<CoreLabel> heap = CRFClassifier.getClassifier(heapPath);
+    CRFClassifier<CoreLabel> mapped = CRFClassifier.getClassifier(mappedPath);
+    assertTrue(MappedModelFile.isMappedModelFile(mappedPath));
+    assertNull(mapped.weights);
+    assertEquals(heap.getNumWeights(), mapped.getNumWeights());
+    for (String text : TEST) {
+      assertEquals(text, answers(heap, text), answers(mapped, text));
+    }
+    // the labels are learned at all, not just all background
+    assertEquals("PERS", answers(heap, TEST[0]).get(1));
+  }
+
+  @Test
+  public void testMappedClassifierWeightAccessors() throws Exception {
+    CRFClassifier<CoreLabel> heap = CRFClassifier.getClassifier(heapPath);
+    CRFClassifier<CoreLabel> mapped = CRFClassifier.getClassifier(mappedPath);
+    Map<String, Counter<String>> heapWeights = heap.topWeights();
+    assertEquals(heapWeights, mapped.topWeights());
+
+    // resetting the potential function must not lose the mapped weights
+    mapped.cliquePotentialFunction = null;
+    for (String text : TEST) {
+      assertEquals(text, answers(heap, text), answers(mapped, text));
+    }
+
+    // changing the weights copies them into the heap first
+    heap.scaleWeights(2.0);
+    mapped.scaleWeights(2.0);
+    assertNotNull(mapped.weights);
+    assertEquals(heap.topWeights(), mapped.topWeights());
+    for (String text : TEST) {
+      assertEquals(text, answers(heap, text), answers(mapped, text));
+    }
+  }
+
+}
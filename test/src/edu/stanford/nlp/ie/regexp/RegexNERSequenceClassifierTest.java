@@ -207,4 +207,88 @@ public class RegexNERSequenceClassifierTest extends TestCase {
     }
   }
 
+  /** Overlapping literal entries of different priorities, and a real regex among them. */
+  static final String[] literalPatterns = {
+      "New York City\tCITY\tLOCATION\t2",
+      "New York\tSTATE\tLOCATION\t1",
+      "York City\tOTHER\tLOCATION\t3",
+      "city\tTHING",
+      "Bank of America\tORG\t\t1",
+      "America\tCOUNTRY\t\t1.5",
+      "[A-Z]\\w+ Bank\tBANK\t\t0.5",
+      "Park\tPARK",
+  };
+
+  static final String[] literalWords = {
+      "He moved to New York City and works at Bank of America in York City .",
+      "new york city has a Chase Bank near the Park and the city park .",
+      "Shoreline Park and Bank of America and America",
+  };
+
+  /**
+   * Writes each literal word of the patterns as an equivalent regex, (?:word), so
+   * that the entries are matched by trying every token position as before
+   * the literal entries were looked up in a trie.
+   */
+  private static String asRegexes(String[] patterns) {
+    StringBuilder sb = new StringBuilder();
+    for (String line : patterns) {
+      String[] fields = line.split("\t", 2);
+      StringBuilder regex = new StringBuilder();
+      for (String word : fields[0].split(" ")) {
+        if (regex.length() > 0) {
+          regex.append(' ');
+        }
+        regex.append(word.matches("\\w+") ? "(?:" + word + ')' : word);
+      }
+      sb.append(regex).append('\t').append(fields[1]).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private static List<CoreLabel> literalSentence(String words) {
+    List<CoreLabel> sentence = new ArrayList<>();
+    for (String word : words.split(" ")) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setNER(word.equals("York") || word.equals("City") ? "LOCATION" : "O");
+      sentence.add(token);
+    }
+    return sentence;
+  }
+
+  private static List<String> answers(RegexNERSequenceClassifier classifier, String words) {
+    List<CoreLabel> sentence = literalSentence(words);
+    classifier.classify(sentence);
+    List<String> answers = new ArrayList<>();
+    for (CoreLabel token : sentence) {
+      answers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+    return answers;
+  }
+
+  /** Literal entries looked up in the trie label words the same as the equivalent regexes. */
+  public void testLiteralEntriesMatchRegexes() {
+    String literal = StringUtils.join(Arrays.asList(literalPatterns), "\n") + '\n';
+    String regexes = asRegexes(literalPatterns);
+    assertFalse(literal.equals(regexes));
+    for (boolean ignoreCase : new boolean[] { false, true }) {
+      RegexNERSequenceClassifier trie =
+          new RegexNERSequenceClassifier(new BufferedReader(new StringReader(literal)), ignoreCase, false, null);
+      RegexNERSequenceClassifier scan =
+          new RegexNERSequenceClassifier(new BufferedReader(new StringReader(regexes)), ignoreCase, false, null);
+      for (String words : literalWords) {
+        assertEquals(words + " ignoreCase=" + ignoreCase, answers(scan, words), answers(trie, words));
+      }
+    }
+
+    // the higher priority entry wins the overlap
+    RegexNERSequenceClassifier cased =
+        new RegexNERSequenceClassifier(new BufferedReader(new StringReader(literal)), false, false, null);
+    List<String> answers = answers(cased, literalWords[0]);
+    assertEquals(Arrays.asList(null, "OTHER", "OTHER"), answers.subList(3, 6));
+    assertEquals(Arrays.asList("COUNTRY"), answers.subList(11, 12));
+    assertEquals(Arrays.asList("OTHER", "OTHER"), answers.subList(13, 15));
+  }
+
 }
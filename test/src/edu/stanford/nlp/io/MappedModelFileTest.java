@@ -0,0 +1,96 @@
+package edu.stanford.nlp.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MappedModelFileTest {
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("model", ".mapped");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException, ClassNotFoundException {
+    double[][] weights = { { 1.5, -2.0 }, { }, { 3.0, 4.0, 5.0 } };
+    File file = tempFile();
+    new MappedModelFile.Writer()
+        .putBytes("odd", new byte[] { 1, 2, 3 })  // the sections after this one must still be aligned
+        .putDoubles("doubles", new double[] { 0.25, Double.NEGATIVE_INFINITY })
+        .putInts("ints", new int[] { 7, -8, 9 })
+        .putObject("object", Arrays.asList("a", "b"))
+        .putRows("weights", weights)
+        .write(file.getPath());
+    assertTrue(MappedModelFile.isMappedModelFile(file.getPath()));
+
+    MappedModelFile mapped = new MappedModelFile(file.getPath());
+    assertEquals(Arrays.asList("odd", "doubles", "ints", "object", "weights.offsets", "weights"),
+        Arrays.asList(mapped.sectionNames().toArray()));
+    assertEquals(3, mapped.bytes("odd").remaining());
+    DoubleBuffer doubles = mapped.doubles("doubles");
+    assertEquals(2, doubles.limit());
+    assertEquals(Double.NEGATIVE_INFINITY, doubles.get(1), 0.0);
+    IntBuffer ints = mapped.ints("ints");
+    assertEquals(-8, ints.get(1));
+    assertEquals(Arrays.asList("a", "b"), mapped.readObject("object"));
+
+    MappedModelFile.DoubleRows rows = mapped.rows("weights");
+    assertEquals(3, rows.numRows());
+    assertEquals(0, rows.rowLength(1));
+    assertEquals(4.0, rows.get(2, 1), 0.0);
+    assertArrayEquals(weights[0], rows.row(0), 0.0);
+
+    try {
+      mapped.ints("doubles");
+      fail("Expected an exception for a section of the wrong type");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOpenSharesMappings() throws IOException {
+    File file = tempFile();
+    new MappedModelFile.Writer().putInts("ints", new int[] { 1 }).write(file.getPath());
+    assertSame(MappedModelFile.open(file.getPath()), MappedModelFile.open(file.getAbsolutePath()));
+  }
+
+  @Test
+  public void testOpenRemapsChangedFiles() throws IOException {
+    File file = tempFile();
+    new MappedModelFile.Writer().putInts("ints", new int[] { 1 }).write(file.getPath());
+    MappedModelFile first = MappedModelFile.open(file.getPath());
+    new MappedModelFile.Writer().putInts("ints", new int[] { 2, 3 }).write(file.getPath());
+    MappedModelFile second = MappedModelFile.open(file.getPath());
+    assertNotSame(first, second);
+    assertEquals(2, second.ints("ints").limit());
+  }
+
+  @Test
+  public void testRelease() throws IOException {
+    File file = tempFile();
+    new MappedModelFile.Writer().putInts("ints", new int[] { 1 }).write(file.getPath());
+    MappedModelFile first = MappedModelFile.open(file.getPath());
+    assertTrue(MappedModelFile.release(file.getPath()));
+    assertFalse(MappedModelFile.release(file.getPath()));
+    assertNotSame(first, MappedModelFile.open(file.getPath()));
+  }
+
+  @Test
+  public void testRejectsOtherFiles() throws IOException {
+    File file = tempFile();
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+      out.writeObject(new double[] { 1.0, 2.0 });
+    }
+    assertFalse(MappedModelFile.isMappedModelFile(file.getPath()));
+    assertFalse(MappedModelFile.isMappedModelFile(file.getPath() + ".missing"));
+  }
+
+}
@@ -0,0 +1,139 @@
+package edu.stanford.nlp.ling;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that columnar CoreLabels behave like ordinary CoreLabels.
+ */
+public class CoreLabelColumnsTest extends TestCase {
+
+  private static List<CoreLabel> tokens() {
+    List<CoreLabel> tokens = new ArrayList<>();
+    String[] words = {"Stanford", "is", "in", "California", "."};
+    int offset = 0;
+    for (int i = 0; i < words.length; i++) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(words[i]);
+      token.setValue(words[i]);
+      token.setBeginPosition(offset);
+      token.setEndPosition(offset + words[i].length());
+      token.setIndex(i + 1);
+      offset += words[i].length() + 1;
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  public void testCompactPreservesContents() {
+    List<CoreLabel> plain = tokens();
+    List<CoreLabel> columnar = CoreLabelColumns.compact(plain);
+    assertEquals(plain.size(), columnar.size());
+    for (int i = 0; i < plain.size(); i++) {
+      CoreLabel expected = plain.get(i);
+      CoreLabel actual = columnar.get(i);
+      assertTrue(actual instanceof ColumnarCoreLabel);
+      assertEquals(expected.keySet(), actual.keySet());
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.word(), actual.word());
+      assertEquals(expected.beginPosition(), actual.beginPosition());
+      assertEquals(expected.endPosition(), actual.endPosition());
+      assertEquals(expected.index(), actual.index());
+      assertEquals(expected.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class),
+                   actual.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+      assertEquals(expected, actual);
+      assertEquals(actual, expected);
+      assertEquals(expected.hashCode(), actual.hashCode());
+      assertEquals(expected.toShorterString(), actual.toShorterString());
+      assertEquals(expected.toString(CoreLabel.OutputFormat.ALL), actual.toString(CoreLabel.OutputFormat.ALL));
+    }
+  }
+
+  public void testEqualityAndPrintingOverColumns() {
+    List<CoreLabel> plain = tokens();
+    plain.get(0).setTag("NNP");
+    plain.get(0).setNER("ORGANIZATION");
+    plain.get(1).set(CoreAnnotations.PartOfSpeechAnnotation.class, null);
+    plain.get(3).setBeginPosition(1000);
+    List<CoreLabel> columnar = CoreLabelColumns.compact(plain);
+    List<CoreLabel> copy = CoreLabelColumns.compact(plain);
+    for (int i = 0; i < plain.size(); i++) {
+      CoreLabel expected = plain.get(i);
+      CoreLabel actual = columnar.get(i);
+      assertEquals(expected, actual);
+      assertEquals(actual, expected);
+      assertEquals(copy.get(i), actual);
+      assertEquals(expected.hashCode(), actual.hashCode());
+      assertEquals(expected.toShorterString(), actual.toShorterString());
+      assertEquals(expected.toShorterString("Text", "PartOfSpeech"), actual.toShorterString("Text", "PartOfSpeech"));
+      assertEquals(expected.toShortString(), actual.toShortString());
+      assertEquals(expected.toShortString('|', "CharacterOffsetBegin", "Text"), actual.toShortString('|', "CharacterOffsetBegin", "Text"));
+    }
+    assertFalse(columnar.get(0).equals(columnar.get(1)));
+    assertFalse(columnar.get(1).equals(plain.get(0)));
+
+    // differing in a column or in the other keys
+    copy.get(3).setBeginPosition(1001);
+    assertFalse(copy.get(3).equals(columnar.get(3)));
+    assertFalse(plain.get(3).equals(copy.get(3)));
+    copy.get(4).setWord("!");
+    assertFalse(copy.get(4).equals(columnar.get(4)));
+    assertFalse(plain.get(4).equals(copy.get(4)));
+    // a null value is not the same as no value
+    copy.get(2).setTag(null);
+    assertFalse(copy.get(2).equals(columnar.get(2)));
+    assertFalse(plain.get(2).equals(copy.get(2)));
+    assertEquals(plain.get(2).hashCode(), copy.get(2).hashCode());
+  }
+
+  public void testSetAndRemove() {
+    CoreLabel token = CoreLabelColumns.compact(tokens()).get(3);
+    assertNull(token.tag());
+    assertFalse(token.containsKey(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals(-1, token.sentIndex());
+
+    token.setTag("NNP");
+    token.set(CoreAnnotations.NamedEntityTagAnnotation.class, "LOCATION");
+    token.setSentIndex(0);
+    assertEquals("NNP", token.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals("LOCATION", token.ner());
+    assertEquals(Integer.valueOf(0), token.get(CoreAnnotations.SentenceIndexAnnotation.class));
+    assertTrue(token.keySet().contains(CoreAnnotations.PartOfSpeechAnnotation.class));
+
+    assertEquals("NNP", token.set(CoreAnnotations.PartOfSpeechAnnotation.class, null));
+    assertTrue(token.containsKey(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertNull(token.tag());
+    assertFalse(token.keySetNotNull().contains(CoreAnnotations.PartOfSpeechAnnotation.class));
+
+    assertEquals("LOCATION", token.remove(CoreAnnotations.NamedEntityTagAnnotation.class));
+    assertFalse(token.containsKey(CoreAnnotations.NamedEntityTagAnnotation.class));
+    assertNull(token.ner());
+  }
+
+  public void testTagsAreInterned() {
+    List<CoreLabel> columnar = CoreLabelColumns.compact(tokens());
+    columnar.get(0).setTag("NNP");
+    columnar.get(3).setTag(new String("NNP"));
+    columnar.get(1).setTag("VBZ");
+    CoreLabelColumns columns = ((ColumnarCoreLabel) columnar.get(0)).columns();
+    assertEquals(columns.tagId(0), columns.tagId(3));
+    assertTrue(columns.tagId(0) != columns.tagId(1));
+    assertEquals(-1, columns.tagId(2));
+    assertEquals("VBZ", columns.string(columns.tagId(1)));
+  }
+
+  public void testSerializesAsCoreLabel() throws IOException, ClassNotFoundException {
+    CoreLabel token = CoreLabelColumns.compact(tokens()).get(0);
+    token.setTag("NNP");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(token);
+    out.close();
+    Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(CoreLabel.class, read.getClass());
+    assertEquals(token, read);
+  }
+
+}
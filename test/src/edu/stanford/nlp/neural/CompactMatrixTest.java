@@ -0,0 +1,114 @@
+package edu.stanford.nlp.neural;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+public class CompactMatrixTest {
+
+  private static double[][] randomMatrix(int rows, int cols, Random random) {
+    double[][] matrix = new double[rows][cols];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        matrix[i][j] = random.nextGaussian();
+      }
+    }
+    return matrix;
+  }
+
+  private static void checkPrecision(CompactMatrix.Precision precision, double tolerance) {
+    Random random = new Random(1234);
+    double[][] matrix = randomMatrix(7, 13, random);
+    matrix[3] = new double[13];  // an all-zero row must survive int8 scaling
+    CompactMatrix compact = CompactMatrix.of(matrix, precision);
+    assertEquals(precision, compact.precision());
+    assertEquals(7, compact.numRows());
+    assertEquals(13, compact.numCols());
+    assertTrue(compact.maxAbsError(matrix) <= tolerance);
+    assertEquals(0.0, compact.get(3, 5), 0.0);
+
+    double[] x = new double[13];
+    for (int j = 0; j < x.length; j++) {
+      x[j] = random.nextGaussian();
+    }
+    SimpleMatrix product = compact.mult(new SimpleMatrix(13, 1, true, x));
+    SimpleMatrix expected = new SimpleMatrix(matrix).mult(new SimpleMatrix(13, 1, true, x));
+    for (int i = 0; i < 7; i++) {
+      assertEquals(expected.get(i), product.get(i), tolerance * 13 * 4);
+      assertEquals(compact.dotRow(i, 0, x, 13), product.get(i), 1e-12);
+    }
+
+    // partial rows and accumulation
+    double[] row = new double[13];
+    compact.addRowTo(2, row);
+    compact.addRowTo(2, row);
+    assertEquals(2 * compact.get(2, 4), row[4], 1e-12);
+    assertEquals(compact.get(2, 5) * x[0] + compact.get(2, 6) * x[1], compact.dotRow(2, 5, x, 2), 1e-12);
+
+    // the float arithmetic agrees with the double arithmetic to float precision
+    float[] xf = new float[13];
+    for (int j = 0; j < xf.length; j++) {
+      xf[j] = (float) x[j];
+    }
+    float[] rowf = new float[13];
+    compact.addRowTo(2, rowf);
+    compact.addRowTo(2, rowf);
+    compact.copyRow(6, row);
+    float[] copyf = new float[13];
+    compact.copyRow(6, copyf);
+    for (int j = 0; j < 13; j++) {
+      assertEquals(2 * compact.get(2, j), rowf[j], 1e-5);
+      assertEquals(row[j], copyf[j], 1e-6);
+    }
+    for (int i = 0; i < 7; i++) {
+      assertEquals(compact.dotRow(i, 0, x, 13), compact.dotRow(i, 0, xf, 13), 1e-4);
+    }
+    assertEquals(compact.dotRow(2, 5, x, 2), compact.dotRow(2, 5, xf, 2), 1e-5);
+  }
+
+  @Test
+  public void testFloat() {
+    checkPrecision(CompactMatrix.Precision.FLOAT, 1e-6);
+  }
+
+  @Test
+  public void testInt8() {
+    // values are Gaussian, so the largest in a row is at most about 4 and the step is about 4/127
+    checkPrecision(CompactMatrix.Precision.INT8, 0.02);
+  }
+
+  @Test
+  public void testPrecisionNames() {
+    assertEquals(CompactMatrix.Precision.FLOAT, CompactMatrix.Precision.fromString("float"));
+    assertEquals(CompactMatrix.Precision.INT8, CompactMatrix.Precision.fromString(" Int8 "));
+    try {
+      CompactMatrix.Precision.fromString("half");
+      fail("Expected an exception for an unknown precision");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompactEmbedding() {
+    Map<String, SimpleMatrix> vectors = new HashMap<>();
+    vectors.put(Embedding.UNKNOWN_WORD, new SimpleMatrix(3, 1, true, 0.5, -0.5, 0.25));
+    vectors.put("cat", new SimpleMatrix(3, 1, true, 1.0, 2.0, 3.0));
+    Embedding embedding = new Embedding(vectors);
+    embedding.compact(CompactMatrix.Precision.FLOAT);
+    assertEquals(2, embedding.size());
+    assertTrue(embedding.containsWord("cat"));
+    assertFalse(embedding.containsWord("dog"));
+    assertEquals(3, embedding.getEmbeddingSize());
+    assertEquals(2.0, embedding.get("cat").get(1), 0.0);
+    assertEquals(-0.5, embedding.get("dog").get(1), 0.0);
+    assertEquals(0.25, embedding.getUnknownWordVector().get(2), 0.0);
+    assertEquals(2, embedding.getWordVectors().size());
+  }
+
+}
@@ -0,0 +1,100 @@
+package edu.stanford.nlp.neural;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+public class MappedEmbeddingStoreTest {
+
+  private static Embedding randomEmbedding(int numWords, int dimension) {
+    Random random = new Random(1234);
+    Map<String, SimpleMatrix> vectors = new HashMap<>();
+    vectors.put(Embedding.UNKNOWN_WORD, SimpleMatrix.random(dimension, 1, -1, 1, random));
+    for (int i = 0; i < numWords; i++) {
+      // include non-ASCII words and words which are prefixes of each other
+      vectors.put("w" + i + (i % 7 == 0 ? "é" : ""), SimpleMatrix.random(dimension, 1, -1, 1, random));
+    }
+    return new Embedding(vectors);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException, ClassNotFoundException {
+    Embedding original = randomEmbedding(500, 8);
+    File file = File.createTempFile("embedding", ".emb");
+    file.deleteOnExit();
+    MappedEmbeddingStore.write(original, file.getPath());
+    assertTrue(MappedEmbeddingStore.isMappedEmbeddingFile(file.getPath()));
+
+    MappedEmbeddingStore store = new MappedEmbeddingStore(file.getPath());
+    assertEquals(original.size(), store.size());
+    assertEquals(8, store.dimension());
+    assertEquals(-1, store.rowOf("not a word"));
+    int row = store.rowOf("w14é");
+    assertTrue(row >= 0);
+    assertEquals("w14é", store.word(row));
+    FloatBuffer view = store.row(row);
+    assertEquals(8, view.remaining());
+    assertEquals((float) original.get("w14é").get(3), view.get(view.position() + 3), 0.0f);
+
+    CompactMatrix vectors = store.vectors();
+    float[] copy = new float[8];
+    vectors.copyRow(row, copy);
+    float[] sum = new float[8];
+    vectors.addRowTo(row, sum);
+    vectors.addRowTo(row, sum);
+    float[] ones = new float[8];
+    Arrays.fill(ones, 1.0f);
+    float total = 0.0f;
+    for (int k = 0; k < 8; k++) {
+      assertEquals(vectors.get(row, k), copy[k], 0.0);
+      assertEquals(2 * copy[k], sum[k], 0.0f);
+      total += k >= 2 ? copy[k] : 0.0f;
+    }
+    assertEquals(total, vectors.dotRow(row, 2, ones, 6), 1e-6f);
+
+    Embedding mapped = new Embedding(file.getPath(), 0);
+    assertEquals(original.size(), mapped.size());
+    assertEquals(original.keySet(), mapped.keySet());
+    assertFalse(mapped.containsWord("w1é"));
+    for (String word : original.keySet()) {
+      assertTrue(mapped.containsWord(word));
+      SimpleMatrix expected = original.get(word);
+      SimpleMatrix actual = mapped.get(word);
+      for (int k = 0; k < 8; k++) {
+        assertEquals((float) expected.get(k), actual.get(k), 0.0);
+      }
+    }
+    assertEquals((float) original.getUnknownWordVector().get(0), mapped.get("missing").get(0), 0.0);
+
+    // Serializing a mapped embedding writes the path, not the vectors
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(mapped);
+    }
+    assertTrue(bytes.size() < file.length());
+    Embedding read = (Embedding) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(mapped.get("w3").get(2), read.get("w3").get(2), 0.0);
+  }
+
+  @Test
+  public void testRejectsOtherFiles() throws IOException {
+    File file = File.createTempFile("embedding", ".txt");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(file, "utf-8")) {
+      out.println("*UNK* 0.1 0.2");
+      out.println("cat 0.3 0.4");
+    }
+    assertFalse(MappedEmbeddingStore.isMappedEmbeddingFile(file.getPath()));
+    Embedding text = new Embedding(file.getPath(), 0);
+    assertEquals(0.4, text.get("cat").get(1), 1e-12);
+  }
+
+}
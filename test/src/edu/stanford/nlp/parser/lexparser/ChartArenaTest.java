@@ -0,0 +1,89 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ChartArena}.
+ */
+public class ChartArenaTest extends TestCase {
+
+  private long maxBytes;
+
+  @Override
+  public void setUp() {
+    maxBytes = ChartArena.getMaxBytes();
+    ChartArena.current().trim();
+  }
+
+  @Override
+  public void tearDown() {
+    ChartArena.setMaxBytes(maxBytes);
+    ChartArena.current().trim();
+  }
+
+  public void testTakeAndGive() {
+    ChartArena arena = ChartArena.current();
+    assertNull(arena.take("a", 10));
+    float[] chart = new float[100];
+    arena.give("a", chart, 10, 400);
+    assertEquals(400, arena.bytes());
+    assertNull(arena.take("b", 10));
+    assertSame(chart, arena.take("a", 8));
+    assertEquals(0, arena.bytes());
+    // taken arrays are gone
+    assertNull(arena.take("a", 8));
+  }
+
+  public void testKeepsLargest() {
+    ChartArena arena = ChartArena.current();
+    float[] small = new float[10];
+    float[] big = new float[100];
+    arena.give("a", big, 10, 400);
+    arena.give("a", small, 3, 40);
+    assertEquals(400, arena.bytes());
+    assertSame(big, arena.take("a", 3));
+
+    arena.give("a", small, 3, 40);
+    arena.give("a", big, 10, 400);
+    assertEquals(400, arena.bytes());
+    // arrays too small for the caller are dropped
+    assertNull(arena.take("a", 20));
+    assertEquals(0, arena.bytes());
+  }
+
+  public void testLimit() {
+    ChartArena.setMaxBytes(1000);
+    ChartArena arena = ChartArena.current();
+    arena.give("huge", new float[1000], 10, 4000);
+    assertEquals(0, arena.bytes());
+    arena.give("a", new float[150], 10, 600);
+    arena.give("b", new float[50], 10, 200);
+    arena.give("c", new float[100], 10, 400);
+    // the biggest chart made room
+    assertNull(arena.take("a", 10));
+    assertNotNull(arena.take("b", 10));
+    assertNotNull(arena.take("c", 10));
+
+    ChartArena.setMaxBytes(0);
+    arena.give("a", new float[1], 1, 4);
+    assertNull(arena.take("a", 1));
+  }
+
+  public void testTrimAll() throws InterruptedException {
+    ChartArena[] other = new ChartArena[1];
+    Thread thread = new Thread(() -> {
+      other[0] = ChartArena.current();
+      other[0].give("a", new float[10], 10, 40);
+    });
+    thread.start();
+    thread.join();
+    assertNotSame(ChartArena.current(), other[0]);
+    ChartArena.current().give("a", new float[10], 10, 40);
+    assertEquals(40, other[0].bytes());
+
+    ChartArena.trimAll();
+    assertEquals(0, other[0].bytes());
+    assertEquals(0, ChartArena.current().bytes());
+  }
+
+}
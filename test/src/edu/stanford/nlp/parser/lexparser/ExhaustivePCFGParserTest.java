@@ -0,0 +1,184 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.MemoryTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import junit.framework.TestCase;
+
+/**
+ * Tests the flattened chart of {@link ExhaustivePCFGParser} and its
+ * {@link ChartPruner}s, with a PCFG trained on a handful of trees.
+ */
+public class ExhaustivePCFGParserTest extends TestCase {
+
+  private static final String[] TREES = {
+    "(ROOT (S (NP (DT The) (NN cat)) (VP (VBD sat) (PP (IN on) (NP (DT the) (NN mat)))) (. .)))",
+    "(ROOT (S (NP (DT The) (NN dog)) (VP (VBD ate) (NP (DT the) (NN bone))) (. .)))",
+    "(ROOT (S (NP (NNP John)) (VP (VBD saw) (NP (DT a) (NN man)) (PP (IN with) (NP (DT a) (NN telescope)))) (. .)))",
+    "(ROOT (S (NP (PRP She)) (VP (VBZ likes) (NP (NP (DT the) (NN book)) (PP (IN on) (NP (DT the) (NN table))))) (. .)))",
+  };
+
+  private static LexicalizedParser parser;
+
+  /** Skips every span, so every parse is pruned away. */
+  private static class SkipEverything implements ChartPruner {
+    int sentences = 0;
+    int spans = 0;
+
+    @Override
+    public void initialize(List<? extends HasWord> sentence, int length) {
+      sentences++;
+    }
+
+    @Override
+    public boolean keepSpan(int start, int end) {
+      spans++;
+      return false;
+    }
+  }
+
+  @Override
+  public void setUp() {
+    synchronized (ExhaustivePCFGParserTest.class) {
+      if (parser == null) {
+        Options op = new Options();
+        op.doDep = false;
+        MemoryTreebank treebank = new MemoryTreebank();
+        for (String tree : TREES) {
+          treebank.add(Tree.valueOf(tree));
+        }
+        parser = LexicalizedParser.trainFromTreebank(treebank, op);
+      }
+    }
+  }
+
+  private static List<Word> words(String sentence) {
+    List<Word> words = new ArrayList<>();
+    for (String word : sentence.split(" ")) {
+      words.add(new Word(word));
+    }
+    return words;
+  }
+
+  private static ExhaustivePCFGParser pcfgParser() {
+    return new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, parser.getOp(), parser.stateIndex, parser.wordIndex, parser.tagIndex);
+  }
+
+  public void testCellLayout() {
+    ExhaustivePCFGParser pcfg = pcfgParser();
+    int numStates = pcfg.numStates;
+    int expected = 0;
+    for (int end = 1; end <= 10; end++) {
+      for (int start = 0; start < end; start++) {
+        assertEquals(expected, pcfg.cell(start, end));
+        expected += numStates;
+      }
+      assertEquals(expected, pcfg.cell(0, end + 1));
+    }
+  }
+
+  public void testParse() {
+    ExhaustivePCFGParser pcfg = pcfgParser();
+    assertTrue(pcfg.parse(words("The cat sat on the mat .")));
+    assertEquals(Tree.valueOf(TREES[0]), parser.parse(words("The cat sat on the mat .")));
+    // a shorter sentence reuses the chart
+    assertTrue(pcfg.parse(words("The dog ate the bone .")));
+    assertTrue(pcfg.getBestScore() > Double.NEGATIVE_INFINITY);
+  }
+
+  /** States which no rule or tag uses get no room in the chart. */
+  public void testChartLeavesOutUnusedStates() {
+    ExhaustivePCFGParser full = pcfgParser();
+    assertEquals(parser.stateIndex.size(), full.numStates);
+    assertTrue(full.parse(words("The cat sat on the mat .")));
+    Index<String> stateIndex = new HashIndex<>(parser.stateIndex.objectsList());
+    stateIndex.addToIndex("UNUSED");
+    ExhaustivePCFGParser pcfg = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, parser.getOp(), stateIndex, parser.wordIndex, parser.tagIndex);
+    assertEquals(parser.stateIndex.size(), pcfg.numStates);
+    assertTrue(pcfg.parse(words("The cat sat on the mat .")));
+    assertEquals(Double.NEGATIVE_INFINITY, pcfg.getBestScore("UNUSED"));
+    assertEquals(full.getBestScore(), pcfg.getBestScore(), 0.0);
+    assertEquals(full.getBestParse(), pcfg.getBestParse());
+  }
+
+  public void testBeamKeepsBestParse() {
+    ExhaustivePCFGParser pcfg = pcfgParser();
+    String sentence = "John saw a man with a telescope .";
+    assertTrue(pcfg.parse(words(sentence)));
+    double score = pcfg.getBestScore();
+    Tree tree = pcfg.getBestParse();
+
+    pcfg.setChartPruner(new BeamChartPruner(100.0f));
+    assertTrue(pcfg.parse(words(sentence)));
+    assertEquals(score, pcfg.getBestScore(), 1e-4);
+    assertEquals(tree, pcfg.getBestParse());
+  }
+
+  public void testFallBackWhenEverythingPruned() {
+    ExhaustivePCFGParser pcfg = pcfgParser();
+    String sentence = "She likes the book on the table .";
+    assertTrue(pcfg.parse(words(sentence)));
+    double score = pcfg.getBestScore();
+
+    SkipEverything pruner = new SkipEverything();
+    pcfg.setChartPruner(pruner);
+    assertTrue(pcfg.parse(words(sentence)));
+    assertEquals(1, pruner.sentences);
+    assertEquals(score, pcfg.getBestScore(), 1e-4);
+  }
+
+  public void testIterativeCKYUsesPruner() {
+    ExhaustivePCFGParser pcfg = new IterativeCKYPCFGParser(parser.bg, parser.ug, parser.lex, parser.getOp(), parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    String sentence = "John saw a man with a telescope .";
+    assertTrue(pcfg.parse(words(sentence)));
+    double score = pcfg.getBestScore();
+    Tree tree = pcfg.getBestParse();
+
+    pcfg.setChartPruner(new BeamChartPruner(100.0f));
+    assertTrue(pcfg.parse(words(sentence)));
+    assertEquals(score, pcfg.getBestScore(), 1e-4);
+    assertEquals(tree, pcfg.getBestParse());
+
+    SkipEverything pruner = new SkipEverything();
+    pcfg.setChartPruner(pruner);
+    assertTrue(pcfg.parse(words(sentence)));
+    assertTrue(pruner.spans > 0);
+    assertEquals(1, pruner.sentences);
+    assertEquals(score, pcfg.getBestScore(), 1e-4);
+  }
+
+  public void testReleasedArraysAreReused() {
+    ChartArena.current().trim();
+    ExhaustivePCFGParser first = pcfgParser();
+    assertTrue(first.parse(words("John saw a man with a telescope .")));
+    double score = first.getBestScore();
+    float[] chart = first.iScore;
+    first.releaseArrays();
+    assertTrue(ChartArena.current().bytes() > 0);
+    assertFalse(first.hasParse());
+
+    ExhaustivePCFGParser second = pcfgParser();
+    assertTrue(second.parse(words("The cat sat on the mat .")));
+    assertSame(chart, second.iScore);
+    assertEquals(Tree.valueOf(TREES[0]), parser.parse(words("The cat sat on the mat .")));
+    // the released parser can still parse, with new arrays
+    assertTrue(first.parse(words("John saw a man with a telescope .")));
+    assertEquals(score, first.getBestScore(), 1e-4);
+    ChartArena.current().trim();
+  }
+
+  public void testOptions() {
+    Options op = new Options();
+    op.setOptions("-cellBeam", "8");
+    assertEquals(8.0f, op.testOptions.cellBeam);
+    ExhaustivePCFGParser pcfg = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    assertTrue(pcfg.getChartPruner() instanceof BeamChartPruner);
+  }
+
+}
@@ -0,0 +1,119 @@
+package edu.stanford.nlp.parser.nndep;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.trees.GrammaticalStructure;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Trains a very small model on a few sentences, and checks that the
+ * different ways of running it agree.
+ */
+public class DependencyParserTest {
+
+  /** Sentences as word/tag/head/label tokens */
+  private static final String[] TRAIN = {
+      "The/DT/2/det dog/NN/3/nsubj barks/VBZ/0/root ./././3/punct",
+      "A/DT/2/det cat/NN/3/nsubj sees/VBZ/0/root the/DT/5/det dog/NN/3/dobj ./././3/punct",
+      "The/DT/2/det man/NN/3/nsubj eats/VBZ/0/root red/JJ/5/amod apples/NNS/3/dobj ./././3/punct",
+      "Dogs/NNS/2/nsubj like/VBP/0/root big/JJ/4/amod bones/NNS/2/dobj ./././2/punct",
+      "She/PRP/2/nsubj reads/VBZ/0/root a/DT/5/det long/JJ/5/amod book/NN/2/dobj in/IN/8/case the/DT/8/det park/NN/2/nmod ./././2/punct",
+      "The/DT/3/det old/JJ/3/amod man/NN/4/nsubj walks/VBZ/0/root to/IN/7/case the/DT/7/det store/NN/4/nmod ./././4/punct",
+      "Birds/NNS/2/nsubj sing/VBP/0/root ./././2/punct",
+      "He/PRP/2/nsubj gave/VBD/0/root the/DT/4/det dog/NN/2/iobj a/DT/6/det bone/NN/2/dobj ./././2/punct",
+      "The/DT/2/det cat/NN/3/nsubj sleeps/VBZ/0/root on/IN/6/case the/DT/6/det mat/NN/3/nmod ./././3/punct",
+      "A/DT/3/det small/JJ/3/amod bird/NN/4/nsubj eats/VBZ/0/root seeds/NNS/4/dobj ./././4/punct",
+  };
+
+  private static String modelFile;
+  private static List<CoreMap> sentences;
+
+  private static void writeConll(String[] sentences, File file) throws IOException {
+    try (PrintWriter out = new PrintWriter(file, "utf-8")) {
+      for (String sentence : sentences) {
+        String[] tokens = sentence.split(" ");
+        for (int i = 0; i < tokens.length; i++) {
+          String[] fields = tokens[i].split("/");
+          String tag = fields.length == 4 ? fields[1] : ".";
+          String head = fields[fields.length - 2];
+          String label = fields[fields.length - 1];
+          out.println((i + 1) + "\t" + fields[0] + "\t_\t" + tag + "\t" + tag + "\t_\t" + head + "\t" + label + "\t_\t_");
+        }
+        out.println();
+      }
+    }
+  }
+
+  private static Properties properties() {
+    Properties props = new Properties();
+    props.setProperty("embeddingSize", "10");
+    props.setProperty("hiddenSize", "16");
+    props.setProperty("maxIter", "40");
+    props.setProperty("batchSize", "100");
+    props.setProperty("trainingThreads", "1");
+    props.setProperty("wordCutOff", "1");
+    props.setProperty("numPreComputed", "200");
+    return props;
+  }
+
+  @BeforeClass
+  public static void train() throws IOException {
+    File trainFile = File.createTempFile("nndep", ".conll");
+    trainFile.deleteOnExit();
+    writeConll(TRAIN, trainFile);
+    File model = File.createTempFile("nndep", ".txt.gz");
+    model.deleteOnExit();
+    modelFile = model.getPath();
+    new DependencyParser(properties()).train(trainFile.getPath(), modelFile);
+
+    sentences = new ArrayList<>();
+    Util.loadConllFile(trainFile.getPath(), sentences, new ArrayList<>());
+  }
+
+  private static DependencyParser load(String precision) {
+    Properties props = properties();
+    props.setProperty("inferencePrecision", precision);
+    return DependencyParser.loadFromModelFile(modelFile, props);
+  }
+
+  /** Parsing the sentences together gives the same parses as parsing them one at a time. */
+  @Test
+  public void testBatchedMatchesSingle() {
+    for (String precision : new String[] { "double", "float", "int8" }) {
+      DependencyParser parser = load(precision);
+      List<GrammaticalStructure> batched = parser.predictAll(sentences);
+      assertEquals(sentences.size(), batched.size());
+      for (int i = 0; i < sentences.size(); i++) {
+        GrammaticalStructure single = parser.predict(sentences.get(i));
+        assertEquals(precision + " sentence " + i,
+            single.typedDependencies().toString(), batched.get(i).typedDependencies().toString());
+      }
+    }
+  }
+
+  /**
+   * The transition scores with the weights stored as floats or bytes stay
+   * within a small relative error of the scores at full precision.  On this
+   * model the errors are about 1e-7 and 5e-3.
+   */
+  @Test
+  public void testCompactScoresMatchDouble() {
+    DependencyParser parser = load("double");
+    assertEquals(0.0, DependencyParser.maxRelativeScoreError(parser, load("double"), sentences), 0.0);
+    double floatError = DependencyParser.maxRelativeScoreError(parser, load("float"), sentences);
+    double int8Error = DependencyParser.maxRelativeScoreError(parser, load("int8"), sentences);
+    assertTrue("float error " + floatError, floatError < 1e-6);
+    assertTrue("int8 error " + int8Error, int8Error < 0.02);
+  }
+
+}
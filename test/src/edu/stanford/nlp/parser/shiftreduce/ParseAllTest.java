@@ -0,0 +1,152 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.parser.common.ParserQuery;
+import edu.stanford.nlp.trees.MemoryTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import junit.framework.TestCase;
+
+/**
+ * Tests that {@link ShiftReduceParser#parseAll} gives the same trees as
+ * parsing the sentences one at a time, in the order of the input.
+ */
+public class ParseAllTest extends TestCase {
+
+  private static final String[] TREES = {
+    "(ROOT (S (NP (DT The) (NN cat)) (VP (VBD sat) (PP (IN on) (NP (DT the) (NN mat)))) (. .)))",
+    "(ROOT (S (NP (DT The) (NN dog)) (VP (VBD ate) (NP (DT the) (NN bone))) (. .)))",
+    "(ROOT (S (NP (NNP John)) (VP (VBD saw) (NP (DT a) (NN man)) (PP (IN with) (NP (DT a) (NN telescope)))) (. .)))",
+    "(ROOT (S (NP (PRP She)) (VP (VBZ likes) (, ,) (NP (NP (DT the) (NN book)) (PP (IN on) (NP (DT the) (NN table))))) (. .)))",
+  };
+
+  private ShiftReduceParser parser;
+  private List<List<HasWord>> sentences;
+
+  @Override
+  public void setUp() {
+    ShiftReduceOptions op = new ShiftReduceOptions();
+    op.trainOptions().averagedModels = 0;
+    op.trainOptions.trainingIterations = 3;
+    MemoryTreebank treebank = new MemoryTreebank();
+    for (String tree : TREES) {
+      treebank.add(Tree.valueOf(tree));
+    }
+    List<Tree> trees = ShiftReduceParser.binarizeTreebank(treebank, op);
+    Set<String> roots = Collections.singleton("ROOT");
+    List<List<Transition>> transitionLists = CreateTransitionSequence.createTransitionSequences(trees, op.compoundUnaries, roots, roots);
+    Index<Transition> transitionIndex = new HashIndex<>();
+    for (List<Transition> transitions : transitionLists) {
+      transitionIndex.addAll(transitions);
+    }
+    PerceptronModel model = new PerceptronModel(op, transitionIndex, ShiftReduceParser.findKnownStates(trees), roots, roots);
+    model.trainModel(null, null, new Random(1), trees, transitionLists, null, 1);
+    op.testOptions().beamSize = 2;
+    parser = new ShiftReduceParser(op, model);
+
+    // sentences of many lengths, enough to fill a few of the windows parseAll reads
+    List<TaggedWord> words = new ArrayList<>();
+    for (String tree : TREES) {
+      words.addAll(Tree.valueOf(tree).taggedYield());
+    }
+    Random random = new Random(2);
+    sentences = new ArrayList<>();
+    for (int i = 0; i < 2500; ++i) {
+      int start = random.nextInt(words.size() - 1);
+      int end = start + 1 + random.nextInt(Math.min(15, words.size() - start - 1));
+      sentences.add(new ArrayList<>(words.subList(start, end)));
+    }
+  }
+
+  private void checkParseAll(ExecutorService executor) {
+    Iterator<Tree> trees = parser.parseAll(sentences, executor).iterator();
+    for (List<HasWord> sentence : sentences) {
+      assertTrue(trees.hasNext());
+      assertEquals(parser.parse(sentence), trees.next());
+    }
+    assertFalse(trees.hasNext());
+  }
+
+  public void testParseAll() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      checkParseAll(executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testParseAllOnCallingThread() {
+    checkParseAll(null);
+  }
+
+  public void testExceptionsArePassedOn() {
+    sentences.set(5, null);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Iterator<Tree> trees = parser.parseAll(sentences, executor).iterator();
+      for (int i = 0; i < 5; ++i) {
+        assertNotNull(trees.next());
+      }
+      trees.next();
+      fail("Expected the exception from parsing the null sentence");
+    } catch (NullPointerException e) {
+      // expected
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Records the threads its queries are released on. */
+  private static class ReleaseRecordingParser extends ShiftReduceParser {
+    private static final long serialVersionUID = 1L;
+
+    final Set<Thread> releasedOn = Collections.synchronizedSet(new HashSet<>());
+
+    ReleaseRecordingParser(ShiftReduceParser parser) {
+      super(parser.op, parser.model);
+    }
+
+    @Override
+    public ParserQuery parserQuery() {
+      return new ShiftReduceParserQuery(this) {
+        @Override
+        public void release() {
+          releasedOn.add(Thread.currentThread());
+          super.release();
+        }
+      };
+    }
+  }
+
+  public void testQueriesReleasedOnTheirOwnThread() {
+    ReleaseRecordingParser recording = new ReleaseRecordingParser(parser);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Iterator<Tree> trees = recording.parseAll(sentences, executor).iterator();
+      while (trees.hasNext()) {
+        trees.next();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertFalse(recording.releasedOn.contains(Thread.currentThread()));
+
+    Iterator<Tree> trees = recording.parseAll(sentences.subList(0, 10), null).iterator();
+    while (trees.hasNext()) {
+      trees.next();
+    }
+    assertEquals(Collections.singleton(Thread.currentThread()), recording.releasedOn);
+  }
+
+  public void testEmptyInput() {
+    assertFalse(parser.parseAll(Collections.<List<HasWord>>emptyList(), null).iterator().hasNext());
+  }
+
+}
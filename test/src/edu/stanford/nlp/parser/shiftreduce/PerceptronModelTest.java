@@ -0,0 +1,161 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.*;
+
+import edu.stanford.nlp.trees.MemoryTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.ScoredObject;
+import junit.framework.TestCase;
+
+/**
+ * Tests that {@link PerceptronModel} scores states the same with hashed
+ * features as with feature strings, and that the beam search of
+ * {@link ShiftReduceParserQuery} picks the transitions the model scores best.
+ */
+public class PerceptronModelTest extends TestCase {
+
+  private static final String[] TREES = {
+    "(ROOT (S (NP (DT The) (NN cat)) (VP (VBD sat) (PP (IN on) (NP (DT the) (NN mat)))) (. .)))",
+    "(ROOT (S (NP (DT The) (NN dog)) (VP (VBD ate) (NP (DT the) (NN bone))) (. .)))",
+    "(ROOT (S (NP (NNP John)) (VP (VBD saw) (NP (DT a) (NN man)) (PP (IN with) (NP (DT a) (NN telescope)))) (. .)))",
+    "(ROOT (S (NP (PRP She)) (VP (VBZ likes) (, ,) (NP (NP (DT the) (NN book)) (PP (IN on) (NP (DT the) (NN table))))) (. .)))",
+  };
+
+  private List<Tree> trees;
+  private List<List<Transition>> transitionLists;
+  private PerceptronModel model;
+
+  @Override
+  public void setUp() {
+    ShiftReduceOptions op = new ShiftReduceOptions();
+    op.trainOptions().averagedModels = 0;
+    op.trainOptions.trainingIterations = 3;
+    MemoryTreebank treebank = new MemoryTreebank();
+    for (String tree : TREES) {
+      treebank.add(Tree.valueOf(tree));
+    }
+    trees = ShiftReduceParser.binarizeTreebank(treebank, op);
+    Set<String> roots = Collections.singleton("ROOT");
+    transitionLists = CreateTransitionSequence.createTransitionSequences(trees, op.compoundUnaries, roots, roots);
+    Index<Transition> transitionIndex = new HashIndex<>();
+    for (List<Transition> transitions : transitionLists) {
+      transitionIndex.addAll(transitions);
+    }
+    model = new PerceptronModel(op, transitionIndex, ShiftReduceParser.findKnownStates(trees), roots, roots);
+    model.trainModel(null, null, new Random(1), trees, transitionLists, null, 1);
+  }
+
+  public void testHashedFeatures() {
+    HashedFeatures features = new HashedFeatures(1);
+    features.append("S0C-").append("NP").add();
+    features.append("Sepb").append(-12).append('-').add();
+    features.append(Integer.MIN_VALUE).append(0).append(true).add();
+    features.add("QUEUE_FINISHED");
+    assertEquals(4, features.size());
+    assertEquals(HashedFeatures.hash("S0C-NP"), features.get(0));
+    assertEquals(HashedFeatures.hash("Sepb-12-"), features.get(1));
+    assertEquals(HashedFeatures.hash(Integer.MIN_VALUE + "0true"), features.get(2));
+    assertEquals(HashedFeatures.hash("QUEUE_FINISHED"), features.get(3));
+    features.clear();
+    assertEquals(0, features.size());
+  }
+
+  /** Every state the gold transitions go through is scored the same as by looking up the feature strings. */
+  public void testHashedScores() {
+    assertTrue(model.featureWeights.size() > 0);
+    assertEquals(model.featureWeights.size(), HashedWeights.build(model.featureWeights).size());
+    int numTransitions = model.transitionIndex.size();
+    for (int i = 0; i < trees.size(); ++i) {
+      State state = ShiftReduceParser.initialStateFromGoldTagTree(trees.get(i));
+      for (Transition transition : transitionLists.get(i)) {
+        float[] expected = new float[numTransitions];
+        for (String feature : model.featureFactory.featurize(state)) {
+          Weight weight = model.featureWeights.get(feature);
+          if (weight != null) {
+            weight.score(expected);
+          }
+        }
+
+        Collection<ScoredObject<Integer>> scored = model.findHighestScoringTransitions(state, false, numTransitions, null);
+        assertEquals(numTransitions, scored.size());
+        for (ScoredObject<Integer> score : scored) {
+          assertEquals(expected[score.object()], score.score(), 0.0);
+        }
+        state = transition.apply(state);
+      }
+    }
+  }
+
+  /** Selecting the best transitions into arrays finds the same ones as the collection version, best first. */
+  public void testTopTransitions() {
+    int[] transitions = new int[3];
+    double[] scores = new double[3];
+    for (int i = 0; i < trees.size(); ++i) {
+      State state = ShiftReduceParser.initialStateFromGoldTagTree(trees.get(i));
+      for (Transition transition : transitionLists.get(i)) {
+        for (int k = 1; k <= 3; ++k) {
+          List<Double> expected = new ArrayList<>();
+          for (ScoredObject<Integer> score : model.findHighestScoringTransitions(state, true, k, null)) {
+            expected.add(score.score());
+          }
+          expected.sort(Collections.reverseOrder());
+          int found = model.findHighestScoringTransitions(state, true, k, null, transitions, scores);
+          assertEquals(expected.size(), found);
+          for (int j = 0; j < found; ++j) {
+            assertEquals(expected.get(j), scores[j], 0.0);
+            assertTrue(model.transitionIndex.get(transitions[j]).isLegal(state, null));
+          }
+        }
+        state = transition.apply(state);
+      }
+    }
+  }
+
+  /** With a beam of one the parser follows the single best transition from each state. */
+  public void testGreedyParse() {
+    model.op.testOptions().beamSize = 1;
+    ShiftReduceParserQuery query = new ShiftReduceParserQuery(new ShiftReduceParser(model.op, model));
+    for (Tree tree : trees) {
+      State state = ShiftReduceParser.initialStateFromGoldTagTree(tree);
+      while (!state.isFinished()) {
+        Collection<ScoredObject<Integer>> best = model.findHighestScoringTransitions(state, true, 1, null);
+        if (best.isEmpty()) {
+          Transition transition = model.findEmergencyTransition(state, null);
+          assertNotNull(transition);
+          state = transition.apply(state);
+        } else {
+          ScoredObject<Integer> transition = best.iterator().next();
+          state = model.transitionIndex.get(transition.object()).apply(state, transition.score());
+        }
+      }
+
+      assertTrue(query.parse(tree));
+      assertEquals(state.stack.peek(), query.getBestBinarizedParse());
+      assertEquals(state.score(), query.getPCFGScore(), 0.0);
+    }
+  }
+
+  public void testBeamParse() {
+    model.op.testOptions().beamSize = 4;
+    ShiftReduceParserQuery query = new ShiftReduceParserQuery(new ShiftReduceParser(model.op, model));
+    for (Tree tree : trees) {
+      assertTrue(query.parse(tree));
+      assertNotNull(query.getBestParse());
+      assertEquals(tree.yield().size(), query.getBestParse().yield().size());
+    }
+  }
+
+  /** Changing the weights, as training does, must not leave stale hashed weights behind. */
+  public void testWeightsChanged() {
+    State state = ShiftReduceParser.initialStateFromGoldTagTree(trees.get(0));
+    int numTransitions = model.transitionIndex.size();
+    double before = model.findHighestScoringTransitions(state, false, numTransitions, null).stream().mapToDouble(score -> Math.abs(score.score())).sum();
+    model.filterFeatures(Collections.emptySet());
+    double after = model.findHighestScoringTransitions(state, false, numTransitions, null).stream().mapToDouble(score -> Math.abs(score.score())).sum();
+    assertTrue(before != 0.0);
+    assertEquals(0.0, after);
+  }
+
+}
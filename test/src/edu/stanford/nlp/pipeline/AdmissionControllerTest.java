@@ -0,0 +1,146 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link AdmissionController}.
+ */
+public class AdmissionControllerTest extends TestCase {
+
+  private static final List<String> TOKENIZE = Collections.singletonList("tokenize");
+  private static final List<String> FULL = Arrays.asList("tokenize", "ssplit", "pos", "parse", "coref");
+
+  /** Occupy the controller's only thread until the returned latch is counted down. */
+  private static CountDownLatch block(AdmissionController admission) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    admission.executor().submit(() -> {
+      started.countDown();
+      release.await();
+      return null;
+    });
+    started.await();
+    return release;
+  }
+
+  public void testCost() {
+    assertTrue(AdmissionController.estimateCost(1000, FULL) > AdmissionController.estimateCost(1000, TOKENIZE));
+    assertTrue(AdmissionController.estimateCost(1000, TOKENIZE) > AdmissionController.estimateCost(10, TOKENIZE));
+    assertTrue(AdmissionController.estimateCost(0, TOKENIZE) > 0);
+  }
+
+  public void testParseLimits() {
+    Map<String, Integer> limits = AdmissionController.parseLimits("coref=2, parse=4");
+    assertEquals(2, limits.size());
+    assertEquals(Integer.valueOf(2), limits.get("coref"));
+    assertEquals(Integer.valueOf(4), limits.get("parse"));
+    assertTrue(AdmissionController.parseLimits("").isEmpty());
+    try {
+      AdmissionController.parseLimits("coref");
+      fail("expected a malformed limit to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testLanes() throws AdmissionController.RejectedException {
+    AdmissionController admission = new AdmissionController(1, 10, AdmissionController.estimateCost(100, FULL), Collections.emptyMap());
+    assertEquals(AdmissionController.Lane.INTERACTIVE, admission.admit(100, FULL, false, 10000).lane);
+    assertEquals(AdmissionController.Lane.BULK, admission.admit(101, FULL, false, 10000).lane);
+    assertEquals(AdmissionController.Lane.BULK, admission.admit(10, TOKENIZE, true, 10000).lane);
+    assertEquals(1, admission.queued(AdmissionController.Lane.INTERACTIVE));
+    assertEquals(2, admission.queued(AdmissionController.Lane.BULK));
+    admission.executor().shutdownNow();
+  }
+
+  public void testInteractiveRunsFirst() throws Exception {
+    AdmissionController admission = new AdmissionController(1, 10, 1000, Collections.emptyMap());
+    CountDownLatch release = block(admission);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    Future<?> bulk = admission.submit(admission.admit(1000, FULL, false, 10000), () -> order.add("bulk"));
+    Future<?> interactive = admission.submit(admission.admit(10, TOKENIZE, false, 10000), () -> order.add("interactive"));
+    assertEquals(1, admission.queued(AdmissionController.Lane.BULK));
+    assertEquals(1, admission.queued(AdmissionController.Lane.INTERACTIVE));
+    release.countDown();
+    bulk.get();
+    interactive.get();
+    assertEquals(Arrays.asList("interactive", "bulk"), order);
+    assertEquals(0, admission.queued(AdmissionController.Lane.BULK));
+    assertEquals(0, admission.queued(AdmissionController.Lane.INTERACTIVE));
+    admission.executor().shutdown();
+  }
+
+  public void testQueueFull() throws Exception {
+    AdmissionController admission = new AdmissionController(1, 1, 1000000, Collections.emptyMap());
+    CountDownLatch release = block(admission);
+    Future<?> queued = admission.submit(admission.admit(10, TOKENIZE, false, 10000), () -> null);
+    try {
+      admission.admit(10, TOKENIZE, false, 10000);
+      fail("expected the full lane to turn the request away");
+    } catch (AdmissionController.RejectedException e) {
+      assertEquals(AdmissionController.SERVICE_UNAVAILABLE, e.status);
+      assertTrue(e.retryAfterSeconds >= 1);
+    }
+    // the other lane still has room
+    admission.abandon(admission.admit(10, TOKENIZE, true, 10000));
+    assertEquals(1, admission.rejections());
+
+    // a cancelled request no longer takes up room
+    queued.cancel(true);
+    assertEquals(0, admission.queued(AdmissionController.Lane.INTERACTIVE));
+    admission.abandon(admission.admit(10, TOKENIZE, false, 10000));
+    release.countDown();
+    admission.executor().shutdown();
+  }
+
+  public void testWaitLongerThanTimeout() throws Exception {
+    AdmissionController admission = new AdmissionController(1, 10, Long.MAX_VALUE, Collections.emptyMap());
+    CountDownLatch release = block(admission);
+    admission.submit(admission.admit(1000000, FULL, false, 10000000), () -> null);
+    try {
+      admission.admit(10, TOKENIZE, false, 1);
+      fail("expected a request which can't start in time to be turned away");
+    } catch (AdmissionController.RejectedException e) {
+      assertEquals(AdmissionController.SERVICE_UNAVAILABLE, e.status);
+      assertTrue(e.retryAfterSeconds > 1);
+    }
+    release.countDown();
+    admission.executor().shutdown();
+  }
+
+  public void testAnnotatorLimit() throws Exception {
+    AdmissionController admission = new AdmissionController(2, 10, Long.MAX_VALUE, AdmissionController.parseLimits("coref=1"));
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> running = admission.submit(admission.admit(10, FULL, false, 10000), () -> {
+      release.await();
+      return null;
+    });
+    try {
+      admission.admit(10, FULL, false, 10000);
+      fail("expected the coref limit to turn the request away");
+    } catch (AdmissionController.RejectedException e) {
+      assertEquals(AdmissionController.TOO_MANY_REQUESTS, e.status);
+    }
+    // requests which don't use coref aren't limited
+    admission.abandon(admission.admit(10, TOKENIZE, false, 10000));
+    release.countDown();
+    running.get();
+    // the finished request releases its slot just after get() returns
+    for (int attempt = 0; ; attempt++) {
+      try {
+        admission.abandon(admission.admit(10, FULL, false, 10000));
+        break;
+      } catch (AdmissionController.RejectedException e) {
+        if (attempt > 100) {
+          throw e;
+        }
+        Thread.sleep(10);
+      }
+    }
+    admission.executor().shutdown();
+  }
+
+}
@@ -0,0 +1,198 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.tagger.maxent.TaggerTestUtils;
+import edu.stanford.nlp.util.CoreMap;
+import junit.framework.TestCase;
+
+/**
+ * Checks that annotators are restored from snapshots when nothing they
+ * depend on has changed, and built again otherwise.
+ */
+public class AnnotatorSnapshotsTest extends TestCase {
+
+  /** Sets the NER tag of each token to a label. */
+  private static class LabelingAnnotator implements Annotator, Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String label;
+    LabelingAnnotator(String label) { this.label = label; }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      for (CoreLabel token : annotation.get(CoreAnnotations.TokensAnnotation.class)) {
+        token.setNER(label);
+      }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.singleton(CoreAnnotations.NamedEntityTagAnnotation.class);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.singleton(CoreAnnotations.TokensAnnotation.class);
+    }
+  }
+
+  /** The same, but not serializable. */
+  private static class UnserializableAnnotator implements Annotator {
+    private final LabelingAnnotator annotator;
+    UnserializableAnnotator(String label) { annotator = new LabelingAnnotator(label); }
+
+    @Override
+    public void annotate(Annotation annotation) { annotator.annotate(annotation); }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return annotator.requirementsSatisfied(); }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requires() { return annotator.requires(); }
+  }
+
+  private File dir;
+
+  @Override
+  protected void setUp() throws IOException {
+    dir = Files.createTempDirectory("snapshots").toFile();
+  }
+
+  @Override
+  protected void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private static String labelOf(Annotator annotator) {
+    CoreLabel token = new CoreLabel();
+    Annotation annotation = new Annotation("x");
+    annotation.set(CoreAnnotations.TokensAnnotation.class, Collections.singletonList(token));
+    annotator.annotate(annotation);
+    return token.ner();
+  }
+
+  public void testRestoresSnapshot() throws IOException {
+    File model = new File(dir, "model.txt");
+    Files.write(model.toPath(), "one".getBytes("utf-8"));
+    Properties props = new Properties();
+    props.setProperty(AnnotatorSnapshots.SNAPSHOT_DIR_PROPERTY, dir.getPath());
+    props.setProperty("label.model", model.getPath());
+    StanfordCoreNLP.AnnotatorSignature signature = new StanfordCoreNLP.AnnotatorSignature("label", "label.model:" + model.getPath() + ';');
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(props);
+    assertNotNull(snapshots);
+
+    AtomicInteger built = new AtomicInteger();
+    Annotator first = snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new LabelingAnnotator("A"); });
+    assertEquals(1, built.get());
+    assertTrue(snapshots.snapshotFile(signature, props).isFile());
+
+    Annotator second = snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new LabelingAnnotator("B"); });
+    assertEquals(1, built.get());
+    assertNotSame(first, second);
+    assertEquals("A", labelOf(second));
+
+    // a different model file means a different snapshot
+    Files.write(model.toPath(), "two, and longer".getBytes("utf-8"));
+    Annotator third = snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new LabelingAnnotator("C"); });
+    assertEquals(2, built.get());
+    assertEquals("C", labelOf(third));
+  }
+
+  public void testIgnoresBadSnapshots() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(AnnotatorSnapshots.SNAPSHOT_DIR_PROPERTY, dir.getPath());
+    StanfordCoreNLP.AnnotatorSignature signature = new StanfordCoreNLP.AnnotatorSignature("label", "");
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(props);
+    File file = snapshots.snapshotFile(signature, props);
+    Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+    assertEquals("A", labelOf(snapshots.getOrCreate(signature, props, () -> new LabelingAnnotator("A"))));
+    // and rewrites them
+    assertEquals("A", labelOf(snapshots.getOrCreate(signature, props, () -> new LabelingAnnotator("B"))));
+  }
+
+  public void testRefusesOtherClasses() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(AnnotatorSnapshots.SNAPSHOT_DIR_PROPERTY, dir.getPath());
+    StanfordCoreNLP.AnnotatorSignature signature = new StanfordCoreNLP.AnnotatorSignature("label", "");
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(props);
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(snapshots.snapshotFile(signature, props)))) {
+      out.writeObject(new ArrayList<>(Collections.singletonList(new junit.framework.AssertionFailedError("not an annotator"))));
+    }
+    AtomicInteger built = new AtomicInteger();
+    assertEquals("A", labelOf(snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new LabelingAnnotator("A"); })));
+    assertEquals(1, built.get());
+
+    assertTrue(AnnotatorSnapshots.isAllowed("edu.stanford.nlp.pipeline.POSTaggerAnnotator"));
+    assertTrue(AnnotatorSnapshots.isAllowed("[[I"));
+    assertTrue(AnnotatorSnapshots.isAllowed("[Ljava.lang.String;"));
+    assertFalse(AnnotatorSnapshots.isAllowed("[Ljunit.framework.TestCase;"));
+    assertFalse(AnnotatorSnapshots.isAllowed("org.apache.commons.collections.functors.InvokerTransformer"));
+  }
+
+  private static List<String> tagsOf(Annotator annotator, String text) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String word : text.split(" ")) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setValue(word);
+      tokens.add(token);
+    }
+    Annotation annotation = new Annotation(text);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    CoreMap sentence = new Annotation(text);
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, Collections.singletonList(sentence));
+    annotator.annotate(annotation);
+    List<String> tags = new ArrayList<>();
+    for (CoreLabel token : tokens) {
+      tags.add(token.tag());
+    }
+    return tags;
+  }
+
+  public void testRestoresTagger() throws IOException {
+    String model = TaggerTestUtils.trainTagger("left3words,naacl2003unknowns");
+    Properties props = new Properties();
+    props.setProperty(AnnotatorSnapshots.SNAPSHOT_DIR_PROPERTY, dir.getPath());
+    props.setProperty("pos.model", model);
+    StanfordCoreNLP.AnnotatorSignature signature = new StanfordCoreNLP.AnnotatorSignature("pos", "pos.model:" + model + ';');
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(props);
+
+    AtomicInteger built = new AtomicInteger();
+    Annotator first = snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new POSTaggerAnnotator("pos", props); });
+    assertTrue(snapshots.snapshotFile(signature, props).isFile());
+    Annotator second = snapshots.getOrCreate(signature, props, () -> { built.incrementAndGet(); return new POSTaggerAnnotator("pos", props); });
+    assertEquals(1, built.get());
+    assertNotSame(first, second);
+    for (String text : TaggerTestUtils.SENTENCES) {
+      assertEquals(text, tagsOf(first, text), tagsOf(second, text));
+    }
+  }
+
+  public void testSkipsUnserializableAnnotators() {
+    Properties props = new Properties();
+    props.setProperty(AnnotatorSnapshots.SNAPSHOT_DIR_PROPERTY, dir.getPath());
+    StanfordCoreNLP.AnnotatorSignature signature = new StanfordCoreNLP.AnnotatorSignature("label", "");
+    AnnotatorSnapshots snapshots = AnnotatorSnapshots.fromProperties(props);
+    assertEquals("A", labelOf(snapshots.getOrCreate(signature, props, () -> new UnserializableAnnotator("A"))));
+    assertFalse(snapshots.snapshotFile(signature, props).exists());
+    assertNull(AnnotatorSnapshots.fromProperties(new Properties()));
+  }
+
+}
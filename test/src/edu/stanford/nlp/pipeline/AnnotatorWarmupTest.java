@@ -0,0 +1,108 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import junit.framework.TestCase;
+
+/**
+ * Checks that annotators are loaded in the background in dependency order,
+ * and that pipelines which don't need a slow annotator don't wait for it.
+ */
+public class AnnotatorWarmupTest extends TestCase {
+
+  private static volatile CountDownLatch started;
+  private static volatile CountDownLatch release;
+
+  /** An annotator which takes until {@link #release} is counted down to load. */
+  public static class BlockingAnnotator implements Annotator {
+    public BlockingAnnotator(String name, Properties props) throws InterruptedException {
+      started.countDown();
+      release.await();
+    }
+
+    @Override
+    public void annotate(Annotation annotation) { }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requires() { return Collections.emptySet(); }
+  }
+
+  /** An annotator which can't be loaded. */
+  public static class FailingAnnotator extends BlockingAnnotator {
+    public FailingAnnotator(String name, Properties props) throws InterruptedException {
+      super(name, props);
+      throw new IllegalStateException("no model");
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    started = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+  }
+
+  @Override
+  protected void tearDown() {
+    release.countDown();
+    StanfordCoreNLP.clearAnnotatorPool();
+  }
+
+  private static Properties props(String annotators) {
+    Properties props = new Properties();
+    props.setProperty("annotators", annotators);
+    props.setProperty(StanfordCoreNLP.CUSTOM_ANNOTATOR_PREFIX + "blocking", BlockingAnnotator.class.getName());
+    props.setProperty(StanfordCoreNLP.CUSTOM_ANNOTATOR_PREFIX + "failing", FailingAnnotator.class.getName());
+    return props;
+  }
+
+  public void testAddsPrerequisitesInOrder() {
+    AnnotatorWarmup warmup = new AnnotatorWarmup(props("ssplit"), 2);
+    assertEquals(Arrays.asList("tokenize", "ssplit"), warmup.annotators());
+    assertEquals(AnnotatorWarmup.State.PENDING, warmup.state("ssplit"));
+    assertNull(warmup.state("pos"));
+    assertFalse(warmup.isReady("ssplit"));
+  }
+
+  public void testServesFastAnnotatorsFirst() throws InterruptedException {
+    Properties props = props("tokenize,ssplit,blocking");
+    AnnotatorWarmup warmup = new AnnotatorWarmup(props, 2).start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100 && ! warmup.isReady("tokenize,ssplit"); i++) {
+      Thread.sleep(50);
+    }
+    assertTrue(warmup.isReady("tokenize,ssplit"));
+    assertTrue(warmup.isReady("ssplit"));
+    assertFalse(warmup.isReady("tokenize,ssplit,blocking"));
+    assertEquals(AnnotatorWarmup.State.LOADING, warmup.state("blocking"));
+    assertFalse(warmup.isDone());
+
+    // a pipeline which doesn't need the slow annotator is built while it loads
+    Properties pipelineProps = new Properties();
+    pipelineProps.putAll(props);
+    pipelineProps.setProperty("annotators", "tokenize,ssplit");
+    new StanfordCoreNLP(pipelineProps);
+
+    release.countDown();
+    assertTrue(warmup.awaitDone(10, TimeUnit.SECONDS));
+    assertEquals(AnnotatorWarmup.State.READY, warmup.state("blocking"));
+    assertTrue(warmup.isReady("tokenize,ssplit,blocking"));
+  }
+
+  public void testRecordsFailures() throws InterruptedException {
+    release.countDown();
+    AnnotatorWarmup warmup = new AnnotatorWarmup(props("tokenize,failing"), 1).start();
+    assertTrue(warmup.awaitDone(10, TimeUnit.SECONDS));
+    assertEquals(AnnotatorWarmup.State.READY, warmup.state("tokenize"));
+    assertEquals(AnnotatorWarmup.State.FAILED, warmup.state("failing"));
+    assertFalse(warmup.isReady("tokenize,failing"));
+  }
+
+}
@@ -0,0 +1,132 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.util.StringUtils;
+import junit.framework.TestCase;
+
+/**
+ * Checks what {@link AnnotationPipeline} records in its {@link PipelineMetrics},
+ * and how {@link PrometheusMetricsExporter} writes it out.
+ */
+public class PipelineMetricsTest extends TestCase {
+
+  /** Fails on documents containing "fail". */
+  private static class FailingAnnotator implements Annotator {
+    @Override
+    public void annotate(Annotation annotation) {
+      if (annotation.toString().contains("fail")) {
+        throw new IllegalStateException("failed");
+      }
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() { return Collections.emptySet(); }
+  }
+
+  private static final String FAILING = StringUtils.getShortClassName(new FailingAnnotator());
+
+  private static AnnotationPipeline pipeline() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new FailingAnnotator());
+    return pipeline;
+  }
+
+  public void testCounts() {
+    AnnotationPipeline pipeline = pipeline();
+    pipeline.getMetrics().setTrackAllocation(true);
+    pipeline.annotate(new Annotation("The cat sat."));
+    pipeline.annotate(new Annotation("The dog sat on the mat."));
+    try {
+      pipeline.annotate(new Annotation("This will fail"));
+      fail("expected the annotator to throw");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    PipelineMetrics metrics = pipeline.getMetrics();
+    assertEquals(3, metrics.documents().calls());
+    assertEquals(1, metrics.documents().errors());
+    assertEquals(3, metrics.documents().latency().count());
+    assertEquals(4 + 7 + 3, metrics.tokens());
+    assertTrue(metrics.tokensPerSecond() > 0);
+
+    assertEquals(2, metrics.annotators().size());
+    PipelineMetrics.StageMetrics tokenize = metrics.annotator("TokenizerAnnotator");
+    assertEquals(3, tokenize.calls());
+    assertEquals(0, tokenize.errors());
+    assertEquals(3, tokenize.latency().count());
+    PipelineMetrics.StageMetrics failing = metrics.annotator(FAILING);
+    assertEquals(3, failing.calls());
+    assertEquals(1, failing.errors());
+    if (PipelineMetrics.threadAllocatedBytes() >= 0) {
+      assertTrue(tokenize.allocatedBytes() > 0);
+      assertTrue(metrics.documents().allocatedBytes() >= tokenize.allocatedBytes());
+    }
+  }
+
+  public void testAllocationOffByDefault() {
+    AnnotationPipeline pipeline = pipeline();
+    pipeline.annotate(new Annotation("The cat sat."));
+    PipelineMetrics metrics = pipeline.getMetrics();
+    assertFalse(metrics.tracksAllocation());
+    assertEquals(0, metrics.annotator("TokenizerAnnotator").allocatedBytes());
+    assertEquals(0, metrics.documents().allocatedBytes());
+  }
+
+  public void testSharedMetrics() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    AnnotationPipeline first = pipeline();
+    AnnotationPipeline second = pipeline();
+    first.setMetrics(metrics);
+    second.setMetrics(metrics);
+    first.annotate(new Annotation("One."));
+    second.annotate(new Annotation("Two."));
+    assertEquals(2, metrics.documents().calls());
+    assertEquals(2, metrics.annotator("TokenizerAnnotator").calls());
+    assertEquals(0, first.getMetrics().annotator(FAILING).errors());
+  }
+
+  public void testStreaming() {
+    AnnotationPipeline pipeline = pipeline();
+    pipeline.annotateStreaming(Arrays.asList(new Annotation("A b."), new Annotation("fail")),
+        2, 2, true, ann -> {});
+    PipelineMetrics metrics = pipeline.getMetrics();
+    assertEquals(2, metrics.documents().calls());
+    assertEquals(1, metrics.documents().errors());
+    assertEquals(0, metrics.documents().latency().count());
+    assertEquals(2, metrics.annotator(FAILING).calls());
+    assertEquals(1, metrics.annotator(FAILING).errors());
+  }
+
+  public void testPrometheusFormat() throws IOException {
+    AnnotationPipeline pipeline = pipeline();
+    pipeline.annotate(new Annotation("The cat sat."));
+    PipelineMetrics metrics = pipeline.getMetrics();
+    metrics.registerGauge("queue_depth", "Jobs waiting", () -> 7);
+
+    StringWriter sw = new StringWriter();
+    new PrometheusMetricsExporter().export(metrics, sw);
+    String text = sw.toString();
+    assertTrue(text, text.contains("# TYPE corenlp_documents_total counter\ncorenlp_documents_total 1\n"));
+    assertTrue(text, text.contains("corenlp_tokens_total 4\n"));
+    assertTrue(text, text.contains("corenlp_annotator_calls_total{annotator=\"TokenizerAnnotator\"} 1\n"));
+    assertTrue(text, text.contains("corenlp_annotator_seconds_bucket{annotator=\"" + FAILING + "\",le=\"+Inf\"} 1\n"));
+    assertTrue(text, text.contains("corenlp_annotator_seconds_count{annotator=\"" + FAILING + "\"} 1\n"));
+    assertTrue(text, text.contains("corenlp_document_seconds_bucket{le=\"60.0\"} 1\n"));
+    assertTrue(text, text.contains("# TYPE corenlp_queue_depth gauge\ncorenlp_queue_depth 7\n"));
+    for (String line : text.split("\n")) {
+      assertTrue(line, line.startsWith("# ") || line.matches("corenlp_\\w+(\\{[^}]*\\})? [0-9.]+"));
+    }
+  }
+
+}
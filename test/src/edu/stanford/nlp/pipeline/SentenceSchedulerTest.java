@@ -0,0 +1,170 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.*;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import junit.framework.TestCase;
+
+/**
+ * Checks that sentence scheduling produces the same result as running each
+ * SentenceAnnotator in turn.
+ */
+public class SentenceSchedulerTest extends TestCase {
+
+  /** Appends its name to each sentence's text, and records when the document is finished. */
+  private static class AppendingAnnotator extends SentenceAnnotator {
+    private final String name;
+    private final long maxTime;
+    AppendingAnnotator(String name, long maxTime) {
+      this.name = name;
+      this.maxTime = maxTime;
+    }
+
+    @Override
+    protected int nThreads() { return 1; }
+
+    @Override
+    protected long maxTime() { return maxTime; }
+
+    @Override
+    protected void doOneSentence(Annotation annotation, CoreMap sentence) {
+      sentence.set(CoreAnnotations.TextAnnotation.class, sentence.get(CoreAnnotations.TextAnnotation.class) + name);
+    }
+
+    @Override
+    protected void doOneFailedSentence(Annotation annotation, CoreMap sentence) { }
+
+    @Override
+    protected void finishDocument(Annotation annotation) {
+      String sofar = annotation.get(CoreAnnotations.DocIDAnnotation.class);
+      annotation.set(CoreAnnotations.DocIDAnnotation.class, sofar == null ? name : sofar + name);
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() { return Collections.emptySet(); }
+  }
+
+  private static Annotation document(int numSentences) {
+    Annotation annotation = new Annotation("");
+    List<CoreMap> sentences = new ArrayList<>();
+    for (int i = 0; i < numSentences; i++) {
+      CoreMap sentence = new ArrayCoreMap();
+      sentence.set(CoreAnnotations.TextAnnotation.class, String.valueOf(i));
+      sentences.add(sentence);
+    }
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    return annotation;
+  }
+
+  public void testGroupEnd() {
+    List<Annotator> annotators = Arrays.asList(
+        new AppendingAnnotator("a", 0), new AppendingAnnotator("b", -1),
+        new AppendingAnnotator("c", 1000), new AppendingAnnotator("d", 0));
+    assertEquals(2, SentenceScheduler.groupEnd(annotators, 0));
+    assertEquals(2, SentenceScheduler.groupEnd(annotators, 2));
+    assertEquals(4, SentenceScheduler.groupEnd(annotators, 3));
+
+    // the tagger is scheduled together with the sentence annotators after it
+    List<Annotator> posThenParse = Arrays.asList(
+        new POSTaggerAnnotator((MaxentTagger) null), new AppendingAnnotator("parse", 0));
+    assertEquals(2, SentenceScheduler.groupEnd(posThenParse, 0));
+  }
+
+  public void testMatchesSequentialPipeline() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new AppendingAnnotator("a", 0));
+    pipeline.addAnnotator(new AppendingAnnotator("b", 0));
+    pipeline.addAnnotator(new AppendingAnnotator("c", 0));
+
+    Annotation expected = document(100);
+    pipeline.annotate(expected);
+
+    SentenceScheduler scheduler = new SentenceScheduler(4);
+    pipeline.setSentenceScheduler(scheduler);
+    Annotation actual = document(100);
+    pipeline.annotate(actual);
+    scheduler.shutdown();
+
+    assertEquals("abc", actual.get(CoreAnnotations.DocIDAnnotation.class));
+    List<CoreMap> expectedSentences = expected.get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreMap> actualSentences = actual.get(CoreAnnotations.SentencesAnnotation.class);
+    for (int i = 0; i < expectedSentences.size(); i++) {
+      assertEquals(i + "abc", actualSentences.get(i).get(CoreAnnotations.TextAnnotation.class));
+      assertEquals(expectedSentences.get(i).get(CoreAnnotations.TextAnnotation.class),
+                   actualSentences.get(i).get(CoreAnnotations.TextAnnotation.class));
+    }
+  }
+
+  public void testSharedScheduler() {
+    SentenceScheduler scheduler = SentenceScheduler.shared(3);
+    assertSame(scheduler, SentenceScheduler.shared(3));
+    assertNotSame(scheduler, SentenceScheduler.shared(2));
+
+    // shutting down a shared scheduler leaves it working for other pipelines
+    scheduler.shutdown();
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new AppendingAnnotator("a", 0));
+    pipeline.setSentenceScheduler(scheduler);
+    Annotation annotation = document(10);
+    pipeline.annotate(annotation);
+    assertEquals("9a", annotation.get(CoreAnnotations.SentencesAnnotation.class).get(9).get(CoreAnnotations.TextAnnotation.class));
+
+    // after the shared pools are shut down, a shared scheduler starts a new one
+    SentenceScheduler.shutdownShared();
+    annotation = document(10);
+    pipeline.annotate(annotation);
+    assertEquals("9a", annotation.get(CoreAnnotations.SentencesAnnotation.class).get(9).get(CoreAnnotations.TextAnnotation.class));
+  }
+
+  public void testFailurePropagates() {
+    SentenceScheduler scheduler = new SentenceScheduler(2);
+    Annotator failing = new AppendingAnnotator("x", 0) {
+      @Override
+      protected void doOneSentence(Annotation annotation, CoreMap sentence) {
+        throw new IllegalStateException("boom");
+      }
+    };
+    try {
+      scheduler.annotate(document(3), Collections.singletonList(failing));
+      fail("Expected the annotator's exception to be rethrown");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("boom"));
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  /** Once one sentence fails, the others don't go on to the next annotator. */
+  public void testFailureStopsOtherSentences() {
+    SentenceScheduler scheduler = new SentenceScheduler(1);
+    Annotator failing = new AppendingAnnotator("x", 0) {
+      @Override
+      protected void doOneSentence(Annotation annotation, CoreMap sentence) {
+        if (sentence.get(CoreAnnotations.TextAnnotation.class).equals("0")) {
+          throw new IllegalStateException("boom");
+        }
+        super.doOneSentence(annotation, sentence);
+      }
+    };
+    Annotation annotation = document(50);
+    try {
+      scheduler.annotate(annotation, Arrays.asList(failing, new AppendingAnnotator("y", 0)));
+      fail("Expected the annotator's exception to be rethrown");
+    } catch (IllegalStateException e) {
+      // expected
+    } finally {
+      scheduler.shutdown();
+    }
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      assertFalse(sentence.get(CoreAnnotations.TextAnnotation.class).endsWith("y"));
+    }
+  }
+
+}
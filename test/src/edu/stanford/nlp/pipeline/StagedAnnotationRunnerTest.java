@@ -0,0 +1,115 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import junit.framework.TestCase;
+
+/**
+ * Checks ordering, the in-flight bound and error handling of the streaming pipeline.
+ */
+public class StagedAnnotationRunnerTest extends TestCase {
+
+  /** Appends its name to the document's DocIDAnnotation, sleeping a little for some documents. */
+  private static class AppendingAnnotator implements Annotator {
+    private final String name;
+    AppendingAnnotator(String name) { this.name = name; }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      if (annotation.toString().length() % 3 == 0) {
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      String sofar = annotation.get(CoreAnnotations.DocIDAnnotation.class);
+      annotation.set(CoreAnnotations.DocIDAnnotation.class, sofar == null ? name : sofar + name);
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() { return Collections.emptySet(); }
+  }
+
+  private static List<Annotation> documents(int n) {
+    List<Annotation> docs = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      docs.add(new Annotation(String.valueOf(i)));
+    }
+    return docs;
+  }
+
+  public void testOrderedDelivery() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new AppendingAnnotator("a"));
+    pipeline.addAnnotator(new AppendingAnnotator("b"));
+    pipeline.addAnnotator(new AppendingAnnotator("c"));
+    List<Annotation> docs = documents(200);
+    List<String> seen = new ArrayList<>();
+    pipeline.annotateStreaming(docs, 4, 8, true, ann -> {
+      assertEquals("abc", ann.get(CoreAnnotations.DocIDAnnotation.class));
+      seen.add(ann.toString());
+    });
+    assertEquals(200, seen.size());
+    for (int i = 0; i < seen.size(); i++) {
+      assertEquals(String.valueOf(i), seen.get(i));
+    }
+  }
+
+  public void testUnorderedDeliversEverything() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new AppendingAnnotator("a"));
+    pipeline.addAnnotator(new AppendingAnnotator("b"));
+    Set<String> seen = new HashSet<>();
+    pipeline.annotateStreaming(documents(100), 3, 5, false, ann -> seen.add(ann.toString()));
+    assertEquals(100, seen.size());
+  }
+
+  public void testInFlightIsBounded() {
+    AtomicInteger read = new AtomicInteger();
+    AtomicInteger delivered = new AtomicInteger();
+    int maxInFlight = 4;
+    Iterator<Annotation> docs = documents(50).iterator();
+    Iterator<Annotation> counting = new Iterator<Annotation>() {
+      @Override
+      public boolean hasNext() { return docs.hasNext(); }
+      @Override
+      public Annotation next() {
+        assertTrue(read.get() - delivered.get() < maxInFlight);
+        read.incrementAndGet();
+        return docs.next();
+      }
+    };
+    StagedAnnotationRunner runner = new StagedAnnotationRunner(
+        Arrays.asList(new AppendingAnnotator("a"), new AppendingAnnotator("b")), null, 2, maxInFlight, true);
+    runner.run(counting, ann -> delivered.incrementAndGet());
+    assertEquals(50, delivered.get());
+  }
+
+  public void testFailureSkipsLaterStages() {
+    Annotator failing = new AppendingAnnotator("x") {
+      @Override
+      public void annotate(Annotation annotation) {
+        if (annotation.toString().equals("3")) {
+          throw new IllegalStateException("boom");
+        }
+        super.annotate(annotation);
+      }
+    };
+    StagedAnnotationRunner runner = new StagedAnnotationRunner(
+        Arrays.asList(new AppendingAnnotator("a"), failing, new AppendingAnnotator("c")), null, 2, 4, true);
+    List<Annotation> out = new ArrayList<>();
+    runner.run(documents(6).iterator(), out::add);
+    assertEquals(6, out.size());
+    assertEquals("a", out.get(3).get(CoreAnnotations.DocIDAnnotation.class));
+    assertTrue(out.get(3).get(CoreAnnotations.ExceptionAnnotation.class) instanceof IllegalStateException);
+    assertEquals("axc", out.get(4).get(CoreAnnotations.DocIDAnnotation.class));
+  }
+
+}
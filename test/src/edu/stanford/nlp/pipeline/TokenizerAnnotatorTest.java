@@ -2,6 +2,7 @@ package edu.stanford.nlp.pipeline;
 
 import java.util.*;
 
+import edu.stanford.nlp.ling.ColumnarCoreLabel;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import junit.framework.TestCase;
@@ -104,4 +105,22 @@ public class TokenizerAnnotatorTest extends TestCase {
     assertEquals(27, toks2.size());
   }
 
+  public void testColumnar() {
+    Properties props = new Properties();
+    props.setProperty("tokenize.columnar", "true");
+    Annotation ann = new Annotation(text);
+    new TokenizerAnnotator(false, props).annotate(ann);
+    Annotation expected = new Annotation(text);
+    new TokenizerAnnotator("en").annotate(expected);
+
+    List<CoreLabel> toks = ann.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> expectedToks = expected.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(expectedToks.size(), toks.size());
+    for (int i = 0; i < toks.size(); i++) {
+      assertTrue(toks.get(i) instanceof ColumnarCoreLabel);
+      assertEquals(expectedToks.get(i), toks.get(i));
+      assertEquals(expectedToks.get(i).beginPosition(), toks.get(i).beginPosition());
+    }
+  }
+
 }
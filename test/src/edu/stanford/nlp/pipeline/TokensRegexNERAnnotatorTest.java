@@ -0,0 +1,107 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests matching a mix of literal, regex and TokensRegex entries with
+ * {@link TokensRegexNERAnnotator}, without any models.
+ */
+public class TokensRegexNERAnnotatorTest extends TestCase {
+
+  private static final String[] MAPPING = {
+      "Stanford University\tSCHOOL",
+      "University\tORGANIZATION",
+      "Bank of America\tORGANIZATION",
+      "America\tLOCATION\t\t2",
+      "[A-Z]\\w+ City\tTOWN",
+      "( /John|Jane/ /Doe/ )\tPERSON",
+      "Doe\tMISC",
+      "New New\tMISC",
+  };
+
+  private static String mappingFile() throws IOException {
+    File file = File.createTempFile("tokensregexnertest.patterns", "txt");
+    file.deleteOnExit();
+    try (PrintWriter pw = IOUtils.getPrintWriter(file.getAbsolutePath())) {
+      for (String line : MAPPING) {
+        pw.println(line);
+      }
+    }
+    return file.getAbsolutePath();
+  }
+
+  private static String annotate(Annotator annotator, String text) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String word : text.split(" ")) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setValue(word);
+      token.setNER("O");
+      tokens.add(token);
+    }
+    Annotation annotation = new Annotation(text);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    annotator.annotate(annotation);
+    StringBuilder sb = new StringBuilder();
+    for (CoreLabel token : tokens) {
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(token.ner());
+    }
+    return sb.toString();
+  }
+
+  private static void checkCased(Annotator annotator) {
+    assertEquals("O SCHOOL SCHOOL O", annotate(annotator, "at Stanford University today"));
+    assertEquals("ORGANIZATION O", annotate(annotator, "University life"));
+    assertEquals("O O LOCATION", annotate(annotator, "Bank of America"));
+    assertEquals("O TOWN TOWN", annotate(annotator, "in Redwood City"));
+    assertEquals("PERSON PERSON MISC", annotate(annotator, "Jane Doe Doe"));
+    assertEquals("MISC MISC O", annotate(annotator, "New New New"));
+    assertEquals("O O O", annotate(annotator, "stanford university today"));
+  }
+
+  public void testLiteralAndRegexEntries() throws IOException {
+    checkCased(new TokensRegexNERAnnotator(mappingFile()));
+  }
+
+  public void testIgnoreCase() throws IOException {
+    Annotator annotator = new TokensRegexNERAnnotator(mappingFile(), true);
+    assertEquals("SCHOOL SCHOOL O", annotate(annotator, "stanford UNIVERSITY today"));
+    assertEquals("O O LOCATION", annotate(annotator, "bank of AMERICA"));
+    assertEquals("O TOWN TOWN", annotate(annotator, "in redwood city"));
+  }
+
+  /** Matching ignoring case must not depend on the default locale, e.g., the Turkish dotless i. */
+  public void testIgnoreCaseInTurkishLocale() throws IOException {
+    Locale locale = Locale.getDefault();
+    try {
+      Locale.setDefault(new Locale("tr", "TR"));
+      Annotator annotator = new TokensRegexNERAnnotator(mappingFile(), true);
+      assertEquals("SCHOOL SCHOOL O", annotate(annotator, "Stanford UNIVERSITY today"));
+      assertEquals("O O LOCATION", annotate(annotator, "BANK OF AMERICA"));
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(new TokensRegexNERAnnotator(mappingFile()));
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      checkCased((Annotator) in.readObject());
+    }
+  }
+
+}
@@ -1,6 +1,6 @@
 package edu.stanford.nlp.sequences;
 
-import java.util.Arrays;
+import java.util.*;
 
 import junit.framework.TestCase;
 
@@ -448,6 +448,107 @@ public class BestSequenceFinderTest extends TestCase {
     runPossibleValuesChecker(tsm3, bsf);
   }
 
+  public void testViterbiBestSequenceFinder() {
+    BestSequenceFinder bsf = new ViterbiBestSequenceFinder();
+    TestSequenceModel tsm = new TestSequenceModel1();
+    runSequenceFinder(tsm, bsf);
+    runPossibleValuesChecker(tsm, bsf);
+    TestSequenceModel tsm2 = new TestSequenceModel2();
+    runSequenceFinder(tsm2, bsf);
+    runPossibleValuesChecker(tsm2, bsf);
+    TestSequenceModel tsm2nr = new TestSequenceModel2nr();
+    runSequenceFinder(tsm2nr, bsf);
+    runPossibleValuesChecker(tsm2nr, bsf);
+    TestSequenceModel tsm3 = new TestSequenceModel3();
+    runSequenceFinder(tsm3, bsf);
+    runPossibleValuesChecker(tsm3, bsf);
+  }
+
+  /** A model with random scores, which only uses scoresOf. */
+  private static class RandomSequenceModel implements SequenceModel {
+
+    private final int length;
+    private final int leftWindow;
+    private final int rightWindow;
+    private final int[][] possibleValues;
+    private final long seed;
+
+    RandomSequenceModel(Random random, int length, int leftWindow, int rightWindow) {
+      this.length = length;
+      this.leftWindow = leftWindow;
+      this.rightWindow = rightWindow;
+      this.seed = random.nextLong();
+      possibleValues = new int[length + leftWindow + rightWindow][];
+      for (int pos = 0; pos < possibleValues.length; pos++) {
+        if (pos < leftWindow || pos >= leftWindow + length) {
+          possibleValues[pos] = new int[] { 0 };
+        } else {
+          List<Integer> tags = new ArrayList<>();
+          for (int tag = 0; tag < 6; tag++) {
+            tags.add(tag);
+          }
+          Collections.shuffle(tags, random);
+          int numTags = 1 + random.nextInt(tags.size());
+          possibleValues[pos] = new int[numTags];
+          for (int i = 0; i < numTags; i++) {
+            possibleValues[pos][i] = tags.get(i);
+          }
+        }
+      }
+    }
+
+    @Override
+    public int length() { return length; }
+
+    @Override
+    public int leftWindow() { return leftWindow; }
+
+    @Override
+    public int rightWindow() { return rightWindow; }
+
+    @Override
+    public int[] getPossibleValues(int position) { return possibleValues[position]; }
+
+    @Override
+    public double scoreOf(int[] sequence, int position) {
+      long hash = seed + position;
+      for (int i = position - leftWindow; i <= position + rightWindow; i++) {
+        hash = hash * 31 + sequence[i];
+      }
+      return new Random(hash).nextDouble();
+    }
+
+    @Override
+    public double scoreOf(int[] sequence) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double[] scoresOf(int[] sequence, int position) {
+      int[] tags = possibleValues[position];
+      double[] scores = new double[tags.length];
+      int original = sequence[position];
+      for (int t = 0; t < tags.length; t++) {
+        sequence[position] = tags[t];
+        scores[t] = scoreOf(sequence, position);
+      }
+      sequence[position] = original;
+      return scores;
+    }
+
+  }
+
+  /** Checks that the Viterbi finder agrees with the exact finder, reusing its lattice for many sizes. */
+  public void testViterbiMatchesExact() {
+    Random random = new Random(42);
+    BestSequenceFinder exact = new ExactBestSequenceFinder();
+    BestSequenceFinder viterbi = new ViterbiBestSequenceFinder();
+    for (int i = 0; i < 200; i++) {
+      SequenceModel model = new RandomSequenceModel(random, 1 + random.nextInt(20), 1 + random.nextInt(2), random.nextInt(2));
+      assertTrue(Arrays.equals(exact.bestSequence(model), viterbi.bestSequence(model)));
+    }
+  }
+
   // This doesn't seem to work either.  Dodgy stuff in our BestSequenceFinder's
   /*
   public void testKBestSequenceFinder() {
@@ -0,0 +1,89 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class FeatureAssociationTableTest extends TestCase {
+
+  public void testLookup() {
+    Map<String, int[]> fValueAssociations = new HashMap<>();
+    fValueAssociations.put("girl", new int[] { 3, -1, 7, -1 });
+    fValueAssociations.put("boy", new int[] { -1, -1, -1, 0 });
+    fValueAssociations.put("none", new int[] { -1, -1, -1, -1 });
+    for (int i = 0; i < 100; i++) {
+      fValueAssociations.put("w" + i, new int[] { -1, 10 + i, -1, -1 });
+    }
+    FeatureAssociationTable table = new FeatureAssociationTable(fValueAssociations);
+
+    assertEquals(103, table.numFeatures());
+    assertEquals(-1, table.lookup("none"));
+    assertEquals(-1, table.lookup("woman"));
+    assertEquals(-1, table.lookup(null));
+
+    for (Map.Entry<String, int[]> entry : fValueAssociations.entrySet()) {
+      int slot = table.lookup(entry.getKey());
+      if (slot < 0) {
+        continue;
+      }
+      assertEquals(entry.getKey(), table.value(slot));
+      int[] fNums = new int[4];
+      Arrays.fill(fNums, -1);
+      for (int f = table.start(slot); f < table.end(slot); f++) {
+        fNums[table.tags[f]] = table.fNums[f];
+      }
+      for (int tag = 0; tag < fNums.length; tag++) {
+        assertEquals(entry.getValue()[tag], fNums[tag]);
+        assertEquals(entry.getValue()[tag], table.fNum(slot, tag));
+      }
+    }
+  }
+
+  public void testToMap() {
+    Map<String, int[]> fValueAssociations = new HashMap<>();
+    fValueAssociations.put("girl", new int[] { 3, -1, 7, -1 });
+    fValueAssociations.put("boy", new int[] { -1, -1, -1, 0 });
+    fValueAssociations.put("none", new int[] { -1, -1, -1, -1 });
+    Map<String, int[]> map = new FeatureAssociationTable(fValueAssociations).toMap(4);
+    assertEquals(2, map.size());
+    assertTrue(Arrays.equals(fValueAssociations.get("girl"), map.get("girl")));
+    assertTrue(Arrays.equals(fValueAssociations.get("boy"), map.get("boy")));
+  }
+
+  /** The training code can get the features as maps again after they were compiled for tagging. */
+  public void testMapsRebuiltAfterTagging() throws Exception {
+    MaxentTagger tagger = new MaxentTagger(TaggerTestUtils.trainTagger("left3words"));
+    List<String> tags = TaggerTestUtils.tags(tagger, TaggerTestUtils.SENTENCES[1]);
+    FeatureAssociationTable[] tables = tagger.featureAssociations();
+    int numFeatures = 0;
+    for (FeatureAssociationTable table : tables) {
+      numFeatures += table.numFeatures();
+    }
+
+    List<Map<String, int[]>> maps = tagger.featureAssociationMaps();
+    assertEquals(tables.length, maps.size());
+    int numMapped = 0;
+    for (Map<String, int[]> map : maps) {
+      for (int[] fNums : map.values()) {
+        for (int fNum : fNums) {
+          if (fNum >= 0) {
+            numMapped++;
+          }
+        }
+      }
+    }
+    assertEquals(numFeatures, numMapped);
+    assertEquals(tags, TaggerTestUtils.tags(tagger, TaggerTestUtils.SENTENCES[1]));
+  }
+
+  public void testEmpty() {
+    FeatureAssociationTable table = new FeatureAssociationTable(new HashMap<>());
+    assertEquals(0, table.numFeatures());
+    assertEquals(-1, table.lookup("girl"));
+  }
+
+}
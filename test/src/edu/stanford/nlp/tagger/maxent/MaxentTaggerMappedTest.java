@@ -0,0 +1,33 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+import edu.stanford.nlp.io.MappedModelFile;
+
+
+/**
+ * Checks that a tagger saved as a mapped model and loaded again tags
+ * text just as the same tagger loaded into the heap.
+ */
+public class MaxentTaggerMappedTest extends TestCase {
+
+  public void testMappedTaggerTagsLikeHeapTagger() throws Exception {
+    String heapPath = TaggerTestUtils.trainTagger("left3words,naacl2003unknowns");
+    MaxentTagger heap = new MaxentTagger(heapPath);
+
+    File mapped = File.createTempFile("tagger", ".mapped");
+    mapped.deleteOnExit();
+    heap.saveMappedModel(mapped.getPath());
+    assertTrue(MappedModelFile.isMappedModelFile(mapped.getPath()));
+    MaxentTagger reloaded = new MaxentTagger(mapped.getPath());
+
+    assertEquals(heap.numLambdas(), reloaded.numLambdas());
+    for (String sentence : TaggerTestUtils.SENTENCES) {
+      assertEquals(sentence, TaggerTestUtils.tags(heap, sentence), TaggerTestUtils.tags(reloaded, sentence));
+    }
+    assertEquals("DT", TaggerTestUtils.tags(heap, TaggerTestUtils.SENTENCES[0]).get(0));
+  }
+
+}
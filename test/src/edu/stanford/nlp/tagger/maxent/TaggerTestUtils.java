@@ -0,0 +1,72 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.ling.Word;
+
+/** Trains small taggers on the sample tagged text, for tests. */
+public class TaggerTestUtils {
+
+  private static final String SAMPLE_TAGGED = "edu/stanford/nlp/tagger/sample_tagged.txt";
+
+  public static final String[] SENTENCES = {
+      "An egret is a white heron with fine plumes .",
+      "Several herons develop milky white plumes during the breeding season .",
+      "Most egrets are members of the genera Egretta or Ardea .",
+      "The cattle egret hunts insects in fields near herds of cattle .",
+  };
+
+  private TaggerTestUtils() { } // static methods
+
+  /**
+   * Trains a tagger with the given architecture on the sample tagged
+   * text and returns the path of the model, which is deleted on exit.
+   * The language is "testing", as the English tag expansion would add
+   * tags which the sample text doesn't have.
+   */
+  public static String trainTagger(String arch) throws IOException {
+    File trainFile = File.createTempFile("tagger", ".txt");
+    trainFile.deleteOnExit();
+    try (InputStream in = IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(SAMPLE_TAGGED)) {
+      Files.copy(in, trainFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    File model = File.createTempFile("tagger", ".tagger");
+    model.deleteOnExit();
+    new File(model.getPath() + ".props").deleteOnExit();
+    try {
+      MaxentTagger.main(new String[] { "-model", model.getPath(), "-trainFile", trainFile.getPath(),
+          "-arch", arch, "-tagSeparator", "_", "-search", "qn", "-sigmaSquared", "0.5", "-lang", "testing",
+          "-minFeatureThresh", "1", "-curWordMinFeatureThresh", "1", "-rareWordMinFeatureThresh", "1" });
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return model.getPath();
+  }
+
+  public static List<Word> words(String sentence) {
+    List<Word> words = new ArrayList<>();
+    for (String word : sentence.split(" ")) {
+      words.add(new Word(word));
+    }
+    return words;
+  }
+
+  public static List<String> tags(MaxentTagger tagger, String sentence) {
+    List<String> tags = new ArrayList<>();
+    for (TaggedWord word : tagger.tagSentence(words(sentence))) {
+      tags.add(word.tag());
+    }
+    return tags;
+  }
+
+}
@@ -0,0 +1,137 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.tagger.common.Tagger;
+import edu.stanford.nlp.util.PropertiesUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+
+
+/**
+ * Checks that the memoized scoring of TestSentence tags exactly as the
+ * plain scoring does, for bidirectional and left-only models, with exact
+ * and approximate scoring, and when the combinations of tags around a
+ * position are too many to remember.
+ */
+public class TestSentenceTest extends TestCase {
+
+  private static List<String> sentences() throws IOException {
+    List<String> sentences = new ArrayList<>();
+    try (InputStream in = IOUtils.getInputStreamFromURLOrClasspathOrFileSystem("edu/stanford/nlp/tagger/sample_tagged.txt")) {
+      for (String line : IOUtils.slurpInputStream(in, "utf-8").split("\n")) {
+        if ( ! line.trim().isEmpty()) {
+          sentences.add(line.trim().replaceAll("_[^ ]+", ""));
+        }
+      }
+    }
+    // these have unknown words, which can have any open class tag,
+    // alone and next to each other
+    sentences.add(TaggerTestUtils.SENTENCES[0]);
+    sentences.add(TaggerTestUtils.SENTENCES[2]);
+    sentences.add("Egrets hunt herons in the white season .");
+    return sentences;
+  }
+
+  private static List<String> tags(MaxentTagger tagger, String sentence, boolean memoize, int maxDynamicSlots) {
+    TestSentence testSentence = new TestSentence(tagger);
+    testSentence.memoize = memoize;
+    testSentence.maxDynamicSlots = maxDynamicSlots;
+    List<String> tags = new ArrayList<>();
+    for (TaggedWord word : testSentence.tagSentence(TaggerTestUtils.words(sentence), false)) {
+      tags.add(word.tag());
+    }
+    return tags;
+  }
+
+  /** Sets up a TestSentence to score tag sequences of the sentence, as tagging does. */
+  private static TestSentence scorer(MaxentTagger tagger, String sentence, boolean memoize, int maxDynamicSlots) {
+    TestSentence testSentence = new TestSentence(tagger);
+    testSentence.memoize = memoize;
+    testSentence.maxDynamicSlots = maxDynamicSlots;
+    testSentence.sent = new ArrayList<>(Arrays.asList(sentence.split(" ")));
+    testSentence.sent.add(Tagger.EOS_WORD);
+    testSentence.size = testSentence.sent.size();
+    testSentence.init();
+    testSentence.initializeScorer();
+    return testSentence;
+  }
+
+  /**
+   * Scores random tag sequences of the sentence at every position, and
+   * checks that the memoized scores are the same as the plain ones.  Many
+   * sequences agree on the tags some extractor looks at, so the memoized
+   * values are reused.
+   */
+  private static void checkMemoizedScores(MaxentTagger tagger, String sentence, String message) {
+    TestSentence plain = scorer(tagger, sentence, false, 0);
+    TestSentence[] memoized = {
+        scorer(tagger, sentence, true, 4096),
+        // some combinations are remembered and some fall back to a plain lookup
+        scorer(tagger, sentence, true, 16),
+        // every combination falls back to a plain lookup
+        scorer(tagger, sentence, true, 1),
+    };
+    int left = plain.leftWindow();
+    int padLength = left + plain.length() + plain.rightWindow();
+    int[][] possibleTags = new int[padLength][];
+    for (int i = 0; i < padLength; i++) {
+      possibleTags[i] = plain.getPossibleValues(i);
+    }
+    Random random = new Random(1234);
+    int[] tags = new int[padLength];
+    double[] scores = new double[tagger.ySize];
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < padLength; i++) {
+        tags[i] = possibleTags[i][random.nextInt(possibleTags[i].length)];
+      }
+      for (int pos = left; pos < left + plain.length(); pos++) {
+        double[] expected = plain.scoresOf(tags, pos);
+        for (TestSentence testSentence : memoized) {
+          assertArrayEquals(message, expected, testSentence.scoresOf(tags, pos), 1e-12);
+          testSentence.scoresOf(tags, pos, scores);
+          assertArrayEquals(message, expected, Arrays.copyOf(scores, expected.length), 1e-12);
+        }
+      }
+    }
+  }
+
+  private static void checkMemoized(String arch) throws IOException {
+    String model = TaggerTestUtils.trainTagger(arch);
+    List<String> sentences = sentences();
+    for (String approximate : new String[] { "false", "true" }) {
+      Properties props = PropertiesUtils.asProperties("approximate", approximate);
+      MaxentTagger tagger = new MaxentTagger(model, props, false);
+      assertEquals(approximate.equals("true"), tagger.hasApproximateScoring());
+      for (String sentence : sentences) {
+        List<String> expected = tags(tagger, sentence, false, 0);
+        String message = arch + ", approximate=" + approximate + ": " + sentence;
+        checkMemoizedScores(tagger, sentence, message);
+        assertEquals(message, expected, tags(tagger, sentence, true, 4096));
+        // some combinations are remembered and some fall back to a plain lookup
+        assertEquals(message, expected, tags(tagger, sentence, true, 16));
+        // every combination falls back to a plain lookup
+        assertEquals(message, expected, tags(tagger, sentence, true, 1));
+      }
+    }
+  }
+
+  public void testBidirectional() throws IOException {
+    checkMemoized("bidirectional5words");
+  }
+
+  public void testLeftOnly() throws IOException {
+    checkMemoized("left3words,naacl2003unknowns");
+  }
+
+}
@@ -0,0 +1,103 @@
+package edu.stanford.nlp.util;
+
+import java.util.Collections;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.pipeline.Annotator;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link Deadline}, and that a document's deadline stops a pipeline.
+ */
+public class DeadlineTest extends TestCase {
+
+  /** Spins until told to stop, checking for interrupts as the real annotators do. */
+  private static class SpinningAnnotator implements Annotator {
+    @Override
+    public void annotate(Annotation annotation) {
+      long giveUp = System.currentTimeMillis() + 30000;
+      while (System.currentTimeMillis() < giveUp) {
+        Deadline.checkForInterrupt();
+      }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Class<? extends CoreAnnotation>> requires() { return Collections.emptySet(); }
+  }
+
+  public void testExpired() {
+    Deadline later = Deadline.after(60000);
+    assertFalse(later.expired());
+    assertTrue(later.remainingMillis() > 0);
+    assertEquals(60000, later.timeoutMillis());
+    later.check();
+
+    Deadline past = Deadline.after(0);
+    assertTrue(past.expired());
+    try {
+      past.check();
+      fail("expected the deadline to have passed");
+    } catch (DeadlineExceededException e) {
+      assertSame(past, e.deadline());
+    }
+  }
+
+  @SuppressWarnings("try")
+  public void testScope() {
+    assertNull(Deadline.current());
+    Deadline outer = Deadline.after(60000);
+    Deadline inner = Deadline.after(0);
+    try (Deadline.Scope ignored = Deadline.enter(outer)) {
+      assertSame(outer, Deadline.current());
+      Deadline.checkForInterrupt();
+      try (Deadline.Scope ignored2 = Deadline.enter(inner)) {
+        assertSame(inner, Deadline.current());
+        try {
+          Deadline.checkForInterrupt();
+          fail("expected the deadline to have passed");
+        } catch (DeadlineExceededException e) {
+          // expected
+        }
+      }
+      assertSame(outer, Deadline.current());
+    }
+    assertNull(Deadline.current());
+    Deadline.checkForInterrupt();
+  }
+
+  public void testInterrupt() {
+    Thread.currentThread().interrupt();
+    try {
+      Deadline.checkForInterrupt();
+      fail("expected the interrupt to be noticed");
+    } catch (RuntimeInterruptedException e) {
+      assertFalse(e instanceof DeadlineExceededException);
+    }
+    assertFalse(Thread.interrupted());
+  }
+
+  public void testPipelineStopsAtDeadline() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new SpinningAnnotator());
+    Annotation annotation = new Annotation("Time is up.");
+    annotation.set(CoreAnnotations.DeadlineAnnotation.class, Deadline.after(100));
+    long start = System.currentTimeMillis();
+    try {
+      pipeline.annotate(annotation);
+      fail("expected the deadline to stop the annotator");
+    } catch (DeadlineExceededException e) {
+      assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+    assertNull(Deadline.current());
+  }
+
+}
@@ -0,0 +1,57 @@
+package edu.stanford.nlp.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LongIntHashMapTest extends TestCase {
+
+  public void testBasic() {
+    LongIntHashMap map = new LongIntHashMap();
+    assertEquals(0, map.size());
+    assertEquals(-1, map.get(5L, -1));
+    assertEquals(-1, map.put(5L, 3, -1));
+    assertEquals(3, map.put(5L, 4, -1));
+    assertEquals(4, map.get(5L, -1));
+    assertTrue(map.containsKey(5L));
+    assertFalse(map.containsKey(6L));
+    assertEquals(1, map.size());
+
+    // zero is kept outside the table
+    assertFalse(map.containsKey(0L));
+    map.put(0L, 7);
+    assertTrue(map.containsKey(0L));
+    assertEquals(7, map.get(0L, -1));
+    assertEquals(2, map.size());
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertFalse(map.containsKey(0L));
+    assertFalse(map.containsKey(5L));
+  }
+
+  /** Many random entries, including negative keys, should agree with a HashMap. */
+  public void testAgreesWithHashMap() {
+    Random random = new Random(42);
+    LongIntHashMap map = new LongIntHashMap(4);
+    Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(5000) - 2500;
+      int value = random.nextInt();
+      Integer old = expected.put(key, value);
+      assertEquals(old == null ? Integer.MIN_VALUE : old.intValue(), map.put(key, value, Integer.MIN_VALUE));
+    }
+    assertEquals(expected.size(), map.size());
+    assertTrue(map.capacity() * 3 >= map.size() * 4);
+    for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue().intValue(), map.get(entry.getKey(), Integer.MIN_VALUE));
+    }
+    for (int i = 0; i < 1000; i++) {
+      long key = random.nextLong();
+      assertEquals(expected.containsKey(key), map.containsKey(key));
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+package edu.stanford.nlp.util;
+
+import java.io.*;
+import java.util.*;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import junit.framework.TestCase;
+
+/**
+ * Checks that SlottedCoreMap behaves the same as ArrayCoreMap.
+ */
+public class SlottedCoreMapTest extends TestCase {
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static final Class<? extends TypesafeMap.Key<String>>[] KEYS = new Class[] {
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.ValueAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.BeforeAnnotation.class,
+      CoreAnnotations.AfterAnnotation.class,
+      CoreAnnotations.OriginalTextAnnotation.class,
+      CoreAnnotations.AnswerAnnotation.class,
+      CoreAnnotations.ShapeAnnotation.class,
+      CoreAnnotations.DocIDAnnotation.class,
+      CoreAnnotations.CategoryAnnotation.class,
+  };
+
+  public void testGetAndSet() {
+    SlottedCoreMap map = new SlottedCoreMap();
+    assertEquals(0, map.size());
+    assertNull(map.set(CoreAnnotations.TextAnnotation.class, "foo"));
+    assertEquals("foo", map.get(CoreAnnotations.TextAnnotation.class));
+    assertNull(map.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals("foo", map.set(CoreAnnotations.TextAnnotation.class, "bar"));
+    assertEquals(1, map.size());
+
+    map.set(CoreAnnotations.PartOfSpeechAnnotation.class, null);
+    assertTrue(map.containsKey(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertNull(map.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals(2, map.size());
+
+    assertEquals("bar", map.remove(CoreAnnotations.TextAnnotation.class));
+    assertFalse(map.containsKey(CoreAnnotations.TextAnnotation.class));
+    assertEquals(1, map.size());
+  }
+
+  /** Random sets and removes should leave both implementations with the same contents. */
+  public void testAgreesWithArrayCoreMap() {
+    Random random = new Random(1234);
+    SlottedCoreMap slotted = new SlottedCoreMap();
+    ArrayCoreMap array = new ArrayCoreMap();
+    for (int step = 0; step < 5000; step++) {
+      Class<? extends TypesafeMap.Key<String>> key = KEYS[random.nextInt(KEYS.length)];
+      if (random.nextInt(3) == 0) {
+        assertEquals(array.remove(key), slotted.remove(key));
+      } else {
+        String value = random.nextInt(10) == 0 ? null : String.valueOf(random.nextInt(100));
+        assertEquals(array.set(key, value), slotted.set(key, value));
+      }
+      assertEquals(array.size(), slotted.size());
+      for (Class<? extends TypesafeMap.Key<String>> k : KEYS) {
+        assertEquals(array.containsKey(k), slotted.containsKey(k));
+        assertEquals(array.get(k), slotted.get(k));
+      }
+      if (step % 100 == 0) {
+        slotted.compact();
+      }
+    }
+    assertEquals(array.keySet(), slotted.keySet());
+    assertEquals(array, slotted);
+    assertEquals(slotted, array);
+    assertEquals(array.hashCode(), slotted.hashCode());
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testKeySetRemove() {
+    SlottedCoreMap map = new SlottedCoreMap();
+    for (Class<? extends TypesafeMap.Key<String>> key : KEYS) {
+      map.set(key, key.getSimpleName());
+    }
+    Iterator<Class<?>> it = map.keySet().iterator();
+    int seen = 0;
+    while (it.hasNext()) {
+      Class<?> key = it.next();
+      seen++;
+      if (seen % 2 == 0) {
+        it.remove();
+        assertFalse(map.keySet().contains(key));
+      }
+    }
+    assertEquals(KEYS.length, seen);
+    assertEquals(KEYS.length - KEYS.length / 2, map.size());
+  }
+
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    SlottedCoreMap map = new SlottedCoreMap();
+    map.set(CoreAnnotations.TextAnnotation.class, "foo");
+    map.set(CoreAnnotations.IndexAnnotation.class, 3);
+    map.set(CoreAnnotations.LemmaAnnotation.class, null);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(map);
+    out.close();
+    SlottedCoreMap read = (SlottedCoreMap) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(map, read);
+    assertEquals(3, read.size());
+    assertTrue(read.containsKey(CoreAnnotations.LemmaAnnotation.class));
+  }
+
+  /** A map which reaches itself through its sentences should still print, compare and hash. */
+  public void testCycles() {
+    SlottedCoreMap a = new SlottedCoreMap();
+    SlottedCoreMap b = new SlottedCoreMap();
+    for (SlottedCoreMap map : Arrays.asList(a, b)) {
+      map.set(CoreAnnotations.TextAnnotation.class, "foo");
+      map.set(CoreAnnotations.SentencesAnnotation.class, Collections.singletonList(map));
+    }
+    assertEquals("[TextAnnotation=foo SentencesAnnotation=[[...]]]".length(), a.toString().length());
+    assertTrue(a.toString().contains("[...]"));
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    b.set(CoreAnnotations.TextAnnotation.class, "bar");
+    assertFalse(a.equals(b));
+  }
+
+  public void testRegistry() {
+    int id = KeyRegistry.idOf(CoreAnnotations.TextAnnotation.class);
+    assertEquals(id, KeyRegistry.idOf(CoreAnnotations.TextAnnotation.class));
+    assertEquals(CoreAnnotations.TextAnnotation.class, KeyRegistry.keyOf(id));
+    assertTrue(id != KeyRegistry.idOf(CoreAnnotations.ValueAnnotation.class));
+  }
+
+}